@@ -0,0 +1,90 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.lmt.lib.archive.Archive;
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+
+/**
+ * エントリ数に対するエントリ列挙・キャッシュのコストを計測するベンチマークです。
+ *
+ * <p>アーカイブはトライアルごとに1回だけオープンし、各操作で全エントリを列挙し直します。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumerateBenchmark {
+	/** エントリ数によるセット */
+	@Param({ "entries-100", "entries-1000", "entries-10000" })
+	public String set;
+	/** アーカイブの形式 */
+	@Param({ "FOLDER", "ZIP", "SEVEN_ZIP", "SEVEN_ZIP_SOLID" })
+	public Format format;
+
+	/** 計測対象アーカイブ */
+	private Archive mArchive;
+
+	/**
+	 * 計測対象アーカイブをオープンします。
+	 * @exception IOException オープンに失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		mArchive = ArchiveManager.getInstance().open(Fixtures.path(set, format));
+	}
+
+	/**
+	 * 計測対象アーカイブをクローズします。
+	 * @exception IOException クローズに失敗した
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		mArchive.close();
+	}
+
+	/**
+	 * 全エントリを列挙し、各エントリのパス・サイズを参照します。
+	 * @param bh ブラックホール
+	 * @exception IOException 列挙に失敗した
+	 */
+	@Benchmark
+	public void enumEntries(Blackhole bh) throws IOException {
+		mArchive.enumEntries((entry, count, num) -> {
+			bh.consume(entry.getPath());
+			bh.consume(entry.getSize());
+			return true;
+		});
+	}
+
+	/**
+	 * 全エントリ情報をキャッシュします。
+	 * @return エントリ数
+	 * @exception IOException 列挙に失敗した
+	 */
+	@Benchmark
+	public int cacheEntries() throws IOException {
+		mArchive.cacheEntries();
+		return mArchive.getEntryCount();
+	}
+}
@@ -0,0 +1,365 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.impl.SzjbNativeLoader;
+
+import net.sf.sevenzipjbinding.IOutCreateCallback;
+import net.sf.sevenzipjbinding.IOutItem7z;
+import net.sf.sevenzipjbinding.ISequentialInStream;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.impl.OutItemFactory;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileOutStream;
+import net.sf.sevenzipjbinding.util.ByteArrayStream;
+
+/**
+ * ベンチマーク用アーカイブを生成・管理するクラスです。
+ *
+ * <p>アーカイブは固定のシード値による疑似乱数で生成するため、同じバージョンのライブラリであれば
+ * どの環境で生成しても同じ内容になります。生成先は システムプロパティ "archive.bench.fixtures" で指定でき、
+ * 指定がない場合は "target/fixtures" になります。Mavenのpackageフェーズで {@link #main(String[])} により生成されますが、
+ * 未生成の状態でベンチマークを実行した場合は最初のベンチマークのセットアップ時に生成されます。</p>
+ *
+ * <p>アーカイブは以下のセットごとに {@link Format} の各形式で生成します。</p>
+ * <ul>
+ * <li>entries-N: 数百～2K程度の小さなファイルN個(16個ごとにフォルダを分ける)</li>
+ * <li>size-N: サイズNのファイル16個</li>
+ * </ul>
+ *
+ * <p>RARはライブラリに作成手段がないため、テスト用のRAR5アーカイブをコピーして使用します。</p>
+ *
+ * @author J-SON3
+ */
+public class Fixtures {
+	/** 生成先を指定するシステムプロパティ名 */
+	public static final String PROPERTY_DIR = "archive.bench.fixtures";
+	/** エントリ数によるセット */
+	public static final String[] ENTRIES_SETS = { "entries-100", "entries-1000", "entries-10000" };
+	/** ファイルサイズによるセット */
+	public static final String[] SIZE_SETS = { "size-1k", "size-64k", "size-1m" };
+	/** RARアーカイブのファイル名 */
+	public static final String RAR_NAME = "rar5.rar";
+
+	/** 疑似乱数のシード値 */
+	private static final long SEED = 0x4172636869766521L;
+	/** 1フォルダあたりのファイル数 */
+	private static final int FILES_PER_FOLDER = 16;
+	/** サイズ別セットのファイル数 */
+	private static final int SIZE_SET_FILES = 16;
+	/** 全エントリに設定する最終更新日時 */
+	private static final long LAST_MODIFIED = 1704067200000L;
+	/** 生成完了を示すファイル名 */
+	private static final String COMPLETED_MARKER = ".completed";
+	/** 生成元のRARアーカイブ(benchmarkフォルダからの相対パス) */
+	private static final Path RAR_SOURCE = Path.of("..", "test", "com", "lmt", "lib", "archive", "data", "Archive",
+			"test.5.rar");
+	/** 内容の生成に使用する単語(ある程度圧縮が効く内容にする) */
+	private static final String[] WORDS = {
+			"archive", "entry", "content", "folder", "stream", "solid", "block", "index", "path", "cache",
+			"アーカイブ", "エントリ", "コンテンツ", "圧縮", "解凍", "\n", " ", " ", " ", "0123456789" };
+
+	/**
+	 * アーカイブの形式を表す列挙型です。
+	 */
+	public enum Format {
+		/** フォルダ */
+		FOLDER(""),
+		/** ZIP(Deflate) */
+		ZIP(".zip"),
+		/** 7-ZIP(非ソリッド) */
+		SEVEN_ZIP(".7z"),
+		/** 7-ZIP(ソリッド) */
+		SEVEN_ZIP_SOLID("-solid.7z");
+
+		/** ファイル名の末尾 */
+		private String mSuffix;
+
+		/**
+		 * コンストラクタ
+		 * @param suffix ファイル名の末尾
+		 */
+		private Format(String suffix) {
+			mSuffix = suffix;
+		}
+
+		/**
+		 * アーカイブのファイル名の末尾を取得します。
+		 * @return ファイル名の末尾(フォルダの場合は空文字列)
+		 */
+		public String getSuffix() {
+			return mSuffix;
+		}
+	}
+
+	/** 生成するファイル */
+	static class Item {
+		/** パス(区切り文字は"/") */
+		final String path;
+		/** 内容(フォルダの場合はnull) */
+		final byte[] data;
+
+		Item(String path, byte[] data) {
+			this.path = path;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * ベンチマーク用アーカイブを生成します。
+	 * @param args 第1引数に生成先のフォルダ。省略時は {@link #directory()}。
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	public static void main(String[] args) throws IOException {
+		var dir = (args.length > 0) ? Path.of(args[0]) : directory();
+		generate(dir);
+		System.out.println("Fixtures: " + dir.toAbsolutePath());
+	}
+
+	/**
+	 * アーカイブの生成先フォルダを取得します。
+	 * @return アーカイブの生成先フォルダ
+	 */
+	public static Path directory() {
+		return Path.of(System.getProperty(PROPERTY_DIR, "target/fixtures")).toAbsolutePath();
+	}
+
+	/**
+	 * 指定セット・形式のアーカイブのパスを取得します。
+	 * <p>アーカイブが未生成の場合は生成し、アーカイブマネージャが未初期化の場合は初期化します。</p>
+	 * @param set セット名
+	 * @param format 形式
+	 * @return アーカイブのパス
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	public static Path path(String set, Format format) throws IOException {
+		var dir = prepare();
+		return dir.resolve(set + format.mSuffix);
+	}
+
+	/**
+	 * RARアーカイブのパスを取得します。
+	 * @return RARアーカイブのパス
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	public static Path rarPath() throws IOException {
+		return prepare().resolve(RAR_NAME);
+	}
+
+	/**
+	 * アーカイブの生成とアーカイブマネージャの初期化
+	 * @return アーカイブの生成先フォルダ
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	private static synchronized Path prepare() throws IOException {
+		var dir = directory();
+		if (!Files.exists(dir.resolve(COMPLETED_MARKER))) {
+			generate(dir);
+		}
+		var manager = ArchiveManager.getInstance();
+		if (!manager.isInitialized()) {
+			manager.initializeAsync().join();
+		}
+		return dir;
+	}
+
+	/**
+	 * 全アーカイブの生成
+	 * @param dir 生成先フォルダ
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	private static void generate(Path dir) throws IOException {
+		initializeNative();
+		Files.createDirectories(dir);
+		Files.deleteIfExists(dir.resolve(COMPLETED_MARKER));
+		var random = new Random(SEED);
+		for (var set : ENTRIES_SETS) {
+			var count = Integer.parseInt(set.substring(set.indexOf('-') + 1));
+			var items = new ArrayList<Item>();
+			for (var i = 0; i < count; i++) {
+				if ((i % FILES_PER_FOLDER) == 0) {
+					items.add(new Item(String.format("dir%04d", i / FILES_PER_FOLDER), null));
+				}
+				var name = String.format("dir%04d/file%06d.txt", i / FILES_PER_FOLDER, i);
+				items.add(new Item(name, content(random, 256 + random.nextInt(1792))));
+			}
+			writeAll(dir, set, items);
+		}
+		for (var set : SIZE_SETS) {
+			var size = parseSize(set.substring(set.indexOf('-') + 1));
+			var items = new ArrayList<Item>();
+			for (var i = 0; i < SIZE_SET_FILES; i++) {
+				items.add(new Item(String.format("file%02d.bin", i), content(random, size)));
+			}
+			writeAll(dir, set, items);
+		}
+		if (Files.isRegularFile(RAR_SOURCE)) {
+			Files.copy(RAR_SOURCE, dir.resolve(RAR_NAME), StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.createFile(dir.resolve(COMPLETED_MARKER));
+	}
+
+	/**
+	 * アーカイブの生成に必要なネイティブライブラリの初期化
+	 */
+	static void initializeNative() {
+		SzjbNativeLoader.initializeAsync(null, false).join();
+	}
+
+	/**
+	 * 1セット分のアーカイブを全形式で生成
+	 * @param dir 生成先フォルダ
+	 * @param set セット名
+	 * @param items 生成するファイル一覧
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	private static void writeAll(Path dir, String set, List<Item> items) throws IOException {
+		writeFolder(dir.resolve(set + Format.FOLDER.mSuffix), items);
+		writeZip(dir.resolve(set + Format.ZIP.mSuffix), items);
+		writeSevenZip(dir.resolve(set + Format.SEVEN_ZIP.mSuffix), items, false);
+		writeSevenZip(dir.resolve(set + Format.SEVEN_ZIP_SOLID.mSuffix), items, true);
+	}
+
+	/**
+	 * フォルダアーカイブの生成
+	 * @param root フォルダのパス
+	 * @param items 生成するファイル一覧
+	 * @exception IOException 生成に失敗した
+	 */
+	static void writeFolder(Path root, List<Item> items) throws IOException {
+		Files.createDirectories(root);
+		for (var item : items) {
+			var path = root.resolve(item.path);
+			if (item.data == null) {
+				Files.createDirectories(path);
+			} else {
+				Files.write(path, item.data);
+				Files.setLastModifiedTime(path, FileTime.fromMillis(LAST_MODIFIED));
+			}
+		}
+	}
+
+	/**
+	 * ZIPアーカイブの生成
+	 * @param path ファイルのパス
+	 * @param items 生成するファイル一覧
+	 * @exception IOException 生成に失敗した
+	 */
+	static void writeZip(Path path, List<Item> items) throws IOException {
+		try (var zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			for (var item : items) {
+				var entry = new ZipEntry((item.data == null) ? item.path + "/" : item.path);
+				entry.setTime(LAST_MODIFIED);
+				zip.putNextEntry(entry);
+				if (item.data != null) {
+					zip.write(item.data);
+				}
+				zip.closeEntry();
+			}
+		}
+	}
+
+	/**
+	 * 7-ZIPアーカイブの生成
+	 * @param path ファイルのパス
+	 * @param items 生成するファイル一覧
+	 * @param solid ソリッド圧縮するかどうか
+	 * @exception IOException 生成に失敗した
+	 */
+	static void writeSevenZip(Path path, List<Item> items, boolean solid) throws IOException {
+		Files.deleteIfExists(path);
+		try (var file = new RandomAccessFile(path.toFile(), "rw"); var archive = SevenZip.openOutArchive7z()) {
+			archive.setLevel(5);
+			archive.setSolid(solid);
+			archive.createArchive(new RandomAccessFileOutStream(file), items.size(), new IOutCreateCallback<IOutItem7z>() {
+				@Override
+				public void setTotal(long total) {
+					// Do nothing
+				}
+
+				@Override
+				public void setCompleted(long complete) {
+					// Do nothing
+				}
+
+				@Override
+				public void setOperationResult(boolean operationResultOk) {
+					// Do nothing
+				}
+
+				@Override
+				public IOutItem7z getItemInformation(int index, OutItemFactory<IOutItem7z> factory) {
+					var item = items.get(index);
+					var outItem = factory.createOutItem();
+					outItem.setPropertyPath(item.path);
+					outItem.setPropertyIsDir(item.data == null);
+					outItem.setDataSize((item.data == null) ? 0L : (long)item.data.length);
+					outItem.setPropertyLastModificationTime(new Date(LAST_MODIFIED));
+					return outItem;
+				}
+
+				@Override
+				public ISequentialInStream getStream(int index) throws SevenZipException {
+					var data = items.get(index).data;
+					return (data == null) ? null : new ByteArrayStream(data, false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * ファイル内容の生成
+	 * @param random 疑似乱数
+	 * @param size サイズ
+	 * @return ファイル内容
+	 */
+	private static byte[] content(Random random, int size) {
+		var data = new byte[size];
+		var pos = 0;
+		while (pos < size) {
+			// 単語と乱数バイト列を混在させ、実際のテキスト・画像に近い圧縮率にする
+			var chunk = (random.nextInt(4) == 0) ? randomBytes(random) : WORDS[random.nextInt(WORDS.length)].getBytes(
+					StandardCharsets.UTF_8);
+			var length = Math.min(chunk.length, size - pos);
+			System.arraycopy(chunk, 0, data, pos, length);
+			pos += length;
+		}
+		return data;
+	}
+
+	/**
+	 * 乱数バイト列の生成
+	 * @param random 疑似乱数
+	 * @return 乱数バイト列
+	 */
+	private static byte[] randomBytes(Random random) {
+		var bytes = new byte[1 + random.nextInt(16)];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * サイズ表記の解析
+	 * @param text サイズ表記(例：1k, 64k, 1m)
+	 * @return サイズ
+	 */
+	private static int parseSize(String text) {
+		var unit = text.charAt(text.length() - 1);
+		var value = Integer.parseInt(text.substring(0, text.length() - 1));
+		return (unit == 'm') ? (value * 1024 * 1024) : (value * 1024);
+	}
+}
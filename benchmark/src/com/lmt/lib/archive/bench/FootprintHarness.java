@@ -0,0 +1,450 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.lmt.lib.archive.Archive;
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+import com.lmt.lib.archive.bench.Fixtures.Item;
+
+/**
+ * 大量のエントリを持つアーカイブでのメモリ使用量・エントリ列挙時間を計測するハーネスです。
+ *
+ * <p>指定したエントリ数・フォルダ階層の深さ・名前の長さ(CJK文字を含むかどうか)で合成したフォルダ・ZIP・7-ZIPアーカイブを生成し、
+ * 以下を計測してタブ区切りのレポートに出力します。</p>
+ * <ul>
+ * <li>{@link Archive#cacheEntries()} の所要時間(中央値)と1エントリあたりの時間</li>
+ * <li>{@link Archive#cacheEntries()} によって増加した保持ヒープ(JOLによるオブジェクトグラフのサイズ)の1エントリあたりのバイト数</li>
+ * <li>圧縮ファイルを1個オープンするごとに増加するプロセスの常駐メモリ(RSS、Linuxのみ)</li>
+ * </ul>
+ *
+ * <p>ベースラインのレポートを指定すると、同じ計測条件の計測値と比較し、閾値を超えて悪化した項目を出力して
+ * 終了コード1で終了します。これにより、リリース前にメモリ使用量の増加を検出できます。</p>
+ *
+ * <p>使用例:</p>
+ * <pre>
+ * java -Xmx8g -Djdk.attach.allowAttachSelf -cp target/benchmarks.jar com.lmt.lib.archive.bench.FootprintHarness \
+ *     --sizes 10000,100000,1000000 --depth 3 --name-length 24 --cjk true \
+ *     --out target/footprint.tsv --baseline footprint-baseline.tsv</pre>
+ *
+ * @author J-SON3
+ */
+public class FootprintHarness {
+	/** レポートの1行目 */
+	static final String REPORT_HEADER = "#footprint";
+	/** レポートの列名 */
+	static final String[] COLUMNS = {
+			"format", "entries", "depth", "nameLength", "cjk", "enumMillis", "enumNanosPerEntry",
+			"heapBytesPerEntry", "rssBytesPerOpen" };
+
+	/** 1フォルダあたりのファイル数 */
+	private static final int FILES_PER_FOLDER = 16;
+	/** 疑似乱数のシード値 */
+	private static final long SEED = 0x466f6f747072696eL;
+	/** CJK統合漢字の先頭 */
+	private static final char CJK_FIRST = '一';
+	/** 名前に使用するCJK統合漢字の数 */
+	private static final int CJK_COUNT = 0x51a0;
+
+	/** エントリ数一覧 */
+	private int[] mSizes = { 10_000, 100_000, 1_000_000 };
+	/** 計測するアーカイブの形式 */
+	private Format[] mFormats = { Format.FOLDER, Format.ZIP, Format.SEVEN_ZIP };
+	/** フォルダ階層の深さ */
+	private int mDepth = 3;
+	/** ファイル・フォルダ名の長さ */
+	private int mNameLength = 16;
+	/** 名前にCJK文字を含むかどうか */
+	private boolean mCjk = true;
+	/** エントリ列挙の計測回数 */
+	private int mRepeat = 3;
+	/** RSS計測で同時にオープンするアーカイブ数 */
+	private int mHandles = 32;
+	/** アーカイブの生成先 */
+	private Path mWorkDir = Path.of("target", "footprint");
+	/** レポートの出力先 */
+	private Path mOut = Path.of("target", "footprint.tsv");
+	/** ベースラインのレポート */
+	private Path mBaseline = null;
+	/** メモリ使用量の悪化と判定する閾値(比率) */
+	private double mThreshold = 0.10;
+	/** 時間の悪化と判定する閾値(比率) */
+	private double mTimeThreshold = 0.50;
+
+	/**
+	 * ハーネスを実行します。
+	 * @param args オプション(クラスの説明を参照)
+	 * @exception IOException アーカイブの生成・計測・レポートの入出力に失敗した
+	 */
+	public static void main(String[] args) throws IOException {
+		var harness = new FootprintHarness();
+		harness.parse(args);
+		var report = harness.run();
+		harness.write(report);
+		if (harness.mBaseline != null) {
+			var regressions = compare(readReport(harness.mBaseline), report, harness.mThreshold,
+					harness.mTimeThreshold);
+			regressions.forEach(r -> System.out.println("REGRESSION " + r));
+			if (!regressions.isEmpty()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * オプション解析
+	 * @param args オプション
+	 */
+	private void parse(String[] args) {
+		for (var i = 0; i + 1 < args.length; i += 2) {
+			var value = args[i + 1];
+			switch (args[i]) {
+			case "--sizes":
+				mSizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+				break;
+			case "--formats":
+				mFormats = Arrays.stream(value.split(",")).map(Format::valueOf).toArray(Format[]::new);
+				break;
+			case "--depth":
+				mDepth = Integer.parseInt(value);
+				break;
+			case "--name-length":
+				mNameLength = Integer.parseInt(value);
+				break;
+			case "--cjk":
+				mCjk = Boolean.parseBoolean(value);
+				break;
+			case "--repeat":
+				mRepeat = Integer.parseInt(value);
+				break;
+			case "--handles":
+				mHandles = Integer.parseInt(value);
+				break;
+			case "--work":
+				mWorkDir = Path.of(value);
+				break;
+			case "--out":
+				mOut = Path.of(value);
+				break;
+			case "--baseline":
+				mBaseline = Path.of(value);
+				break;
+			case "--threshold":
+				mThreshold = Double.parseDouble(value);
+				break;
+			case "--time-threshold":
+				mTimeThreshold = Double.parseDouble(value);
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("Unknown option: %s", args[i]));
+			}
+		}
+	}
+
+	/**
+	 * 全ての形式・エントリ数で計測
+	 * @return レポート(キーは計測条件、値は列名と計測値)
+	 * @exception IOException アーカイブの生成・計測に失敗した
+	 */
+	private Map<String, Map<String, String>> run() throws IOException {
+		Fixtures.initializeNative();
+		var manager = ArchiveManager.getInstance();
+		if (!manager.isInitialized()) {
+			manager.initialize();
+		}
+		var report = new LinkedHashMap<String, Map<String, String>>();
+		for (var size : mSizes) {
+			List<Item> items = null;
+			for (var format : mFormats) {
+				var path = mWorkDir.resolve(String.format("%s-%d-d%d-n%d%s%s", format.name().toLowerCase(), size,
+						mDepth, mNameLength, mCjk ? "-cjk" : "", format.getSuffix()));
+				if (!Files.exists(path)) {
+					items = (items == null) ? generateItems(size) : items;
+					System.out.printf("Generating %s%n", path);
+					Files.createDirectories(mWorkDir);
+					writeArchive(path, format, items);
+				}
+				System.out.printf("Measuring %s%n", path);
+				var row = measure(path, format, size);
+				report.put(key(row), row);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * 1個のアーカイブの計測
+	 * @param path アーカイブのパス
+	 * @param format 形式
+	 * @param size 生成したファイル数
+	 * @return 列名と計測値
+	 * @exception IOException 計測に失敗した
+	 */
+	private Map<String, String> measure(Path path, Format format, int size) throws IOException {
+		var manager = ArchiveManager.getInstance();
+
+		// エントリ列挙時間(オープン直後の初回の cacheEntries を計測し、中央値を採る)
+		var times = new long[mRepeat];
+		var entryCount = 0;
+		for (var i = 0; i < mRepeat; i++) {
+			try (var archive = manager.open(path)) {
+				var startTime = System.nanoTime();
+				archive.cacheEntries();
+				times[i] = System.nanoTime() - startTime;
+				entryCount = archive.getEntryCount();
+			}
+		}
+		Arrays.sort(times);
+		var enumNanos = times[times.length / 2];
+
+		// エントリ情報のキャッシュによって増加した保持ヒープ
+		var heapPerEntry = 0L;
+		try (var archive = manager.open(path)) {
+			var before = GraphLayout.parseInstance(archive).totalSize();
+			archive.cacheEntries();
+			var after = GraphLayout.parseInstance(archive).totalSize();
+			heapPerEntry = (after - before) / Math.max(1, archive.getEntryCount());
+		}
+
+		// 圧縮ファイル1個のオープンで増加するRSS
+		var rssPerOpen = -1L;
+		if ((format != Format.FOLDER) && (readRss() >= 0L)) {
+			var archives = new ArrayList<Archive>();
+			try {
+				System.gc();
+				var before = readRss();
+				for (var i = 0; i < mHandles; i++) {
+					archives.add(manager.open(path));
+				}
+				rssPerOpen = (readRss() - before) / mHandles;
+			} finally {
+				for (var archive : archives) {
+					archive.close();
+				}
+			}
+		}
+
+		var row = new LinkedHashMap<String, String>();
+		row.put("format", format.name());
+		row.put("entries", String.valueOf(size));
+		row.put("depth", String.valueOf(mDepth));
+		row.put("nameLength", String.valueOf(mNameLength));
+		row.put("cjk", String.valueOf(mCjk));
+		row.put("enumMillis", String.valueOf(enumNanos / 1_000_000L));
+		row.put("enumNanosPerEntry", String.valueOf(enumNanos / Math.max(1, entryCount)));
+		row.put("heapBytesPerEntry", String.valueOf(heapPerEntry));
+		row.put("rssBytesPerOpen", String.valueOf(rssPerOpen));
+		return row;
+	}
+
+	/**
+	 * レポートの出力
+	 * @param report レポート
+	 * @exception IOException 出力に失敗した
+	 */
+	private void write(Map<String, Map<String, String>> report) throws IOException {
+		var parent = mOut.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		try (var writer = new PrintWriter(Files.newBufferedWriter(mOut, StandardCharsets.UTF_8))) {
+			writer.println(String.join("\t", REPORT_HEADER, System.getProperty("java.version")));
+			writer.println(String.join("\t", COLUMNS));
+			for (var row : report.values()) {
+				writer.println(String.join("\t", row.values()));
+			}
+		}
+		report.values().forEach(row -> System.out.println(row));
+		System.out.printf("Report: %s%n", mOut.toAbsolutePath());
+	}
+
+	/**
+	 * レポートの読み込み
+	 * @param path レポートのパス
+	 * @return レポート(キーは計測条件、値は列名と計測値)
+	 * @exception IOException 読み込みに失敗した、またはレポートの形式ではない
+	 */
+	static Map<String, Map<String, String>> readReport(Path path) throws IOException {
+		var lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		if (lines.size() < 2 || !lines.get(0).startsWith(REPORT_HEADER)) {
+			throw new IOException(String.format("%s: Not a footprint report", path));
+		}
+		var columns = lines.get(1).split("\t");
+		var report = new LinkedHashMap<String, Map<String, String>>();
+		for (var line : lines.subList(2, lines.size())) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			var values = line.split("\t");
+			var row = new LinkedHashMap<String, String>();
+			for (var i = 0; (i < columns.length) && (i < values.length); i++) {
+				row.put(columns[i], values[i]);
+			}
+			report.put(key(row), row);
+		}
+		return report;
+	}
+
+	/**
+	 * ベースラインとの比較
+	 * <p>ベースラインに同じ計測条件の行がない場合、および計測できなかった値(負の値)は比較しない。</p>
+	 * @param baseline ベースラインのレポート
+	 * @param current 今回のレポート
+	 * @param threshold メモリ使用量の悪化と判定する閾値(比率)
+	 * @param timeThreshold 時間の悪化と判定する閾値(比率)
+	 * @return 閾値を超えて悪化した項目の説明一覧
+	 */
+	static List<String> compare(Map<String, Map<String, String>> baseline, Map<String, Map<String, String>> current,
+			double threshold, double timeThreshold) {
+		var regressions = new ArrayList<String>();
+		for (var entry : current.entrySet()) {
+			var base = baseline.get(entry.getKey());
+			if (base == null) {
+				continue;
+			}
+			for (var column : new String[] { "heapBytesPerEntry", "rssBytesPerOpen", "enumNanosPerEntry" }) {
+				var limit = column.startsWith("enum") ? timeThreshold : threshold;
+				var baseValue = Long.parseLong(base.getOrDefault(column, "-1"));
+				var value = Long.parseLong(entry.getValue().getOrDefault(column, "-1"));
+				if ((baseValue > 0L) && (value >= 0L) && (value > baseValue * (1.0 + limit))) {
+					regressions.add(String.format("%s %s: %d -> %d (+%.1f%%)", entry.getKey(), column, baseValue, value,
+							(value - baseValue) * 100.0 / baseValue));
+				}
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * 合成するファイル一覧の生成
+	 * <p>ファイルは16個ごとに1個のフォルダにまとめ、フォルダは指定の深さになるよう均等に分岐させる。</p>
+	 * @param count ファイル数
+	 * @return 生成するファイル・フォルダ一覧
+	 */
+	private List<Item> generateItems(int count) {
+		var random = new Random(SEED);
+		var leafCount = (count + FILES_PER_FOLDER - 1) / FILES_PER_FOLDER;
+		var fanOut = Math.max(2, (int)Math.ceil(Math.pow(leafCount, 1.0 / Math.max(1, mDepth))));
+		var items = new ArrayList<Item>(count + leafCount * 2);
+		var lastFolder = "";
+		for (var i = 0; i < count; i++) {
+			// 前回のファイルのフォルダと共通しない階層のフォルダを追加する
+			var folder = folderPath(i / FILES_PER_FOLDER, fanOut);
+			if (!folder.equals(lastFolder)) {
+				var segments = folder.split("/");
+				var lastSegments = lastFolder.isEmpty() ? new String[0] : lastFolder.split("/");
+				var common = 0;
+				while ((common < segments.length) && (common < lastSegments.length) &&
+						segments[common].equals(lastSegments[common])) {
+					common++;
+				}
+				for (var depth = common; depth < segments.length; depth++) {
+					items.add(new Item(String.join("/", Arrays.copyOf(segments, depth + 1)), null));
+				}
+				lastFolder = folder;
+			}
+			var data = new byte[random.nextInt(64)];
+			random.nextBytes(data);
+			items.add(new Item(folder + "/" + name("f", i, ".txt"), data));
+		}
+		return items;
+	}
+
+	/**
+	 * フォルダのパス生成
+	 * @param folderNumber 末端フォルダの番号
+	 * @param fanOut 1フォルダあたりのサブフォルダ数
+	 * @return フォルダのパス(区切り文字は"/")
+	 */
+	private String folderPath(int folderNumber, int fanOut) {
+		var segments = new String[Math.max(1, mDepth)];
+		var number = folderNumber;
+		for (var depth = segments.length - 1; depth >= 0; depth--) {
+			segments[depth] = name("d", number % fanOut, "");
+			number /= fanOut;
+		}
+		return String.join("/", segments);
+	}
+
+	/**
+	 * 指定の長さの名前生成
+	 * @param prefix 名前の先頭
+	 * @param number 名前を一意にする番号
+	 * @param suffix 名前の末尾(拡張子)
+	 * @return 名前
+	 */
+	private String name(String prefix, int number, String suffix) {
+		var sb = new StringBuilder(prefix).append(number);
+		for (var pos = 0; sb.length() + suffix.length() < mNameLength; pos++) {
+			var seed = number * 31 + pos;
+			sb.append(mCjk ? (char)(CJK_FIRST + (seed % CJK_COUNT)) : (char)('a' + (seed % 26)));
+		}
+		return sb.append(suffix).toString();
+	}
+
+	/**
+	 * アーカイブの生成
+	 * @param path アーカイブのパス
+	 * @param format 形式
+	 * @param items 生成するファイル・フォルダ一覧
+	 * @exception IOException 生成に失敗した
+	 */
+	private static void writeArchive(Path path, Format format, List<Item> items) throws IOException {
+		switch (format) {
+		case FOLDER:
+			Fixtures.writeFolder(path, items);
+			break;
+		case ZIP:
+			Fixtures.writeZip(path, items);
+			break;
+		case SEVEN_ZIP:
+			Fixtures.writeSevenZip(path, items, false);
+			break;
+		case SEVEN_ZIP_SOLID:
+			Fixtures.writeSevenZip(path, items, true);
+			break;
+		default:
+			throw new IllegalArgumentException(String.format("Unsupported format: %s", format));
+		}
+	}
+
+	/**
+	 * レポートの行のキー生成
+	 * <p>計測条件(形式・エントリ数・深さ・名前の長さ・CJK文字の有無)が全て一致する行のみを比較対象とする。</p>
+	 * @param row レポートの行
+	 * @return キー
+	 */
+	private static String key(Map<String, String> row) {
+		return String.join("/", row.get("format"), row.get("entries"), row.get("depth"), row.get("nameLength"),
+				row.get("cjk"));
+	}
+
+	/**
+	 * プロセスの常駐メモリ(RSS)取得
+	 * @return RSSのバイト数。取得できない環境では-1。
+	 */
+	private static long readRss() {
+		try {
+			for (var line : Files.readAllLines(Path.of("/proc/self/status"))) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Linux以外は計測不可とする
+		}
+		return -1L;
+	}
+}
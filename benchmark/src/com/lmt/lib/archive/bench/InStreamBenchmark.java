@@ -0,0 +1,204 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+import com.lmt.lib.archive.impl.FileInStreamProbe;
+
+import net.sf.sevenzipjbinding.ExtractAskMode;
+import net.sf.sevenzipjbinding.ExtractOperationResult;
+import net.sf.sevenzipjbinding.IArchiveExtractCallback;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.ISequentialOutStream;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
+
+/**
+ * アーカイブファイルの読み込みに使用するストリームごとに、全コンテンツの解凍コストを計測するベンチマークです。
+ *
+ * <p>1回の操作でアーカイブファイルをオープンし、全コンテンツを解凍してクローズします。ストリームは以下の3種類です。</p>
+ * <ul>
+ * <li>RANDOM_ACCESS_FILE: 7-Zip-JBinding標準の RandomAccessFileInStream(コーデックからの読み込みごとにシステムコール)</li>
+ * <li>BUFFERED: ライブラリの既定である先読みバッファ付きのストリーム</li>
+ * <li>MAPPED: {@link ArchiveManager#setMemoryMapLimit(long)} を設定した場合のメモリマップしたストリーム</li>
+ * </ul>
+ *
+ * <p>補助カウンタ channelReads にファイルからの読み込み回数(システムコールの発行回数)、extractions に操作回数を
+ * 出力します。channelReads を extractions で割ったものが1回の操作あたりの読み込み回数になります。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InStreamBenchmark {
+	/** アーカイブファイルの読み込みに使用するストリーム */
+	public enum Stream {
+		/** RandomAccessFileInStream */
+		RANDOM_ACCESS_FILE,
+		/** 先読みバッファ付きのストリーム */
+		BUFFERED,
+		/** メモリマップしたストリーム */
+		MAPPED;
+	}
+
+	/** ファイルからの読み込み回数の補助カウンタ */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+		/** ファイルからの読み込み回数 */
+		public long channelReads;
+		/** 操作回数 */
+		public long extractions;
+
+		/**
+		 * イテレーションごとにカウンタをリセットします。
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			channelReads = 0L;
+			extractions = 0L;
+		}
+	}
+
+	/** ファイルサイズによるセット */
+	@Param({ "size-64k", "size-1m" })
+	public String set;
+	/** アーカイブの形式 */
+	@Param({ "ZIP", "SEVEN_ZIP", "SEVEN_ZIP_SOLID" })
+	public Format format;
+	/** アーカイブファイルの読み込みに使用するストリーム */
+	@Param({ "RANDOM_ACCESS_FILE", "BUFFERED", "MAPPED" })
+	public Stream stream;
+
+	/** 計測対象アーカイブのパス */
+	private Path mPath;
+	/** メモリマップするファイルサイズの上限 */
+	private long mMapLimit;
+
+	/**
+	 * ネイティブライブラリを初期化し、計測対象アーカイブを準備します。
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		ArchiveManager.getInstance().initialize();
+		mPath = Fixtures.path(set, format);
+		mMapLimit = (stream == Stream.MAPPED) ? Files.size(mPath) : 0L;
+	}
+
+	/**
+	 * アーカイブファイルをオープンし、全コンテンツを解凍してクローズします。
+	 * @param bh ブラックホール
+	 * @param counters 補助カウンタ
+	 * @return 解凍したバイト数
+	 * @exception IOException 解凍に失敗した
+	 */
+	@Benchmark
+	public long extractAll(Blackhole bh, Counters counters) throws IOException {
+		var total = new long[] { 0L };
+		var probe = (FileInStreamProbe)null;
+		var counting = (CountingInStream)null;
+		var in = (IInStream)null;
+		var closeable = (Closeable)null;
+		if (stream == Stream.RANDOM_ACCESS_FILE) {
+			counting = new CountingInStream(new RandomAccessFileInStream(new RandomAccessFile(mPath.toFile(), "r")));
+			in = counting;
+			closeable = counting;
+		} else {
+			probe = new FileInStreamProbe(mPath, mMapLimit);
+			in = probe;
+			closeable = probe;
+		}
+		try (var archive = SevenZip.openInArchive(null, in)) {
+			archive.extract(null, false, new IArchiveExtractCallback() {
+				@Override
+				public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) {
+					return data -> {
+						bh.consume(data);
+						total[0] += data.length;
+						return data.length;
+					};
+				}
+
+				@Override
+				public void prepareOperation(ExtractAskMode extractAskMode) {
+					// Do nothing
+				}
+
+				@Override
+				public void setOperationResult(ExtractOperationResult extractOperationResult) {
+					// Do nothing
+				}
+
+				@Override
+				public void setTotal(long total) {
+					// Do nothing
+				}
+
+				@Override
+				public void setCompleted(long complete) {
+					// Do nothing
+				}
+			});
+		} finally {
+			closeable.close();
+		}
+		counters.channelReads += (probe != null) ? probe.getChannelReads() : counting.reads;
+		counters.extractions++;
+		return total[0];
+	}
+
+	/** 読み込み回数を数えるストリーム(RandomAccessFileInStream は1回の読み込みが1回のシステムコールになる) */
+	private static class CountingInStream implements IInStream, Closeable {
+		/** 読み込み元ストリーム */
+		private RandomAccessFileInStream mStream;
+		/** 読み込み回数 */
+		long reads = 0L;
+
+		CountingInStream(RandomAccessFileInStream stream) {
+			mStream = stream;
+		}
+
+		@Override
+		public long seek(long offset, int seekOrigin) throws SevenZipException {
+			return mStream.seek(offset, seekOrigin);
+		}
+
+		@Override
+		public int read(byte[] data) throws SevenZipException {
+			reads++;
+			return mStream.read(data);
+		}
+
+		@Override
+		public void close() throws IOException {
+			mStream.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lmt.lib.archive.Archive;
+import com.lmt.lib.archive.ArchiveEntry;
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+
+/**
+ * エントリ情報キャッシュの有無によるインデックス値・パスでのエントリ検索のコストを計測するベンチマークです。
+ *
+ * <p>検索対象は10,000エントリのアーカイブの全エントリを固定のシード値でシャッフルした順に巡回します。
+ * キャッシュなし(cached=false)の場合、アーカイブがキャッシュなしで対応する方法でのみ検索します。
+ * 圧縮ファイルのパスによる検索、フォルダアーカイブのインデックス値による検索はキャッシュなしでは行えないため、
+ * それらの組み合わせではキャッシュなしでも対応する方法で検索します(indexByNative 参照)。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+	/** エントリ数によるセット */
+	private static final String SET = "entries-10000";
+	/** シャッフルに使用する疑似乱数のシード値 */
+	private static final long SEED = 20240812L;
+
+	/** アーカイブの形式 */
+	@Param({ "FOLDER", "ZIP", "SEVEN_ZIP" })
+	public Format format;
+	/** エントリ情報をキャッシュするかどうか */
+	@Param({ "true", "false" })
+	public boolean cached;
+
+	/** 計測対象アーカイブ */
+	private Archive mArchive;
+	/** 検索するインデックス値 */
+	private int[] mIndices;
+	/** 検索するパス */
+	private Path[] mPaths;
+	/** 次に検索する位置 */
+	private int mNext = 0;
+
+	/**
+	 * 計測対象アーカイブをオープンし、検索対象を準備します。
+	 * @exception IOException オープンに失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		var path = Fixtures.path(SET, format);
+		var entries = new ArrayList<ArchiveEntry>();
+		try (var archive = ArchiveManager.getInstance().open(path)) {
+			archive.enumEntries((entry, count, num) -> entries.add(entry));
+		}
+		Collections.shuffle(entries, new Random(SEED));
+		mIndices = entries.stream().mapToInt(ArchiveEntry::getIndex).toArray();
+		mPaths = entries.stream().map(ArchiveEntry::getPath).toArray(Path[]::new);
+
+		mArchive = ArchiveManager.getInstance().open(path);
+		if (cached) {
+			mArchive.cacheEntries();
+		}
+	}
+
+	/**
+	 * 計測対象アーカイブをクローズします。
+	 * @exception IOException クローズに失敗した
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		mArchive.close();
+	}
+
+	/**
+	 * インデックス値でエントリを検索します。インデックス値で検索できない場合はパスで検索します。
+	 * @return エントリ
+	 */
+	@Benchmark
+	public ArchiveEntry indexByNative() {
+		var next = advance();
+		return mArchive.canUseIndex() ? mArchive.getEntry(mIndices[next]) : mArchive.getEntry(mPaths[next]);
+	}
+
+	/**
+	 * パスでエントリを検索します。パスで検索できない場合はインデックス値で検索します。
+	 * @return エントリ
+	 */
+	@Benchmark
+	public ArchiveEntry pathByNative() {
+		var next = advance();
+		return mArchive.canUsePath() ? mArchive.getEntry(mPaths[next]) : mArchive.getEntry(mIndices[next]);
+	}
+
+	/**
+	 * 次の検索位置へ移動
+	 * @return 検索位置
+	 */
+	private int advance() {
+		var next = mNext;
+		mNext = (mNext + 1) % mIndices.length;
+		return next;
+	}
+}
@@ -0,0 +1,76 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+
+/**
+ * アーカイブ種別ごとのオープン・クローズのコストを計測するベンチマークです。
+ *
+ * <p>RARは {@link Fixtures#RAR_NAME} 、それ以外は1,000エントリのアーカイブを使用します。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenBenchmark {
+	/** アーカイブの形式("RAR"はRARアーカイブ) */
+	@Param({ "FOLDER", "ZIP", "SEVEN_ZIP", "SEVEN_ZIP_SOLID", "RAR" })
+	public String format;
+
+	/** 計測対象アーカイブのパス */
+	private Path mPath;
+
+	/**
+	 * 計測対象アーカイブを準備します。
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		mPath = "RAR".equals(format) ? Fixtures.rarPath() : Fixtures.path("entries-1000", Format.valueOf(format));
+	}
+
+	/**
+	 * アーカイブをオープンし、直ちにクローズします。
+	 * @return エントリ数
+	 * @exception IOException オープンに失敗した
+	 */
+	@Benchmark
+	public int open() throws IOException {
+		try (var archive = ArchiveManager.getInstance().open(mPath)) {
+			return archive.getEntryCount();
+		}
+	}
+
+	/**
+	 * アーカイブをオープンして全エントリ情報をキャッシュし、クローズします。
+	 * @return エントリ数
+	 * @exception IOException オープンに失敗した
+	 */
+	@Benchmark
+	public int openAndCache() throws IOException {
+		try (var archive = ArchiveManager.getInstance().open(mPath)) {
+			archive.cacheEntries();
+			return archive.getEntryCount();
+		}
+	}
+}
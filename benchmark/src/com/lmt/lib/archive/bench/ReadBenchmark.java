@@ -0,0 +1,125 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.lmt.lib.archive.Archive;
+import com.lmt.lib.archive.ArchiveEntry;
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+
+/**
+ * コンテンツサイズごとの readAllBytes と openContent のスループットを計測するベンチマークです。
+ *
+ * <p>1回の操作で1個のコンテンツを読み込み、操作ごとに次のコンテンツへ移ります。ソリッド圧縮の7-ZIPでは
+ * コンテンツごとにブロック先頭からの解凍が必要になるため、非ソリッドとの差が解凍の無駄を表します。
+ * 1秒あたりの操作数にセットのファイルサイズを掛けたものがバイト単位のスループットになります。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+	/** openContent で使用する読み込みバッファのサイズ */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** ファイルサイズによるセット */
+	@Param({ "size-1k", "size-64k", "size-1m" })
+	public String set;
+	/** アーカイブの形式 */
+	@Param({ "FOLDER", "ZIP", "SEVEN_ZIP", "SEVEN_ZIP_SOLID" })
+	public Format format;
+
+	/** 計測対象アーカイブ */
+	private Archive mArchive;
+	/** 読み込むコンテンツのエントリ一覧 */
+	private ArchiveEntry[] mContents;
+	/** 次に読み込むコンテンツ */
+	private int mNext = 0;
+	/** 読み込みバッファ */
+	private byte[] mBuffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * 計測対象アーカイブをオープンし、エントリ情報をキャッシュします。
+	 * @exception IOException オープンに失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		mArchive = ArchiveManager.getInstance().open(Fixtures.path(set, format));
+		mArchive.cacheEntries();
+		var contents = new ArrayList<ArchiveEntry>();
+		for (var i = 0; i < mArchive.getEntryCount(); i++) {
+			var entry = mArchive.getEntry(i);
+			if ((entry != null) && entry.isContent()) {
+				contents.add(entry);
+			}
+		}
+		mContents = contents.toArray(ArchiveEntry[]::new);
+	}
+
+	/**
+	 * 計測対象アーカイブをクローズします。
+	 * @exception IOException クローズに失敗した
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		mArchive.close();
+	}
+
+	/**
+	 * コンテンツ全体を readAllBytes で読み込みます。
+	 * @return 読み込んだデータ
+	 * @exception IOException 読み込みに失敗した
+	 */
+	@Benchmark
+	public byte[] readAllBytes() throws IOException {
+		return mArchive.readAllBytes(nextEntry());
+	}
+
+	/**
+	 * コンテンツ全体を openContent で固定サイズのバッファに読み込みます。
+	 * @param bh ブラックホール
+	 * @return 読み込んだバイト数
+	 * @exception IOException 読み込みに失敗した
+	 */
+	@Benchmark
+	public long openContent(Blackhole bh) throws IOException {
+		var total = 0L;
+		try (var stream = mArchive.openContent(nextEntry())) {
+			for (var length = stream.read(mBuffer); length >= 0; length = stream.read(mBuffer)) {
+				bh.consume(mBuffer);
+				total += length;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 次に読み込むコンテンツ取得
+	 * @return 次に読み込むコンテンツのエントリ
+	 */
+	private ArchiveEntry nextEntry() {
+		var entry = mContents[mNext];
+		mNext = (mNext + 1) % mContents.length;
+		return entry;
+	}
+}
@@ -0,0 +1,82 @@
+package com.lmt.lib.archive.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.lmt.lib.archive.SignatureTypeTester;
+import com.lmt.lib.archive.StandardTypeTester;
+import com.lmt.lib.archive.bench.Fixtures.Format;
+
+/**
+ * アーカイブ種別判定処理のコストを計測するベンチマークです。
+ *
+ * <p>1回の操作でフォルダ・ZIP・7-ZIP・RAR・存在しないファイル・拡張子なしのパスをそれぞれ1回ずつ判定します。
+ * 比較のため、ファイル先頭を読み込む {@link SignatureTypeTester} も計測します。</p>
+ *
+ * @author J-SON3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeTesterBenchmark {
+	/** 拡張子による判定処理 */
+	private StandardTypeTester mStandard = new StandardTypeTester();
+	/** シグネチャによる判定処理 */
+	private SignatureTypeTester mSignature = new SignatureTypeTester();
+	/** 判定対象のパス */
+	private Path[] mPaths;
+
+	/**
+	 * 判定対象のパスを準備します。
+	 * @exception IOException アーカイブの生成に失敗した
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		mPaths = new Path[] {
+				Fixtures.path("entries-100", Format.FOLDER),
+				Fixtures.path("entries-100", Format.ZIP),
+				Fixtures.path("entries-100", Format.SEVEN_ZIP),
+				Fixtures.rarPath(),
+				Fixtures.directory().resolve("missing.zip"),
+				Fixtures.directory().resolve("no_extension"),
+		};
+	}
+
+	/**
+	 * {@link StandardTypeTester} で全パスの種別を判定します。
+	 * @param bh ブラックホール
+	 */
+	@Benchmark
+	public void standard(Blackhole bh) {
+		for (var path : mPaths) {
+			bh.consume(mStandard.apply(path));
+		}
+	}
+
+	/**
+	 * {@link SignatureTypeTester} で全パスの種別を判定します。
+	 * @param bh ブラックホール
+	 */
+	@Benchmark
+	public void signature(Blackhole bh) {
+		for (var path : mPaths) {
+			bh.consume(mSignature.apply(path));
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * ベンチマークからライブラリ内部のアーカイブファイル読み込み用ストリームを使用するためのクラスです。
+ *
+ * <p>ライブラリがアーカイブファイルの読み込みに使用するストリーム(パッケージプライベート)をオープンし、
+ * チャネルからの読み込み回数(システムコールの発行回数)を取得できるようにします。</p>
+ *
+ * @author J-SON3
+ */
+public class FileInStreamProbe implements IInStream, Closeable {
+	/** アーカイブファイルを読み込むストリーム */
+	private SzjbFileInStream mStream;
+
+	/**
+	 * コンストラクタ
+	 * @param path アーカイブファイルのパス
+	 * @param mapLimit メモリマップするファイルサイズの上限。0の場合は先読みバッファを使用する。
+	 * @exception IOException ファイルのオープンエラー
+	 */
+	public FileInStreamProbe(Path path, long mapLimit) throws IOException {
+		mStream = SzjbFileInStream.open(path, mapLimit);
+	}
+
+	/**
+	 * チャネルからの読み込み回数を取得します。
+	 * @return チャネルからの読み込み回数(メモリマップした場合は0)
+	 */
+	public long getChannelReads() {
+		return mStream.getChannelReads();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long seek(long offset, int seekOrigin) throws SevenZipException {
+		return mStream.seek(offset, seekOrigin);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(byte[] data) throws SevenZipException {
+		return mStream.read(data);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		mStream.close();
+	}
+}
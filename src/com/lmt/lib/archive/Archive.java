@@ -2,11 +2,43 @@ package com.lmt.lib.archive;
 
 import static com.lmt.lib.archive.Assertion.*;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.lmt.lib.archive.impl.SzjbSignature;
+import com.lmt.lib.archive.jfr.ArchiveEnumerateEvent;
 
 /**
  * 1個のフォルダまたはアーカイブファイルを表すクラスです。
@@ -27,6 +59,16 @@ public abstract class Archive implements Closeable {
 	/** 全ての手段でエントリ参照が可能であることを表す値 */
 	protected static final int CAPS_ALL = CAPS_INDEX | CAPS_PATH;
 
+	/** 入れ子アーカイブの区切り文字(アーカイブファイル名の末尾に付与する) */
+	static final String NESTED_SEPARATOR = "!";
+	/** 予算の不足時に先頭から1回だけ解凍しながら読み込むコンテンツのパイプの容量 */
+	static final int FORWARD_PIPE_SIZE = 64 * 1024;
+
+	/** クローズされずに到達不能になったアーカイブのネイティブリソースを解放するクリーナー */
+	private static final Cleaner sCleaner = Cleaner.create();
+	/** アーカイブの通し番号 */
+	private static final AtomicLong sSerial = new AtomicLong(0L);
+
 	/** アーカイブ種別 */
 	private ArchiveType mArchiveType;
 	/** アーカイブのパス */
@@ -35,6 +77,607 @@ public abstract class Archive implements Closeable {
 	private boolean mIsRunningEnum;
 	/** アーカイブがオープン中かどうか */
 	private boolean mIsOpen;
+	/** このアーカイブからオープンした入れ子アーカイブ一覧 */
+	private List<Archive> mNestedArchives = new CopyOnWriteArrayList<>();
+	/** アーカイブのクローズ時に合わせてクローズするリソース一覧 */
+	private List<Closeable> mAttachments = new ArrayList<>();
+	/** 一時ファイルへ解凍したコンテンツのオープン中の入力ストリーム */
+	private Set<SpillStream> mSpillStreams = ConcurrentHashMap.newKeySet();
+	/** 先頭から1回だけ解凍しながら読み込むコンテンツのオープン中のパイプ */
+	private Set<ForwardPipe> mForwardPipes = ConcurrentHashMap.newKeySet();
+	/** アーカイブの統計情報 */
+	private ArchiveStatistics mStatistics = ArchiveStatistics.create();
+	/** 自然順の位置ごとのエントリのインデックス値(未生成の場合はnull) */
+	private int[] mNaturalOrder = null;
+	/** 自然順の位置ごとのコンテンツのインデックス値(未生成の場合はnull) */
+	private int[] mNaturalContents = null;
+	/** コンテンツの先読み処理(先読みしない場合はnull) */
+	private Prefetcher mPrefetcher = null;
+	/** ネイティブリソースへのアクセス・一時解放の排他制御 */
+	private ReentrantLock mAccessLock = new ReentrantLock();
+	/** ネイティブリソースにアクセス中の処理の数 */
+	private int mAccessCount = 0;
+	/** ネイティブリソースを一時解放しているかどうか */
+	private volatile boolean mIsSuspended = false;
+	/** アーカイブマネージャに登録されているかどうか */
+	private volatile boolean mIsRegistered = false;
+	/** アーカイブの通し番号 */
+	private long mSerial;
+	/** オープンした時刻(System.nanoTime) */
+	private long mOpenedAt;
+	/** クローズされずに到達不能になった時の解放処理 */
+	private Reclaimer mReclaimer;
+	/** クリーナーへの登録 */
+	private Cleaner.Cleanable mCleanable;
+
+	/**
+	 * {@link #onReadContents(List, ContentHandler)} で読み込むコンテンツの出力先を提供するハンドラです。
+	 * <p>ハンドラは複数のスレッドから同時に呼び出されても問題ないように実装されます。</p>
+	 */
+	@FunctionalInterface
+	protected interface ContentHandler {
+		/**
+		 * コンテンツの出力先を取得します。
+		 * <p>返された出力ストリームにはコンテンツの解凍後データが先頭から順に書き込まれ、
+		 * 全てのデータを書き込み終えた時点でクローズされます。</p>
+		 * @param entry 読み込むコンテンツのエントリ
+		 * @return コンテンツの出力先
+		 * @exception IOException 出力先の準備に失敗した
+		 */
+		OutputStream open(ArchiveEntry entry) throws IOException;
+	}
+
+	/**
+	 * インデックス値の範囲で分割可能なエントリのスプリッテレータです。
+	 * <p>当クラスは {@link #onEntrySpliterator()} を実装する継承先クラスから使用されます。エントリはインデックス値の昇順に
+	 * 1件ずつ読み込まれ、分割すると残りのインデックス値の範囲が半分ずつに分けられます。
+	 * 読み込みに失敗したエントリ(エントリ読み込み処理がnullを返したもの)はスキップされます。</p>
+	 */
+	protected static class IndexSpliterator implements Spliterator<ArchiveEntry> {
+		/** 分割を行う残りエントリ数の下限 */
+		private static final int MIN_SPLIT_SIZE = 64;
+
+		/** エントリ読み込み処理 */
+		private IntFunction<ArchiveEntry> mLoader;
+		/** 次に読み込むインデックス値 */
+		private int mIndex;
+		/** 読み込む範囲の終端(このインデックス値を含まない) */
+		private int mEnd;
+
+		/**
+		 * 新しいスプリッテレータを構築します。
+		 * <p>並列ストリームで使用される場合、エントリ読み込み処理は複数のスレッドから同時に呼び出されます。</p>
+		 * @param loader エントリ読み込み処理。引数はインデックス値で、読み込みに失敗した場合はnullを返す。
+		 * @param from 読み込む範囲の先頭のインデックス値
+		 * @param to 読み込む範囲の終端のインデックス値(このインデックス値を含まない)
+		 * @exception NullPointerException loaderがnull
+		 */
+		public IndexSpliterator(IntFunction<ArchiveEntry> loader, int from, int to) {
+			assertArgNotNull(loader, "loader");
+			mLoader = loader;
+			mIndex = from;
+			mEnd = to;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean tryAdvance(Consumer<? super ArchiveEntry> action) {
+			while (mIndex < mEnd) {
+				var entry = mLoader.apply(mIndex++);
+				if (entry != null) {
+					action.accept(entry);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Spliterator<ArchiveEntry> trySplit() {
+			var mid = (mIndex + mEnd) >>> 1;
+			if ((mid - mIndex) < MIN_SPLIT_SIZE) {
+				return null;
+			}
+			var prefix = new IndexSpliterator(mLoader, mIndex, mid);
+			mIndex = mid;
+			return prefix;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public long estimateSize() {
+			return mEnd - mIndex;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL;
+		}
+	}
+
+	/**
+	 * クローズされずに到達不能になったアーカイブのネイティブリソースを解放する処理
+	 * <p>クリーナーから呼び出されるため、アーカイブオブジェクトを参照してはならない。</p>
+	 */
+	private static class Reclaimer implements Runnable {
+		/** アーカイブの通し番号 */
+		final long serial;
+		/** アーカイブのパス */
+		final Path path;
+		/** アーカイブ種別 */
+		final ArchiveType archiveType;
+		/** オープンした時刻(System.nanoTime) */
+		final long openedAt;
+		/** アーカイブを生成した箇所(記録しない場合はnull) */
+		final Throwable allocationSite;
+		/** アーカイブの統計情報 */
+		final ArchiveStatistics statistics;
+		/** 解放するネイティブリソース */
+		volatile Closeable resource = null;
+		/** アーカイブがクローズされたかどうか */
+		volatile boolean closed = false;
+		/** アーカイブマネージャに登録されたことがあるかどうか(オープンが完了したかどうか) */
+		volatile boolean registered = false;
+
+		Reclaimer(long serial, Path path, ArchiveType archiveType, long openedAt, Throwable allocationSite,
+				ArchiveStatistics statistics) {
+			this.serial = serial;
+			this.path = path;
+			this.archiveType = archiveType;
+			this.openedAt = openedAt;
+			this.allocationSite = allocationSite;
+			this.statistics = statistics;
+		}
+
+		@Override
+		public void run() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			var res = resource;
+			resource = null;
+			if ((res == null) && !registered) {
+				// オープンに失敗したアーカイブは解放するリソースがなく、リークではない
+				return;
+			}
+			if (res != null) {
+				try {
+					res.close();
+				} catch (IOException | RuntimeException e) {
+					// 到達不能になったアーカイブの解放エラーは通知先がないため無視する
+				}
+				statistics.recordNativeHandles(-1);
+			}
+			statistics.recordClose();
+			var age = Duration.ofNanos(System.nanoTime() - openedAt);
+			ArchiveManager.getInstance().onLeak(serial, new OpenArchiveInfo(path, archiveType, age, -1L, false,
+					allocationSite));
+		}
+	}
+
+	/**
+	 * 一時ファイルへ解凍したコンテンツの入力ストリーム
+	 * <p>クローズすると一時ファイルを削除し、予約した一時ファイルの領域を解放する。</p>
+	 */
+	private class SpillStream extends FilterInputStream {
+		/** 一時ファイルのパス */
+		private Path mFile;
+		/** 予約した一時ファイルの領域のサイズ */
+		private long mSize;
+		/** クローズ済みかどうか */
+		private AtomicBoolean mClosed = new AtomicBoolean(false);
+
+		SpillStream(Path file, long size) throws IOException {
+			super(new BufferedInputStream(Files.newInputStream(file)));
+			mFile = file;
+			mSize = size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (mClosed.compareAndSet(false, true)) {
+				try {
+					super.close();
+				} finally {
+					mSpillStreams.remove(this);
+					deleteScratch(mFile, mSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * メモリ上に解凍したコンテンツの入力ストリーム
+	 * <p>クローズすると予約したメモリの予算を解放する。クローズされずに到達不能になった場合はクリーナーが解放する。</p>
+	 */
+	private static class BudgetedStream extends FilterInputStream {
+		/** 予算を解放するクリーナーの登録 */
+		private Cleaner.Cleanable mCleanable;
+
+		BudgetedStream(InputStream in, ExtractionBudget budget, long reserved) {
+			super(in);
+			mCleanable = sCleaner.register(this, () -> budget.release(reserved));
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				// 解放処理は1回だけ実行される
+				mCleanable.clean();
+			}
+		}
+	}
+
+	/**
+	 * コンテンツの読み込み処理
+	 * @param <T> 読み込み結果の型
+	 */
+	@FunctionalInterface
+	private interface Reader<T> {
+		/**
+		 * コンテンツを読み込む
+		 * @return 読み込み結果
+		 * @exception IOException 入力エラー発生時
+		 */
+		T read() throws IOException;
+	}
+
+	/**
+	 * コンテンツを先頭から1回だけ解凍しながら読み込む入力ストリーム
+	 * <p>解凍は生産スレッドで行い、解凍後データは容量の小さいパイプを通して受け渡す。クローズするとパイプを閉じ、
+	 * 予約したパイプの容量を解放する。クローズされずに到達不能になった場合はクリーナーがパイプを閉じる。</p>
+	 */
+	private class ForwardStream extends InputStream {
+		/** 解凍後データを受け渡すパイプ */
+		private ForwardPipe mPipe;
+		/** パイプを閉じるクリーナーの登録 */
+		private Cleaner.Cleanable mCleanable;
+
+		ForwardStream(ForwardPipe pipe) {
+			mPipe = pipe;
+			mCleanable = sCleaner.register(this, pipe::close);
+		}
+
+		@Override
+		public int read() throws IOException {
+			var b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			Objects.checkFromIndexSize(off, len, b.length);
+			if (!isOpen()) {
+				throw new IOException(String.format("%s: Archive is closed", mPath));
+			}
+			return (len == 0) ? 0 : mPipe.read(b, off, len);
+		}
+
+		@Override
+		public int available() {
+			return mPipe.available();
+		}
+
+		@Override
+		public void close() {
+			// パイプを閉じる処理は1回だけ実行される
+			mCleanable.clean();
+		}
+	}
+
+	/**
+	 * 生産スレッドで解凍したコンテンツのデータを入力ストリームへ受け渡すパイプ
+	 * <p>パイプが満杯になると生産スレッドは解凍を進めずに待機する。生産スレッドはアーカイブオブジェクトのモニタを保持して解凍するため、
+	 * 他の処理がネイティブリソースへアクセスする時は {@link #pause()} で解凍を中断させる。中断後に読み込みを再開すると
+	 * コンテンツの先頭から解凍をやり直し、受け渡し済みのデータを読み捨てる。</p>
+	 * <p>当クラスは入力ストリームを参照しない。入力ストリームが到達不能になればクリーナーがパイプを閉じ、生産スレッドは終了する。</p>
+	 */
+	private class ForwardPipe {
+		/** 読み込むコンテンツのエントリ */
+		private ArchiveEntry mEntry;
+		/** パイプの容量を予約したメモリの予算 */
+		private ExtractionBudget mBudget;
+		/** 予約したパイプの容量(解放済みの場合は0) */
+		private long mReserved;
+		/** パイプのバッファ(リングバッファ) */
+		private byte[] mBuffer;
+		/** 次に読み出す位置 */
+		private int mHead = 0;
+		/** バッファ内の未読データのバイト数 */
+		private int mCount = 0;
+		/** コンテンツの先頭からパイプへ書き込んだバイト数 */
+		private long mProduced = 0L;
+		/** 解凍を開始したことがあるかどうか */
+		private boolean mStarted = false;
+		/** 実行中の生産スレッド(実行中でない場合はnull) */
+		private Thread mProducer = null;
+		/** 解凍の中断が要求されているかどうか */
+		private boolean mAbort = false;
+		/** コンテンツの終端まで書き込んだかどうか */
+		private boolean mEof = false;
+		/** 閉じられたかどうか */
+		private boolean mClosed = false;
+		/** 解凍中に発生したエラー */
+		private IOException mError = null;
+
+		ForwardPipe(ArchiveEntry entry, ExtractionBudget budget, long reserved) {
+			mEntry = entry;
+			mBudget = budget;
+			mReserved = reserved;
+			mBuffer = new byte[(int)reserved];
+		}
+
+		/**
+		 * パイプからの読み込み
+		 * <p>未読データがない場合、生産スレッドが実行中でなければ解凍を開始し、データが書き込まれるまで待機する。</p>
+		 * @param b 読み込み先バッファ
+		 * @param off 読み込み先の開始位置
+		 * @param len 読み込む最大バイト数(1以上)
+		 * @return 読み込んだバイト数。コンテンツの終端に達した場合は-1。
+		 * @exception IOException パイプが閉じられている、または解凍中にエラーが発生した
+		 */
+		synchronized int read(byte[] b, int off, int len) throws IOException {
+			while (mCount == 0) {
+				if (mClosed) {
+					throw new IOException(String.format("%s: Stream is closed", mEntry.getPath()));
+				} else if (mError != null) {
+					throw new IOException(String.format("%s: %s", mEntry.getPath(), mError.getMessage()), mError);
+				} else if (mEof) {
+					return -1;
+				} else if (mProducer == null) {
+					start();
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(String.format("%s: Interrupted", mEntry.getPath()));
+				}
+			}
+			if (mClosed) {
+				throw new IOException(String.format("%s: Stream is closed", mEntry.getPath()));
+			}
+			var n = Math.min(Math.min(len, mCount), mBuffer.length - mHead);
+			System.arraycopy(mBuffer, mHead, b, off, n);
+			mHead = (mHead + n) % mBuffer.length;
+			mCount -= n;
+			notifyAll();
+			return n;
+		}
+
+		/**
+		 * 未読データのバイト数取得
+		 * @return 未読データのバイト数
+		 */
+		synchronized int available() {
+			return mClosed ? 0 : mCount;
+		}
+
+		/**
+		 * 解凍の中断
+		 * <p>生産スレッドが解凍中であれば中断を要求し、生産スレッドが終了するまで待機する。
+		 * 生産スレッド自身、または生産スレッドが実行中でない場合は何もしない。</p>
+		 */
+		synchronized void pause() {
+			if ((mProducer == null) || (mProducer == Thread.currentThread())) {
+				return;
+			}
+			mAbort = true;
+			notifyAll();
+			var interrupted = false;
+			while (mProducer != null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// 解凍の終了を待たずに戻るとネイティブリソースへ同時にアクセスするため、終了まで待つ
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * パイプを閉じる
+		 * <p>生産スレッドが実行中であれば解凍を中止させ、予約したパイプの容量は生産スレッドの終了時に解放する。</p>
+		 */
+		synchronized void close() {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+			mForwardPipes.remove(this);
+			notifyAll();
+			if (mProducer == null) {
+				releaseBuffer();
+			}
+		}
+
+		/**
+		 * 生産スレッドを開始する
+		 * <p>2回目以降の開始は解凍のやり直しとして統計情報に集計する。</p>
+		 */
+		private void start() {
+			if (mStarted) {
+				mStatistics.recordBlockCache(false);
+			}
+			mStarted = true;
+			mAbort = false;
+			var skip = mProduced;
+			var thread = new Thread(() -> produce(skip), "ArchiveStreamer");
+			thread.setDaemon(true);
+			mProducer = thread;
+			thread.start();
+		}
+
+		/**
+		 * 生産スレッドの処理
+		 * @param skip 読み捨てるコンテンツ先頭からのバイト数
+		 */
+		private void produce(long skip) {
+			// 終了処理までモニタを保持し、アーカイブのクローズ時はモニタの取得によって終了を待てるようにする
+			synchronized (Archive.this) {
+				var completed = false;
+				var error = (IOException)null;
+				try {
+					if (isOpen() && !isAborted()) {
+						beginAccess();
+						try {
+							onReadContents(List.of(mEntry), e -> new Sink(skip));
+							completed = true;
+						} finally {
+							endAccess();
+						}
+					}
+				} catch (IOException e) {
+					error = e;
+				} catch (RuntimeException e) {
+					error = new IOException(e);
+				} finally {
+					finish(completed, error);
+				}
+			}
+		}
+
+		/**
+		 * 中断が要求されているかどうか
+		 * @return 中断が要求されている、または閉じられている場合true
+		 */
+		private synchronized boolean isAborted() {
+			return mAbort || mClosed;
+		}
+
+		/**
+		 * 生産スレッドの終了処理
+		 * @param completed コンテンツの終端まで解凍したかどうか
+		 * @param error 解凍中に発生したエラー
+		 */
+		private synchronized void finish(boolean completed, IOException error) {
+			if (completed) {
+				mEof = true;
+			} else if (!mAbort && !mClosed) {
+				mError = (error != null) ? error : new IOException("Archive is closed");
+			}
+			mProducer = null;
+			mAbort = false;
+			notifyAll();
+			if (mClosed) {
+				releaseBuffer();
+			}
+		}
+
+		/**
+		 * パイプへの書き込み
+		 * <p>パイプに空きができるまで待機する。</p>
+		 * @param b 書き込むデータ
+		 * @param off 書き込むデータの開始位置
+		 * @param len 書き込むバイト数
+		 * @exception IOException 解凍の中断が要求された、またはパイプが閉じられた
+		 */
+		private synchronized void put(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				while ((mCount == mBuffer.length) && !mAbort && !mClosed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException(String.format("%s: Interrupted", mEntry.getPath()));
+					}
+				}
+				if (mAbort || mClosed) {
+					throw new IOException(String.format("%s: Streaming is interrupted", mEntry.getPath()));
+				}
+				var tail = (mHead + mCount) % mBuffer.length;
+				var n = Math.min(len, Math.min(mBuffer.length - mCount, mBuffer.length - tail));
+				System.arraycopy(b, off, mBuffer, tail, n);
+				mCount += n;
+				mProduced += n;
+				off += n;
+				len -= n;
+				notifyAll();
+			}
+		}
+
+		/**
+		 * 予約したパイプの容量を解放する
+		 */
+		private void releaseBuffer() {
+			mBudget.release(mReserved);
+			mReserved = 0L;
+		}
+
+		/** 解凍後データの出力先 */
+		private class Sink extends OutputStream {
+			/** 残りの読み捨てるバイト数 */
+			private long mSkip;
+
+			Sink(long skip) {
+				mSkip = skip;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte)b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (mSkip > 0L) {
+					// 解凍をやり直した場合、受け渡し済みのデータは読み捨てる
+					var n = (int)Math.min(mSkip, len);
+					mSkip -= n;
+					off += n;
+					len -= n;
+				}
+				if (len > 0) {
+					put(b, off, len);
+				}
+			}
+		}
+	}
+
+	/** アーカイブのオープン状態を確認しながらエントリを取り出すスプリッテレータ */
+	private class OpenCheckSpliterator implements Spliterator<ArchiveEntry> {
+		/** 継承先クラスが生成したスプリッテレータ */
+		private Spliterator<ArchiveEntry> mBase;
+
+		OpenCheckSpliterator(Spliterator<ArchiveEntry> base) {
+			mBase = base;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super ArchiveEntry> action) {
+			assertIsOpen();
+			beginAccessUnchecked();
+			try {
+				return mBase.tryAdvance(action);
+			} finally {
+				endAccess();
+			}
+		}
+
+		@Override
+		public Spliterator<ArchiveEntry> trySplit() {
+			assertIsOpen();
+			var split = mBase.trySplit();
+			return (split == null) ? null : new OpenCheckSpliterator(split);
+		}
+
+		@Override
+		public long estimateSize() {
+			return mBase.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return mBase.characteristics();
+		}
+	}
 
 	/**
 	 * 新しいアーカイブオブジェクトを構築します。
@@ -51,6 +694,11 @@ public abstract class Archive implements Closeable {
 		mPath = path.toAbsolutePath();
 		mIsRunningEnum = false;
 		mIsOpen = true;
+		mSerial = sSerial.incrementAndGet();
+		mOpenedAt = System.nanoTime();
+		var site = ArchiveManager.getInstance().isAllocationSiteCapture() ? new Throwable("Archive allocation site") : null;
+		mReclaimer = new Reclaimer(mSerial, mPath, archiveType, mOpenedAt, site, mStatistics);
+		mCleanable = sCleaner.register(this, mReclaimer);
 	}
 
 	/**
@@ -80,6 +728,16 @@ public abstract class Archive implements Closeable {
 		return mIsOpen;
 	}
 
+	/**
+	 * このアーカイブの統計情報を取得します。
+	 * <p>統計情報はアーカイブのクローズ後も取得できます。全アーカイブ共通の統計情報は {@link ArchiveStatistics#getGlobal()}
+	 * で取得してください。</p>
+	 * @return このアーカイブの統計情報
+	 */
+	public ArchiveStatistics getStatistics() {
+		return mStatistics;
+	}
+
 	/**
 	 * 全てのエントリ情報がキャッシュされているかどうかを返します。
 	 * <p>当メソッドは {@link #cacheEntries()} または {@link #enumEntries(EntryCallback)}
@@ -97,6 +755,8 @@ public abstract class Archive implements Closeable {
 	 * <p>返された入力ストリームを使用することでコンテンツのデータを取り出すことができます。</p>
 	 * <p>アーカイブの種別によってはコンテンツを一旦メモリ上に展開したうえで入力ストリームを返すことがあります。
 	 * 実行環境の使用可能メモリ容量が極端に少ないとメモリ不足エラーが発生する可能性があること留意してください。</p>
+	 * <p>{@link ArchiveManager#setSpillPolicy(SpillPolicy)} で退避方針を設定している場合、サイズが閾値を超えるコンテンツは
+	 * 一時ファイルへ解凍され、入力ストリームのクローズ時に一時ファイルが削除されます。</p>
 	 * <p>当メソッドはアーカイブ内エントリのインデックス値でコンテンツを指定します。当メソッドが使用可能かは
 	 * {@link #canUseIndex()} で調べてください。<p>
 	 * @param index オープンするコンテンツのインデックス値
@@ -110,7 +770,14 @@ public abstract class Archive implements Closeable {
 	public InputStream openContent(int index) throws IOException {
 		assertIsOpen();
 		assertArgIndex(index);
-		return onOpenContentByIndex(index);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return openContentMain(onGetEntryByIndex(index), false, () -> onOpenContentByIndex(index));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -118,6 +785,8 @@ public abstract class Archive implements Closeable {
 	 * <p>返された入力ストリームを使用することでコンテンツのデータを取り出すことができます。</p>
 	 * <p>アーカイブの種別によってはコンテンツを一旦メモリ上に展開したうえで入力ストリームを返すことがあります。
 	 * 実行環境の使用可能メモリ容量が極端に少ないとメモリ不足エラーが発生する可能性があること留意してください。</p>
+	 * <p>{@link ArchiveManager#setSpillPolicy(SpillPolicy)} で退避方針を設定している場合、サイズが閾値を超えるコンテンツは
+	 * 一時ファイルへ解凍され、入力ストリームのクローズ時に一時ファイルが削除されます。</p>
 	 * <p>当メソッドはアーカイブ内エントリのパスでコンテンツを指定します。パスの英字の大小を区別するかは、
 	 * アーカイブの種別、実行環境のOSにより異なりますので当ライブラリ利用者は極力英字の大小を区別して扱ってください。
 	 * また、当メソッドが使用可能かは {@link #canUsePath()} で調べてください。<p>
@@ -133,7 +802,14 @@ public abstract class Archive implements Closeable {
 	public InputStream openContent(Path path) throws IOException {
 		assertIsOpen();
 		assertArgPath(path);
-		return onOpenContentByPath(path);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return openContentMain(onGetEntryByPath(path), true, () -> onOpenContentByPath(path));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -141,6 +817,8 @@ public abstract class Archive implements Closeable {
 	 * <p>返された入力ストリームを使用することでコンテンツのデータを取り出すことができます。</p>
 	 * <p>アーカイブの種別によってはコンテンツを一旦メモリ上に展開したうえで入力ストリームを返すことがあります。
 	 * 実行環境の使用可能メモリ容量が極端に少ないとメモリ不足エラーが発生する可能性があること留意してください。</p>
+	 * <p>{@link ArchiveManager#setSpillPolicy(SpillPolicy)} で退避方針を設定している場合、サイズが閾値を超えるコンテンツは
+	 * 一時ファイルへ解凍され、入力ストリームのクローズ時に一時ファイルが削除されます。</p>
 	 * <p>当メソッドはコンテンツエントリを指定します。他インスタンスが生成したエントリは指定できません。<p>
 	 * @param entry オープンするコンテンツのエントリ
 	 * @return コンテンツにアクセスする入力ストリーム
@@ -153,7 +831,14 @@ public abstract class Archive implements Closeable {
 	public InputStream openContent(ArchiveEntry entry) throws IOException {
 		assertIsOpen();
 		assertArgEntry(entry);
-		return onOpenContentByEntry(entry);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return openContentMain(entry, false, () -> onOpenContentByEntry(entry));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -173,7 +858,14 @@ public abstract class Archive implements Closeable {
 	public byte[] readAllBytes(int index) throws IOException {
 		assertIsOpen();
 		assertArgIndex(index);
-		return onReadAllBytesByIndex(index);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return readAllBytesMain(onGetEntryByIndex(index), false, () -> onReadAllBytesByIndex(index));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -195,7 +887,14 @@ public abstract class Archive implements Closeable {
 	public byte[] readAllBytes(Path path) throws IOException {
 		assertIsOpen();
 		assertArgPath(path);
-		return onReadAllBytesByPath(path);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return readAllBytesMain(onGetEntryByPath(path), true, () -> onReadAllBytesByPath(path));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -214,19 +913,235 @@ public abstract class Archive implements Closeable {
 	public byte[] readAllBytes(ArchiveEntry entry) throws IOException {
 		assertIsOpen();
 		assertArgEntry(entry);
-		return onReadAllBytesByEntry(entry);
+		var startTime = System.nanoTime();
+		beginAccess();
+		try {
+			return readAllBytesMain(entry, false, () -> onReadAllBytesByEntry(entry));
+		} finally {
+			endAccess();
+			mStatistics.recordRead(System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * 指定したコンテンツ(アーカイブファイル)を入れ子アーカイブとしてオープンします。
+	 * <p>コンテンツを一時ファイルに書き出すことなく、アーカイブ内のZIP・7-ZIP・RARファイルをアーカイブとして扱うことができます。
+	 * 入れ子アーカイブの種別は拡張子ではなくコンテンツ先頭のシグネチャから判定します。</p>
+	 * <p>一定サイズ({@link ArchiveManager#setNestedInMemoryLimit(long)} で設定、既定値は32MiB)以下のコンテンツは
+	 * メモリ上に解凍したうえでオープンします。それを超えるサイズのコンテンツは
+	 * コンテンツ全体を展開せず、必要な部分だけを解凍しながら読み込みます。この場合、解凍済みのデータはブロック単位で
+	 * キャッシュされますが、キャッシュにないデータへのアクセスはコンテンツの先頭からの解凍し直しになるため、
+	 * 入れ子アーカイブ内のエントリには極力格納順にアクセスしてください。</p>
+	 * <p>入れ子アーカイブのパスは、このアーカイブのパスの末尾に "!" を付与し、コンテンツのパスを連結したものになります。
+	 * (例：<code>/data/outer.zip!/inner.rar</code>)</p>
+	 * <p>入れ子アーカイブはこのアーカイブのデータを参照するため、このアーカイブをクローズすると入れ子アーカイブも
+	 * クローズされます。入れ子アーカイブのみをクローズしても、このアーカイブはクローズされません。</p>
+	 * @param entry 入れ子アーカイブとしてオープンするコンテンツのエントリ
+	 * @return オープンされた入れ子アーカイブオブジェクト
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception NullPointerException entryがnull
+	 * @exception IllegalArgumentException 他インスタンスが生成したエントリを指定した
+	 * @exception NoSuchFileException 指定したエントリがコンテンツではない
+	 * @exception IOException コンテンツがアーカイブとして認識できない
+	 * @exception IOException その他入力エラー発生時
+	 */
+	public Archive openNested(ArchiveEntry entry) throws IOException {
+		assertIsOpen();
+		assertArgEntry(entry);
+		quiescePrefetch();
+
+		var nestedPath = Path.of(getPath().toString() + NESTED_SEPARATOR, entry.getPath().toString());
+		var nested = (Archive)null;
+		beginAccess();
+		try {
+			var channel = (entry.getSize() > ArchiveManager.getInstance().getNestedInMemoryLimit()) ? onOpenContentChannel(entry) : null;
+			if (channel == null) {
+				// サイズが小さい、またはチャネルでの読み込みに非対応のコンテンツはメモリ上に解凍してオープンする
+				var data = ByteBuffer.wrap(onReadAllBytesByEntry(entry));
+				nested = nestedArchiveType(SzjbSignature.probeType(data), entry).open(nestedPath, data);
+			} else {
+				// サイズが大きいコンテンツはチャネルから必要な部分だけを読み込んでオープンする
+				try {
+					nested = nestedArchiveType(SzjbSignature.probeType(channel), entry).open(nestedPath, channel);
+				} catch (IOException | RuntimeException e) {
+					channel.close();
+					throw e;
+				}
+			}
+		} finally {
+			endAccess();
+		}
+
+		// クローズ済みの入れ子アーカイブを除外したうえで新しい入れ子アーカイブを記録する
+		mNestedArchives.removeIf(a -> !a.isOpen());
+		mNestedArchives.add(nested);
+		return nested;
+	}
+
+	/**
+	 * アーカイブ内の全てのコンテンツ(ファイル)の整合性を検査します。
+	 * <p>検査の方法はアーカイブの種別により異なります。圧縮ファイルでは全てのコンテンツを1回の解凍処理で解凍し、
+	 * 解凍後データを保持することなくCRCを検証します。ソリッド圧縮されたアーカイブでもブロックを重複して解凍することはありません。
+	 * フォルダアーカイブでは各ファイルが読み取り可能であることを検査します。</p>
+	 * <p>コンテンツが検査に合格しなかった場合でも例外はスローされず、その結果が検査結果に記録されます。
+	 * インデックス値によるエントリへのアクセスが不可の場合は、検査の前に {@link #cacheEntries()} を実行します。</p>
+	 * @return 検査結果
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception IOException 検査を継続できない入力エラーが発生した
+	 * @see ArchiveManager#verifyAll(java.util.Collection, int)
+	 */
+	public VerifyReport verify() throws IOException {
+		assertIsOpen();
+		quiescePrefetch();
+		if (!canUseIndex()) {
+			cacheEntries();
+		}
+		var results = (List<VerifyReport.Result>)null;
+		beginAccess();
+		try {
+			results = new ArrayList<>(onVerify());
+		} finally {
+			endAccess();
+		}
+		results.sort(Comparator.comparingInt(VerifyReport.Result::getIndex));
+		return new VerifyReport(getPath(), results, null);
+	}
+
+	/**
+	 * アーカイブ内の全てのコンテンツ(ファイル)のマニフェストを生成します。
+	 * <p>各コンテンツの解凍後データは指定されたアルゴリズムのダイジェストへ直接入力され、コンテンツ全体をメモリ上に保持することはありません。
+	 * 圧縮ファイルでは全てのコンテンツを1回の解凍処理で読み込み、フォルダアーカイブでは複数のファイルを並列に読み込みます。</p>
+	 * <p>インデックス値によるエントリへのアクセスが不可の場合は、生成の前に {@link #cacheEntries()} を実行します。</p>
+	 * @param algorithms ダイジェストアルゴリズム。指定可能なアルゴリズムは {@link Manifest} を参照してください。
+	 * @return マニフェスト
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception NullPointerException algorithmsがnull、またはalgorithmsにnullが含まれる
+	 * @exception IllegalArgumentException algorithmsが空、またはサポートされないアルゴリズムが含まれる
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 * @see Manifest
+	 */
+	public Manifest createManifest(String...algorithms) throws IOException {
+		assertIsOpen();
+		assertArgNotNull(algorithms, "algorithms");
+		var algorithmList = Arrays.asList(algorithms);
+		Manifest.assertAlgorithms(algorithmList);
+		quiescePrefetch();
+		if (!canUseIndex()) {
+			cacheEntries();
+		}
+
+		var contents = listContents();
+
+		// コンテンツごとにダイジェスト値を算出し、出力ストリームのクローズ時にマニフェストのエントリとして記録する
+		var entries = new ConcurrentLinkedQueue<Manifest.Entry>();
+		beginAccess();
+		try {
+			onReadContents(contents, entry -> new Manifest.DigestStream(algorithmList) {
+				@Override
+				public void close() {
+					super.close();
+					entries.add(new Manifest.Entry(entry.getPath(), getSize(), entry.getLastModified(), getDigests()));
+				}
+			});
+		} finally {
+			endAccess();
+		}
+		if (entries.size() != contents.size()) {
+			var msg = String.format("Some contents were not read: expected=%d, actual=%d", contents.size(), entries.size());
+			throw new IOException(msg);
+		}
+		return new Manifest(algorithmList, new ArrayList<>(entries));
+	}
+
+	/**
+	 * アーカイブ内の全てのコンテンツ(ファイル)から検索パターンと一致する箇所を検索します。
+	 * <p>当メソッドは {@link #search(SearchPattern, int)} で一致箇所の数の上限を指定しない場合と同じです。</p>
+	 * @param pattern 検索パターン
+	 * @return 一致箇所一覧
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception NullPointerException patternがnull
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 * @see #search(SearchPattern, int)
+	 */
+	public List<SearchHit> search(SearchPattern pattern) throws IOException {
+		return search(pattern, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * アーカイブ内の全てのコンテンツ(ファイル)から検索パターンと一致する箇所を検索します。
+	 * <p>各コンテンツの解凍後データは一定サイズごとに検索パターンと照合され、コンテンツ全体をメモリ上に保持することはありません。
+	 * 圧縮ファイルでは全てのコンテンツを1回の解凍処理で読み込むため、ソリッド圧縮されたアーカイブでもブロックを重複して解凍しません。
+	 * フォルダアーカイブでは複数のファイルを並列に読み込みます。</p>
+	 * <p>一致箇所の数が上限に達した時点で検索を終了し、残りのコンテンツは読み込みません。上限に達した場合、
+	 * どの一致箇所が返されるかはコンテンツの読み込み順により異なります。</p>
+	 * <p>一致箇所一覧はエントリのインデックス値、コンテンツ先頭からのオフセットの昇順に並びます。
+	 * インデックス値によるエントリへのアクセスが不可の場合は、検索の前に {@link #cacheEntries()} を実行します。</p>
+	 * @param pattern 検索パターン
+	 * @param limit 一致箇所の数の上限
+	 * @return 一致箇所一覧
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception NullPointerException patternがnull
+	 * @exception IllegalArgumentException limitが1未満
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 * @see SearchPattern
+	 * @see ArchiveManager#searchAll(java.util.Collection, SearchPattern, int, int)
+	 */
+	public List<SearchHit> search(SearchPattern pattern, int limit) throws IOException {
+		assertIsOpen();
+		assertArgNotNull(pattern, "pattern");
+		assertArg(limit >= 1, "Argument 'limit' is less than 1. limit=%d", limit);
+		var collector = new SearchCollector(limit);
+		searchMain(0, pattern, collector);
+		return collector.getHits();
 	}
 
 	/**
 	 * アーカイブを閉じます。
 	 * <p>既に閉じられたアーカイブに対して当メソッドを呼び出しても何も行いません。</p>
+	 * <p>このアーカイブからオープンした入れ子アーカイブのうち、オープン中のものは全てクローズされます。</p>
 	 * @exception IOException クローズ中にエラーが発生した
+	 * @see #openNested(ArchiveEntry)
 	 */
 	@Override
 	public void close() throws IOException {
 		if (isOpen()) {
+			// 解凍中のパイプを閉じて解凍を中止させる(生産スレッドはモニタを保持しているため、モニタを取得できた時点で終了している)
+			mForwardPipes.forEach(ForwardPipe::close);
+			synchronized (this) {
+				quiescePrefetch();
+			}
+			mReclaimer.closed = true;
 			mIsOpen = false;
-			onCloseArchive();
+			mStatistics.recordClose();
+			try {
+				// 入れ子アーカイブはこのアーカイブのデータを参照するため先にクローズする
+				for (var nested : mNestedArchives) {
+					nested.close();
+				}
+			} finally {
+				mNestedArchives.clear();
+				ArchiveManager.getInstance().unregister(this);
+				mAccessLock.lock();
+				try {
+					onCloseArchive();
+				} finally {
+					mIsSuspended = false;
+					mAccessLock.unlock();
+					mReclaimer.resource = null;
+					mCleanable.clean();
+					for (var spill : mSpillStreams) {
+						spill.close();
+					}
+					for (var attachment : mAttachments) {
+						attachment.close();
+					}
+					mAttachments.clear();
+				}
+			}
 		}
 	}
 
@@ -255,11 +1170,29 @@ public abstract class Archive implements Closeable {
 		assertIsOpen();
 		assertState(!mIsRunningEnum, "Now is running enumerate entries");
 		assertArgNotNull(callback, "callback");
+		var event = new ArchiveEnumerateEvent();
+		event.begin();
+		var startTime = System.nanoTime();
+		quiescePrefetch();
+		beginAccess();
 		try {
 			mIsRunningEnum = true;
 			onEnumEntries(callback);
 		} finally {
 			mIsRunningEnum = false;
+			endAccess();
+			mNaturalOrder = null;
+			mNaturalContents = null;
+			mStatistics.recordEnumerate(System.nanoTime() - startTime);
+		}
+		if ((mPrefetcher != null) && isCached()) {
+			// エントリ情報が再キャッシュされた場合は新しいエントリで先読みをやり直す
+			mPrefetcher = new Prefetcher(this, mPrefetcher.getPolicy());
+		}
+		if (event.shouldCommit()) {
+			event.path = mPath.toString();
+			event.entryCount = onGetEntryCount();
+			event.commit();
 		}
 	}
 
@@ -283,6 +1216,50 @@ public abstract class Archive implements Closeable {
 		enumEntries((e, c, n) -> true);
 	}
 
+	/**
+	 * コンテンツの先読み方針を設定します。
+	 * <p>先読み方針を設定すると、インデックス値またはパスの昇順に一定間隔(連続を含む)でコンテンツの読み込みが続いている間、
+	 * 次に読み込まれるコンテンツをバックグラウンドで解凍して保持します。インデックス値・エントリ指定による読み込みは
+	 * インデックス値の昇順、パス指定による読み込みはパスの昇順を読み込み順として扱います。
+	 * 詳細は {@link PrefetchPolicy} を参照してください。</p>
+	 * <p>先読みを行うため、エントリ情報がキャッシュされていない場合は {@link #cacheEntries()} を実行します。
+	 * また、先読みが有効な間はこのアーカイブオブジェクトのモニタを取得してコンテンツを解凍します。</p>
+	 * <p>既に先読み方針が設定されている場合、実行中の先読みを全て取り消したうえで新しい先読み方針に置き換えます。</p>
+	 * @param policy 先読み方針。nullを指定すると先読みを行わなくなる。
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception IOException エントリの読み取り中にエラー発生
+	 * @see PrefetchPolicy
+	 */
+	public void setPrefetchPolicy(PrefetchPolicy policy) throws IOException {
+		assertIsOpen();
+		quiescePrefetch();
+		mPrefetcher = null;
+		if (policy != null) {
+			if (!isCached()) {
+				cacheEntries();
+			}
+			mPrefetcher = new Prefetcher(this, policy);
+		}
+	}
+
+	/**
+	 * コンテンツの先読み方針を取得します。
+	 * @return 先読み方針。先読みを行わない場合はnull。
+	 */
+	public PrefetchPolicy getPrefetchPolicy() {
+		var prefetcher = mPrefetcher;
+		return (prefetcher == null) ? null : prefetcher.getPolicy();
+	}
+
+	/**
+	 * 先読み処理オブジェクト取得
+	 * @return 先読み処理オブジェクト。先読みを行わない場合はnull。
+	 */
+	Prefetcher getPrefetcher() {
+		return mPrefetcher;
+	}
+
 	/**
 	 * 指定したエントリの詳細情報を取得します。
 	 * <p>当メソッドはアーカイブ内エントリのインデックス値でエントリを指定します。当メソッドが使用可能かは
@@ -296,7 +1273,12 @@ public abstract class Archive implements Closeable {
 	public ArchiveEntry getEntry(int index) {
 		assertIsOpen();
 		assertArgIndex(index);
-		return onGetEntryByIndex(index);
+		beginAccessUnchecked();
+		try {
+			return onGetEntryByIndex(index);
+		} finally {
+			endAccess();
+		}
 	}
 
 	/**
@@ -313,7 +1295,89 @@ public abstract class Archive implements Closeable {
 	public ArchiveEntry getEntry(Path path) {
 		assertIsOpen();
 		assertArgPath(path);
-		return onGetEntryByPath(path);
+		beginAccessUnchecked();
+		try {
+			return onGetEntryByPath(path);
+		} finally {
+			endAccess();
+		}
+	}
+
+	/**
+	 * アーカイブ内の場所(フォルダ)・コンテンツ(ファイル)を含む全てのエントリのストリームを返します。
+	 * <p>返されるストリームは遅延評価され、エントリ情報は終端操作で要素が要求された時点で読み込まれます。
+	 * {@link #enumEntries(EntryCallback)} と異なり、全てのエントリを読み込んでもエントリ情報はキャッシュされません。
+	 * エントリ情報がキャッシュ済みの場合はキャッシュされたエントリ情報を返します。</p>
+	 * <p>並列ストリームとして使用すると、圧縮ファイルではインデックス値の範囲ごとに、フォルダアーカイブではサブフォルダごとに
+	 * 分割してエントリ情報を読み込みます。エントリの順序はアーカイブの種別により異なります。
+	 * エントリ情報がキャッシュされていない状態でフォルダアーカイブから返されるエントリのインデックス値は-1になります。</p>
+	 * <p>エントリ情報を読み込めなかったエントリはストリームに含まれません。フォルダの読み込み中に発生した入力エラーは
+	 * {@link UncheckedIOException} としてスローされます。</p>
+	 * <p>アーカイブをクローズした後にストリームからエントリを取り出そうとすると {@link IllegalStateException} がスローされます。</p>
+	 * @return 全てのエントリのストリーム
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @see #enumEntries(EntryCallback)
+	 */
+	public Stream<ArchiveEntry> entries() {
+		assertIsOpen();
+		return StreamSupport.stream(new OpenCheckSpliterator(onEntrySpliterator()), false);
+	}
+
+	/**
+	 * 自然順で指定した位置のエントリの詳細情報を取得します。
+	 * <p>自然順はパスをフォルダ単位に比較し、名前に含まれる数字の並びを数値として比較した順序です(page2.png → page10.png)。
+	 * 全角数字・全角英字・半角カナは通常の数字・英字・カナとして扱い、英字の大小は区別しません。
+	 * エントリの格納順やフォルダの列挙順に関わらず、全てのアーカイブ種別で同じ順序になります。</p>
+	 * <p>自然順の並びは最初に当メソッド、 {@link #getContentInOrder(int)}、 {@link #getContentCount()} のいずれかが呼ばれた時に
+	 * 1回だけ生成され、エントリ情報と共に保持されます。エントリ情報がキャッシュされていない場合は、生成の前に
+	 * {@link #cacheEntries()} を実行します。 {@link #enumEntries(EntryCallback)} でエントリ情報を再キャッシュした場合は
+	 * 次回の呼び出し時に並びを生成し直します。</p>
+	 * @param position 自然順での位置
+	 * @return エントリの詳細情報
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception IndexOutOfBoundsException 位置が0未満または {@link #getEntryCount()} 以上
+	 * @exception IOException エントリの読み取り中にエラー発生
+	 */
+	public ArchiveEntry getEntryInOrder(int position) throws IOException {
+		assertIsOpen();
+		prepareNaturalOrder();
+		assertArgIndexRange(position, mNaturalOrder.length, "position");
+		return onGetEntryByIndex(mNaturalOrder[position]);
+	}
+
+	/**
+	 * 自然順で指定した位置のコンテンツ(ファイル)の詳細情報を取得します。
+	 * <p>場所(フォルダ)を除いたコンテンツのみを自然順に並べた中の位置を指定します。自然順については
+	 * {@link #getEntryInOrder(int)} を参照してください。</p>
+	 * @param position コンテンツのみの自然順での位置
+	 * @return コンテンツの詳細情報
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception IndexOutOfBoundsException 位置が0未満または {@link #getContentCount()} 以上
+	 * @exception IOException エントリの読み取り中にエラー発生
+	 * @see #getEntryInOrder(int)
+	 */
+	public ArchiveEntry getContentInOrder(int position) throws IOException {
+		assertIsOpen();
+		prepareNaturalOrder();
+		assertArgIndexRange(position, mNaturalContents.length, "position");
+		return onGetEntryByIndex(mNaturalContents[position]);
+	}
+
+	/**
+	 * アーカイブ内のコンテンツ(ファイル)の数を取得します。
+	 * <p>エントリ情報がキャッシュされていない場合は {@link #cacheEntries()} を実行します。</p>
+	 * @return コンテンツの数
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IllegalStateException エントリ列挙中に当メソッドが呼び出された
+	 * @exception IOException エントリの読み取り中にエラー発生
+	 * @see #getContentInOrder(int)
+	 */
+	public int getContentCount() throws IOException {
+		assertIsOpen();
+		prepareNaturalOrder();
+		return mNaturalContents.length;
 	}
 
 	/**
@@ -458,6 +1522,606 @@ public abstract class Archive implements Closeable {
 	 */
 	protected abstract int onGetCapability();
 
+	/**
+	 * アーカイブがネイティブリソース(ネイティブライブラリのハンドル、ファイルディスクリプタ)を保持するかどうかを返す
+	 * <p>trueを返すアーカイブは {@link ArchiveManager#setMaxNativeHandles(int)} の上限の対象となる。
+	 * 既定の実装はfalseを返す。</p>
+	 * @return ネイティブリソースを保持する場合true
+	 */
+	protected boolean onHasNativeResource() {
+		return false;
+	}
+
+	/**
+	 * ネイティブリソースの一時解放
+	 * <p>アーカイブをオープンしたまま、ネイティブリソースを解放する。解放後にネイティブリソースが必要になった場合は
+	 * {@link #onResumeArchive()} が呼び出される。キャッシュ済みのエントリ情報は解放してはならない。
+	 * 当メソッドは実行中の処理がない時に呼び出される。既定の実装は何もせずfalseを返す。</p>
+	 * @return ネイティブリソースを解放した場合true。一時解放に対応しない場合false。
+	 * @exception IOException ネイティブリソースの解放中にエラーが発生した
+	 */
+	protected boolean onSuspendArchive() throws IOException {
+		return false;
+	}
+
+	/**
+	 * 一時解放したネイティブリソースの再取得
+	 * <p>{@link #onSuspendArchive()} で解放したネイティブリソースを再取得し、解放前と同じ状態でアクセスできるようにする。
+	 * 既定の実装は何もしない。</p>
+	 * @exception IOException ネイティブリソースの再取得に失敗した(例：アーカイブファイルが削除・変更された)
+	 */
+	protected void onResumeArchive() throws IOException {
+		// Do nothing
+	}
+
+	/**
+	 * コンテンツのオープン時にコンテンツ全体をメモリ上に解凍するかどうかを判定しようとする時に呼び出されます。
+	 * <p>trueを返すと、{@link ArchiveManager#setSpillPolicy(SpillPolicy)} で設定した閾値を超えるサイズのコンテンツは
+	 * {@link #onReadContents(List, ContentHandler)} で一時ファイルへ解凍されます。</p>
+	 * <p>デフォルトの実装ではfalseを返します。</p>
+	 * @return コンテンツ全体をメモリ上に解凍する場合true
+	 */
+	protected boolean onExtractsToHeap() {
+		return false;
+	}
+
+	/**
+	 * アーカイブが使用しているネイティブメモリの推定値を返す
+	 * <p>{@link ArchiveManager#getOpenArchiveInfo()} の診断情報として使用される。既定の実装は0を返す。</p>
+	 * @return 推定ネイティブメモリ使用量(バイト数)
+	 */
+	protected long onEstimateNativeFootprint() {
+		return 0L;
+	}
+
+	/**
+	 * クローズされずに到達不能になった時に解放するネイティブリソースを設定します。
+	 * <p>アプリケーションがアーカイブをクローズせずに参照を手放した場合、アーカイブオブジェクトがガベージコレクションで回収された後に
+	 * 設定したリソースがクローズされ、ネイティブハンドル数の統計情報が1減算されます。従って、設定するリソースは
+	 * ネイティブハンドル1個分を表し、アーカイブオブジェクトを参照してはなりません(参照すると回収されなくなります)。</p>
+	 * <p>ネイティブリソースを解放した時はnullを設定してください。アーカイブがクローズされた場合、設定したリソースは使用されません。</p>
+	 * @param resource ネイティブリソース。nullの場合は解放するリソースなし。
+	 */
+	protected final void setNativeResource(Closeable resource) {
+		mReclaimer.resource = resource;
+	}
+
+	/**
+	 * エントリ指定によりコンテンツをシーク可能なチャネルとしてオープンしようとする時に呼び出されます。
+	 * <p>当メソッドは {@link #openNested(ArchiveEntry)} でサイズの大きいコンテンツを入れ子アーカイブとしてオープンする際に使用されます。
+	 * 返すチャネルは読み込み専用で、コンテンツの解凍後データにランダムアクセスできなければなりません。</p>
+	 * <p>デフォルトの実装ではnullを返します。その場合、コンテンツはメモリ上に解凍されたうえで使用されます。</p>
+	 * @param entry オープンしようとするコンテンツのエントリ
+	 * @return コンテンツにアクセスするチャネル。チャネルでのアクセスに非対応の場合はnull。
+	 * @exception IOException 入力エラー発生時
+	 */
+	protected SeekableByteChannel onOpenContentChannel(ArchiveEntry entry) throws IOException {
+		return null;
+	}
+
+	/**
+	 * 全てのエントリのストリームを生成しようとする時に呼び出されます。
+	 * <p>返すスプリッテレータはエントリ情報を遅延して読み込み、エントリ情報をキャッシュしてはなりません。
+	 * 並列ストリームで使用された場合に備え、アーカイブの構造に沿って分割できるように実装してください。</p>
+	 * <p>デフォルトの実装ではインデックス値の範囲で分割する {@link IndexSpliterator} で {@link #onGetEntryByIndex(int)}
+	 * を呼び出します。インデックス値によるエントリへのアクセスが不可の場合は、先に {@link #cacheEntries()} を実行します。</p>
+	 * @return 全てのエントリのスプリッテレータ
+	 * @exception UncheckedIOException エントリ情報のキャッシュ中に入力エラーが発生した
+	 */
+	protected Spliterator<ArchiveEntry> onEntrySpliterator() {
+		if ((onGetCapability() & CAPS_INDEX) == 0) {
+			try {
+				cacheEntries();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return new IndexSpliterator(this::onGetEntryByIndex, 0, onGetEntryCount());
+	}
+
+	/**
+	 * アーカイブ内の全てのコンテンツの整合性を検査しようとする時に呼び出されます。
+	 * <p>当メソッドはインデックス値によるエントリへのアクセスが可能な状態で呼び出されます。
+	 * 全てのコンテンツ(ファイル)について、検査の合否を検査結果として返してください。</p>
+	 * <p>デフォルトの実装では各コンテンツを {@link #onOpenContentByEntry(ArchiveEntry)} でオープンし、
+	 * 末尾まで読み捨てることができれば合格とします。</p>
+	 * @return コンテンツごとの検査結果一覧(順不同)
+	 * @exception IOException 検査を継続できない入力エラーが発生した
+	 */
+	protected List<VerifyReport.Result> onVerify() throws IOException {
+		var results = new ArrayList<VerifyReport.Result>();
+		var count = onGetEntryCount();
+		for (var i = 0; i < count; i++) {
+			var entry = onGetEntryByIndex(i);
+			if (entry == null) {
+				results.add(new VerifyReport.Result(i, null, "Failed to read entry"));
+			} else if (entry.isContent()) {
+				try (var stream = onOpenContentByEntry(entry)) {
+					stream.transferTo(OutputStream.nullOutputStream());
+					results.add(new VerifyReport.Result(i, entry.getPath(), null));
+				} catch (IOException e) {
+					results.add(new VerifyReport.Result(i, entry.getPath(), e.toString()));
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * 指定された全てのコンテンツを読み込もうとする時に呼び出されます。
+	 * <p>各コンテンツについて、ハンドラから取得した出力ストリームへ解凍後データを先頭から全て書き込み、その出力ストリームをクローズしてください。
+	 * コンテンツの読み込みに失敗した場合は出力ストリームをクローズせずに例外をスローしてください。
+	 * 読み込みの順番は問わず、アーカイブの形式が許す場合は複数のコンテンツを並列に読み込んでも構いません。</p>
+	 * <p>デフォルトの実装では各コンテンツを {@link #onOpenContentByEntry(ArchiveEntry)} で順番に読み込みます。</p>
+	 * @param contents 読み込むコンテンツのエントリ一覧
+	 * @param handler コンテンツの出力先を提供するハンドラ
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 */
+	protected void onReadContents(List<ArchiveEntry> contents, ContentHandler handler) throws IOException {
+		for (var entry : contents) {
+			try (var stream = onOpenContentByEntry(entry)) {
+				var out = handler.open(entry);
+				stream.transferTo(out);
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * 解凍処理で取り出したバイト数を統計情報に集計します。
+	 * <p>当メソッドは解凍処理を1回行うごとに継承先クラスから呼び出されます。</p>
+	 * @param bytesDecoded 解凍処理で取り出したバイト数(読み捨てたデータを含む)
+	 * @see ArchiveStatistics.Snapshot#getBytesDecoded()
+	 */
+	protected final void recordDecoded(long bytesDecoded) {
+		mStatistics.recordDecoded(bytesDecoded);
+	}
+
+	/**
+	 * 呼び出し元へ返したバイト数を統計情報に集計します。
+	 * @param bytesReturned 呼び出し元へ返したバイト数
+	 * @see ArchiveStatistics.Snapshot#getBytesReturned()
+	 */
+	protected final void recordReturned(long bytesReturned) {
+		mStatistics.recordReturned(bytesReturned);
+	}
+
+	/**
+	 * 解凍済みブロックキャッシュの参照を統計情報に集計します。
+	 * @param hit キャッシュにヒットした場合true
+	 * @see ArchiveStatistics.Snapshot#getCacheHits()
+	 */
+	protected final void recordBlockCache(boolean hit) {
+		mStatistics.recordBlockCache(hit);
+	}
+
+	/**
+	 * ネイティブライブラリのアーカイブハンドル数の増減を統計情報に集計します。
+	 * @param delta 増減数
+	 * @see ArchiveStatistics.Snapshot#getLiveNativeHandles()
+	 */
+	protected final void recordNativeHandles(int delta) {
+		mStatistics.recordNativeHandles(delta);
+	}
+
+	/**
+	 * アーカイブのクローズ時に合わせてクローズするリソースを登録する。
+	 * <p>登録したリソースは {@link #onCloseArchive()} の後、登録順にクローズされる。</p>
+	 * @param resource リソース
+	 */
+	void attach(Closeable resource) {
+		mAttachments.add(resource);
+	}
+
+	/**
+	 * 入れ子アーカイブの種別チェック
+	 * @param archiveType シグネチャから判定したアーカイブ種別
+	 * @param entry 入れ子アーカイブのエントリ
+	 * @return 入れ子アーカイブの種別
+	 * @exception IOException コンテンツがアーカイブとして認識できない
+	 */
+	private static ArchiveType nestedArchiveType(ArchiveType archiveType, ArchiveEntry entry) throws IOException {
+		if (!archiveType.isFileArchive()) {
+			throw new IOException(String.format("Can't judgement archive type of nested content: %s", entry.getPath()));
+		}
+		return archiveType;
+	}
+
+	/**
+	 * アーカイブの通し番号取得
+	 * @return アーカイブの通し番号
+	 */
+	long getSerial() {
+		return mSerial;
+	}
+
+	/**
+	 * 診断情報生成
+	 * @return 診断情報
+	 */
+	OpenArchiveInfo createInfo() {
+		var age = Duration.ofNanos(System.nanoTime() - mOpenedAt);
+		var suspended = mIsSuspended;
+		var footprint = suspended ? 0L : onEstimateNativeFootprint();
+		return new OpenArchiveInfo(mPath, mArchiveType, age, footprint, suspended, mReclaimer.allocationSite);
+	}
+
+	/**
+	 * アーカイブマネージャへの登録状態設定
+	 * @param registered 登録されている場合true
+	 */
+	void setRegistered(boolean registered) {
+		mIsRegistered = registered;
+		if (registered) {
+			mReclaimer.registered = true;
+		}
+	}
+
+	/**
+	 * ネイティブリソースを保持するかどうか
+	 * @return ネイティブリソースを保持する場合true
+	 */
+	boolean hasNativeResource() {
+		return onHasNativeResource();
+	}
+
+	/**
+	 * ネイティブリソースを一時解放しているかどうか
+	 * @return 一時解放している場合true
+	 */
+	boolean isSuspended() {
+		return mIsSuspended;
+	}
+
+	/**
+	 * コンテンツ検索のメイン処理
+	 * <p>一致箇所の数が上限に達して照合処理が中断された場合、その例外はスローしない。</p>
+	 * @param order アーカイブの順番
+	 * @param pattern 検索パターン
+	 * @param collector 一致箇所の集計処理
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 */
+	void searchMain(int order, SearchPattern pattern, SearchCollector collector) throws IOException {
+		quiescePrefetch();
+		if (!canUseIndex()) {
+			cacheEntries();
+		}
+		var contents = listContents();
+		if (contents.isEmpty() || collector.isFull()) {
+			return;
+		}
+		try {
+			readContents(contents, entry -> collector.open(order, this, entry, pattern));
+		} catch (IOException e) {
+			if (!collector.isFull()) {
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 指定コンテンツの一括読み込み
+	 * <p>{@link #onReadContents(List, ContentHandler)} を、先読みを停止したうえでネイティブリソースへのアクセス中として呼び出す。</p>
+	 * @param contents 読み込むコンテンツのエントリ一覧
+	 * @param handler コンテンツの出力先を提供するハンドラ
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 */
+	void readContents(List<ArchiveEntry> contents, ContentHandler handler) throws IOException {
+		quiescePrefetch();
+		beginAccess();
+		try {
+			onReadContents(contents, handler);
+		} finally {
+			endAccess();
+		}
+	}
+
+	/**
+	 * 全コンテンツのエントリ一覧取得
+	 * <p>インデックス値によるエントリへのアクセスが可能であること。</p>
+	 * @return コンテンツのエントリ一覧(インデックス値の昇順)
+	 */
+	private List<ArchiveEntry> listContents() {
+		var contents = new ArrayList<ArchiveEntry>();
+		var count = onGetEntryCount();
+		for (var i = 0; i < count; i++) {
+			var entry = onGetEntryByIndex(i);
+			if ((entry != null) && entry.isContent()) {
+				contents.add(entry);
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * ネイティブリソースへのアクセス開始
+	 * <p>ネイティブリソースを一時解放している場合は再取得する。アクセス中は一時解放されない。
+	 * 必ず {@link #endAccess()} と対で呼び出すこと。</p>
+	 * @exception IOException ネイティブリソースの再取得に失敗した
+	 */
+	void beginAccess() throws IOException {
+		pauseForwardPipes();
+		var resumed = false;
+		mAccessLock.lock();
+		try {
+			if (mIsSuspended) {
+				onResumeArchive();
+				mIsSuspended = false;
+				resumed = true;
+			}
+			mAccessCount++;
+		} finally {
+			mAccessLock.unlock();
+		}
+		if (mIsRegistered) {
+			ArchiveManager.getInstance().onAccess(this, resumed);
+		}
+	}
+
+	/**
+	 * ネイティブリソースへのアクセス開始(非チェック例外版)
+	 * @exception UncheckedIOException ネイティブリソースの再取得に失敗した
+	 */
+	private void beginAccessUnchecked() {
+		try {
+			beginAccess();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * ネイティブリソースへのアクセス終了
+	 */
+	void endAccess() {
+		mAccessLock.lock();
+		try {
+			mAccessCount--;
+		} finally {
+			mAccessLock.unlock();
+		}
+	}
+
+	/**
+	 * ネイティブリソースの一時解放を試みる
+	 * <p>アクセス中の処理がある、入れ子アーカイブがオープン中、または一時解放に対応しない場合は何もしない。
+	 * 他スレッドがアクセスを開始しようとしている場合は待たずに失敗する。</p>
+	 * @return 一時解放した場合true
+	 */
+	boolean trySuspend() {
+		if (!mAccessLock.tryLock()) {
+			return false;
+		}
+		try {
+			if (!mIsOpen || mIsSuspended || (mAccessCount > 0) || mIsRunningEnum) {
+				return false;
+			}
+			if (mNestedArchives.stream().anyMatch(Archive::isOpen)) {
+				// 入れ子アーカイブはこのアーカイブのネイティブリソースを参照する可能性がある
+				return false;
+			}
+			mIsSuspended = onSuspendArchive();
+			return mIsSuspended;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			mAccessLock.unlock();
+		}
+	}
+
+	/**
+	 * コンテンツのキャッシュ・先読みを利用したコンテンツ読み込み
+	 * <p>返されたデータはキャッシュで共有されている可能性があるため、呼び出し元に返す場合は複製すること。</p>
+	 * @param entry 読み込むコンテンツのエントリ
+	 * @param byPath パス指定による読み込みかどうか
+	 * @return コンテンツ全体の解凍後バイトデータ。キャッシュ・先読みを使用しない、またはエントリがコンテンツでない場合はnull。
+	 * @exception IOException 入力エラー発生時
+	 */
+	private byte[] readShared(ArchiveEntry entry, boolean byPath) throws IOException {
+		var cache = ArchiveManager.getInstance().getContentCache();
+		if ((cache == null) || (entry == null) || !entry.isContent() || (entry.getCrc() == null)) {
+			return readPrefetched(entry, byPath);
+		}
+		return cache.read(this, entry, () -> {
+			var data = readPrefetched(entry, byPath);
+			return (data != null) ? data : onReadAllBytesByEntry(entry);
+		});
+	}
+
+	/**
+	 * コンテンツオープンのメイン処理
+	 * @param entry オープンするコンテンツのエントリ(不明な場合はnull)
+	 * @param byPath パス指定による読み込みかどうか
+	 * @param opener 継承先クラスのコンテンツオープン処理
+	 * @return コンテンツにアクセスする入力ストリーム
+	 * @exception IOException 入力エラー発生時
+	 */
+	private InputStream openContentMain(ArchiveEntry entry, boolean byPath, Reader<InputStream> opener)
+			throws IOException {
+		var spilled = openSpilled(entry);
+		if (spilled != null) {
+			return spilled;
+		}
+		var budget = extractionBudget(entry);
+		var reserved = (budget == null) ? 0L : budget.acquire(entry.getSize(), true);
+		if (reserved == ExtractionBudget.STREAM) {
+			// 予算の残りが不足する場合は、パイプの容量だけを予約して先頭から1回だけ解凍しながら読み込むストリームに切り替える
+			var pipeSize = Math.min(FORWARD_PIPE_SIZE, Math.max(entry.getSize(), 1L));
+			var pipe = new ForwardPipe(entry, budget, budget.acquireStream(pipeSize));
+			mForwardPipes.add(pipe);
+			return new ForwardStream(pipe);
+		}
+		try {
+			// 解凍したデータは入力ストリームが保持するため、予算は入力ストリームのクローズ時に解放する
+			var data = readShared(entry, byPath);
+			var stream = (data != null) ? new ByteArrayInputStream(data) : opener.read();
+			return (budget == null) ? stream : new BudgetedStream(stream, budget, reserved);
+		} catch (IOException | RuntimeException e) {
+			if (budget != null) {
+				budget.release(reserved);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * コンテンツのバイトデータ読み込みメイン処理
+	 * @param entry 読み込むコンテンツのエントリ(不明な場合はnull)
+	 * @param byPath パス指定による読み込みかどうか
+	 * @param reader 継承先クラスのバイトデータ読み込み処理
+	 * @return コンテンツ全体の解凍後バイトデータ
+	 * @exception IOException 入力エラー発生時
+	 */
+	private byte[] readAllBytesMain(ArchiveEntry entry, boolean byPath, Reader<byte[]> reader) throws IOException {
+		var budget = extractionBudget(entry);
+		var reserved = (budget == null) ? 0L : budget.acquire(entry.getSize(), false);
+		try {
+			var data = readShared(entry, byPath);
+			return (data != null) ? data.clone() : reader.read();
+		} finally {
+			if (budget != null) {
+				budget.release(reserved);
+			}
+		}
+	}
+
+	/**
+	 * コンテンツの解凍に適用するメモリの予算取得
+	 * @param entry 解凍するコンテンツのエントリ
+	 * @return メモリの予算。予算を設定していない、またはメモリ上に解凍しないコンテンツの場合はnull。
+	 */
+	private ExtractionBudget extractionBudget(ArchiveEntry entry) {
+		var budget = ArchiveManager.getInstance().getExtractionBudget();
+		if ((budget == null) || (entry == null) || !entry.isContent() || !onExtractsToHeap()) {
+			return null;
+		}
+		return budget;
+	}
+
+	/**
+	 * サイズの大きいコンテンツを一時ファイルへ解凍してオープンする
+	 * @param entry オープンするコンテンツのエントリ
+	 * @return 一時ファイルを読み込む入力ストリーム。一時ファイルへ解凍する対象でない場合はnull。
+	 * @exception IOException 一時ファイルの作業容量を超える
+	 * @exception IOException 一時ファイルの作成・解凍中にエラー発生
+	 */
+	private InputStream openSpilled(ArchiveEntry entry) throws IOException {
+		var manager = ArchiveManager.getInstance();
+		var policy = manager.getSpillPolicy();
+		if ((policy == null) || (entry == null) || !entry.isContent() || (entry.getSize() <= policy.getThreshold()) ||
+				!onExtractsToHeap()) {
+			return null;
+		}
+		var size = entry.getSize();
+		if (!manager.reserveScratch(size, policy.getMaxScratchBytes())) {
+			var msg = String.format("%s: Scratch space exhausted (%dbytes requested, %dbytes in use, limit %dbytes)",
+					entry.getPath(), size, manager.getScratchBytes(), policy.getMaxScratchBytes());
+			throw new IOException(msg);
+		}
+		var file = (Path)null;
+		var out = new OutputStream[1];
+		try {
+			file = Files.createTempFile(policy.getDirectory(), "archive-", ".spill");
+			var target = file;
+			synchronized (this) {
+				onReadContents(List.of(entry), e -> {
+					out[0] = new BufferedOutputStream(Files.newOutputStream(target));
+					return out[0];
+				});
+			}
+			var stream = new SpillStream(file, size);
+			mSpillStreams.add(stream);
+			return stream;
+		} catch (IOException | RuntimeException e) {
+			// 解凍に失敗した場合、出力ストリームはクローズされないためここでクローズする
+			if (out[0] != null) {
+				try {
+					out[0].close();
+				} catch (IOException e2) {
+					e.addSuppressed(e2);
+				}
+			}
+			if (file == null) {
+				manager.releaseScratch(size);
+			} else {
+				deleteScratch(file, size);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 一時ファイルを削除し、予約した一時ファイルの領域を解放する
+	 * @param file 一時ファイルのパス
+	 * @param size 予約した一時ファイルの領域のサイズ
+	 * @exception IOException 一時ファイルの削除に失敗した
+	 */
+	private static void deleteScratch(Path file, long size) throws IOException {
+		try {
+			Files.deleteIfExists(file);
+		} finally {
+			ArchiveManager.getInstance().releaseScratch(size);
+		}
+	}
+
+	/**
+	 * 先読みを利用したコンテンツ読み込み
+	 * @param entry 読み込むコンテンツのエントリ
+	 * @param byPath パス指定による読み込みかどうか
+	 * @return コンテンツ全体の解凍後バイトデータ。先読みを行わない、またはエントリがコンテンツでない場合はnull。
+	 * @exception IOException 入力エラー発生時
+	 */
+	private byte[] readPrefetched(ArchiveEntry entry, boolean byPath) throws IOException {
+		var prefetcher = mPrefetcher;
+		if ((prefetcher == null) || (entry == null) || !entry.isContent()) {
+			return null;
+		}
+		return prefetcher.read(entry, byPath);
+	}
+
+	/**
+	 * 自然順の並びを生成する
+	 * <p>生成済みの場合は何もしない。</p>
+	 * @exception IOException エントリの読み取り中にエラー発生
+	 */
+	private void prepareNaturalOrder() throws IOException {
+		if (mNaturalOrder != null) {
+			return;
+		}
+		if (!isCached()) {
+			cacheEntries();
+		}
+		var count = onGetEntryCount();
+		var entries = new ArrayList<ArchiveEntry>(count);
+		for (var i = 0; i < count; i++) {
+			entries.add(onGetEntryByIndex(i));
+		}
+		var order = NaturalOrder.sort(entries);
+		mNaturalContents = Arrays.stream(order).filter(i -> entries.get(i).isContent()).toArray();
+		mNaturalOrder = order;
+	}
+
+	/**
+	 * 実行中の先読みを全て取り消し、先読みの終了を待つ
+	 */
+	private void quiescePrefetch() {
+		pauseForwardPipes();
+		var prefetcher = mPrefetcher;
+		if (prefetcher != null) {
+			prefetcher.cancelAll();
+		}
+	}
+
+	/**
+	 * 先頭から1回だけ解凍しながら読み込むコンテンツの解凍を全て中断し、中断の完了を待つ
+	 * <p>アーカイブオブジェクトのモニタを保持している場合、解凍中のパイプはないため何もしない。</p>
+	 */
+	private void pauseForwardPipes() {
+		if (!mForwardPipes.isEmpty() && !Thread.holdsLock(this)) {
+			mForwardPipes.forEach(ForwardPipe::pause);
+		}
+	}
+
 	/**
 	 * オープン状態かどうかのアサーション。
 	 * @exception IllegalStateException オープン状態ではない
@@ -0,0 +1,332 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 2個のアーカイブの差分を表すクラスです。
+ *
+ * <p>差分は {@link #compare(Archive, Archive)} によってエントリ情報のみから求めます。両アーカイブのコンテンツ(ファイル)を
+ * パスの昇順に並べて突き合わせ、一方にしか存在しないコンテンツを追加・削除、両方に存在しサイズ・CRC32が異なるコンテンツを変更とします。
+ * アーカイブの種別は問わず、フォルダアーカイブと圧縮ファイルを比較することもできます。</p>
+ *
+ * <p>サイズが一致し、かついずれかのエントリにCRC32が記録されていない場合(フォルダアーカイブ等)は最終更新日時を比較します。
+ * 最終更新日時も一致する場合は変更なしとし、一致しない場合に限り両コンテンツの解凍後データを先頭から比較して判定します。</p>
+ *
+ * @author J-SON3
+ */
+public final class ArchiveDiff {
+	/** 解凍後データの比較に使用するバッファサイズ */
+	private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+
+	/** 差分一覧 */
+	private List<Change> mChanges;
+	/** 解凍後データを比較したコンテンツ数 */
+	private int mContentComparedCount;
+
+	/**
+	 * 差分の種類を表す列挙型です。
+	 */
+	public enum Kind {
+		/** 新しいアーカイブにのみ存在する */
+		ADDED,
+		/** 古いアーカイブにのみ存在する */
+		REMOVED,
+		/** 両方のアーカイブに存在し、内容が異なる */
+		MODIFIED,
+	}
+
+	/**
+	 * 1個のコンテンツの差分を表すクラスです。
+	 */
+	public static final class Change {
+		/** 差分の種類 */
+		private Kind mKind;
+		/** 古いアーカイブのエントリ */
+		private ArchiveEntry mOldEntry;
+		/** 新しいアーカイブのエントリ */
+		private ArchiveEntry mNewEntry;
+
+		/**
+		 * コンストラクタ
+		 * @param kind 差分の種類
+		 * @param oldEntry 古いアーカイブのエントリ
+		 * @param newEntry 新しいアーカイブのエントリ
+		 */
+		Change(Kind kind, ArchiveEntry oldEntry, ArchiveEntry newEntry) {
+			mKind = kind;
+			mOldEntry = oldEntry;
+			mNewEntry = newEntry;
+		}
+
+		/**
+		 * 差分の種類を取得します。
+		 * @return 差分の種類
+		 */
+		public Kind getKind() {
+			return mKind;
+		}
+
+		/**
+		 * コンテンツのパスを取得します。
+		 * @return コンテンツのパス
+		 */
+		public Path getPath() {
+			return (mNewEntry != null) ? mNewEntry.getPath() : mOldEntry.getPath();
+		}
+
+		/**
+		 * 古いアーカイブのエントリを取得します。
+		 * @return 古いアーカイブのエントリ。差分の種類が {@link Kind#ADDED} の場合はnull。
+		 */
+		public ArchiveEntry getOldEntry() {
+			return mOldEntry;
+		}
+
+		/**
+		 * 新しいアーカイブのエントリを取得します。
+		 * @return 新しいアーカイブのエントリ。差分の種類が {@link Kind#REMOVED} の場合はnull。
+		 */
+		public ArchiveEntry getNewEntry() {
+			return mNewEntry;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("%s %s", mKind, getPath());
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param changes 差分一覧
+	 * @param contentComparedCount 解凍後データを比較したコンテンツ数
+	 */
+	private ArchiveDiff(List<Change> changes, int contentComparedCount) {
+		mChanges = Collections.unmodifiableList(changes);
+		mContentComparedCount = contentComparedCount;
+	}
+
+	/**
+	 * 2個のアーカイブの差分を求めます。
+	 * <p>差分はエントリ情報から求め、解凍後データの比較は最終更新日時のみ異なりCRC32で判定できないコンテンツに限り行います。
+	 * 解凍後データの比較を行わない場合は {@link #compare(Archive, Archive, boolean)} を使用してください。</p>
+	 * <p>インデックス値によるエントリへのアクセスが不可のアーカイブは、比較の前に {@link Archive#cacheEntries()} を実行します。</p>
+	 * @param oldArchive 古いアーカイブ
+	 * @param newArchive 新しいアーカイブ
+	 * @return 2個のアーカイブの差分
+	 * @exception NullPointerException oldArchiveまたはnewArchiveがnull
+	 * @exception IllegalStateException oldArchiveまたはnewArchiveがオープンされていない
+	 * @exception IOException エントリ情報またはコンテンツの読み込み中にエラーが発生した
+	 */
+	public static ArchiveDiff compare(Archive oldArchive, Archive newArchive) throws IOException {
+		return compare(oldArchive, newArchive, true);
+	}
+
+	/**
+	 * 2個のアーカイブの差分を求めます。
+	 * <p>compareContentsにfalseを指定した場合、CRC32で判定できず最終更新日時が異なるコンテンツは解凍後データを比較せずに変更ありとします。</p>
+	 * @param oldArchive 古いアーカイブ
+	 * @param newArchive 新しいアーカイブ
+	 * @param compareContents エントリ情報で判定できないコンテンツの解凍後データを比較するかどうか
+	 * @return 2個のアーカイブの差分
+	 * @exception NullPointerException oldArchiveまたはnewArchiveがnull
+	 * @exception IllegalStateException oldArchiveまたはnewArchiveがオープンされていない
+	 * @exception IOException エントリ情報またはコンテンツの読み込み中にエラーが発生した
+	 * @see #compare(Archive, Archive)
+	 */
+	public static ArchiveDiff compare(Archive oldArchive, Archive newArchive, boolean compareContents)
+			throws IOException {
+		assertArgNotNull(oldArchive, "oldArchive");
+		assertArgNotNull(newArchive, "newArchive");
+		var oldContents = sortedContents(oldArchive);
+		var newContents = sortedContents(newArchive);
+
+		// パスの昇順に並べたコンテンツを突き合わせる
+		var changes = new ArrayList<Change>();
+		var contentComparedCount = 0;
+		var oldCount = oldContents.length;
+		var newCount = newContents.length;
+		var o = 0;
+		var n = 0;
+		while ((o < oldCount) || (n < newCount)) {
+			var cmp = (o >= oldCount) ? 1 : (n >= newCount) ? -1 : oldContents[o].key.compareTo(newContents[n].key);
+			if (cmp < 0) {
+				changes.add(new Change(Kind.REMOVED, oldContents[o++].entry, null));
+			} else if (cmp > 0) {
+				changes.add(new Change(Kind.ADDED, null, newContents[n++].entry));
+			} else {
+				var oldEntry = oldContents[o++].entry;
+				var newEntry = newContents[n++].entry;
+				var modified = false;
+				switch (compareEntries(oldEntry, newEntry)) {
+				case 0:
+					modified = false;
+					break;
+				case 1:
+					modified = true;
+					break;
+				default:
+					// エントリ情報で判定できない場合は解凍後データを比較する
+					if (compareContents) {
+						modified = !contentEquals(oldArchive, oldEntry, newArchive, newEntry);
+						contentComparedCount++;
+					} else {
+						modified = true;
+					}
+					break;
+				}
+				if (modified) {
+					changes.add(new Change(Kind.MODIFIED, oldEntry, newEntry));
+				}
+			}
+		}
+		return new ArchiveDiff(changes, contentComparedCount);
+	}
+
+	/**
+	 * 差分一覧を取得します。
+	 * <p>差分はパスの昇順に並びます。返されるリストは変更できません。</p>
+	 * @return 差分一覧
+	 */
+	public List<Change> getChanges() {
+		return mChanges;
+	}
+
+	/**
+	 * 指定した種類の差分一覧を取得します。
+	 * @param kind 差分の種類
+	 * @return 指定した種類の差分一覧
+	 * @exception NullPointerException kindがnull
+	 */
+	public List<Change> getChanges(Kind kind) {
+		assertArgNotNull(kind, "kind");
+		return mChanges.stream().filter(c -> c.getKind() == kind).collect(Collectors.toList());
+	}
+
+	/**
+	 * 差分がないかどうかを返します。
+	 * @return 差分がない場合true
+	 */
+	public boolean isEmpty() {
+		return mChanges.isEmpty();
+	}
+
+	/**
+	 * 解凍後データを比較したコンテンツ数を取得します。
+	 * @return 解凍後データを比較したコンテンツ数
+	 */
+	public int getContentComparedCount() {
+		return mContentComparedCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return String.format("%d added, %d removed, %d modified",
+				getChanges(Kind.ADDED).size(), getChanges(Kind.REMOVED).size(), getChanges(Kind.MODIFIED).size());
+	}
+
+	/** 突き合わせ用のコンテンツ */
+	private static class SortKey {
+		/** OSに依存しない区切り文字によるパス文字列 */
+		final String key;
+		/** エントリ */
+		final ArchiveEntry entry;
+
+		SortKey(ArchiveEntry entry) {
+			this.key = Manifest.pathString(entry.getPath());
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * パスの昇順に並べたコンテンツ一覧取得
+	 * @param archive アーカイブ
+	 * @return パスの昇順に並べたコンテンツ一覧
+	 * @exception IOException エントリ情報の読み込み中にエラーが発生した
+	 */
+	private static SortKey[] sortedContents(Archive archive) throws IOException {
+		if (!archive.canUseIndex()) {
+			archive.cacheEntries();
+		}
+		var count = archive.getEntryCount();
+		var contents = new ArrayList<SortKey>(count);
+		for (var i = 0; i < count; i++) {
+			var entry = archive.getEntry(i);
+			if ((entry != null) && entry.isContent()) {
+				contents.add(new SortKey(entry));
+			}
+		}
+		var sorted = contents.toArray(SortKey[]::new);
+		Arrays.sort(sorted, Comparator.comparing(c -> c.key));
+		return sorted;
+	}
+
+	/**
+	 * エントリ情報による比較
+	 * @param oldEntry 古いアーカイブのエントリ
+	 * @param newEntry 新しいアーカイブのエントリ
+	 * @return 変更なしの場合0、変更ありの場合1、判定できない場合-1
+	 */
+	private static int compareEntries(ArchiveEntry oldEntry, ArchiveEntry newEntry) {
+		if (oldEntry.getSize() != newEntry.getSize()) {
+			return 1;
+		} else if ((oldEntry.getCrc() != null) && (newEntry.getCrc() != null)) {
+			return oldEntry.getCrc().equals(newEntry.getCrc()) ? 0 : 1;
+		} else if (oldEntry.getLastModified() == newEntry.getLastModified()) {
+			return 0;
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * 解凍後データによる比較
+	 * @param oldArchive 古いアーカイブ
+	 * @param oldEntry 古いアーカイブのエントリ
+	 * @param newArchive 新しいアーカイブ
+	 * @param newEntry 新しいアーカイブのエントリ
+	 * @return 解凍後データが一致する場合true
+	 * @exception IOException コンテンツの読み込み中にエラーが発生した
+	 */
+	private static boolean contentEquals(Archive oldArchive, ArchiveEntry oldEntry, Archive newArchive,
+			ArchiveEntry newEntry) throws IOException {
+		try (var oldStream = oldArchive.openContent(oldEntry); var newStream = newArchive.openContent(newEntry)) {
+			var oldBuf = new byte[COMPARE_BUFFER_SIZE];
+			var newBuf = new byte[COMPARE_BUFFER_SIZE];
+			while (true) {
+				var oldLength = readFully(oldStream, oldBuf);
+				var newLength = readFully(newStream, newBuf);
+				if (oldLength != newLength) {
+					return false;
+				} else if (!Arrays.equals(oldBuf, 0, oldLength, newBuf, 0, newLength)) {
+					return false;
+				} else if (oldLength < COMPARE_BUFFER_SIZE) {
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * バッファサイズ分、またはストリーム末尾までの読み込み
+	 * @param stream 入力ストリーム
+	 * @param buf 読み込み先
+	 * @return 読み込んだバイト数
+	 * @exception IOException 読み込み中にエラーが発生した
+	 */
+	private static int readFully(InputStream stream, byte[] buf) throws IOException {
+		return stream.readNBytes(buf, 0, buf.length);
+	}
+}
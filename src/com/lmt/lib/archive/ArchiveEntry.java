@@ -22,6 +22,8 @@ public abstract class ArchiveEntry {
 	protected long size;
 	/** 最終更新日時 */
 	protected long lastModified;
+	/** 解凍後データのCRC32(アーカイブに記録されていない場合はnull) */
+	protected Integer crc;
 
 	/**
 	 * このエントリが場所(フォルダ)を表すかどうかを返します。
@@ -70,4 +72,14 @@ public abstract class ArchiveEntry {
 	public long getLastModified() {
 		return this.lastModified;
 	}
+
+	/**
+	 * 解凍後データのCRC32を取得します。
+	 * <p>CRC32はアーカイブに記録された値で、データを読み込まずに取得できます。
+	 * フォルダアーカイブのエントリや、CRC32を記録しない形式のエントリではnullを返します。</p>
+	 * @return 解凍後データのCRC32。記録されていない場合はnull。
+	 */
+	public Integer getCrc() {
+		return this.crc;
+	}
 }
@@ -2,13 +2,37 @@ package com.lmt.lib.archive;
 
 import static com.lmt.lib.archive.Assertion.*;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.lmt.lib.archive.impl.FolderArchive;
 import com.lmt.lib.archive.impl.SzjbArchive;
+import com.lmt.lib.archive.impl.SzjbNativeLoader;
+import com.lmt.lib.archive.impl.SzjbSignature;
+import com.lmt.lib.archive.jfr.ArchiveTypeDetectEvent;
 
 /**
  * アーカイブライブラリのマネージャクラスです。
@@ -27,12 +51,88 @@ import com.lmt.lib.archive.impl.SzjbArchive;
  * @author J-SON3
  */
 public class ArchiveManager {
+	/** 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限の既定値(32MiB) */
+	public static final long DEFAULT_NESTED_IN_MEMORY_LIMIT = 32L * 1024L * 1024L;
+
+	/** シグネチャによるアーカイブ種別判定を表す判定方法の名前(JFRイベント用) */
+	private static final String SIGNATURE_DETECTOR = "signature";
+
 	/** クラスのインスタンス */
-	private static ArchiveManager sInstance = null;
+	private static final ArchiveManager sInstance = new ArchiveManager();
 	/** 初期化済みフラグ */
-	private boolean mIsInitialized = false;
+	private volatile boolean mIsInitialized = false;
 	/** アーカイブ形式判定 */
-	private Function<Path, ArchiveType> mTypeTester = null;
+	private volatile Function<Path, ArchiveType> mTypeTester = null;
+	/** メモリ上・チャネルのアーカイブに割り当てる仮想パスの通し番号 */
+	private AtomicLong mSourceSerial = new AtomicLong(0L);
+	/** アーカイブ間で共有するコンテンツのキャッシュ */
+	private volatile ContentCache mContentCache = null;
+	/** アーカイブの通し番号ごとのオープン中のアーカイブの登録情報(最も長くアクセスされていないアーカイブが先頭) */
+	private LinkedHashMap<Long, Registration> mRegistry = new LinkedHashMap<>(16, 0.75f, true);
+	/** ネイティブリソースを保持しているアーカイブの数 */
+	private int mNativeHandleCount = 0;
+	/** ネイティブリソースを保持するアーカイブの数の上限 */
+	private volatile int mMaxNativeHandles = Integer.MAX_VALUE;
+	/** アーカイブを生成した箇所を記録するかどうか */
+	private volatile boolean mAllocationSiteCapture = false;
+	/** クローズされずに到達不能になったアーカイブの通知先 */
+	private volatile Consumer<OpenArchiveInfo> mLeakListener = null;
+	/** クローズされずに到達不能になったアーカイブの数 */
+	private AtomicLong mLeakCount = new AtomicLong(0L);
+	/** サイズの大きいコンテンツを一時ファイルへ解凍する方針 */
+	private volatile SpillPolicy mSpillPolicy = null;
+	/** 使用中の一時ファイルの合計サイズ */
+	private AtomicLong mScratchBytes = new AtomicLong(0L);
+	/** コンテンツの解凍に使用するメモリの予算 */
+	private volatile ExtractionBudget mExtractionBudget = null;
+	/** 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限 */
+	private volatile long mNestedInMemoryLimit = DEFAULT_NESTED_IN_MEMORY_LIMIT;
+	/** 圧縮ファイルをメモリマップするファイルサイズの上限 */
+	private volatile long mMemoryMapLimit = 0L;
+
+	/**
+	 * オープン中のアーカイブの登録情報
+	 * <p>アプリケーションがクローズせずに手放したアーカイブを回収できるよう、アーカイブは弱参照で保持する。</p>
+	 */
+	private static class Registration {
+		/** アーカイブ */
+		final WeakReference<Archive> archive;
+		/** ネイティブリソースを保持しているかどうか */
+		boolean live;
+
+		Registration(Archive archive, boolean live) {
+			this.archive = new WeakReference<>(archive);
+			this.live = live;
+		}
+	}
+
+	/**
+	 * 複合パスで開いたコンテンツの入力ストリーム
+	 * <p>コンテンツの読み込み中はコンテンツを含むアーカイブ(とその外側のアーカイブ)をオープンしたままにし、
+	 * クローズすると入力ストリームと共にアーカイブをクローズする。</p>
+	 */
+	private static class CompositeContentStream extends FilterInputStream {
+		/** コンテンツを含むアーカイブ */
+		private Archive mArchive;
+		/** クローズ済みかどうか */
+		private AtomicBoolean mClosed = new AtomicBoolean(false);
+
+		CompositeContentStream(InputStream in, Archive archive) {
+			super(in);
+			mArchive = archive;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (mClosed.compareAndSet(false, true)) {
+				try {
+					super.close();
+				} finally {
+					mArchive.close();
+				}
+			}
+		}
+	}
 
 	/** コンストラクタ */
 	private ArchiveManager() {
@@ -41,12 +141,10 @@ public class ArchiveManager {
 
 	/**
 	 * アーカイブマネージャのインスタンスを取得します。
+	 * <p>当メソッドは複数のスレッドから同時に呼び出しても常に同じインスタンスを返します。</p>
 	 * @return このオブジェクトのインスタンス
 	 */
 	public static ArchiveManager getInstance() {
-		if (sInstance == null) {
-			sInstance = new ArchiveManager();
-		}
 		return sInstance;
 	}
 
@@ -54,15 +152,16 @@ public class ArchiveManager {
 	 * アーカイブマネージャを初期化します。
 	 * <p>初期化することで、アーカイブのオープンが可能になります。
 	 * 一度初期化すると初期化のし直しはできなくなるので注意してください。</p>
+	 * <p>複数のスレッドから同時に呼び出された場合、初期化に成功するのはいずれか1つのスレッドのみです。</p>
 	 * @param typeTester アーカイブ種別判定処理
 	 * @exception IllegalStateException アーカイブマネージャが初期化済み
 	 * @exception NullPointerException typeJudgementがnull
 	 */
-	public void initialize(Function<Path, ArchiveType> typeTester) {
+	public synchronized void initialize(Function<Path, ArchiveType> typeTester) {
 		assertNotInitialized();
 		assertArgNotNull(typeTester, "typeJudgement");
-		mIsInitialized = true;
 		mTypeTester = typeTester;
+		mIsInitialized = true;
 	}
 
 	/**
@@ -75,6 +174,66 @@ public class ArchiveManager {
 		initialize(new StandardTypeTester());
 	}
 
+	/**
+	 * アーカイブマネージャを初期化し、ネイティブライブラリの初期化をバックグラウンドで開始します。
+	 * <p>アーカイブマネージャ自体の初期化は当メソッドの呼び出し時点で完了し、直ちにアーカイブのオープンが可能になります。
+	 * ネイティブライブラリの初期化完了前に {@link SzjbArchive} のオープンを行った場合、そのオープン処理は
+	 * 初期化の完了を待ってから実行されます。</p>
+	 * <p>ネイティブライブラリは指定フォルダ(nullの場合は {@link SzjbNativeLoader#getDefaultLibraryDirectory()})
+	 * に展開されます。同じフォルダに展開済みのライブラリがあり、内容の検証に成功した場合はそれを再利用します。</p>
+	 * <p>ウォームアップを指定すると、ライブラリのロード後にメモリ上の小さなアーカイブの解凍を繰り返し行い、
+	 * 初回アクセス時に発生するネイティブコード・JITコンパイルのコストを前倒しで消化します。
+	 * ウォームアップはライブラリのロード完了後にバックグラウンドで行われ、アーカイブのオープンはウォームアップの完了を待ちません。
+	 * ウォームアップに失敗しても初期化は失敗しません。</p>
+	 * <p>返されるFutureはライブラリのロード完了時(ウォームアップの開始前)に所要時間で完了します。初期化に失敗した場合はIOExceptionで例外的に完了します。
+	 * 初期化完了を通知するコールバックが必要な場合はFutureにコールバックを登録してください。</p>
+	 * @param typeTester アーカイブ種別判定処理
+	 * @param nativeLibraryDir ネイティブライブラリの展開先フォルダ。nullの場合は既定の展開先。
+	 * @param warmUp ネイティブライブラリ初期化後にウォームアップを行うかどうか
+	 * @return ネイティブライブラリの初期化完了時に所要時間で完了するFuture
+	 * @exception IllegalStateException アーカイブマネージャが初期化済み
+	 * @exception NullPointerException typeTesterがnull
+	 * @see #getNativeInitDuration()
+	 */
+	public CompletableFuture<Duration> initializeAsync(Function<Path, ArchiveType> typeTester, Path nativeLibraryDir,
+			boolean warmUp) {
+		initialize(typeTester);
+		return SzjbNativeLoader.initializeAsync(nativeLibraryDir, warmUp);
+	}
+
+	/**
+	 * アーカイブマネージャを初期化し、ネイティブライブラリの初期化をバックグラウンドで開始します。
+	 * <p>当メソッドはアーカイブ種別判定処理として {@link StandardTypeTester} を使用し、ネイティブライブラリを既定の展開先に展開し、
+	 * ウォームアップを行います。具体的な処理内容は {@link #initializeAsync(Function, Path, boolean)} を参照してください。</p>
+	 * @return ネイティブライブラリの初期化完了時に所要時間で完了するFuture
+	 * @exception IllegalStateException アーカイブマネージャが初期化済み
+	 */
+	public CompletableFuture<Duration> initializeAsync() {
+		return initializeAsync(new StandardTypeTester(), null, true);
+	}
+
+	/**
+	 * ネイティブライブラリの初期化に要した時間を取得します。
+	 * <p>ネイティブライブラリは {@link #initializeAsync(Function, Path, boolean)} で明示的に初期化されるか、
+	 * 最初の {@link SzjbArchive} のオープン時に初期化されます。返される時間はいずれの場合でも計測されます。
+	 * ウォームアップの時間は含まれません。</p>
+	 * @return ネイティブライブラリの初期化に要した時間。初期化が完了していない場合はnull。
+	 * @see #getNativeWarmUpDuration()
+	 */
+	public Duration getNativeInitDuration() {
+		return SzjbNativeLoader.getInitDuration();
+	}
+
+	/**
+	 * ネイティブライブラリのウォームアップに要した時間を取得します。
+	 * <p>ウォームアップは {@link #initializeAsync(Function, Path, boolean)} でウォームアップを指定した場合に、
+	 * ライブラリのロード完了後にバックグラウンドで行われます。</p>
+	 * @return ウォームアップに要した時間。ウォームアップを行っていない、完了していない、または失敗した場合はnull。
+	 */
+	public Duration getNativeWarmUpDuration() {
+		return SzjbNativeLoader.getWarmUpDuration();
+	}
+
 	/**
 	 * アーカイブマネージャが初期化済みかどうかを取得します。
 	 * @return 初期化済みであればtrue
@@ -83,6 +242,391 @@ public class ArchiveManager {
 		return mIsInitialized;
 	}
 
+	/**
+	 * アーカイブ間で共有するコンテンツのキャッシュを設定します。
+	 * <p>キャッシュを設定すると、全てのアーカイブのCRC32が記録されたコンテンツの読み込みでキャッシュが使用され、
+	 * CRC32・サイズ・SHA-256が一致するコンテンツは1個の解凍後データを共有します。詳細は {@link ContentCache} を参照してください。</p>
+	 * <p>キャッシュはアーカイブマネージャの初期化前後に関わらず設定できます。</p>
+	 * @param contentCache コンテンツのキャッシュ。nullを指定するとキャッシュを使用しなくなる。
+	 * @see ContentCache
+	 */
+	public void setContentCache(ContentCache contentCache) {
+		mContentCache = contentCache;
+	}
+
+	/**
+	 * アーカイブ間で共有するコンテンツのキャッシュを取得します。
+	 * @return コンテンツのキャッシュ。キャッシュを使用しない場合はnull。
+	 */
+	public ContentCache getContentCache() {
+		return mContentCache;
+	}
+
+	/**
+	 * サイズの大きいコンテンツを一時ファイルへ解凍する方針を設定します。
+	 * <p>方針を設定すると、全てのアーカイブでサイズが閾値を超えるコンテンツをオープンする際にメモリ上ではなく
+	 * 一時ファイルへ解凍するようになります。詳細は {@link SpillPolicy} を参照してください。</p>
+	 * <p>方針を変更しても、既にオープンしたコンテンツの一時ファイルはクローズするまで使用中の合計サイズに含まれます。</p>
+	 * @param spillPolicy 一時ファイルへ解凍する方針。nullを指定すると全てのコンテンツをメモリ上に解凍する。
+	 * @see #getScratchBytes()
+	 */
+	public void setSpillPolicy(SpillPolicy spillPolicy) {
+		mSpillPolicy = spillPolicy;
+	}
+
+	/**
+	 * サイズの大きいコンテンツを一時ファイルへ解凍する方針を取得します。
+	 * @return 一時ファイルへ解凍する方針。設定していない場合はnull。
+	 */
+	public SpillPolicy getSpillPolicy() {
+		return mSpillPolicy;
+	}
+
+	/**
+	 * 全てのアーカイブが使用中の一時ファイルの合計サイズを取得します。
+	 * @return 使用中の一時ファイルの合計サイズ(バイト数)
+	 * @see #setSpillPolicy(SpillPolicy)
+	 */
+	public long getScratchBytes() {
+		return mScratchBytes.get();
+	}
+
+	/**
+	 * コンテンツの解凍に使用するメモリの予算を設定します。
+	 * <p>予算を設定すると、全てのアーカイブでコンテンツ全体をメモリ上に解凍する前にエントリのサイズ分の予算を予約し、
+	 * 予算の残りが不足する場合は予算の動作に従って待機・エラー・ストリーミングへの切り替えを行います。
+	 * 詳細は {@link ExtractionBudget} を参照してください。</p>
+	 * <p>予算を変更しても、変更前の予算で予約した解凍は変更前の予算に解放されます。</p>
+	 * @param extractionBudget コンテンツの解凍に使用するメモリの予算。nullを指定すると制限しない。
+	 * @see ExtractionBudget
+	 */
+	public void setExtractionBudget(ExtractionBudget extractionBudget) {
+		mExtractionBudget = extractionBudget;
+	}
+
+	/**
+	 * コンテンツの解凍に使用するメモリの予算を取得します。
+	 * @return コンテンツの解凍に使用するメモリの予算。制限しない場合はnull。
+	 */
+	public ExtractionBudget getExtractionBudget() {
+		return mExtractionBudget;
+	}
+
+	/**
+	 * 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限を設定します。
+	 * <p>{@link Archive#openNested(ArchiveEntry)} は、サイズがこの上限以下のコンテンツをメモリ上に解凍したうえでオープンし、
+	 * 上限を超えるコンテンツは必要な部分だけを解凍しながら読み込みます。0を指定すると、チャネルでの読み込みに
+	 * 対応する全てのコンテンツを解凍しながら読み込むようになります。</p>
+	 * <p>上限の変更は、変更後にオープンする入れ子アーカイブから適用されます。</p>
+	 * @param limit 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限(バイト数)
+	 * @exception IllegalArgumentException limitが負の値
+	 * @see #DEFAULT_NESTED_IN_MEMORY_LIMIT
+	 */
+	public void setNestedInMemoryLimit(long limit) {
+		assertArg(limit >= 0L, "Argument 'limit' is negative. limit=%d", limit);
+		mNestedInMemoryLimit = limit;
+	}
+
+	/**
+	 * 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限を取得します。
+	 * @return 入れ子アーカイブをメモリ上に展開してオープンするサイズの上限(バイト数)
+	 */
+	public long getNestedInMemoryLimit() {
+		return mNestedInMemoryLimit;
+	}
+
+	/**
+	 * 圧縮ファイルをメモリマップするファイルサイズの上限を設定します。
+	 * <p>上限を設定すると、サイズがこの上限以下の圧縮ファイルをメモリマップし、ネイティブのコーデックからの読み込みを
+	 * システムコールなしで処理します。上限を超える圧縮ファイル、分割アーカイブのボリュームは常に先読みバッファを介して
+	 * 読み込みます。既定値は0(メモリマップしない)です。</p>
+	 * <p>メモリマップには以下の注意点があるため、オープン中に変更・削除されないファイルに対してのみ使用してください。</p>
+	 * <ul>
+	 * <li>マップはアーカイブのクローズ・サスペンド後もガベージコレクションされるまで解除されず、その間はメモリマップした
+	 * サイズ分の仮想メモリを使用し続けます。</li>
+	 * <li>Windowsではマップが解除されるまでファイルの削除・置き換えができません。</li>
+	 * <li>マップ中に他のプロセスがファイルを切り詰めると、読み込み時に {@link IOException} となるか、環境によっては
+	 * JVMが異常終了(SIGBUS)します。</li>
+	 * </ul>
+	 * <p>上限の変更は、変更後にオープン(またはレジューム)するアーカイブから適用されます。</p>
+	 * @param limit 圧縮ファイルをメモリマップするファイルサイズの上限(バイト数)。0を指定するとメモリマップしない。
+	 * @exception IllegalArgumentException limitが負の値
+	 */
+	public void setMemoryMapLimit(long limit) {
+		assertArg(limit >= 0L, "Argument 'limit' is negative. limit=%d", limit);
+		mMemoryMapLimit = limit;
+	}
+
+	/**
+	 * 圧縮ファイルをメモリマップするファイルサイズの上限を取得します。
+	 * @return 圧縮ファイルをメモリマップするファイルサイズの上限(バイト数)。メモリマップしない場合は0。
+	 */
+	public long getMemoryMapLimit() {
+		return mMemoryMapLimit;
+	}
+
+	/**
+	 * 一時ファイルの領域を予約する
+	 * @param size 予約するサイズ
+	 * @param maxScratchBytes 作業容量
+	 * @return 予約できた場合true、作業容量を超える場合false
+	 */
+	boolean reserveScratch(long size, long maxScratchBytes) {
+		while (true) {
+			var current = mScratchBytes.get();
+			if ((current + size) > maxScratchBytes) {
+				return false;
+			}
+			if (mScratchBytes.compareAndSet(current, current + size)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 予約した一時ファイルの領域を解放する
+	 * @param size 解放するサイズ
+	 */
+	void releaseScratch(long size) {
+		mScratchBytes.addAndGet(-size);
+	}
+
+	/**
+	 * ネイティブリソースを保持するアーカイブの数の上限を設定します。
+	 * <p>圧縮ファイルのアーカイブはオープン中、ネイティブライブラリのハンドルとファイルディスクリプタを保持します。
+	 * 上限を設定すると、保持しているアーカイブの数が上限を超えた時点で、最も長くアクセスされていないアーカイブから順に
+	 * ネイティブリソースを一時解放します。一時解放したアーカイブはオープン状態のままで、次回のアクセス時に
+	 * ネイティブリソースを自動で再取得します。従ってアプリケーションが一時解放を意識する必要はありません。</p>
+	 * <p>一時解放の対象は、当クラスまたは {@link ArchiveType} でファイルからオープンした圧縮ファイルのアーカイブのうち、
+	 * アクセス中の処理がなく、入れ子アーカイブをオープンしていないものです。メモリ上のデータ・チャネルからオープンした
+	 * アーカイブは上限の計算には含まれますが、一時解放されません。そのため、保持している数が一時的に上限を超えることがあります。</p>
+	 * @param maxNativeHandles ネイティブリソースを保持するアーカイブの数の上限。既定値は無制限({@link Integer#MAX_VALUE})。
+	 * @exception IllegalArgumentException maxNativeHandlesが1未満
+	 * @see #getNativeHandleCount()
+	 */
+	public void setMaxNativeHandles(int maxNativeHandles) {
+		assertArg(maxNativeHandles >= 1, "Argument 'maxNativeHandles' is less than 1. maxNativeHandles=%d",
+				maxNativeHandles);
+		mMaxNativeHandles = maxNativeHandles;
+		suspendIdleArchives(null);
+	}
+
+	/**
+	 * ネイティブリソースを保持するアーカイブの数の上限を取得します。
+	 * @return ネイティブリソースを保持するアーカイブの数の上限
+	 */
+	public int getMaxNativeHandles() {
+		return mMaxNativeHandles;
+	}
+
+	/**
+	 * ネイティブリソースを保持しているアーカイブの数を取得します。
+	 * <p>一時解放しているアーカイブは含まれません。</p>
+	 * @return ネイティブリソースを保持しているアーカイブの数
+	 * @see #setMaxNativeHandles(int)
+	 */
+	public int getNativeHandleCount() {
+		synchronized (mRegistry) {
+			return mNativeHandleCount;
+		}
+	}
+
+	/**
+	 * オープン中のアーカイブ一覧を取得します。
+	 * <p>当クラスまたは {@link ArchiveType} でオープンし、クローズされていない全てのアーカイブを、最も長くアクセスされていない順に返します。
+	 * 一時解放しているアーカイブも含まれます。返される一覧は呼び出し時点の複製です。</p>
+	 * @return オープン中のアーカイブ一覧
+	 */
+	public List<Archive> getOpenArchives() {
+		var archives = new ArrayList<Archive>();
+		synchronized (mRegistry) {
+			for (var registration : mRegistry.values()) {
+				var archive = registration.archive.get();
+				if (archive != null) {
+					archives.add(archive);
+				}
+			}
+		}
+		return archives;
+	}
+
+	/**
+	 * オープン中のアーカイブの診断情報一覧を取得します。
+	 * <p>{@link #getOpenArchives()} と同じ順で、アーカイブごとにオープンからの経過時間、推定ネイティブメモリ使用量、
+	 * 一時解放しているかどうか、生成箇所(記録している場合)を返します。クローズし忘れたアーカイブの調査に使用できます。</p>
+	 * @return オープン中のアーカイブの診断情報一覧
+	 * @see #setAllocationSiteCapture(boolean)
+	 */
+	public List<OpenArchiveInfo> getOpenArchiveInfo() {
+		var infos = new ArrayList<OpenArchiveInfo>();
+		for (var archive : getOpenArchives()) {
+			infos.add(archive.createInfo());
+		}
+		return infos;
+	}
+
+	/**
+	 * アーカイブを生成した箇所を記録するかどうかを設定します。
+	 * <p>有効にすると、以降にオープンするアーカイブごとに生成時のスタックトレースを記録し、
+	 * {@link #getOpenArchiveInfo()} およびリークの通知で参照できるようにします。スタックトレースの取得には
+	 * 相応の時間を要するため、クローズし忘れの調査時のみ有効にしてください。</p>
+	 * @param capture 生成箇所を記録する場合true。既定値はfalse。
+	 */
+	public void setAllocationSiteCapture(boolean capture) {
+		mAllocationSiteCapture = capture;
+	}
+
+	/**
+	 * アーカイブを生成した箇所を記録するかどうかを取得します。
+	 * @return 生成箇所を記録する場合true
+	 */
+	public boolean isAllocationSiteCapture() {
+		return mAllocationSiteCapture;
+	}
+
+	/**
+	 * クローズされずに到達不能になったアーカイブ(リーク)の通知先を設定します。
+	 * <p>アプリケーションがアーカイブをクローズせずに参照を手放すと、アーカイブがガベージコレクションで回収された後に
+	 * ライブラリがネイティブリソースを解放し、リークとして通知します。通知はライブラリ内部のスレッドから行われます。
+	 * 通知先の {@link OpenArchiveInfo} の推定ネイティブメモリ使用量は-1となります。</p>
+	 * <p>通知先を設定しない場合、リークは {@link System.Logger} に警告として出力されます。</p>
+	 * @param listener リークの通知先。nullの場合はログに出力する。
+	 * @see #getLeakCount()
+	 */
+	public void setLeakListener(Consumer<OpenArchiveInfo> listener) {
+		mLeakListener = listener;
+	}
+
+	/**
+	 * クローズされずに到達不能になったアーカイブ(リーク)の通知先を取得します。
+	 * @return リークの通知先。設定していない場合はnull。
+	 */
+	public Consumer<OpenArchiveInfo> getLeakListener() {
+		return mLeakListener;
+	}
+
+	/**
+	 * クローズされずに到達不能になったアーカイブ(リーク)を検出した数を取得します。
+	 * @return リークを検出した数
+	 */
+	public long getLeakCount() {
+		return mLeakCount.get();
+	}
+
+	/**
+	 * オープンしたアーカイブの登録
+	 * @param archive オープンしたアーカイブ
+	 */
+	void register(Archive archive) {
+		var live = archive.hasNativeResource();
+		synchronized (mRegistry) {
+			if (mRegistry.containsKey(archive.getSerial()) || !archive.isOpen()) {
+				return;
+			}
+			mRegistry.put(archive.getSerial(), new Registration(archive, live));
+			mNativeHandleCount += live ? 1 : 0;
+			archive.setRegistered(true);
+		}
+		if (live) {
+			suspendIdleArchives(archive);
+		}
+	}
+
+	/**
+	 * クローズしたアーカイブの登録解除
+	 * @param archive クローズしたアーカイブ
+	 */
+	void unregister(Archive archive) {
+		synchronized (mRegistry) {
+			var registration = mRegistry.remove(archive.getSerial());
+			if ((registration != null) && registration.live) {
+				mNativeHandleCount--;
+			}
+			archive.setRegistered(false);
+		}
+	}
+
+	/**
+	 * クローズされずに到達不能になったアーカイブの通知
+	 * @param serial アーカイブの通し番号
+	 * @param info アーカイブの診断情報
+	 */
+	void onLeak(long serial, OpenArchiveInfo info) {
+		synchronized (mRegistry) {
+			var registration = mRegistry.remove(serial);
+			if ((registration != null) && registration.live) {
+				mNativeHandleCount--;
+			}
+		}
+		mLeakCount.incrementAndGet();
+		var listener = mLeakListener;
+		if (listener != null) {
+			try {
+				listener.accept(info);
+			} catch (RuntimeException e) {
+				// 通知先の例外はクリーナーのスレッドに伝播させない
+			}
+		} else {
+			var logger = System.getLogger(ArchiveManager.class.getName());
+			logger.log(System.Logger.Level.WARNING, String.format("Archive was not closed: %s", info),
+					info.getAllocationSiteThrowable());
+		}
+	}
+
+	/**
+	 * アーカイブへのアクセス通知
+	 * @param archive アクセスされたアーカイブ
+	 * @param resumed ネイティブリソースを再取得した場合true
+	 */
+	void onAccess(Archive archive, boolean resumed) {
+		synchronized (mRegistry) {
+			var registration = mRegistry.get(archive.getSerial());
+			if ((registration == null) || !resumed || registration.live) {
+				return;
+			}
+			registration.live = true;
+			mNativeHandleCount++;
+		}
+		suspendIdleArchives(archive);
+	}
+
+	/**
+	 * 上限を超えた分のアーカイブのネイティブリソースを、最も長くアクセスされていないアーカイブから一時解放する
+	 * <p>アーカイブの一時解放はアーカイブのアクセスを待つ可能性があるため、登録情報のロックを保持せずに行う。</p>
+	 * @param exclude 一時解放しないアーカイブ(nullの場合は全て対象)
+	 */
+	private void suspendIdleArchives(Archive exclude) {
+		var candidates = new ArrayList<Map.Entry<Archive, Registration>>();
+		synchronized (mRegistry) {
+			if (mNativeHandleCount <= mMaxNativeHandles) {
+				return;
+			}
+			for (var registration : mRegistry.values()) {
+				var archive = registration.archive.get();
+				if (registration.live && (archive != null) && (archive != exclude)) {
+					candidates.add(Map.entry(archive, registration));
+				}
+			}
+		}
+		for (var candidate : candidates) {
+			synchronized (mRegistry) {
+				if (mNativeHandleCount <= mMaxNativeHandles) {
+					return;
+				}
+			}
+			if (candidate.getKey().trySuspend()) {
+				synchronized (mRegistry) {
+					// 登録情報の参照で最終アクセス順が変わらないよう、保持している登録情報を直接更新する
+					var registration = candidate.getValue();
+					if (registration.live && mRegistry.containsKey(candidate.getKey().getSerial())) {
+						registration.live = false;
+						mNativeHandleCount--;
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * 指定パスが示すフォルダ・ファイルのアーカイブ種別を判定します。
 	 * <p>アーカイブ種別判定処理内で例外がスローされた場合、その例外がそのままスローされます。</p>
@@ -102,6 +646,9 @@ public class ArchiveManager {
 	 * <p>指定したパスのフォルダ・ファイルをアーカイブ種別判定処理に入力し、アーカイブ種別を特定します。
 	 * アーカイブ種別を特定するためにフォルダ・ファイルをオープンしても差し支えありませんが、
 	 * 判定を完了させる前に必ずクローズしてください。クローズしないと後の処理で例外がスローされる可能性があります。</p>
+	 * <p>指定したパスが実在せず、末尾に "!" を付与した要素を含む場合は複合パスと見なし、アーカイブ内のアーカイブを
+	 * 入れ子アーカイブとしてオープンします。(例：<code>outer.zip!/inner.rar</code>)
+	 * 返された入れ子アーカイブをクローズすると、その外側のアーカイブも全てクローズされます。</p>
 	 * @param path オープンするアーカイブのパス
 	 * @return オープンされたアーカイブオブジェクト
 	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
@@ -116,12 +663,335 @@ public class ArchiveManager {
 		assertInitialized();
 		assertArgNotNull(path, "path");
 
+		// 実在しない複合パスは入れ子アーカイブとしてオープンする
+		var segments = Files.exists(path) ? List.<Path>of(path) : splitCompositePath(path);
+		return (segments.size() > 1) ? openNestedChain(segments, segments.size()) : openMain(path);
+	}
+
+	/**
+	 * メモリ上のデータからアーカイブをオープンします。
+	 * <p>当メソッドは指定データを {@link ByteBuffer} でラップし、{@link #open(ByteBuffer)} を呼び出します。</p>
+	 * @param data アーカイブデータ
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException dataがnull
+	 * @exception IOException データがアーカイブとして認識できない
+	 * @see #open(ByteBuffer)
+	 */
+	public Archive open(byte[] data) throws IOException {
+		assertInitialized();
+		assertArgNotNull(data, "data");
+		return open(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * メモリ上のデータからアーカイブをオープンします。
+	 * <p>アーカイブ種別はアーカイブ種別判定処理ではなく、データ先頭のシグネチャから判定します。
+	 * 判定可能なアーカイブ種別は {@link ArchiveType#ZIP}、{@link ArchiveType#SEVEN_ZIP}、{@link ArchiveType#RAR} です。</p>
+	 * <p>データの現在位置から終端までをアーカイブデータとして扱います。データは一時ファイルに書き出さず、
+	 * コピーもせずに直接参照するため、アーカイブのオープン中にデータの内容を変更しないでください。</p>
+	 * <p>オープンしたアーカイブには <code>memory-&lt;通し番号&gt;.&lt;種別ごとの拡張子&gt;</code> の仮想パスが割り当てられます。
+	 * 仮想パスはアーカイブの識別用であり、ファイルシステム上には存在しません。</p>
+	 * @param data アーカイブデータ
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException dataがnull
+	 * @exception IOException データがアーカイブとして認識できない
+	 * @see ArchiveType#open(Path, ByteBuffer)
+	 */
+	public Archive open(ByteBuffer data) throws IOException {
+		assertInitialized();
+		assertArgNotNull(data, "data");
+		var event = new ArchiveTypeDetectEvent();
+		event.begin();
+		var archiveType = SzjbSignature.probeType(data);
+		commitTypeDetectEvent(event, "memory", SIGNATURE_DETECTOR, archiveType);
+		archiveType = sourceArchiveType(archiveType);
+		return archiveType.open(sourcePath("memory", archiveType), data);
+	}
+
+	/**
+	 * チャネルからアーカイブをオープンします。
+	 * <p>アーカイブ種別はアーカイブ種別判定処理ではなく、チャネル先頭のシグネチャから判定します。
+	 * 判定可能なアーカイブ種別は {@link ArchiveType#ZIP}、{@link ArchiveType#SEVEN_ZIP}、{@link ArchiveType#RAR} です。</p>
+	 * <p>チャネルの先頭から終端までをアーカイブデータとして扱い、必要な部分だけをチャネルから直接読み込みます。
+	 * チャネルはアーカイブのクローズ時、またはアーカイブのオープンに失敗した時にクローズされます。</p>
+	 * <p>オープンしたアーカイブには <code>channel-&lt;通し番号&gt;.&lt;種別ごとの拡張子&gt;</code> の仮想パスが割り当てられます。
+	 * 仮想パスはアーカイブの識別用であり、ファイルシステム上には存在しません。</p>
+	 * @param channel アーカイブデータを読み込むチャネル
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException channelがnull
+	 * @exception IOException データがアーカイブとして認識できない、またはチャネルの読み込みエラー
+	 * @see ArchiveType#open(Path, SeekableByteChannel)
+	 */
+	public Archive open(SeekableByteChannel channel) throws IOException {
+		assertInitialized();
+		assertArgNotNull(channel, "channel");
+		try {
+			var event = new ArchiveTypeDetectEvent();
+			event.begin();
+			var archiveType = SzjbSignature.probeType(channel);
+			commitTypeDetectEvent(event, "channel", SIGNATURE_DETECTOR, archiveType);
+			archiveType = sourceArchiveType(archiveType);
+			return archiveType.open(sourcePath("channel", archiveType), channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 複合パスで指定したコンテンツ(ファイル)を開き入力ストリームを返します。
+	 * <p>複合パスは、アーカイブファイル名の末尾に "!" を付与し、アーカイブ内のエントリのパスを連結したパスです。
+	 * 入れ子アーカイブ内のコンテンツは "!" を付与したアーカイブファイル名を重ねることで指定できます。
+	 * (例：<code>outer.zip!/inner.rar!/page01.png</code>)</p>
+	 * <p>コンテンツに至るまでの各アーカイブは {@link #open(Path)} と {@link Archive#openNested(ArchiveEntry)}
+	 * によりオープンされ、返された入力ストリームをクローズするまでオープンしたままになります。そのため、入力ストリームは
+	 * 必ずクローズしてください。同じアーカイブ内の複数のコンテンツにアクセスする場合は当メソッドを繰り返し呼び出すのではなく、
+	 * {@link #open(Path)} で入れ子アーカイブをオープンしてください。</p>
+	 * @param compositePath オープンするコンテンツの複合パス
+	 * @return コンテンツにアクセスする入力ストリーム
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException compositePathがnull
+	 * @exception NoSuchFileException 複合パスではない、または複合パスが示すアーカイブ・コンテンツが見つからない
+	 * @exception IOException 複合パス上のアーカイブがアーカイブとして認識できない
+	 * @exception IOException その他入力エラー発生時
+	 * @see Archive#openNested(ArchiveEntry)
+	 */
+	public InputStream openContent(Path compositePath) throws IOException {
+		assertInitialized();
+		assertArgNotNull(compositePath, "compositePath");
+
+		var segments = splitCompositePath(compositePath);
+		var count = segments.size();
+		if (count < 2) {
+			throw new NoSuchFileException(compositePath.toString(), null, "This is not a composite path");
+		}
+		// 一時ファイル・ストリーミングで読み込むコンテンツはアーカイブを参照するため、アーカイブは入力ストリームと共にクローズする
+		var archive = openNestedChain(segments, count - 1);
+		try {
+			return new CompositeContentStream(archive.openContent(findEntry(archive, segments.get(count - 1))), archive);
+		} catch (IOException | RuntimeException e) {
+			archive.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 複数のアーカイブの整合性を並列に検査します。
+	 * <p>同時に検査するアーカイブ数は実行環境のプロセッサ数となります。詳細は {@link #verifyAll(Collection, int)} を参照してください。</p>
+	 * @param paths 検査するアーカイブのパス一覧
+	 * @return アーカイブごとの検査結果一覧
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException pathsがnull、またはpathsにnullが含まれる
+	 * @exception InterruptedIOException 検査の完了待ち中に割り込みが発生した
+	 * @see #verifyAll(Collection, int)
+	 */
+	public List<VerifyReport> verifyAll(Collection<Path> paths) throws IOException {
+		return verifyAll(paths, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 複数のアーカイブの整合性を並列に検査します。
+	 * <p>各アーカイブは {@link #open(Path)} でオープンされ、{@link Archive#verify()} で検査された後にクローズされます。
+	 * 同時に検査するアーカイブ数は最大でmaxConcurrencyとなり、それを超えるアーカイブは先行する検査の完了を待って検査されます。</p>
+	 * <p>アーカイブのオープンや検査でエラーが発生しても処理は中断されず、そのアーカイブの検査結果にエラーが記録されます。
+	 * 検査結果一覧は指定したパス一覧と同じ順番で返されます。</p>
+	 * @param paths 検査するアーカイブのパス一覧
+	 * @param maxConcurrency 同時に検査するアーカイブ数の上限
+	 * @return アーカイブごとの検査結果一覧
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException pathsがnull、またはpathsにnullが含まれる
+	 * @exception IllegalArgumentException maxConcurrencyが1未満
+	 * @exception InterruptedIOException 検査の完了待ち中に割り込みが発生した
+	 * @see Archive#verify()
+	 */
+	public List<VerifyReport> verifyAll(Collection<Path> paths, int maxConcurrency) throws IOException {
+		assertInitialized();
+		assertArgNotNull(paths, "paths");
+		assertArg(maxConcurrency >= 1, "Argument 'maxConcurrency' is less than 1. maxConcurrency=%d", maxConcurrency);
+		var targets = new ArrayList<>(paths);
+		targets.forEach(p -> assertArgNotNull(p, "paths[n]"));
+		if (targets.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// 検査用のスレッドプールで全アーカイブを検査する
+		var threadCount = Math.min(maxConcurrency, targets.size());
+		var executor = Executors.newFixedThreadPool(threadCount, r -> {
+			var thread = new Thread(r, "ArchiveVerifier");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			var futures = new ArrayList<Future<VerifyReport>>(targets.size());
+			for (var path : targets) {
+				futures.add(executor.submit(() -> verifyOne(path)));
+			}
+			var reports = new ArrayList<VerifyReport>(targets.size());
+			for (var future : futures) {
+				reports.add(future.get());
+			}
+			return reports;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			var ex = new InterruptedIOException("Interrupted while verifying archives");
+			ex.initCause(e);
+			throw ex;
+		} catch (ExecutionException e) {
+			// verifyOneは例外をスローしないため、ここに到達するのは想定外のエラーのみ
+			throw new IOException("Occurs exception during verify archives", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 1個のアーカイブの検査
+	 * @param path 検査するアーカイブのパス
+	 * @return 検査結果。オープン・検査でエラーが発生した場合はそのエラーを保持する検査結果。
+	 */
+	private VerifyReport verifyOne(Path path) {
+		try (var archive = open(path)) {
+			return archive.verify();
+		} catch (Exception e) {
+			return new VerifyReport(path, Collections.emptyList(), e);
+		}
+	}
+
+	/**
+	 * 複数のアーカイブの全てのコンテンツ(ファイル)から検索パターンと一致する箇所を並列に検索します。
+	 * <p>同時に検索するアーカイブ数は実行環境のプロセッサ数となります。詳細は
+	 * {@link #searchAll(Collection, SearchPattern, int, int)} を参照してください。</p>
+	 * @param paths 検索するアーカイブのパス一覧
+	 * @param pattern 検索パターン
+	 * @param limit 一致箇所の数の上限
+	 * @return 一致箇所一覧
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException pathsがnull、またはpathsにnullが含まれる
+	 * @exception NullPointerException patternがnull
+	 * @exception IllegalArgumentException limitが1未満
+	 * @exception InterruptedIOException 検索の完了待ち中に割り込みが発生した
+	 * @exception IOException アーカイブのオープン・コンテンツの読み込み中にエラーが発生した
+	 * @see #searchAll(Collection, SearchPattern, int, int)
+	 */
+	public List<SearchHit> searchAll(Collection<Path> paths, SearchPattern pattern, int limit) throws IOException {
+		return searchAll(paths, pattern, limit, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 複数のアーカイブの全てのコンテンツ(ファイル)から検索パターンと一致する箇所を並列に検索します。
+	 * <p>各アーカイブは {@link #open(Path)} でオープンされ、{@link Archive#search(SearchPattern, int)} と同じ方法で
+	 * 検索された後にクローズされます。同時に検索するアーカイブ数は最大でmaxConcurrencyとなり、
+	 * それを超えるアーカイブは先行する検索の完了を待って検索されます。</p>
+	 * <p>全てのアーカイブの一致箇所の合計が上限に達した時点で検索中の全てのアーカイブの検索を終了し、
+	 * 未検索のアーカイブはオープンしません。アーカイブのオープンや検索でエラーが発生した場合は全ての検索を中断し、例外をスローします。</p>
+	 * <p>一致箇所一覧は指定したパス一覧の順番、エントリのインデックス値、コンテンツ先頭からのオフセットの昇順に並びます。
+	 * 返される一致箇所のアーカイブは既にクローズされているため、コンテンツを読み込むには改めてアーカイブをオープンしてください。</p>
+	 * @param paths 検索するアーカイブのパス一覧
+	 * @param pattern 検索パターン
+	 * @param limit 一致箇所の数の上限
+	 * @param maxConcurrency 同時に検索するアーカイブ数の上限
+	 * @return 一致箇所一覧
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException pathsがnull、またはpathsにnullが含まれる
+	 * @exception NullPointerException patternがnull
+	 * @exception IllegalArgumentException limitが1未満
+	 * @exception IllegalArgumentException maxConcurrencyが1未満
+	 * @exception InterruptedIOException 検索の完了待ち中に割り込みが発生した
+	 * @exception IOException アーカイブのオープン・コンテンツの読み込み中にエラーが発生した
+	 * @see Archive#search(SearchPattern, int)
+	 */
+	public List<SearchHit> searchAll(Collection<Path> paths, SearchPattern pattern, int limit, int maxConcurrency)
+			throws IOException {
+		assertInitialized();
+		assertArgNotNull(paths, "paths");
+		assertArgNotNull(pattern, "pattern");
+		assertArg(limit >= 1, "Argument 'limit' is less than 1. limit=%d", limit);
+		assertArg(maxConcurrency >= 1, "Argument 'maxConcurrency' is less than 1. maxConcurrency=%d", maxConcurrency);
+		var targets = new ArrayList<>(paths);
+		targets.forEach(p -> assertArgNotNull(p, "paths[n]"));
+		if (targets.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// 検索用のスレッドプールで全アーカイブを検索し、一致箇所を共通の集計処理に集める
+		var collector = new SearchCollector(limit);
+		var threadCount = Math.min(maxConcurrency, targets.size());
+		var executor = Executors.newFixedThreadPool(threadCount, r -> {
+			var thread = new Thread(r, "ArchiveSearcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			var futures = new ArrayList<Future<Void>>(targets.size());
+			for (var i = 0; i < targets.size(); i++) {
+				var order = i;
+				var path = targets.get(i);
+				futures.add(executor.submit(() -> searchOne(order, path, pattern, collector)));
+			}
+			for (var future : futures) {
+				future.get();
+			}
+			return collector.getHits();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			var ex = new InterruptedIOException("Interrupted while searching archives");
+			ex.initCause(e);
+			throw ex;
+		} catch (ExecutionException e) {
+			var cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new IOException("Occurs exception during search archives", cause);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 1個のアーカイブの検索
+	 * @param order アーカイブの順番
+	 * @param path 検索するアーカイブのパス
+	 * @param pattern 検索パターン
+	 * @param collector 一致箇所の集計処理
+	 * @return null
+	 * @exception IOException アーカイブのオープン・コンテンツの読み込み中にエラーが発生した
+	 */
+	private Void searchOne(int order, Path path, SearchPattern pattern, SearchCollector collector) throws IOException {
+		if (collector.isFull()) {
+			return null;
+		}
+		try (var archive = open(path)) {
+			archive.searchMain(order, pattern, collector);
+		} catch (IOException e) {
+			throw new IOException(String.format("Failed to search archive: %s", path), e);
+		}
+		return null;
+	}
+
+	/**
+	 * アーカイブオープンのメイン処理
+	 * @param path オープンするアーカイブのパス
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception IOException {@link #open(Path)} に準ずる
+	 */
+	private Archive openMain(Path path) throws IOException {
 		// アーカイブ形式を判定する
 		var archiveType = ArchiveType.UNKNOWN;
+		var event = new ArchiveTypeDetectEvent();
+		event.begin();
 		try {
 			archiveType = mTypeTester.apply(path);
 		} catch (Exception e) {
 			throw new IOException("Occurs exception during judge archive type", e);
+		} finally {
+			commitTypeDetectEvent(event, path.toString(), mTypeTester.getClass().getName(), archiveType);
 		}
 
 		// アーカイブ形式の判定結果をチェックする
@@ -133,6 +1003,141 @@ public class ArchiveManager {
 		return archiveType.open(path);
 	}
 
+	/**
+	 * 入れ子アーカイブを連鎖的にオープンする
+	 * <p>オープンした入れ子アーカイブには外側のアーカイブが登録され、入れ子アーカイブのクローズ時に外側のアーカイブも
+	 * クローズされる。</p>
+	 * @param segments 複合パスの構成要素一覧
+	 * @param count オープンする構成要素の数
+	 * @return 最も内側のアーカイブオブジェクト
+	 * @exception IOException アーカイブのオープンエラー
+	 */
+	private Archive openNestedChain(List<Path> segments, int count) throws IOException {
+		var archive = openMain(segments.get(0));
+		try {
+			for (var i = 1; i < count; i++) {
+				var nested = archive.openNested(findEntry(archive, segments.get(i)));
+				nested.attach(archive);
+				archive = nested;
+			}
+			return archive;
+		} catch (IOException | RuntimeException e) {
+			archive.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * アーカイブから指定パスのエントリを検索する
+	 * @param archive アーカイブ
+	 * @param path エントリのパス
+	 * @return エントリ
+	 * @exception NoSuchFileException 指定パスのエントリが見つからない
+	 * @exception IOException エントリ情報の読み取りエラー
+	 */
+	private static ArchiveEntry findEntry(Archive archive, Path path) throws IOException {
+		if (!archive.canUsePath()) {
+			archive.cacheEntries();
+		}
+		var entry = archive.getEntry(path);
+		if (entry == null) {
+			throw new NoSuchFileException(archive.getPath().resolve(path).toString());
+		}
+		return entry;
+	}
+
+	/**
+	 * 複合パスを構成要素に分割する
+	 * <p>末尾に "!" の付いた要素までを1個の構成要素とし、"!" を除去したパスを返す。
+	 * 先頭の構成要素はファイルシステム上のパス、以降の構成要素はアーカイブ内のエントリのパスとなる。</p>
+	 * @param path 複合パス
+	 * @return 複合パスの構成要素一覧
+	 */
+	private static List<Path> splitCompositePath(Path path) {
+		var segments = new ArrayList<Path>();
+		var current = path.getRoot();
+		for (var name : path) {
+			var str = name.toString();
+			var isArchive = str.endsWith(Archive.NESTED_SEPARATOR) && (str.length() > Archive.NESTED_SEPARATOR.length());
+			var element = isArchive ? str.substring(0, str.length() - Archive.NESTED_SEPARATOR.length()) : str;
+			current = (current == null) ? Path.of(element) : current.resolve(element);
+			if (isArchive) {
+				segments.add(current);
+				current = null;
+			}
+		}
+		if (current != null) {
+			segments.add(current);
+		}
+		return segments;
+	}
+
+	/**
+	 * 複数のアーカイブを重ね合わせたオーバーレイアーカイブをオープンします。
+	 * <p>同じパスのエントリが複数のアーカイブに存在する場合、一覧の先頭に近いアーカイブのエントリが優先されます。
+	 * 詳細は {@link OverlayArchive} を参照してください。</p>
+	 * <p>オープンしたアーカイブには <code>overlay-&lt;通し番号&gt;</code> の仮想パスが割り当てられます。
+	 * 返されたアーカイブは指定したアーカイブを所有し、クローズすると指定した全てのアーカイブをクローズします。
+	 * オープンに失敗した場合、指定したアーカイブはクローズされません。</p>
+	 * @param layers 重ね合わせるアーカイブ一覧(優先順位の高い順)
+	 * @return オープンされたオーバーレイアーカイブ
+	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
+	 * @exception NullPointerException layersがnull、またはlayersにnullが含まれる
+	 * @exception IllegalArgumentException layersが空、または同じアーカイブが複数含まれる
+	 * @exception IllegalArgumentException layersにクローズされたアーカイブが含まれる
+	 * @exception IOException アーカイブのエントリ情報の読み取り中にエラー発生
+	 */
+	public OverlayArchive openOverlay(List<Archive> layers) throws IOException {
+		assertInitialized();
+		var startTime = System.nanoTime();
+		var path = Path.of(String.format("overlay-%d", mSourceSerial.incrementAndGet()));
+		var archive = new OverlayArchive(path, layers);
+		archive.getStatistics().recordOpen(System.nanoTime() - startTime);
+		register(archive);
+		return archive;
+	}
+
+	/**
+	 * メモリ上・チャネルのアーカイブ種別判定結果チェック
+	 * @param archiveType シグネチャから判定したアーカイブ種別
+	 * @return アーカイブ種別
+	 * @exception IOException アーカイブ種別を判定できなかった
+	 */
+	private static ArchiveType sourceArchiveType(ArchiveType archiveType) throws IOException {
+		if (!archiveType.isFileArchive()) {
+			throw new IOException("Can't judgement archive type");
+		}
+		return archiveType;
+	}
+
+	/**
+	 * メモリ上・チャネルのアーカイブに割り当てる仮想パス生成
+	 * @param prefix 仮想パスの接頭辞
+	 * @param archiveType アーカイブ種別
+	 * @return 仮想パス
+	 */
+	private Path sourcePath(String prefix, ArchiveType archiveType) {
+		var ext = (archiveType == ArchiveType.SEVEN_ZIP) ? "7z" : archiveType.name().toLowerCase();
+		return Path.of(String.format("%s-%d.%s", prefix, mSourceSerial.incrementAndGet(), ext));
+	}
+
+	/**
+	 * アーカイブ種別判定のJFRイベント出力
+	 * @param event JFRイベント
+	 * @param source 判定対象(パス、またはデータソースの種類)
+	 * @param detector 判定方法
+	 * @param archiveType 判定結果のアーカイブ種別
+	 */
+	private static void commitTypeDetectEvent(ArchiveTypeDetectEvent event, String source, String detector,
+			ArchiveType archiveType) {
+		if (event.shouldCommit()) {
+			event.path = source;
+			event.detector = detector;
+			event.archiveType = (archiveType == null) ? null : archiveType.name();
+			event.commit();
+		}
+	}
+
 	/**
 	 * アーカイブマネージャが初期化済みであることを確認するアサーション。
 	 * @exception IllegalStateException アーカイブマネージャが初期化されていない
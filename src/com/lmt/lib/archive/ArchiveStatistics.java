@@ -0,0 +1,484 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * アーカイブ処理の統計情報を集計するクラスです。
+ *
+ * <p>統計情報はアーカイブごとに集計され({@link Archive#getStatistics()})、同時に全アーカイブ共通の統計情報
+ * ({@link #getGlobal()})にも集計されます。集計される情報は以下の通りです。</p>
+ *
+ * <ul>
+ * <li>解凍処理で取り出したバイト数と、呼び出し元へ返したバイト数(両者の比が解凍の増幅率となります)</li>
+ * <li>解凍処理の呼び出し回数、ランダムアクセス時に解凍をやり直した回数、解凍済みブロックキャッシュのヒット・ミス数</li>
+ * <li>アーカイブのオープン・クローズ回数、ネイティブライブラリのアーカイブハンドル数</li>
+ * <li>アーカイブのオープン、エントリ列挙、コンテンツ読み込みのレイテンシのヒストグラム</li>
+ * </ul>
+ *
+ * <p>ソリッド圧縮されたアーカイブでは、ネイティブライブラリが対象コンテンツより前のデータを内部で解凍する場合があります。
+ * そのデータはネイティブライブラリ内で破棄されるため、解凍処理で取り出したバイト数には含まれません。</p>
+ *
+ * <p>統計情報は {@link #snapshot()} で取得した時点の値を {@link Snapshot} として取り出し、任意のメトリクスシステムへ出力できます。
+ * 当クラスの集計処理はスレッドセーフです。</p>
+ *
+ * @author J-SON3
+ */
+public final class ArchiveStatistics {
+	/** 全アーカイブ共通の統計情報 */
+	private static final ArchiveStatistics sGlobal = new ArchiveStatistics(null);
+
+	/** 集計先の上位の統計情報(全アーカイブ共通の統計情報の場合はnull) */
+	private ArchiveStatistics mParent;
+	/** 解凍処理で取り出したバイト数 */
+	private LongAdder mBytesDecoded = new LongAdder();
+	/** 呼び出し元へ返したバイト数 */
+	private LongAdder mBytesReturned = new LongAdder();
+	/** 解凍処理の呼び出し回数 */
+	private LongAdder mExtractCalls = new LongAdder();
+	/** 解凍済みブロックキャッシュのヒット数 */
+	private LongAdder mCacheHits = new LongAdder();
+	/** 解凍済みブロックキャッシュのミス数(解凍のやり直し回数) */
+	private LongAdder mCacheMisses = new LongAdder();
+	/** アーカイブのオープン回数 */
+	private LongAdder mOpenCount = new LongAdder();
+	/** アーカイブのクローズ回数 */
+	private LongAdder mCloseCount = new LongAdder();
+	/** ネイティブライブラリのアーカイブハンドル数 */
+	private LongAdder mLiveNativeHandles = new LongAdder();
+	/** オープンのレイテンシ */
+	private Recorder mOpenLatency = new Recorder();
+	/** エントリ列挙のレイテンシ */
+	private Recorder mEnumerateLatency = new Recorder();
+	/** コンテンツ読み込みのレイテンシ */
+	private Recorder mReadLatency = new Recorder();
+
+	/**
+	 * レイテンシのヒストグラムを表すクラスです。
+	 *
+	 * <p>ヒストグラムはナノ秒単位のレイテンシを2のべき乗ごとの階級に分けて集計します。
+	 * 階級 i には 2<sup>i</sup> 以上 2<sup>i+1</sup> 未満のレイテンシが集計されます(階級0には0ナノ秒も含みます)。</p>
+	 */
+	public static final class Histogram {
+		/** 階級数 */
+		public static final int BUCKET_COUNT = 64;
+
+		/** 階級ごとの度数 */
+		private long[] mBuckets;
+		/** 度数の合計 */
+		private long mCount;
+		/** レイテンシの合計(ナノ秒) */
+		private long mTotalNanos;
+
+		/**
+		 * コンストラクタ
+		 * @param buckets 階級ごとの度数
+		 * @param totalNanos レイテンシの合計(ナノ秒)
+		 */
+		Histogram(long[] buckets, long totalNanos) {
+			mBuckets = buckets;
+			mTotalNanos = totalNanos;
+			for (var count : buckets) {
+				mCount += count;
+			}
+		}
+
+		/**
+		 * 度数の合計を取得します。
+		 * @return 度数の合計
+		 */
+		public long getCount() {
+			return mCount;
+		}
+
+		/**
+		 * レイテンシの合計を取得します。
+		 * @return レイテンシの合計(ナノ秒)
+		 */
+		public long getTotalNanos() {
+			return mTotalNanos;
+		}
+
+		/**
+		 * レイテンシの平均を取得します。
+		 * @return レイテンシの平均(ナノ秒)。度数が0の場合は0。
+		 */
+		public double getMeanNanos() {
+			return (mCount == 0L) ? 0.0 : ((double)mTotalNanos / mCount);
+		}
+
+		/**
+		 * 指定階級の度数を取得します。
+		 * @param bucket 階級
+		 * @return 指定階級の度数
+		 * @exception IndexOutOfBoundsException bucketが0未満または {@link #BUCKET_COUNT} 以上
+		 */
+		public long getBucket(int bucket) {
+			assertArgIndexRange(bucket, BUCKET_COUNT, "bucket");
+			return mBuckets[bucket];
+		}
+
+		/**
+		 * 指定パーセンタイルのレイテンシの上限を取得します。
+		 * <p>指定パーセンタイルが含まれる階級の上限値を返します。値は階級の幅の分だけ実際より大きくなる場合があります。</p>
+		 * @param percentile パーセンタイル(0～100)
+		 * @return 指定パーセンタイルのレイテンシの上限(ナノ秒)。度数が0の場合は0。
+		 * @exception IllegalArgumentException percentileが0未満または100超過
+		 */
+		public long getPercentileNanos(double percentile) {
+			assertArg((percentile >= 0.0) && (percentile <= 100.0), "Argument 'percentile' is out of range. percentile=%s", percentile);
+			if (mCount == 0L) {
+				return 0L;
+			}
+			var threshold = (long)Math.ceil(mCount * (percentile / 100.0));
+			var accumulated = 0L;
+			for (var i = 0; i < BUCKET_COUNT; i++) {
+				accumulated += mBuckets[i];
+				if ((accumulated >= threshold) && (accumulated > 0L)) {
+					return (i >= 62) ? Long.MAX_VALUE : ((1L << (i + 1)) - 1L);
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("count=%d, mean=%.0fns, p50=%dns, p99=%dns",
+					mCount, getMeanNanos(), getPercentileNanos(50.0), getPercentileNanos(99.0));
+		}
+	}
+
+	/**
+	 * ある時点の統計情報を表すクラスです。
+	 * <p>当クラスのオブジェクトは {@link ArchiveStatistics#snapshot()} により生成され、内容は変化しません。</p>
+	 */
+	public static final class Snapshot {
+		/** 解凍処理で取り出したバイト数 */
+		private long mBytesDecoded;
+		/** 呼び出し元へ返したバイト数 */
+		private long mBytesReturned;
+		/** 解凍処理の呼び出し回数 */
+		private long mExtractCalls;
+		/** 解凍済みブロックキャッシュのヒット数 */
+		private long mCacheHits;
+		/** 解凍済みブロックキャッシュのミス数 */
+		private long mCacheMisses;
+		/** アーカイブのオープン回数 */
+		private long mOpenCount;
+		/** アーカイブのクローズ回数 */
+		private long mCloseCount;
+		/** ネイティブライブラリのアーカイブハンドル数 */
+		private long mLiveNativeHandles;
+		/** オープンのレイテンシ */
+		private Histogram mOpenLatency;
+		/** エントリ列挙のレイテンシ */
+		private Histogram mEnumerateLatency;
+		/** コンテンツ読み込みのレイテンシ */
+		private Histogram mReadLatency;
+
+		/**
+		 * コンストラクタ
+		 * @param s 統計情報
+		 */
+		Snapshot(ArchiveStatistics s) {
+			mBytesDecoded = s.mBytesDecoded.sum();
+			mBytesReturned = s.mBytesReturned.sum();
+			mExtractCalls = s.mExtractCalls.sum();
+			mCacheHits = s.mCacheHits.sum();
+			mCacheMisses = s.mCacheMisses.sum();
+			mOpenCount = s.mOpenCount.sum();
+			mCloseCount = s.mCloseCount.sum();
+			mLiveNativeHandles = s.mLiveNativeHandles.sum();
+			mOpenLatency = s.mOpenLatency.toHistogram();
+			mEnumerateLatency = s.mEnumerateLatency.toHistogram();
+			mReadLatency = s.mReadLatency.toHistogram();
+		}
+
+		/**
+		 * 解凍処理で取り出したバイト数を取得します。
+		 * <p>ランダムアクセスのために解凍をやり直した場合、読み捨てたデータも含みます。</p>
+		 * @return 解凍処理で取り出したバイト数
+		 */
+		public long getBytesDecoded() {
+			return mBytesDecoded;
+		}
+
+		/**
+		 * 呼び出し元へ返したバイト数を取得します。
+		 * @return 呼び出し元へ返したバイト数
+		 */
+		public long getBytesReturned() {
+			return mBytesReturned;
+		}
+
+		/**
+		 * 解凍の増幅率(呼び出し元へ返した1バイトあたりの解凍処理で取り出したバイト数)を取得します。
+		 * @return 解凍の増幅率。呼び出し元へ返したバイト数が0の場合は0。
+		 */
+		public double getAmplification() {
+			return (mBytesReturned == 0L) ? 0.0 : ((double)mBytesDecoded / mBytesReturned);
+		}
+
+		/**
+		 * 解凍処理の呼び出し回数を取得します。
+		 * @return 解凍処理の呼び出し回数
+		 */
+		public long getExtractCalls() {
+			return mExtractCalls;
+		}
+
+		/**
+		 * ランダムアクセス時に解凍をやり直した回数を取得します。
+		 * <p>解凍済みブロックキャッシュのミス数と同じ値です。予算の不足時に先頭から解凍しながら読み込むコンテンツで、
+		 * 他の処理のために中断した解凍を先頭からやり直した回数を含みます。</p>
+		 * @return 解凍をやり直した回数
+		 */
+		public long getBlockRestarts() {
+			return mCacheMisses;
+		}
+
+		/**
+		 * 解凍済みブロックキャッシュのヒット数を取得します。
+		 * @return 解凍済みブロックキャッシュのヒット数
+		 */
+		public long getCacheHits() {
+			return mCacheHits;
+		}
+
+		/**
+		 * 解凍済みブロックキャッシュのミス数を取得します。
+		 * @return 解凍済みブロックキャッシュのミス数
+		 */
+		public long getCacheMisses() {
+			return mCacheMisses;
+		}
+
+		/**
+		 * アーカイブのオープン回数を取得します。
+		 * @return アーカイブのオープン回数
+		 */
+		public long getOpenCount() {
+			return mOpenCount;
+		}
+
+		/**
+		 * アーカイブのクローズ回数を取得します。
+		 * @return アーカイブのクローズ回数
+		 */
+		public long getCloseCount() {
+			return mCloseCount;
+		}
+
+		/**
+		 * ネイティブライブラリのアーカイブハンドル数を取得します。
+		 * <p>ネイティブライブラリでオープンされ、まだクローズされていない圧縮ファイルの数です。</p>
+		 * @return ネイティブライブラリのアーカイブハンドル数
+		 */
+		public long getLiveNativeHandles() {
+			return mLiveNativeHandles;
+		}
+
+		/**
+		 * アーカイブのオープンのレイテンシを取得します。
+		 * @return アーカイブのオープンのレイテンシ
+		 */
+		public Histogram getOpenLatency() {
+			return mOpenLatency;
+		}
+
+		/**
+		 * エントリ列挙のレイテンシを取得します。
+		 * @return エントリ列挙のレイテンシ
+		 */
+		public Histogram getEnumerateLatency() {
+			return mEnumerateLatency;
+		}
+
+		/**
+		 * コンテンツ読み込み({@link Archive#openContent(int)}、{@link Archive#readAllBytes(int)} 等)のレイテンシを取得します。
+		 * @return コンテンツ読み込みのレイテンシ
+		 */
+		public Histogram getReadLatency() {
+			return mReadLatency;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("decoded=%d, returned=%d, amplification=%.2f, extracts=%d, restarts=%d, " +
+					"cacheHits=%d, opens=%d, closes=%d, liveHandles=%d",
+					mBytesDecoded, mBytesReturned, getAmplification(), mExtractCalls, mCacheMisses,
+					mCacheHits, mOpenCount, mCloseCount, mLiveNativeHandles);
+		}
+	}
+
+	/** レイテンシの集計処理 */
+	private static class Recorder {
+		/** 階級ごとの度数 */
+		final AtomicLongArray buckets = new AtomicLongArray(Histogram.BUCKET_COUNT);
+		/** レイテンシの合計(ナノ秒) */
+		final LongAdder totalNanos = new LongAdder();
+
+		void record(long nanos) {
+			var value = Math.max(nanos, 1L);
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(value));
+			totalNanos.add(Math.max(nanos, 0L));
+		}
+
+		Histogram toHistogram() {
+			var counts = new long[Histogram.BUCKET_COUNT];
+			for (var i = 0; i < counts.length; i++) {
+				counts[i] = buckets.get(i);
+			}
+			return new Histogram(counts, totalNanos.sum());
+		}
+
+		void reset() {
+			for (var i = 0; i < Histogram.BUCKET_COUNT; i++) {
+				buckets.set(i, 0L);
+			}
+			totalNanos.reset();
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param parent 集計先の上位の統計情報。nullの場合は上位へ集計しない。
+	 */
+	private ArchiveStatistics(ArchiveStatistics parent) {
+		mParent = parent;
+	}
+
+	/**
+	 * アーカイブごとの統計情報を生成する
+	 * @return 全アーカイブ共通の統計情報にも集計する統計情報
+	 */
+	static ArchiveStatistics create() {
+		return new ArchiveStatistics(sGlobal);
+	}
+
+	/**
+	 * 全アーカイブ共通の統計情報を取得します。
+	 * @return 全アーカイブ共通の統計情報
+	 */
+	public static ArchiveStatistics getGlobal() {
+		return sGlobal;
+	}
+
+	/**
+	 * 現時点の統計情報を取得します。
+	 * <p>各値は個別に読み取られるため、他のスレッドが集計中の場合は値の間で厳密な整合性は保証されません。</p>
+	 * @return 現時点の統計情報
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * 統計情報をリセットします。
+	 * <p>ネイティブライブラリのアーカイブハンドル数は現在の状態を表す値のためリセットされません。
+	 * アーカイブごとの統計情報をリセットしても、全アーカイブ共通の統計情報には影響しません。</p>
+	 */
+	public void reset() {
+		mBytesDecoded.reset();
+		mBytesReturned.reset();
+		mExtractCalls.reset();
+		mCacheHits.reset();
+		mCacheMisses.reset();
+		mOpenCount.reset();
+		mCloseCount.reset();
+		mOpenLatency.reset();
+		mEnumerateLatency.reset();
+		mReadLatency.reset();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * アーカイブのオープンを集計する
+	 * @param nanos オープンに要した時間(ナノ秒)
+	 */
+	void recordOpen(long nanos) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mOpenCount.increment();
+			s.mOpenLatency.record(nanos);
+		}
+	}
+
+	/**
+	 * アーカイブのクローズを集計する
+	 */
+	void recordClose() {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mCloseCount.increment();
+		}
+	}
+
+	/**
+	 * エントリ列挙を集計する
+	 * @param nanos エントリ列挙に要した時間(ナノ秒)
+	 */
+	void recordEnumerate(long nanos) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mEnumerateLatency.record(nanos);
+		}
+	}
+
+	/**
+	 * コンテンツ読み込みを集計する
+	 * @param nanos コンテンツ読み込みに要した時間(ナノ秒)
+	 */
+	void recordRead(long nanos) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mReadLatency.record(nanos);
+		}
+	}
+
+	/**
+	 * 解凍処理を集計する
+	 * @param bytesDecoded 解凍処理で取り出したバイト数
+	 */
+	void recordDecoded(long bytesDecoded) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mExtractCalls.increment();
+			s.mBytesDecoded.add(bytesDecoded);
+		}
+	}
+
+	/**
+	 * 呼び出し元へ返したバイト数を集計する
+	 * @param bytesReturned 呼び出し元へ返したバイト数
+	 */
+	void recordReturned(long bytesReturned) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mBytesReturned.add(bytesReturned);
+		}
+	}
+
+	/**
+	 * 解凍済みブロックキャッシュの参照を集計する
+	 * @param hit キャッシュにヒットした場合true
+	 */
+	void recordBlockCache(boolean hit) {
+		for (var s = this; s != null; s = s.mParent) {
+			(hit ? s.mCacheHits : s.mCacheMisses).increment();
+		}
+	}
+
+	/**
+	 * ネイティブライブラリのアーカイブハンドル数の増減を集計する
+	 * @param delta 増減数
+	 */
+	void recordNativeHandles(int delta) {
+		for (var s = this; s != null; s = s.mParent) {
+			s.mLiveNativeHandles.add(delta);
+		}
+	}
+}
@@ -3,11 +3,14 @@ package com.lmt.lib.archive;
 import static com.lmt.lib.archive.Assertion.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
 import com.lmt.lib.archive.impl.FolderArchive;
 import com.lmt.lib.archive.impl.SzjbArchive;
+import com.lmt.lib.archive.jfr.ArchiveOpenEvent;
 
 /**
  * アーカイブの種別を表す列挙型です。
@@ -20,28 +23,40 @@ public enum ArchiveType {
 	 * <p>フォルダをアーカイブファイルと見なします。指定フォルダ配下の各サブフォルダとファイルがエントリになります。</p>
 	 * <p>対応クラス：{@link FolderArchive}</p>
 	 */
-	FOLDER(p -> new FolderArchive(p), false),
+	FOLDER(p -> new FolderArchive(p), null, null, false),
 	/**
 	 * ZIPファイル
 	 * <p>対応クラス：{@link SzjbArchive.Zip}</p>
 	 */
-	ZIP(p -> new SzjbArchive.Zip(p), true),
+	ZIP(
+			p -> new SzjbArchive.Zip(p),
+			(p, d) -> new SzjbArchive.Zip(p, d),
+			(p, c) -> new SzjbArchive.Zip(p, c),
+			true),
 	/**
 	 * 7-ZIPファイル
 	 * <p>対応クラス：{@link SzjbArchive.SevenZip}</p>
 	 */
-	SEVEN_ZIP(p -> new SzjbArchive.SevenZip(p), true),
+	SEVEN_ZIP(
+			p -> new SzjbArchive.SevenZip(p),
+			(p, d) -> new SzjbArchive.SevenZip(p, d),
+			(p, c) -> new SzjbArchive.SevenZip(p, c),
+			true),
 	/**
 	 * RARファイル
-	 * <p>この形式ではRAR4/RAR5の両方に対応し、RAR5形式でのオープンを優先します。</p>
+	 * <p>この形式ではRAR4/RAR5の両方に対応し、ファイル先頭のシグネチャで判定した形式でオープンします。</p>
 	 * <p>対応クラス：{@link SzjbArchive.Rar}</p>
 	 */
-	RAR(p -> new SzjbArchive.Rar(p), true),
+	RAR(
+			p -> new SzjbArchive.Rar(p),
+			(p, d) -> new SzjbArchive.Rar(p, d),
+			(p, c) -> new SzjbArchive.Rar(p, c),
+			true),
 	/**
 	 * アーカイブ種別不明
 	 * <p>アーカイブライブラリが対応しない形式の種別であることを表します。</p>
 	 */
-	UNKNOWN(p -> {throw new UnsupportedOperationException("Can't open archive because unknown archive type.");}, false);
+	UNKNOWN(p -> {throw new UnsupportedOperationException("Can't open archive because unknown archive type.");}, null, null, false);
 
 	/** アーカイブのオープン処理インターフェイス */
 	@FunctionalInterface
@@ -49,17 +64,33 @@ public enum ArchiveType {
 		Archive open(Path path) throws IOException;
 	}
 
+	/** データソースからのアーカイブのオープン処理インターフェイス */
+	@FunctionalInterface
+	private interface SourceCreator<T> {
+		Archive open(Path path, T source) throws IOException;
+	}
+
 	/** アーカイブオープン処理 */
 	private Creator mCreator;
+	/** メモリ上のデータからのアーカイブオープン処理 */
+	private SourceCreator<ByteBuffer> mBufferCreator;
+	/** チャネルからのアーカイブオープン処理 */
+	private SourceCreator<SeekableByteChannel> mChannelCreator;
 	/** アーカイブがファイルであるかどうか */
 	private boolean mIsFileArchive;
 
 	/**
 	 * コンストラクタ
 	 * @param creator アーカイブオープン処理
+	 * @param bufferCreator メモリ上のデータからのアーカイブオープン処理
+	 * @param channelCreator チャネルからのアーカイブオープン処理
+	 * @param isFileArchive アーカイブがファイルであるかどうか
 	 */
-	private ArchiveType(Creator creator, boolean isFileArchive) {
+	private ArchiveType(Creator creator, SourceCreator<ByteBuffer> bufferCreator,
+			SourceCreator<SeekableByteChannel> channelCreator, boolean isFileArchive) {
 		mCreator = creator;
+		mBufferCreator = bufferCreator;
+		mChannelCreator = channelCreator;
 		mIsFileArchive = isFileArchive;
 	}
 
@@ -108,6 +139,89 @@ public enum ArchiveType {
 	 */
 	public Archive open(Path path) throws IOException {
 		assertArgNotNull(path, "path");
-		return mCreator.open(path);
+		var event = new ArchiveOpenEvent();
+		event.begin();
+		var startTime = System.nanoTime();
+		return commitOpenEvent(event, startTime, mCreator.open(path));
+	}
+
+	/**
+	 * メモリ上のデータからアーカイブの種別に応じたオープン処理を実行します。
+	 * <p>データの現在位置から終端までをアーカイブデータとして扱います。データはコピーせずに直接参照するため、
+	 * アーカイブのオープン中にデータの内容を変更しないでください。</p>
+	 * <p>パスはアーカイブを識別するためだけに使用され、ファイルシステムへのアクセスは行いません。</p>
+	 * @param path アーカイブのパス(識別用)
+	 * @param data アーカイブデータ
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception NullPointerException pathがnull
+	 * @exception NullPointerException dataがnull
+	 * @exception IOException データがアーカイブとして認識出来ない
+	 * @exception UnsupportedOperationException ファイルアーカイブ以外の種別に対して当メソッドを呼び出した
+	 * @see ArchiveManager#open(ByteBuffer)
+	 */
+	public Archive open(Path path, ByteBuffer data) throws IOException {
+		assertArgNotNull(path, "path");
+		assertArgNotNull(data, "data");
+		var event = new ArchiveOpenEvent();
+		event.begin();
+		var startTime = System.nanoTime();
+		return commitOpenEvent(event, startTime, sourceCreator(mBufferCreator).open(path, data));
+	}
+
+	/**
+	 * チャネルからアーカイブの種別に応じたオープン処理を実行します。
+	 * <p>チャネルの先頭から終端までをアーカイブデータとして扱います。チャネルはアーカイブのクローズ時、
+	 * またはアーカイブのオープンに失敗した時にクローズされます。</p>
+	 * <p>パスはアーカイブを識別するためだけに使用され、ファイルシステムへのアクセスは行いません。</p>
+	 * @param path アーカイブのパス(識別用)
+	 * @param channel アーカイブデータを読み込むチャネル
+	 * @return オープンされたアーカイブオブジェクト
+	 * @exception NullPointerException pathがnull
+	 * @exception NullPointerException channelがnull
+	 * @exception IOException データがアーカイブとして認識出来ない、またはチャネルの読み込みエラー
+	 * @exception UnsupportedOperationException ファイルアーカイブ以外の種別に対して当メソッドを呼び出した
+	 * @see ArchiveManager#open(SeekableByteChannel)
+	 */
+	public Archive open(Path path, SeekableByteChannel channel) throws IOException {
+		assertArgNotNull(path, "path");
+		assertArgNotNull(channel, "channel");
+		var event = new ArchiveOpenEvent();
+		event.begin();
+		var startTime = System.nanoTime();
+		return commitOpenEvent(event, startTime, sourceCreator(mChannelCreator).open(path, channel));
+	}
+
+	/**
+	 * アーカイブオープンの統計情報集計とJFRイベント出力
+	 * @param event JFRイベント
+	 * @param startTime オープン開始時のナノ秒時間
+	 * @param archive オープンされたアーカイブオブジェクト
+	 * @return オープンされたアーカイブオブジェクト
+	 */
+	private Archive commitOpenEvent(ArchiveOpenEvent event, long startTime, Archive archive) {
+		archive.getStatistics().recordOpen(System.nanoTime() - startTime);
+		ArchiveManager.getInstance().register(archive);
+		if (event.shouldCommit()) {
+			event.archiveType = name();
+			event.path = archive.getPath().toString();
+			event.entryCount = archive.getEntryCount();
+			event.commit();
+		}
+		return archive;
+	}
+
+	/**
+	 * データソースからのアーカイブオープン処理取得
+	 * @param <T> データソースの型
+	 * @param creator データソースからのアーカイブオープン処理
+	 * @return データソースからのアーカイブオープン処理
+	 * @exception UnsupportedOperationException データソースからのオープンに非対応の種別
+	 */
+	private <T> SourceCreator<T> sourceCreator(SourceCreator<T> creator) {
+		if (creator == null) {
+			var msg = String.format("Can't open archive from data source because %s archive type.", this);
+			throw new UnsupportedOperationException(msg);
+		}
+		return creator;
 	}
 }
@@ -0,0 +1,359 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 解凍後のコンテンツを内容で識別し、複数のアーカイブ間で共有するキャッシュです。
+ *
+ * <p>多数のアーカイブに同じコンテンツ(クレジットページ、表紙、効果音など)が含まれる場合、アーカイブごとに解凍・保持すると
+ * 同じデータが重複してメモリ上に置かれます。当クラスはアーカイブに記録されたCRC32とサイズを鍵に解凍後データを1個だけ保持し、
+ * 異なるアーカイブ・インデックス値のコンテンツから内容が同じデータを参照させます。</p>
+ *
+ * <p>CRC32・サイズは内容が異なっていても一致し得るため、それだけで内容が同じとは見なしません。各コンテンツは初回の読み込み時に
+ * 解凍してSHA-256を算出し、同じ鍵を持つ保持データとSHA-256が一致した場合にのみそのデータを共有します。SHA-256が一致しない
+ * (CRC32・サイズが偶然一致した)コンテンツは別のデータとして保持します。2回目以降の読み込みでは解凍せずに共有先のデータを返します。
+ * アーカイブファイルのサイズまたは最終更新日時が変わった場合は、同じパスであっても初回の読み込みとして扱います。</p>
+ *
+ * <p>キャッシュは {@link ArchiveManager#setContentCache(ContentCache)} で設定し、CRC32が記録されたコンテンツの
+ * {@link Archive#readAllBytes(ArchiveEntry)}、{@link Archive#openContent(ArchiveEntry)} 等の読み込みで使用されます。
+ * 保持するデータの合計サイズが容量を超える場合は、最も長く参照されていないデータから破棄します。</p>
+ *
+ * <p>当クラスは複数のスレッドから同時に使用できます。</p>
+ *
+ * @author J-SON3
+ */
+public class ContentCache {
+	/** 内容の照合に使用するダイジェストアルゴリズム */
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	/** 容量(バイト数) */
+	private long mCapacity;
+	/** CRC32・サイズごとの保持データ一覧 */
+	private Map<Key, List<Blob>> mBlobs = new HashMap<>();
+	/** 保持データの参照順(最も長く参照されていないデータが先頭) */
+	private LinkedHashMap<Blob, Blob> mLru = new LinkedHashMap<>(16, 0.75f, true);
+	/** コンテンツごとの参照先の保持データ */
+	private Map<String, Blob> mRefs = new HashMap<>();
+	/** 保持データの合計サイズ */
+	private long mStoredBytes = 0L;
+	/** 保持データを参照するコンテンツの合計サイズ */
+	private long mReferencedBytes = 0L;
+	/** 保持データを返した回数 */
+	private long mHitCount = 0L;
+	/** コンテンツを解凍した回数 */
+	private long mMissCount = 0L;
+	/** CRC32・サイズが一致しSHA-256が一致しなかった回数 */
+	private long mCollisionCount = 0L;
+
+	/** CRC32・サイズの鍵 */
+	private static class Key {
+		/** CRC32 */
+		final int crc;
+		/** サイズ */
+		final long size;
+
+		Key(int crc, long size) {
+			this.crc = crc;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			var other = (Key)obj;
+			return (crc == other.crc) && (size == other.size);
+		}
+
+		@Override
+		public int hashCode() {
+			return crc ^ Long.hashCode(size);
+		}
+	}
+
+	/** 保持データ */
+	private static class Blob {
+		/** CRC32・サイズの鍵 */
+		final Key key;
+		/** 解凍後データ */
+		final byte[] data;
+		/** 解凍後データのSHA-256 */
+		final byte[] digest;
+		/** このデータを参照するコンテンツ一覧 */
+		final Set<String> refs = new HashSet<>();
+
+		Blob(Key key, byte[] data, byte[] digest) {
+			this.key = key;
+			this.data = data;
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * コンテンツの解凍処理
+	 */
+	@FunctionalInterface
+	interface Loader {
+		/**
+		 * コンテンツを解凍する
+		 * @return 解凍後データ
+		 * @exception IOException 入力エラー発生時
+		 */
+		byte[] load() throws IOException;
+	}
+
+	/**
+	 * 新しいキャッシュを構築します。
+	 * @param capacity 容量(バイト数)
+	 * @exception IllegalArgumentException capacityが1未満
+	 */
+	public ContentCache(long capacity) {
+		assertArg(capacity >= 1L, "Argument 'capacity' is less than 1. capacity=%d", capacity);
+		mCapacity = capacity;
+	}
+
+	/**
+	 * 容量を取得します。
+	 * @return 容量(バイト数)
+	 */
+	public long getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * 保持しているデータの合計サイズを取得します。
+	 * @return 保持データの合計サイズ(バイト数)
+	 */
+	public synchronized long getStoredBytes() {
+		return mStoredBytes;
+	}
+
+	/**
+	 * 保持しているデータを参照するコンテンツの合計サイズを取得します。
+	 * <p>同じデータを複数のコンテンツが参照する場合、コンテンツの数だけ加算されます。</p>
+	 * @return 保持データを参照するコンテンツの合計サイズ(バイト数)
+	 */
+	public synchronized long getReferencedBytes() {
+		return mReferencedBytes;
+	}
+
+	/**
+	 * 重複排除率を取得します。
+	 * <p>重複排除率は、保持データを参照するコンテンツの合計サイズを保持データの合計サイズで割った値です。
+	 * 重複するコンテンツがない場合は1.0、2個のアーカイブが同じコンテンツを参照する場合は2.0となります。</p>
+	 * @return 重複排除率。データを保持していない場合は1.0。
+	 */
+	public synchronized double getDedupRatio() {
+		return (mStoredBytes == 0L) ? 1.0 : ((double)mReferencedBytes / (double)mStoredBytes);
+	}
+
+	/**
+	 * 保持データを返した回数を取得します。
+	 * @return 保持データを返した回数
+	 */
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	/**
+	 * キャッシュを通じてコンテンツを解凍した回数を取得します。
+	 * <p>保持データと内容が一致し、解凍後にそのデータを共有したコンテンツも含みます。</p>
+	 * @return コンテンツを解凍した回数
+	 */
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * CRC32・サイズが一致し、SHA-256が一致しなかった回数を取得します。
+	 * @return CRC32・サイズが偶然一致した回数
+	 */
+	public synchronized long getCollisionCount() {
+		return mCollisionCount;
+	}
+
+	/**
+	 * 保持している全てのデータを破棄します。
+	 * <p>集計した回数はリセットされません。</p>
+	 */
+	public synchronized void clear() {
+		mBlobs.clear();
+		mLru.clear();
+		mRefs.clear();
+		mStoredBytes = 0L;
+		mReferencedBytes = 0L;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized String toString() {
+		return String.format("ContentCache{capacity=%d, stored=%d, referenced=%d, dedupRatio=%.2f, hits=%d, misses=%d}",
+				mCapacity, mStoredBytes, mReferencedBytes, getDedupRatio(), mHitCount, mMissCount);
+	}
+
+	/**
+	 * キャッシュを利用したコンテンツ読み込み
+	 * <p>返されるデータは複数のコンテンツで共有されるため、内容を変更してはならない。</p>
+	 * @param archive コンテンツを含むアーカイブ
+	 * @param entry コンテンツのエントリ(CRC32が記録されていること)
+	 * @param loader コンテンツの解凍処理
+	 * @return 解凍後データ
+	 * @exception IOException 入力エラー発生時
+	 */
+	byte[] read(Archive archive, ArchiveEntry entry, Loader loader) throws IOException {
+		var key = new Key(entry.getCrc(), entry.getSize());
+		var ref = ref(archive, entry);
+		synchronized (this) {
+			var blob = mRefs.get(ref);
+			if ((blob != null) && blob.key.equals(key)) {
+				// SHA-256の照合を済ませたコンテンツは解凍せずに共有先のデータを返す
+				return hit(blob);
+			}
+			mMissCount++;
+		}
+
+		// 解凍とSHA-256の算出はロック外で行う
+		var data = loader.load();
+		var digest = digest(data);
+		synchronized (this) {
+			if (data.length != entry.getSize()) {
+				// エントリ情報と解凍後のサイズが異なる場合は保持しない
+				return data;
+			}
+			var candidates = mBlobs.computeIfAbsent(key, k -> new ArrayList<>(1));
+			for (var blob : candidates) {
+				if (Arrays.equals(blob.digest, digest)) {
+					link(ref, blob);
+					mLru.get(blob);
+					return blob.data;
+				}
+			}
+			if (!candidates.isEmpty()) {
+				mCollisionCount++;
+			}
+			if (data.length > mCapacity) {
+				if (candidates.isEmpty()) {
+					mBlobs.remove(key);
+				}
+				return data;
+			}
+			var blob = new Blob(key, data, digest);
+			candidates.add(blob);
+			mLru.put(blob, blob);
+			mStoredBytes += data.length;
+			link(ref, blob);
+			evict(blob);
+			return data;
+		}
+	}
+
+	/**
+	 * コンテンツの識別子生成
+	 * <p>同じパスのアーカイブファイルが置き換えられた場合に置き換え前の共有先を返さないよう、アーカイブファイルの
+	 * サイズと最終更新日時を識別子に含める。入れ子アーカイブは実在する外側のアーカイブファイルのものを使用する。</p>
+	 * @param archive コンテンツを含むアーカイブ
+	 * @param entry コンテンツのエントリ
+	 * @return コンテンツの識別子
+	 */
+	private static String ref(Archive archive, ArchiveEntry entry) {
+		var path = archive.getPath();
+		var stamp = "";
+		for (var p = path; (p != null) && stamp.isEmpty(); p = p.getParent()) {
+			var file = p.toString();
+			if (file.endsWith(Archive.NESTED_SEPARATOR)) {
+				file = file.substring(0, file.length() - Archive.NESTED_SEPARATOR.length());
+			} else if (p != path) {
+				continue;
+			}
+			try {
+				var attrs = Files.readAttributes(Path.of(file), BasicFileAttributes.class);
+				stamp = attrs.size() + "\u0000" + attrs.lastModifiedTime();
+			} catch (IOException | RuntimeException e) {
+				// ファイルの属性を取得できない場合はパスとインデックス値のみで識別する
+			}
+		}
+		return path.toString() + '\u0000' + stamp + '\u0000' + entry.getIndex();
+	}
+
+	/**
+	 * 保持データを返す
+	 * @param blob 保持データ
+	 * @return 解凍後データ
+	 */
+	private byte[] hit(Blob blob) {
+		mHitCount++;
+		mLru.get(blob);
+		return blob.data;
+	}
+
+	/**
+	 * コンテンツの参照先を設定する
+	 * @param ref コンテンツの識別子
+	 * @param blob 参照先の保持データ
+	 */
+	private void link(String ref, Blob blob) {
+		var old = mRefs.put(ref, blob);
+		if (old == blob) {
+			return;
+		}
+		if (old != null) {
+			old.refs.remove(ref);
+			mReferencedBytes -= old.data.length;
+		}
+		blob.refs.add(ref);
+		mReferencedBytes += blob.data.length;
+	}
+
+	/**
+	 * 容量を超えた分の保持データを参照されていない順に破棄する
+	 * @param keep 破棄しない保持データ
+	 */
+	private void evict(Blob keep) {
+		var iterator = mLru.keySet().iterator();
+		while ((mStoredBytes > mCapacity) && iterator.hasNext()) {
+			var blob = iterator.next();
+			if (blob == keep) {
+				continue;
+			}
+			iterator.remove();
+			mStoredBytes -= blob.data.length;
+			mReferencedBytes -= (long)blob.data.length * blob.refs.size();
+			blob.refs.forEach(mRefs::remove);
+			var candidates = mBlobs.get(blob.key);
+			candidates.remove(blob);
+			if (candidates.isEmpty()) {
+				mBlobs.remove(blob.key);
+			}
+		}
+	}
+
+	/**
+	 * SHA-256算出
+	 * @param data データ
+	 * @return SHA-256
+	 */
+	private static byte[] digest(byte[] data) {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256は全てのJava実行環境で利用可能
+			throw new IllegalStateException(e);
+		}
+	}
+}
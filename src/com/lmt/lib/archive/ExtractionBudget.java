@@ -0,0 +1,354 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * コンテンツの解凍に使用するメモリの合計サイズを制限する予算を表すクラスです。
+ *
+ * <p>圧縮ファイルのアーカイブは {@link Archive#readAllBytes(ArchiveEntry)}、{@link Archive#openContent(ArchiveEntry)} 等で
+ * コンテンツ全体をメモリ上に解凍します。多数のスレッドが同時にサイズの大きいコンテンツを読み込むと、解凍中のデータの合計が
+ * ヒープの容量を超える可能性があります。予算を {@link ArchiveManager#setExtractionBudget(ExtractionBudget)} で設定すると、
+ * 全てのアーカイブの解凍の前にエントリのサイズ({@link ArchiveEntry#getSize()})分の予算を予約し、解凍したデータを手放すと解放します。
+ * バイトデータを返す読み込みではデータを返す時点で、入力ストリームを返す読み込みでは入力ストリームをクローズした時点で解放します。
+ * クローズされずに到達不能になった入力ストリームの予約は、ガベージコレクションの後に解放されます。</p>
+ *
+ * <p>予約するサイズが予算の残りを超える場合の動作は {@link Mode} で指定します。待機する解凍は要求順に並び、
+ * 先に並んだ解凍より後の解凍が先に予約することはありません。予算の容量を超えるサイズのコンテンツは、
+ * 他に解凍中のコンテンツがない時に予算の容量全体を予約して解凍します。</p>
+ *
+ * <p>フォルダアーカイブのようにコンテンツをメモリ上に解凍しないアーカイブ、および {@link SpillPolicy} により
+ * 一時ファイルへ解凍するコンテンツは予算の対象外です。</p>
+ *
+ * <p>当クラスは複数のスレッドから同時に使用できます。</p>
+ *
+ * @author J-SON3
+ */
+public class ExtractionBudget {
+	/** ストリーミングへの切り替えを表す予約結果 */
+	static final long STREAM = -1L;
+
+	/**
+	 * 予算の残りが不足する場合の動作を表す列挙型です。
+	 */
+	public enum Mode {
+		/** 予算の残りが足りるまで待機する */
+		BLOCK,
+		/** 待機せずにIOExceptionをスローする */
+		FAIL_FAST,
+		/**
+		 * コンテンツのオープンでは、コンテンツ全体を保持せずに先頭から1回だけ解凍しながら読み込む入力ストリームを返す。
+		 * 入力ストリームは解凍後データを受け渡すパイプの容量(最大64KiB)だけを待機せずに予約する。
+		 * バイトデータの読み込みでは予算の残りが足りるまで待機する。
+		 */
+		STREAM,
+	}
+
+	/** 予算の容量 */
+	private long mCapacity;
+	/** 予算の残りが不足する場合の動作 */
+	private Mode mMode;
+	/** 予約・解放の排他制御(待機の公平性を保つ) */
+	private ReentrantLock mLock = new ReentrantLock(true);
+	/** 予約・解放の通知 */
+	private Condition mChanged = mLock.newCondition();
+	/** 待機中の予約の順番待ち */
+	private ArrayDeque<Object> mQueue = new ArrayDeque<>();
+	/** 予約中の合計サイズ */
+	private long mInFlightBytes = 0L;
+	/** 予約中の合計サイズの最大値 */
+	private long mPeakInFlightBytes = 0L;
+	/** 予約した回数 */
+	private long mAdmittedCount = 0L;
+	/** 待機した回数 */
+	private long mWaitCount = 0L;
+	/** 待機した時間の合計(ナノ秒) */
+	private long mTotalWaitNanos = 0L;
+	/** 待機した時間の最大値(ナノ秒) */
+	private long mMaxWaitNanos = 0L;
+	/** 予約を拒否した回数 */
+	private long mRejectedCount = 0L;
+	/** ストリーミングに切り替えた回数 */
+	private long mStreamedCount = 0L;
+
+	/**
+	 * 新しい予算を構築します。
+	 * @param capacity 予算の容量(バイト数)
+	 * @param mode 予算の残りが不足する場合の動作
+	 * @exception IllegalArgumentException capacityが1未満
+	 * @exception NullPointerException modeがnull
+	 */
+	public ExtractionBudget(long capacity, Mode mode) {
+		assertArg(capacity >= 1L, "Argument 'capacity' is less than 1. capacity=%d", capacity);
+		assertArgNotNull(mode, "mode");
+		mCapacity = capacity;
+		mMode = mode;
+	}
+
+	/**
+	 * 予算の容量を取得します。
+	 * @return 予算の容量(バイト数)
+	 */
+	public long getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * 予算の残りが不足する場合の動作を取得します。
+	 * @return 予算の残りが不足する場合の動作
+	 */
+	public Mode getMode() {
+		return mMode;
+	}
+
+	/**
+	 * 予約中の合計サイズを取得します。
+	 * @return 予約中の合計サイズ(バイト数)
+	 */
+	public long getInFlightBytes() {
+		mLock.lock();
+		try {
+			return mInFlightBytes;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約中の合計サイズの最大値を取得します。
+	 * @return 予約中の合計サイズの最大値(バイト数)
+	 */
+	public long getPeakInFlightBytes() {
+		mLock.lock();
+		try {
+			return mPeakInFlightBytes;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予算の残りが足りるのを待機している解凍の数を取得します。
+	 * @return 待機している解凍の数
+	 */
+	public int getQueueLength() {
+		mLock.lock();
+		try {
+			return mQueue.size();
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約した回数を取得します。
+	 * @return 予約した回数
+	 */
+	public long getAdmittedCount() {
+		mLock.lock();
+		try {
+			return mAdmittedCount;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約のために待機した回数を取得します。
+	 * @return 待機した回数
+	 */
+	public long getWaitCount() {
+		mLock.lock();
+		try {
+			return mWaitCount;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約のために待機した時間の合計を取得します。
+	 * @return 待機した時間の合計
+	 */
+	public Duration getTotalWaitTime() {
+		mLock.lock();
+		try {
+			return Duration.ofNanos(mTotalWaitNanos);
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約のために待機した時間の最大値を取得します。
+	 * @return 待機した時間の最大値
+	 */
+	public Duration getMaxWaitTime() {
+		mLock.lock();
+		try {
+			return Duration.ofNanos(mMaxWaitNanos);
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予算の残りが不足するため予約を拒否した回数を取得します。
+	 * @return 予約を拒否した回数
+	 * @see Mode#FAIL_FAST
+	 */
+	public long getRejectedCount() {
+		mLock.lock();
+		try {
+			return mRejectedCount;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予算の残りが不足するためストリーミングに切り替えた回数を取得します。
+	 * @return ストリーミングに切り替えた回数
+	 * @see Mode#STREAM
+	 */
+	public long getStreamedCount() {
+		mLock.lock();
+		try {
+			return mStreamedCount;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		mLock.lock();
+		try {
+			return String.format("ExtractionBudget{capacity=%d, mode=%s, inFlight=%d, queued=%d, waits=%d, rejected=%d}",
+					mCapacity, mMode, mInFlightBytes, mQueue.size(), mWaitCount, mRejectedCount);
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予算の予約
+	 * <p>予算の容量を超えるサイズは予算の容量全体を予約する。ただしストリーミングに切り替えられる場合は、
+	 * 予算の容量を超えるサイズは常にストリーミングに切り替える。</p>
+	 * @param size 予約するサイズ
+	 * @param canStream ストリーミングに切り替えられるかどうか
+	 * @return 予約したサイズ。ストリーミングに切り替える場合は {@link #STREAM}。
+	 * @exception IOException 予算の残りが不足し、動作が {@link Mode#FAIL_FAST}
+	 * @exception InterruptedIOException 待機中に割り込みが発生した
+	 */
+	long acquire(long size, boolean canStream) throws IOException {
+		var streamable = (mMode == Mode.STREAM) && canStream;
+		var reserve = Math.min(Math.max(size, 0L), mCapacity);
+		mLock.lock();
+		try {
+			if (streamable && (size > mCapacity)) {
+				return STREAM;
+			}
+			if (mQueue.isEmpty() && fits(reserve)) {
+				admit(reserve);
+				return reserve;
+			}
+			if (mMode == Mode.FAIL_FAST) {
+				mRejectedCount++;
+				var msg = String.format("Extraction budget exhausted (%dbytes requested, %dbytes in flight, capacity %dbytes)",
+						size, mInFlightBytes, mCapacity);
+				throw new IOException(msg);
+			}
+			if (streamable) {
+				return STREAM;
+			}
+
+			// 先に待機している予約がなくなり、予算の残りが足りるまで待機する
+			var ticket = new Object();
+			var startTime = System.nanoTime();
+			mQueue.addLast(ticket);
+			mWaitCount++;
+			try {
+				while ((mQueue.peekFirst() != ticket) || !fits(reserve)) {
+					mChanged.await();
+				}
+				admit(reserve);
+				return reserve;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for extraction budget");
+			} finally {
+				mQueue.remove(ticket);
+				mChanged.signalAll();
+				var waitNanos = System.nanoTime() - startTime;
+				mTotalWaitNanos += waitNanos;
+				mMaxWaitNanos = Math.max(mMaxWaitNanos, waitNanos);
+			}
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約した予算の解放
+	 * @param reserved {@link #acquire(long, boolean)} で予約したサイズ
+	 */
+	void release(long reserved) {
+		if (reserved <= 0L) {
+			return;
+		}
+		mLock.lock();
+		try {
+			mInFlightBytes -= reserved;
+			mChanged.signalAll();
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * ストリーミングへの切り替え
+	 * <p>ストリーミングに切り替えた回数を集計し、ストリーミングで使用するバッファのサイズを予約する。
+	 * ストリーミングは待機しないため、バッファは予算の残りに関わらず直ちに予約する(予算の容量を一時的に超えることがある)。
+	 * 予約したバッファは他の予約と同様に {@link #release(long)} で解放する。</p>
+	 * @param size ストリーミングで使用するバッファのサイズ
+	 * @return 予約したサイズ
+	 */
+	long acquireStream(long size) {
+		mLock.lock();
+		try {
+			mStreamedCount++;
+			mInFlightBytes += size;
+			mPeakInFlightBytes = Math.max(mPeakInFlightBytes, mInFlightBytes);
+			return size;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * 予約するサイズが予算の残りに収まるかどうか
+	 * @param reserve 予約するサイズ
+	 * @return 予算の残りに収まる場合true
+	 */
+	private boolean fits(long reserve) {
+		return (mInFlightBytes + reserve) <= mCapacity;
+	}
+
+	/**
+	 * 予約の確定
+	 * @param reserve 予約するサイズ
+	 */
+	private void admit(long reserve) {
+		mInFlightBytes += reserve;
+		mPeakInFlightBytes = Math.max(mPeakInFlightBytes, mInFlightBytes);
+		mAdmittedCount++;
+	}
+}
@@ -0,0 +1,402 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * アーカイブ内の全てのコンテンツ(ファイル)の一覧と、各コンテンツのダイジェスト値を表すクラスです。
+ *
+ * <p>マニフェストは {@link Archive#createManifest(String...)} によって生成されます。各コンテンツのパス・サイズ・最終更新日時と、
+ * 生成時に指定したアルゴリズムで算出したダイジェスト値を保持します。エントリはパスの昇順に並びます。</p>
+ *
+ * <p>ダイジェストアルゴリズムには {@link MessageDigest} がサポートするアルゴリズム名(例："SHA-256")に加え、
+ * チェックサムの "CRC32"、"CRC32C"、"ADLER32" を指定できます。</p>
+ *
+ * <p>マニフェストは {@link #write(Writer)} により行指向のテキスト形式で出力できます。1行目はヘッダ行で、
+ * 2行目以降は1行が1コンテンツに対応し、パス・サイズ・最終更新日時(エポックミリ秒)・各ダイジェスト値(16進数)をタブ区切りで並べます。
+ * エントリはパスの昇順に出力されるため、2個のマニフェストは行単位の差分ツールで安価に比較できます。</p>
+ *
+ * @author J-SON3
+ */
+public final class Manifest {
+	/** ヘッダ行の先頭文字列 */
+	private static final String HEADER = "#manifest";
+	/** 列の区切り文字 */
+	private static final char SEPARATOR = '\t';
+	/** 16進数文字 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/** ダイジェストアルゴリズム一覧 */
+	private List<String> mAlgorithms;
+	/** エントリ一覧 */
+	private List<Entry> mEntries;
+
+	/**
+	 * 1個のコンテンツの情報を表すクラスです。
+	 */
+	public static final class Entry {
+		/** コンテンツのパス */
+		private Path mPath;
+		/** コンテンツのサイズ */
+		private long mSize;
+		/** コンテンツの最終更新日時 */
+		private long mLastModified;
+		/** ダイジェスト値(アルゴリズム一覧と同じ順番) */
+		private byte[][] mDigests;
+
+		/**
+		 * コンストラクタ
+		 * @param path コンテンツのパス
+		 * @param size コンテンツのサイズ
+		 * @param lastModified コンテンツの最終更新日時
+		 * @param digests ダイジェスト値
+		 */
+		Entry(Path path, long size, long lastModified, byte[][] digests) {
+			mPath = path;
+			mSize = size;
+			mLastModified = lastModified;
+			mDigests = digests;
+		}
+
+		/**
+		 * コンテンツのパスを取得します。
+		 * @return コンテンツのパス
+		 */
+		public Path getPath() {
+			return mPath;
+		}
+
+		/**
+		 * コンテンツのサイズを取得します。
+		 * <p>サイズはダイジェスト値の算出時に実際に読み込んだバイト数です。</p>
+		 * @return コンテンツのサイズ
+		 */
+		public long getSize() {
+			return mSize;
+		}
+
+		/**
+		 * コンテンツの最終更新日時を取得します。
+		 * @return コンテンツの最終更新日時
+		 * @see ArchiveEntry#getLastModified()
+		 */
+		public long getLastModified() {
+			return mLastModified;
+		}
+
+		/**
+		 * 指定番号のアルゴリズムのダイジェスト値を取得します。
+		 * @param algorithmIndex アルゴリズムの番号({@link Manifest#getAlgorithms()} のインデックス値)
+		 * @return ダイジェスト値
+		 * @exception IndexOutOfBoundsException algorithmIndexが範囲外
+		 */
+		public byte[] getDigest(int algorithmIndex) {
+			assertArgIndexRange(algorithmIndex, mDigests.length, "algorithmIndex");
+			return mDigests[algorithmIndex].clone();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			var sb = new StringBuilder();
+			appendLine(sb, this);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * 1個のコンテンツのダイジェスト値を算出する出力ストリーム
+	 * <p>書き込まれたデータを保持せず、各アルゴリズムのダイジェストへ直接入力する。クローズ時にダイジェスト値を確定する。</p>
+	 */
+	static class DigestStream extends OutputStream {
+		/** ダイジェスト算出処理 */
+		private Object[] mDigesters;
+		/** 書き込まれたバイト数 */
+		private long mSize = 0L;
+		/** 確定したダイジェスト値(確定前はnull) */
+		private byte[][] mDigests = null;
+
+		/**
+		 * コンストラクタ
+		 * @param algorithms ダイジェストアルゴリズム一覧
+		 */
+		DigestStream(List<String> algorithms) {
+			mDigesters = new Object[algorithms.size()];
+			for (var i = 0; i < mDigesters.length; i++) {
+				mDigesters[i] = createDigester(algorithms.get(i));
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void write(byte[] b, int off, int len) {
+			for (var digester : mDigesters) {
+				if (digester instanceof MessageDigest) {
+					((MessageDigest)digester).update(b, off, len);
+				} else {
+					((Checksum)digester).update(b, off, len);
+				}
+			}
+			mSize += len;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close() {
+			if (mDigests != null) {
+				return;
+			}
+			mDigests = new byte[mDigesters.length][];
+			for (var i = 0; i < mDigesters.length; i++) {
+				if (mDigesters[i] instanceof MessageDigest) {
+					mDigests[i] = ((MessageDigest)mDigesters[i]).digest();
+				} else {
+					// チェックサムは32ビットのビッグエンディアンで表す
+					var value = ((Checksum)mDigesters[i]).getValue();
+					mDigests[i] = new byte[] { (byte)(value >> 24), (byte)(value >> 16), (byte)(value >> 8), (byte)value };
+				}
+			}
+		}
+
+		/**
+		 * 書き込まれたバイト数取得
+		 * @return 書き込まれたバイト数
+		 */
+		long getSize() {
+			return mSize;
+		}
+
+		/**
+		 * 確定したダイジェスト値取得
+		 * @return 確定したダイジェスト値。確定前はnull。
+		 */
+		byte[][] getDigests() {
+			return mDigests;
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param algorithms ダイジェストアルゴリズム一覧
+	 * @param entries エントリ一覧(順不同)
+	 */
+	Manifest(List<String> algorithms, List<Entry> entries) {
+		var sorted = new ArrayList<>(entries);
+		sorted.sort(Comparator.comparing(e -> pathString(e.getPath())));
+		mAlgorithms = Collections.unmodifiableList(new ArrayList<>(algorithms));
+		mEntries = Collections.unmodifiableList(sorted);
+	}
+
+	/**
+	 * ダイジェストアルゴリズム一覧を取得します。
+	 * <p>返されるリストは変更できません。</p>
+	 * @return ダイジェストアルゴリズム一覧
+	 */
+	public List<String> getAlgorithms() {
+		return mAlgorithms;
+	}
+
+	/**
+	 * エントリ一覧を取得します。
+	 * <p>エントリはパスの昇順に並びます。返されるリストは変更できません。</p>
+	 * @return エントリ一覧
+	 */
+	public List<Entry> getEntries() {
+		return mEntries;
+	}
+
+	/**
+	 * マニフェストを行指向のテキスト形式で出力します。
+	 * <p>出力形式はクラスの説明を参照してください。出力したマニフェストは {@link #read(Reader)} で読み込めます。</p>
+	 * @param writer 出力先
+	 * @exception NullPointerException writerがnull
+	 * @exception IOException 出力エラーが発生した
+	 */
+	public void write(Writer writer) throws IOException {
+		assertArgNotNull(writer, "writer");
+		var sb = new StringBuilder(HEADER);
+		for (var algorithm : mAlgorithms) {
+			sb.append(SEPARATOR).append(algorithm);
+		}
+		writer.write(sb.append('\n').toString());
+		for (var entry : mEntries) {
+			sb.setLength(0);
+			appendLine(sb, entry);
+			writer.write(sb.append('\n').toString());
+		}
+		writer.flush();
+	}
+
+	/**
+	 * 行指向のテキスト形式で出力されたマニフェストを読み込みます。
+	 * @param reader 入力元
+	 * @return マニフェスト
+	 * @exception NullPointerException readerがnull
+	 * @exception IOException マニフェストの形式が不正、または入力エラーが発生した
+	 * @see #write(Writer)
+	 */
+	public static Manifest read(Reader reader) throws IOException {
+		assertArgNotNull(reader, "reader");
+		var br = (reader instanceof BufferedReader) ? (BufferedReader)reader : new BufferedReader(reader);
+		var header = br.readLine();
+		if ((header == null) || !header.startsWith(HEADER)) {
+			throw new IOException("Manifest header is not found");
+		}
+		var algorithms = new ArrayList<String>();
+		var headerCols = header.split(String.valueOf(SEPARATOR), -1);
+		for (var i = 1; i < headerCols.length; i++) {
+			algorithms.add(headerCols[i]);
+		}
+
+		var entries = new ArrayList<Entry>();
+		for (var line = br.readLine(); line != null; line = br.readLine()) {
+			var cols = line.split(String.valueOf(SEPARATOR), -1);
+			if (cols.length != (3 + algorithms.size())) {
+				throw new IOException(String.format("Malformed manifest line: %s", line));
+			}
+			try {
+				var digests = new byte[algorithms.size()][];
+				for (var i = 0; i < digests.length; i++) {
+					digests[i] = fromHex(cols[3 + i]);
+				}
+				var path = Path.of(unescape(cols[0]));
+				entries.add(new Entry(path, Long.parseLong(cols[1]), Long.parseLong(cols[2]), digests));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(String.format("Malformed manifest line: %s", line), e);
+			}
+		}
+		return new Manifest(algorithms, entries);
+	}
+
+	/**
+	 * ダイジェストアルゴリズムの検査
+	 * @param algorithms ダイジェストアルゴリズム一覧
+	 * @exception NullPointerException algorithmsがnull、またはalgorithmsにnullが含まれる
+	 * @exception IllegalArgumentException algorithmsが空、またはサポートされないアルゴリズムが含まれる
+	 */
+	static void assertAlgorithms(List<String> algorithms) {
+		assertArgNotNull(algorithms, "algorithms");
+		assertArg(!algorithms.isEmpty(), "Argument 'algorithms' is empty.");
+		for (var algorithm : algorithms) {
+			assertArgNotNull(algorithm, "algorithms[n]");
+			createDigester(algorithm);
+		}
+	}
+
+	/**
+	 * ダイジェスト算出処理生成
+	 * @param algorithm ダイジェストアルゴリズム
+	 * @return {@link MessageDigest} または {@link Checksum}
+	 * @exception IllegalArgumentException サポートされないアルゴリズム
+	 */
+	private static Object createDigester(String algorithm) {
+		switch (algorithm.toUpperCase()) {
+		case "CRC32": return new CRC32();
+		case "CRC32C": return new CRC32C();
+		case "ADLER32": return new Adler32();
+		default: break;
+		}
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException(String.format("Unsupported digest algorithm: %s", algorithm), e);
+		}
+	}
+
+	/**
+	 * エントリの行をテキスト形式で追記
+	 * @param sb 追記先
+	 * @param entry エントリ
+	 */
+	private static void appendLine(StringBuilder sb, Entry entry) {
+		sb.append(escape(pathString(entry.mPath)));
+		sb.append(SEPARATOR).append(entry.mSize);
+		sb.append(SEPARATOR).append(entry.mLastModified);
+		for (var digest : entry.mDigests) {
+			sb.append(SEPARATOR);
+			for (var b : digest) {
+				sb.append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+			}
+		}
+	}
+
+	/**
+	 * OSに依存しない区切り文字('/')によるパス文字列取得
+	 * @param path パス
+	 * @return パス文字列
+	 */
+	static String pathString(Path path) {
+		var sb = new StringBuilder();
+		for (var name : path) {
+			sb.append((sb.length() == 0) ? "" : "/").append(name);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * パス文字列のエスケープ(タブ・改行・バックスラッシュ)
+	 * @param s パス文字列
+	 * @return エスケープしたパス文字列
+	 */
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+	}
+
+	/**
+	 * パス文字列のエスケープ解除
+	 * @param s エスケープしたパス文字列
+	 * @return パス文字列
+	 */
+	private static String unescape(String s) {
+		var sb = new StringBuilder(s.length());
+		for (var i = 0; i < s.length(); i++) {
+			var c = s.charAt(i);
+			if ((c == '\\') && ((i + 1) < s.length())) {
+				var n = s.charAt(++i);
+				sb.append((n == 't') ? '\t' : (n == 'n') ? '\n' : n);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 16進数文字列のバイト配列変換
+	 * @param hex 16進数文字列
+	 * @return バイト配列
+	 * @exception IllegalArgumentException 16進数文字列の形式が不正
+	 */
+	private static byte[] fromHex(String hex) {
+		if ((hex.length() % 2) != 0) {
+			throw new IllegalArgumentException(String.format("Odd length hex string: %s", hex));
+		}
+		var bytes = new byte[hex.length() / 2];
+		for (var i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,118 @@
+package com.lmt.lib.archive;
+
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * エントリの自然順ソート処理
+ *
+ * <p>自然順では、パスをフォルダ単位に比較し、名前に含まれる数字の並びを数値として比較する(page2 → page10)。
+ * 比較の前にパスをNFKC正規化し、全角数字・全角英字・半角カナを通常の文字として扱い、英字の大小は区別しない。</p>
+ *
+ * <p>比較のたびにパスを解析しないよう、ソート前に各エントリの照合キーを1回だけ生成し、照合キーの文字列比較でソートする。
+ * 照合キーはフォルダの区切りを最小の文字、数字の並びを「数値の桁数 + 先頭の0を除いた数字」に置き換えた文字列で、
+ * 文字列の辞書順が自然順と一致する。</p>
+ *
+ * @author J-SON3
+ */
+class NaturalOrder {
+	/** 照合キーのフォルダ区切り文字 */
+	private static final char SEPARATOR = '\u0000';
+	/** 照合キーの数値の開始を表す文字 */
+	private static final char NUMBER = '\u0001';
+
+	/** ソート対象の1エントリ */
+	private static class Key {
+		/** 照合キー */
+		final String key;
+		/** 照合キーが等しい場合の比較に使用するパス文字列 */
+		final String path;
+		/** エントリのインデックス値 */
+		final int index;
+
+		Key(String key, String path, int index) {
+			this.key = key;
+			this.path = path;
+			this.index = index;
+		}
+	}
+
+	/** 照合キー、パス文字列、インデックス値の順で比較するコンパレータ */
+	private static final Comparator<Key> COMPARATOR = Comparator.<Key, String>comparing(k -> k.key)
+			.thenComparing(k -> k.path)
+			.thenComparingInt(k -> k.index);
+
+	/**
+	 * エントリ一覧を自然順にソートした並び順を生成
+	 * <p>nullのエントリは並び順に含めない。</p>
+	 * @param entries インデックス値の順に並べたエントリ一覧
+	 * @return 自然順の位置ごとのインデックス値
+	 */
+	static int[] sort(List<ArchiveEntry> entries) {
+		var keys = new Key[entries.size()];
+		var count = 0;
+		for (var i = 0; i < keys.length; i++) {
+			var entry = entries.get(i);
+			if (entry != null) {
+				var path = Manifest.pathString(entry.getPath());
+				keys[count++] = new Key(collationKey(path), path, i);
+			}
+		}
+		Arrays.sort(keys, 0, count, COMPARATOR);
+		var order = new int[count];
+		for (var i = 0; i < count; i++) {
+			order[i] = keys[i].index;
+		}
+		return order;
+	}
+
+	/**
+	 * 照合キー生成
+	 * @param path エントリのパス
+	 * @return 照合キー
+	 */
+	static String collationKey(Path path) {
+		return collationKey(Manifest.pathString(path));
+	}
+
+	/**
+	 * 照合キー生成
+	 * @param path "/"区切りのパス文字列
+	 * @return 照合キー
+	 */
+	private static String collationKey(String path) {
+		var s = Normalizer.normalize(path, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+		var len = s.length();
+		var sb = new StringBuilder(len + 8);
+		var i = 0;
+		while (i < len) {
+			var c = s.charAt(i);
+			if (c == '/') {
+				sb.append(SEPARATOR);
+				i++;
+			} else if (Character.isDigit(c)) {
+				// 先頭の0を除いた数字の並びを、桁数を前置して出力する
+				var start = i;
+				while ((i < len) && Character.isDigit(s.charAt(i))) {
+					i++;
+				}
+				var first = start;
+				while ((first < (i - 1)) && (Character.digit(s.charAt(first), 10) == 0)) {
+					first++;
+				}
+				sb.append(NUMBER).append((char)Math.min(i - first, Character.MAX_VALUE));
+				for (var j = first; j < i; j++) {
+					sb.append((char)('0' + Character.digit(s.charAt(j), 10)));
+				}
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+}
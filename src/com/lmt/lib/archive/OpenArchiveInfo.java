@@ -0,0 +1,115 @@
+package com.lmt.lib.archive;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * オープン中のアーカイブの診断情報を表すクラスです。
+ *
+ * <p>当クラスは {@link ArchiveManager#getOpenArchiveInfo()} でオープン中のアーカイブごとに生成されるほか、
+ * クローズされないまま到達不能になったアーカイブ(リーク)の報告として {@link ArchiveManager#setLeakListener}
+ * で設定したリスナーに通知されます。</p>
+ *
+ * @author J-SON3
+ */
+public final class OpenArchiveInfo {
+	/** アーカイブのパス */
+	private Path mPath;
+	/** アーカイブ種別 */
+	private ArchiveType mArchiveType;
+	/** オープンからの経過時間 */
+	private Duration mAge;
+	/** 推定ネイティブメモリ使用量 */
+	private long mEstimatedNativeBytes;
+	/** ネイティブリソースを一時解放しているかどうか */
+	private boolean mIsSuspended;
+	/** アーカイブを生成した箇所 */
+	private Throwable mAllocationSite;
+
+	/**
+	 * コンストラクタ
+	 * @param path アーカイブのパス
+	 * @param archiveType アーカイブ種別
+	 * @param age オープンからの経過時間
+	 * @param estimatedNativeBytes 推定ネイティブメモリ使用量(不明な場合は-1)
+	 * @param isSuspended ネイティブリソースを一時解放しているかどうか
+	 * @param allocationSite アーカイブを生成した箇所(記録していない場合はnull)
+	 */
+	OpenArchiveInfo(Path path, ArchiveType archiveType, Duration age, long estimatedNativeBytes, boolean isSuspended,
+			Throwable allocationSite) {
+		mPath = path;
+		mArchiveType = archiveType;
+		mAge = age;
+		mEstimatedNativeBytes = estimatedNativeBytes;
+		mIsSuspended = isSuspended;
+		mAllocationSite = allocationSite;
+	}
+
+	/**
+	 * アーカイブのパスを取得します。
+	 * @return アーカイブのパス
+	 */
+	public Path getPath() {
+		return mPath;
+	}
+
+	/**
+	 * アーカイブ種別を取得します。
+	 * @return アーカイブ種別
+	 */
+	public ArchiveType getArchiveType() {
+		return mArchiveType;
+	}
+
+	/**
+	 * アーカイブをオープンしてからの経過時間を取得します。
+	 * <p>リークの報告では、オープンからリークを検出するまでの時間となります。</p>
+	 * @return オープンからの経過時間
+	 */
+	public Duration getAge() {
+		return mAge;
+	}
+
+	/**
+	 * アーカイブが使用しているネイティブメモリの推定値を取得します。
+	 * <p>推定値はネイティブライブラリ内部の管理領域を概算したもので、正確な値ではありません。
+	 * フォルダアーカイブ、ネイティブリソースを一時解放しているアーカイブでは0となります。</p>
+	 * @return 推定ネイティブメモリ使用量(バイト数)。リークの報告では-1。
+	 */
+	public long getEstimatedNativeBytes() {
+		return mEstimatedNativeBytes;
+	}
+
+	/**
+	 * アーカイブがネイティブリソースを一時解放しているかどうかを取得します。
+	 * @return 一時解放している場合true
+	 * @see ArchiveManager#setMaxNativeHandles(int)
+	 */
+	public boolean isSuspended() {
+		return mIsSuspended;
+	}
+
+	/**
+	 * アーカイブを生成した箇所のスタックトレースを取得します。
+	 * <p>生成箇所は {@link ArchiveManager#setAllocationSiteCapture(boolean)} で記録を有効にした後に生成したアーカイブでのみ記録されます。</p>
+	 * @return アーカイブを生成した箇所のスタックトレース。記録していない場合は空の配列。
+	 */
+	public StackTraceElement[] getAllocationSite() {
+		return (mAllocationSite == null) ? new StackTraceElement[0] : mAllocationSite.getStackTrace();
+	}
+
+	/**
+	 * アーカイブを生成した箇所を表す例外オブジェクト取得
+	 * @return アーカイブを生成した箇所を表す例外オブジェクト。記録していない場合はnull。
+	 */
+	Throwable getAllocationSiteThrowable() {
+		return mAllocationSite;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return String.format("%s{path=%s, type=%s, age=%s, nativeBytes=%d, suspended=%s}",
+				getClass().getSimpleName(), mPath, mArchiveType, mAge, mEstimatedNativeBytes, mIsSuspended);
+	}
+}
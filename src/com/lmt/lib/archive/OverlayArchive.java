@@ -0,0 +1,434 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 複数のアーカイブを重ね合わせて1個のアーカイブと見なすアーカイブクラスです。
+ *
+ * <p>重ね合わせるアーカイブ(レイヤー)は優先順に並べて指定します。同じパスのエントリが複数のレイヤーに存在する場合、
+ * 最も優先順位の高いレイヤーのエントリのみが見え、それ以外のレイヤーのエントリは隠されます。
+ * 例えば、基本データのアーカイブにパッチのアーカイブ・フォルダを重ね合わせると、パッチで置き換えたコンテンツは
+ * パッチから、それ以外のコンテンツは基本データから読み込まれます。</p>
+ *
+ * <p>オープン時に全てのレイヤーのエントリ情報をキャッシュし、全レイヤーを統合したパスの索引を生成します。
+ * パスによるエントリの検索はレイヤーの数に関わらず索引の1回の参照で完了し、存在しないパスを各レイヤーに問い合わせることはありません。
+ * コンテンツの読み込みは、そのコンテンツを持つレイヤーに委譲します。</p>
+ *
+ * <p>エントリのパスは "/" 区切りの文字列として比較します。英字の大小は区別します。
+ * 当アーカイブのエントリのインデックス値は、優先順位の高いレイヤーのエントリから順に、各レイヤー内のインデックス値の順で割り当てます。</p>
+ *
+ * <p>当アーカイブはレイヤーを所有します。当アーカイブをクローズすると全てのレイヤーがクローズされます。</p>
+ *
+ * @author J-SON3
+ * @see ArchiveManager#openOverlay(List)
+ */
+public class OverlayArchive extends Archive {
+	/** レイヤー一覧(優先順位の高い順) */
+	private List<Archive> mLayers;
+	/** レイヤーごとのエントリのパス文字列の集合 */
+	private List<Set<String>> mLayerPaths;
+	/** パス文字列による統合後のエントリマップ */
+	private Map<String, EntryImpl> mEntryMap;
+	/** 統合後のエントリリスト */
+	private List<EntryImpl> mEntryList;
+
+	/** 統合後のエントリ情報 */
+	private static class EntryImpl extends ArchiveEntry {
+		/** エントリを持つレイヤーのインデックス */
+		final int layer;
+		/** レイヤーのエントリ */
+		final ArchiveEntry source;
+
+		EntryImpl(Archive owner, int index, int layer, ArchiveEntry source) {
+			this.owner = owner;
+			this.index = index;
+			this.path = source.getPath();
+			this.isLocation = source.isLocation();
+			this.isContent = source.isContent();
+			this.size = source.getSize();
+			this.lastModified = source.getLastModified();
+			this.crc = source.getCrc();
+			this.layer = layer;
+			this.source = source;
+		}
+	}
+
+	/** レイヤーのチャネルの使用中、レイヤーのネイティブリソースの一時解放を抑止するチャネル */
+	private static class LayerChannel implements SeekableByteChannel {
+		/** チャネルを持つレイヤー */
+		private Archive mLayer;
+		/** レイヤーのチャネル */
+		private SeekableByteChannel mChannel;
+		/** クローズ済みかどうか */
+		private AtomicBoolean mClosed = new AtomicBoolean(false);
+
+		LayerChannel(Archive layer, SeekableByteChannel channel) {
+			mLayer = layer;
+			mChannel = channel;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean isOpen() {
+			return mChannel.isOpen();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close() throws IOException {
+			if (mClosed.compareAndSet(false, true)) {
+				try {
+					mChannel.close();
+				} finally {
+					mLayer.endAccess();
+				}
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return mChannel.read(dst);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return mChannel.write(src);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public long position() throws IOException {
+			return mChannel.position();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException {
+			mChannel.position(newPosition);
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public long size() throws IOException {
+			return mChannel.size();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public SeekableByteChannel truncate(long size) throws IOException {
+			mChannel.truncate(size);
+			return this;
+		}
+	}
+
+	/**
+	 * 新しいオーバーレイアーカイブオブジェクトを構築します。
+	 * <p>アーカイブ種別は最も優先順位の高いレイヤーのアーカイブ種別になります。</p>
+	 * @param path アーカイブのパス(識別用)
+	 * @param layers レイヤー一覧(優先順位の高い順)
+	 * @exception NullPointerException pathがnull
+	 * @exception NullPointerException layersがnull、またはlayersにnullが含まれる
+	 * @exception IllegalArgumentException layersが空、または同じアーカイブが複数含まれる
+	 * @exception IllegalArgumentException layersにクローズされたアーカイブが含まれる
+	 * @exception IOException レイヤーのエントリ情報の読み取り中にエラー発生
+	 */
+	OverlayArchive(Path path, List<Archive> layers) throws IOException {
+		super(validateLayers(layers).getArchiveType(), path);
+		mLayers = List.copyOf(layers);
+		onOpenArchive(path);
+	}
+
+	/**
+	 * レイヤー数を取得します。
+	 * @return レイヤー数
+	 */
+	public int getLayerCount() {
+		return mLayers.size();
+	}
+
+	/**
+	 * レイヤーを取得します。
+	 * @param layer レイヤーのインデックス(0が最も優先順位が高い)
+	 * @return レイヤーのアーカイブ
+	 * @exception IndexOutOfBoundsException layerが0未満または {@link #getLayerCount()} 以上
+	 */
+	public Archive getLayer(int layer) {
+		assertArgIndexRange(layer, mLayers.size(), "layer");
+		return mLayers.get(layer);
+	}
+
+	/**
+	 * 指定パスのエントリを提供しているレイヤーのインデックスを取得します。
+	 * @param path エントリのパス
+	 * @return エントリを提供しているレイヤーのインデックス。エントリが存在しない場合は-1。
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception NullPointerException pathがnull
+	 */
+	public int getOwningLayer(Path path) {
+		assertState(isOpen(), "Archive is already closed");
+		assertArgNotNull(path, "path");
+		var entry = mEntryMap.get(Manifest.pathString(path));
+		return (entry == null) ? -1 : entry.layer;
+	}
+
+	/**
+	 * 指定レイヤーが指定パスのエントリを持つかどうかを判定します。
+	 * <p>より優先順位の高いレイヤーに隠されたエントリも判定の対象になります。</p>
+	 * @param layer レイヤーのインデックス(0が最も優先順位が高い)
+	 * @param path エントリのパス
+	 * @return 指定レイヤーが指定パスのエントリを持つ場合true
+	 * @exception IllegalStateException アーカイブがオープンされていない
+	 * @exception IndexOutOfBoundsException layerが0未満または {@link #getLayerCount()} 以上
+	 * @exception NullPointerException pathがnull
+	 */
+	public boolean layerContains(int layer, Path path) {
+		assertState(isOpen(), "Archive is already closed");
+		assertArgIndexRange(layer, mLayers.size(), "layer");
+		assertArgNotNull(path, "path");
+		return mLayerPaths.get(layer).contains(Manifest.pathString(path));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>全てのレイヤーのエントリ情報をキャッシュし、統合後のパスの索引を生成します。</p>
+	 */
+	@Override
+	protected void onOpenArchive(Path path) throws IOException {
+		var layerPaths = new ArrayList<Set<String>>(mLayers.size());
+		var entryMap = new LinkedHashMap<String, EntryImpl>();
+		var entryList = new ArrayList<EntryImpl>();
+		for (var i = 0; i < mLayers.size(); i++) {
+			var layer = mLayers.get(i);
+			layer.cacheEntries();
+			var count = layer.getEntryCount();
+			var paths = new HashSet<String>(Math.max(16, count * 2));
+			for (var j = 0; j < count; j++) {
+				var source = layer.getEntry(j);
+				if (source == null) {
+					continue;
+				}
+				var key = Manifest.pathString(source.getPath());
+				paths.add(key);
+				if (!entryMap.containsKey(key)) {
+					// 優先順位の高いレイヤーに同じパスのエントリがない場合のみ統合後のエントリとする
+					var entry = new EntryImpl(this, entryList.size(), i, source);
+					entryMap.put(key, entry);
+					entryList.add(entry);
+				}
+			}
+			layerPaths.add(paths);
+		}
+		mLayerPaths = layerPaths;
+		mEntryMap = new HashMap<>(entryMap);
+		mEntryList = entryList;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>全てのレイヤーをクローズします。</p>
+	 */
+	@Override
+	protected void onCloseArchive() throws IOException {
+		mEntryMap = Collections.emptyMap();
+		mEntryList = Collections.emptyList();
+		var error = (IOException)null;
+		for (var layer : mLayers) {
+			try {
+				layer.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				} else {
+					error.addSuppressed(e);
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected InputStream onOpenContentByEntry(ArchiveEntry entry) throws IOException {
+		var e = (EntryImpl)entry;
+		return mLayers.get(e.layer).openContent(e.source);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected InputStream onOpenContentByIndex(int index) throws IOException {
+		return onOpenContentByEntry(getContentWithAssert(mEntryList.get(index)));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected InputStream onOpenContentByPath(Path path) throws IOException {
+		return onOpenContentByEntry(getContentWithAssert(path));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected byte[] onReadAllBytesByEntry(ArchiveEntry entry) throws IOException {
+		var e = (EntryImpl)entry;
+		return mLayers.get(e.layer).readAllBytes(e.source);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected byte[] onReadAllBytesByIndex(int index) throws IOException {
+		return onReadAllBytesByEntry(getContentWithAssert(mEntryList.get(index)));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected byte[] onReadAllBytesByPath(Path path) throws IOException {
+		return onReadAllBytesByEntry(getContentWithAssert(path));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected ArchiveEntry onGetEntryByIndex(int index) {
+		return mEntryList.get(index);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected ArchiveEntry onGetEntryByPath(Path path) {
+		return mEntryMap.get(Manifest.pathString(path));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void onEnumEntries(EntryCallback callback) throws IOException {
+		var count = mEntryList.size();
+		for (var i = 0; i < count; i++) {
+			if (!callback.call(mEntryList.get(i), i + 1, count)) {
+				break;
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected int onGetEntryCount() {
+		return mEntryList.size();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected int onGetCapability() {
+		return CAPS_INDEX | CAPS_PATH;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>コンテンツを持つレイヤーのチャネルを返します。チャネルをクローズするまでの間、そのレイヤーは
+	 * ネイティブリソースの一時解放の対象外になります。</p>
+	 */
+	@Override
+	protected SeekableByteChannel onOpenContentChannel(ArchiveEntry entry) throws IOException {
+		var e = (EntryImpl)entry;
+		var layer = mLayers.get(e.layer);
+		layer.beginAccess();
+		try {
+			return new LayerChannel(layer, layer.onOpenContentChannel(e.source));
+		} catch (IOException | RuntimeException ex) {
+			layer.endAccess();
+			throw ex;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>コンテンツをレイヤーごとにまとめ、各レイヤーで1回の読み込み処理を行います。</p>
+	 */
+	@Override
+	protected void onReadContents(List<ArchiveEntry> contents, ContentHandler handler) throws IOException {
+		var byLayer = new LinkedHashMap<Integer, List<ArchiveEntry>>();
+		var overlayEntries = new IdentityHashMap<ArchiveEntry, ArchiveEntry>();
+		for (var entry : contents) {
+			var e = (EntryImpl)entry;
+			byLayer.computeIfAbsent(e.layer, k -> new ArrayList<>()).add(e.source);
+			overlayEntries.put(e.source, e);
+		}
+		for (var group : byLayer.entrySet()) {
+			var layer = mLayers.get(group.getKey());
+			layer.beginAccess();
+			try {
+				synchronized (layer) {
+					layer.onReadContents(group.getValue(), source -> handler.open(overlayEntries.get(source)));
+				}
+			} finally {
+				layer.endAccess();
+			}
+		}
+	}
+
+	/**
+	 * レイヤー一覧のチェック
+	 * @param layers レイヤー一覧
+	 * @return 最も優先順位の高いレイヤー
+	 * @exception NullPointerException layersがnull、またはlayersにnullが含まれる
+	 * @exception IllegalArgumentException layersが空、または同じアーカイブが複数含まれる
+	 * @exception IllegalArgumentException layersにクローズされたアーカイブが含まれる
+	 */
+	private static Archive validateLayers(List<Archive> layers) {
+		assertArgNotNull(layers, "layers");
+		assertArg(!layers.isEmpty(), "Argument 'layers' is empty");
+		var distinct = Collections.newSetFromMap(new IdentityHashMap<Archive, Boolean>());
+		for (var layer : layers) {
+			assertArgNotNull(layer, "layers[?]");
+			assertArg(layer.isOpen(), "Closed archive in layers: %s", layer.getPath());
+			assertArg(distinct.add(layer), "Duplicate archive in layers: %s", layer.getPath());
+		}
+		return layers.get(0);
+	}
+
+	/**
+	 * 指定パスのコンテンツエントリ取得
+	 * @param path コンテンツパス
+	 * @return コンテンツエントリ情報
+	 * @exception NoSuchFileException 指定パスのコンテンツが存在しない、またはコンテンツではない
+	 */
+	private EntryImpl getContentWithAssert(Path path) throws IOException {
+		var entry = mEntryMap.get(Manifest.pathString(path));
+		if (entry == null) {
+			throw new NoSuchFileException(path.toString());
+		}
+		return getContentWithAssert(entry);
+	}
+
+	/**
+	 * コンテンツエントリのチェック
+	 * @param entry エントリ情報
+	 * @return コンテンツエントリ情報
+	 * @exception NoSuchFileException エントリがコンテンツではない
+	 */
+	private static EntryImpl getContentWithAssert(EntryImpl entry) throws IOException {
+		if (!entry.isContent()) {
+			throw new NoSuchFileException(entry.getPath().toString(), null, "This is not a content");
+		}
+		return entry;
+	}
+}
@@ -0,0 +1,84 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.util.concurrent.Executor;
+
+/**
+ * コンテンツの先読み方針を表すクラスです。
+ *
+ * <p>先読み方針を {@link Archive#setPrefetchPolicy(PrefetchPolicy)} で設定すると、アーカイブはコンテンツの読み込み順を監視し、
+ * インデックス値またはパスの昇順で一定間隔(連続を含む)の読み込みが続いている間、次に読み込まれるコンテンツを
+ * バックグラウンドで解凍してメモリ上に保持します。保持したコンテンツを読み込む場合は解凍を行わずに直ちに返されます。</p>
+ *
+ * <p>先読みするコンテンツ数は先読み数、先読みで保持する解凍後データの合計サイズは先読み容量が上限となります。
+ * 先読み容量を超えるコンテンツは先読みしません。読み込み順が一定間隔でなくなった場合、実行待ちの先読みは取り消されます。</p>
+ *
+ * @author J-SON3
+ */
+public final class PrefetchPolicy {
+	/** 先読み数 */
+	private int mDepth;
+	/** 先読み容量 */
+	private long mByteBudget;
+	/** 先読みを実行するエグゼキュータ */
+	private Executor mExecutor;
+
+	/**
+	 * 新しい先読み方針を構築します。
+	 * <p>先読みはライブラリ共通のデーモンスレッドで実行されます。</p>
+	 * @param depth 先読み数
+	 * @param byteBudget 先読み容量(バイト数)
+	 * @exception IllegalArgumentException depthが1未満
+	 * @exception IllegalArgumentException byteBudgetが1未満
+	 */
+	public PrefetchPolicy(int depth, long byteBudget) {
+		this(depth, byteBudget, null);
+	}
+
+	/**
+	 * 新しい先読み方針を構築します。
+	 * @param depth 先読み数
+	 * @param byteBudget 先読み容量(バイト数)
+	 * @param executor 先読みを実行するエグゼキュータ。nullの場合はライブラリ共通のデーモンスレッド。
+	 * @exception IllegalArgumentException depthが1未満
+	 * @exception IllegalArgumentException byteBudgetが1未満
+	 */
+	public PrefetchPolicy(int depth, long byteBudget, Executor executor) {
+		assertArg(depth >= 1, "Argument 'depth' is less than 1. depth=%d", depth);
+		assertArg(byteBudget >= 1L, "Argument 'byteBudget' is less than 1. byteBudget=%d", byteBudget);
+		mDepth = depth;
+		mByteBudget = byteBudget;
+		mExecutor = executor;
+	}
+
+	/**
+	 * 先読み数を取得します。
+	 * @return 先読み数
+	 */
+	public int getDepth() {
+		return mDepth;
+	}
+
+	/**
+	 * 先読み容量を取得します。
+	 * @return 先読み容量(バイト数)
+	 */
+	public long getByteBudget() {
+		return mByteBudget;
+	}
+
+	/**
+	 * 先読みを実行するエグゼキュータを取得します。
+	 * @return 先読みを実行するエグゼキュータ。ライブラリ共通のデーモンスレッドを使用する場合はnull。
+	 */
+	public Executor getExecutor() {
+		return mExecutor;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return String.format("PrefetchPolicy{depth=%d, byteBudget=%d}", mDepth, mByteBudget);
+	}
+}
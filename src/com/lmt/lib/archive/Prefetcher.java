@@ -0,0 +1,391 @@
+package com.lmt.lib.archive;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * アーカイブのコンテンツ先読み処理
+ *
+ * <p>コンテンツの読み込み順を監視し、インデックス値の昇順(インデックス値・エントリ指定の場合)またはパスの昇順
+ * (パス指定の場合)に並べたコンテンツの中で一定間隔の読み込みが続いている間、次に読み込まれるコンテンツを
+ * バックグラウンドで解凍して保持する。間隔1(連続)の読み込みは1回で、それ以外の間隔は同じ間隔が2回続いた時点で先読みを開始する。</p>
+ *
+ * <p>7-ZIP J-Bindingのアーカイブは複数スレッドからの同時アクセスに対応しないため、先読みの解凍はアーカイブオブジェクトの
+ * モニタを取得して行う。先読みが有効なアーカイブは、読み込み元スレッドでの解凍も同じモニタを取得して行う。</p>
+ *
+ * @author J-SON3
+ */
+class Prefetcher {
+	/** 読み込み順の種類：未確定 */
+	private static final int MODE_NONE = 0;
+	/** 読み込み順の種類：インデックス値の昇順 */
+	private static final int MODE_INDEX = 1;
+	/** 読み込み順の種類：パスの昇順 */
+	private static final int MODE_PATH = 2;
+
+	/** ライブラリ共通の先読みスレッド */
+	private static ExecutorService sDefaultExecutor = null;
+
+	/** 先読み対象のアーカイブ */
+	private Archive mArchive;
+	/** 先読み方針 */
+	private PrefetchPolicy mPolicy;
+	/** 先読みを実行するエグゼキュータ */
+	private Executor mExecutor;
+	/** インデックス値の昇順に並べたコンテンツ一覧 */
+	private ArchiveEntry[] mIndexOrder;
+	/** パスの昇順に並べたコンテンツ一覧(パス指定で読み込まれるまではnull) */
+	private ArchiveEntry[] mPathOrder = null;
+	/** パスの昇順に並べたコンテンツのパス文字列 */
+	private String[] mPathKeys = null;
+	/** 現在の読み込み順の種類 */
+	private int mMode = MODE_NONE;
+	/** 最後に読み込まれた位置 */
+	private int mLastPosition = -1;
+	/** 読み込み位置の間隔(未確定の場合は0) */
+	private int mStride = 0;
+	/** 位置による先読みデータ */
+	private Map<Integer, Slot> mSlots = new HashMap<>();
+	/** 先読みで確保しているバイト数 */
+	private long mReservedBytes = 0L;
+	/** 先読みしたコンテンツが読み込まれた回数 */
+	private long mHitCount = 0L;
+	/** 先読みしていないコンテンツが読み込まれた回数 */
+	private long mMissCount = 0L;
+
+	/** 1個のコンテンツの先読みデータ */
+	private static class Slot {
+		/** コンテンツのエントリ */
+		final ArchiveEntry entry;
+		/** 確保しているバイト数 */
+		long reserved;
+		/** 先読みタスク */
+		Future<?> future = null;
+		/** 解凍後データ(先読み中はnull) */
+		byte[] data = null;
+		/** 先読みが失敗・取り消しにより終了したかどうか */
+		boolean finished = false;
+
+		Slot(ArchiveEntry entry) {
+			this.entry = entry;
+			this.reserved = entry.getSize();
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * <p>アーカイブの全エントリ情報がキャッシュされていること。</p>
+	 * @param archive 先読み対象のアーカイブ
+	 * @param policy 先読み方針
+	 */
+	Prefetcher(Archive archive, PrefetchPolicy policy) {
+		mArchive = archive;
+		mPolicy = policy;
+		mExecutor = (policy.getExecutor() != null) ? policy.getExecutor() : defaultExecutor();
+		var contents = new ArrayList<ArchiveEntry>();
+		var count = archive.onGetEntryCount();
+		for (var i = 0; i < count; i++) {
+			var entry = archive.onGetEntryByIndex(i);
+			if ((entry != null) && entry.isContent()) {
+				contents.add(entry);
+			}
+		}
+		mIndexOrder = contents.toArray(ArchiveEntry[]::new);
+		Arrays.sort(mIndexOrder, Comparator.comparingInt(ArchiveEntry::getIndex));
+	}
+
+	/**
+	 * 先読み方針取得
+	 * @return 先読み方針
+	 */
+	PrefetchPolicy getPolicy() {
+		return mPolicy;
+	}
+
+	/**
+	 * 先読みしたコンテンツが読み込まれた回数取得
+	 * @return 先読みしたコンテンツが読み込まれた回数
+	 */
+	synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	/**
+	 * 先読みしていないコンテンツが読み込まれた回数取得
+	 * @return 先読みしていないコンテンツが読み込まれた回数
+	 */
+	synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * 先読みで確保しているバイト数取得
+	 * @return 先読みで確保しているバイト数
+	 */
+	synchronized long getReservedBytes() {
+		return mReservedBytes;
+	}
+
+	/**
+	 * コンテンツ読み込み
+	 * <p>先読み済みのコンテンツは保持したデータを返し、先読み中のコンテンツは先読みの完了を待つ。それ以外のコンテンツは
+	 * アーカイブオブジェクトのモニタを取得して解凍する。読み込み後、読み込み順に応じて次のコンテンツの先読みを開始する。</p>
+	 * @param entry 読み込むコンテンツのエントリ
+	 * @param byPath パス指定による読み込みかどうか
+	 * @return コンテンツ全体の解凍後バイトデータ
+	 * @exception IOException 入力エラー発生時
+	 */
+	byte[] read(ArchiveEntry entry, boolean byPath) throws IOException {
+		var mode = byPath ? MODE_PATH : MODE_INDEX;
+		var position = position(entry, mode);
+		var data = (position < 0) ? null : take(mode, position);
+		if (data == null) {
+			synchronized (mArchive) {
+				data = mArchive.onReadAllBytesByEntry(entry);
+			}
+		}
+		if (position >= 0) {
+			record(mode, position);
+		}
+		return data;
+	}
+
+	/**
+	 * 全ての先読みを取り消し、実行中の先読みの終了を待つ
+	 */
+	void cancelAll() {
+		synchronized (this) {
+			mSlots.values().forEach(Prefetcher::cancelSlot);
+			mSlots.clear();
+			mReservedBytes = 0L;
+			mStride = 0;
+			notifyAll();
+		}
+		synchronized (mArchive) {
+			// 実行中の先読みはモニタを保持しているため、モニタを取得できた時点で終了している
+		}
+	}
+
+	/**
+	 * 読み込み順での位置取得
+	 * @param entry コンテンツのエントリ
+	 * @param mode 読み込み順の種類
+	 * @return 読み込み順での位置。先読み対象外のエントリの場合は-1。
+	 */
+	private synchronized int position(ArchiveEntry entry, int mode) {
+		if (mode == MODE_INDEX) {
+			var pos = Arrays.binarySearch(mIndexOrder, entry, Comparator.comparingInt(ArchiveEntry::getIndex));
+			return ((pos >= 0) && (mIndexOrder[pos] == entry)) ? pos : -1;
+		} else {
+			if (mPathOrder == null) {
+				mPathOrder = mIndexOrder.clone();
+				Arrays.sort(mPathOrder, Comparator.comparing(e -> Manifest.pathString(e.getPath())));
+				mPathKeys = Arrays.stream(mPathOrder).map(e -> Manifest.pathString(e.getPath())).toArray(String[]::new);
+			}
+			var pos = Arrays.binarySearch(mPathKeys, Manifest.pathString(entry.getPath()));
+			return (pos >= 0) ? pos : -1;
+		}
+	}
+
+	/**
+	 * 先読みデータの取り出し
+	 * <p>先読み中の場合は完了を待つ。取り出したデータは先読みデータから削除する。</p>
+	 * @param mode 読み込み順の種類
+	 * @param position 読み込み順での位置
+	 * @return 解凍後データ。先読みしていない、または先読みに失敗した場合はnull。
+	 * @exception IOException 先読みの完了待ち中に割り込みが発生した
+	 */
+	private synchronized byte[] take(int mode, int position) throws IOException {
+		var slot = (mode == mMode) ? mSlots.get(position) : null;
+		if (slot == null) {
+			mMissCount++;
+			return null;
+		}
+		try {
+			while ((slot.data == null) && !slot.finished) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for prefetch");
+		}
+		if (mSlots.get(position) == slot) {
+			mSlots.remove(position);
+			mReservedBytes -= slot.reserved;
+		}
+		if (slot.data == null) {
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		return slot.data;
+	}
+
+	/**
+	 * 読み込み位置の記録と先読みの開始
+	 * @param mode 読み込み順の種類
+	 * @param position 読み込み順での位置
+	 */
+	private synchronized void record(int mode, int position) {
+		if (mode != mMode) {
+			// 読み込み順の種類が変わった場合は先読みをやり直す
+			mSlots.values().forEach(Prefetcher::cancelSlot);
+			mSlots.clear();
+			mReservedBytes = 0L;
+			mMode = mode;
+			mStride = 0;
+			mLastPosition = position;
+			notifyAll();
+			return;
+		}
+
+		var delta = position - mLastPosition;
+		mLastPosition = position;
+		if (delta == 0) {
+			return;
+		} else if ((delta == mStride) || (delta == 1)) {
+			mStride = delta;
+			schedule(position);
+		} else {
+			// 一定間隔の読み込みが途切れた場合は先読みを取り消し、新しい間隔が続くかを見る
+			mStride = delta;
+			schedule(-1);
+		}
+	}
+
+	/**
+	 * 先読みの開始
+	 * <p>先読み対象から外れたコンテンツの先読みは取り消し、先読み容量に収まる範囲で先読み対象のコンテンツを先読みする。</p>
+	 * @param position 最後に読み込まれた位置。-1の場合は全ての先読みを取り消す。
+	 */
+	private void schedule(int position) {
+		var order = (mMode == MODE_INDEX) ? mIndexOrder : mPathOrder;
+		var targets = new ArrayList<Integer>();
+		if (position >= 0) {
+			for (var k = 1; k <= mPolicy.getDepth(); k++) {
+				var target = position + mStride * k;
+				if ((target < 0) || (target >= order.length)) {
+					break;
+				}
+				targets.add(target);
+			}
+		}
+
+		// 先読み対象から外れたコンテンツの先読みを取り消す
+		var iterator = mSlots.entrySet().iterator();
+		while (iterator.hasNext()) {
+			var entry = iterator.next();
+			if (!targets.contains(entry.getKey())) {
+				cancelSlot(entry.getValue());
+				mReservedBytes -= entry.getValue().reserved;
+				iterator.remove();
+			}
+		}
+		notifyAll();
+
+		// 近い順に先読み容量に収まる範囲で先読みする
+		for (var target : targets) {
+			if (mSlots.containsKey(target)) {
+				continue;
+			}
+			var slot = new Slot(order[target]);
+			if ((slot.reserved < 0L) || ((mReservedBytes + slot.reserved) > mPolicy.getByteBudget())) {
+				break;
+			}
+			mSlots.put(target, slot);
+			mReservedBytes += slot.reserved;
+			var task = new FutureTask<Void>(() -> load(target, slot), null);
+			slot.future = task;
+			try {
+				mExecutor.execute(task);
+			} catch (RuntimeException e) {
+				// エグゼキュータが受け付けない場合は先読みしない
+				mSlots.remove(target);
+				mReservedBytes -= slot.reserved;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 先読みタスク
+	 * @param position 読み込み順での位置
+	 * @param slot 先読みデータ
+	 */
+	private void load(int position, Slot slot) {
+		var data = (byte[])null;
+		synchronized (mArchive) {
+			var current = false;
+			synchronized (this) {
+				current = (mSlots.get(position) == slot) && mArchive.isOpen();
+			}
+			if (current) {
+				try {
+					mArchive.beginAccess();
+					try {
+						data = mArchive.onReadAllBytesByEntry(slot.entry);
+					} finally {
+						mArchive.endAccess();
+					}
+				} catch (IOException | RuntimeException e) {
+					// 先読みに失敗したコンテンツは読み込み時に改めて解凍し、エラーはその時に通知する
+					data = null;
+				}
+			}
+		}
+		synchronized (this) {
+			if ((data != null) && ((mReservedBytes - slot.reserved + data.length) > mPolicy.getByteBudget())) {
+				// 解凍後データが想定より大きく先読み容量を超える場合は保持しない
+				data = null;
+			}
+			if (mSlots.get(position) == slot) {
+				if (data == null) {
+					mSlots.remove(position);
+					mReservedBytes -= slot.reserved;
+				} else {
+					mReservedBytes += data.length - slot.reserved;
+					slot.reserved = data.length;
+				}
+			}
+			slot.data = data;
+			slot.finished = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * 先読みの取り消し
+	 * @param slot 先読みデータ
+	 */
+	private static void cancelSlot(Slot slot) {
+		if (slot.future != null) {
+			slot.future.cancel(false);
+		}
+		slot.finished = true;
+	}
+
+	/**
+	 * ライブラリ共通の先読みスレッド取得
+	 * @return ライブラリ共通の先読みスレッド
+	 */
+	private static synchronized ExecutorService defaultExecutor() {
+		if (sDefaultExecutor == null) {
+			sDefaultExecutor = Executors.newCachedThreadPool(r -> {
+				var thread = new Thread(r, "ArchivePrefetcher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return sDefaultExecutor;
+	}
+}
@@ -0,0 +1,143 @@
+package com.lmt.lib.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * コンテンツ検索の一致箇所の集計処理
+ *
+ * <p>複数のコンテンツ・アーカイブを並列に検索する際に一致箇所を集め、一致箇所の数が上限に達した時点で
+ * 全ての照合処理を中断させる。中断は照合処理から {@link LimitReachedException} をスローすることで行い、
+ * 検索の呼び出し元は {@link #isFull()} がtrueの場合にその例外を無視する。</p>
+ *
+ * @author J-SON3
+ */
+class SearchCollector {
+	/** 一致箇所の数が上限に達したことを表す例外 */
+	static class LimitReachedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		LimitReachedException() {
+			super("Search hit limit reached");
+		}
+	}
+
+	/** 並び替え用の一致箇所 */
+	private static class Found {
+		/** アーカイブの順番 */
+		final int order;
+		/** 一致箇所 */
+		final SearchHit hit;
+
+		Found(int order, SearchHit hit) {
+			this.order = order;
+			this.hit = hit;
+		}
+	}
+
+	/** 一致箇所の並び順(アーカイブの順番、エントリのインデックス値、オフセットの順) */
+	private static final Comparator<Found> ORDER = Comparator.<Found>comparingInt(f -> f.order)
+			.thenComparingInt(f -> f.hit.getEntry().getIndex())
+			.thenComparingLong(f -> f.hit.getOffset());
+
+	/** 一致箇所の数の上限 */
+	private int mLimit;
+	/** 一致箇所の数 */
+	private AtomicInteger mCount = new AtomicInteger(0);
+	/** 一致箇所一覧 */
+	private ConcurrentLinkedQueue<Found> mFounds = new ConcurrentLinkedQueue<>();
+	/** 一致箇所の数が上限に達したかどうか */
+	private volatile boolean mFull = false;
+
+	/**
+	 * コンストラクタ
+	 * @param limit 一致箇所の数の上限
+	 */
+	SearchCollector(int limit) {
+		mLimit = limit;
+	}
+
+	/**
+	 * 一致箇所の数が上限に達したかどうか
+	 * @return 上限に達した場合true
+	 */
+	boolean isFull() {
+		return mFull;
+	}
+
+	/**
+	 * 1個のコンテンツを照合する出力ストリーム生成
+	 * @param order アーカイブの順番
+	 * @param archive 検索中のアーカイブ
+	 * @param entry コンテンツのエントリ
+	 * @param pattern 検索パターン
+	 * @return 解凍後データを照合する出力ストリーム
+	 * @exception LimitReachedException 一致箇所の数が既に上限に達している
+	 */
+	OutputStream open(int order, Archive archive, ArchiveEntry entry, SearchPattern pattern) throws IOException {
+		assertNotFull();
+		var archivePath = archive.getPath();
+		var scanner = pattern.newScanner((offset, length) -> add(order, new SearchHit(archivePath, entry, offset, length)));
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte)b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				assertNotFull();
+				scanner.feed(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				scanner.finish();
+			}
+		};
+	}
+
+	/**
+	 * 一致箇所一覧取得
+	 * @return 並び替えた一致箇所一覧
+	 */
+	List<SearchHit> getHits() {
+		var founds = new ArrayList<>(mFounds);
+		founds.sort(ORDER);
+		var hits = new ArrayList<SearchHit>(founds.size());
+		founds.forEach(f -> hits.add(f.hit));
+		return hits;
+	}
+
+	/**
+	 * 一致箇所の追加
+	 * @param order アーカイブの順番
+	 * @param hit 一致箇所
+	 * @exception LimitReachedException 一致箇所の数が上限に達した
+	 */
+	private void add(int order, SearchHit hit) throws IOException {
+		var count = mCount.incrementAndGet();
+		if (count <= mLimit) {
+			mFounds.add(new Found(order, hit));
+		}
+		if (count >= mLimit) {
+			mFull = true;
+			throw new LimitReachedException();
+		}
+	}
+
+	/**
+	 * 一致箇所の数が上限に達していないことのチェック
+	 * @exception LimitReachedException 一致箇所の数が上限に達している
+	 */
+	private void assertNotFull() throws IOException {
+		if (mFull) {
+			throw new LimitReachedException();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.lmt.lib.archive;
+
+import java.nio.file.Path;
+
+/**
+ * コンテンツの検索で検出した1個の一致箇所を表すクラスです。
+ *
+ * <p>当クラスは {@link Archive#search(SearchPattern, int)} または
+ * {@link ArchiveManager#searchAll(java.util.Collection, SearchPattern, int, int)} によって生成されます。
+ * 一致箇所はアーカイブのパス、コンテンツのエントリ、およびコンテンツの解凍後データ先頭からのバイトオフセットで表されます。</p>
+ *
+ * @author J-SON3
+ */
+public final class SearchHit {
+	/** アーカイブのパス */
+	private Path mArchivePath;
+	/** コンテンツのエントリ */
+	private ArchiveEntry mEntry;
+	/** コンテンツ先頭からのバイトオフセット */
+	private long mOffset;
+	/** 一致した範囲の長さ */
+	private int mLength;
+
+	/**
+	 * 一致箇所構築
+	 * @param archivePath アーカイブのパス
+	 * @param entry コンテンツのエントリ
+	 * @param offset コンテンツ先頭からのバイトオフセット
+	 * @param length 一致した範囲の長さ
+	 */
+	SearchHit(Path archivePath, ArchiveEntry entry, long offset, int length) {
+		mArchivePath = archivePath;
+		mEntry = entry;
+		mOffset = offset;
+		mLength = length;
+	}
+
+	/**
+	 * 一致箇所を含むアーカイブのパスを取得します。
+	 * @return アーカイブのパス
+	 */
+	public Path getArchivePath() {
+		return mArchivePath;
+	}
+
+	/**
+	 * 一致箇所を含むコンテンツのエントリを取得します。
+	 * @return コンテンツのエントリ
+	 */
+	public ArchiveEntry getEntry() {
+		return mEntry;
+	}
+
+	/**
+	 * 一致箇所のコンテンツ先頭からのバイトオフセットを取得します。
+	 * @return コンテンツ先頭からのバイトオフセット
+	 */
+	public long getOffset() {
+		return mOffset;
+	}
+
+	/**
+	 * 一致した範囲の長さを取得します。
+	 * @return 一致した範囲の長さ(バイト数)
+	 */
+	public int getLength() {
+		return mLength;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return String.format("SearchHit{archive=%s, entry=%s, offset=%d, length=%d}", mArchivePath,
+				mEntry.getPath(), mOffset, mLength);
+	}
+}
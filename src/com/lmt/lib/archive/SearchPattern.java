@@ -0,0 +1,341 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * コンテンツの検索で使用する検索パターンを表すクラスです。
+ *
+ * <p>検索パターンはコンテンツの解凍後データ(バイト列)に対して照合されます。検索パターンには以下の2種類があります。</p>
+ *
+ * <ul>
+ * <li>リテラル：指定したバイト列と完全に一致する位置を検索します。一致する位置が重なり合う場合も全て検出します。</li>
+ * <li>正規表現：各バイトを同じ値のUnicode文字(U+0000～U+00FF)と見なした文字列に対して正規表現を照合します。
+ * 一致した範囲は重なり合わず、長さ0の一致は検出しません。</li>
+ * </ul>
+ *
+ * <p>コンテンツは一定サイズのデータに分割されて順に照合されるため、コンテンツ全体をメモリ上に保持することはありません。
+ * データの区切りを跨いで一致する場合も検出します。正規表現では照合の際に保持するデータのサイズを最大一致長で指定します。
+ * 最大一致長を超える長さの一致は、正しく検出されない場合があります。</p>
+ *
+ * <p>ASCII以外の文字を含むテキストを検索する場合は、文字セットを指定したリテラルを使用してください。</p>
+ *
+ * @author J-SON3
+ * @see Archive#search(SearchPattern, int)
+ * @see ArchiveManager#searchAll(java.util.Collection, SearchPattern, int, int)
+ */
+public final class SearchPattern {
+	/** 一致した位置の通知先 */
+	@FunctionalInterface
+	interface HitSink {
+		/**
+		 * 一致した位置の通知
+		 * @param offset コンテンツ先頭からのバイトオフセット
+		 * @param length 一致した範囲の長さ
+		 * @exception IOException 照合を中断する
+		 */
+		void hit(long offset, int length) throws IOException;
+	}
+
+	/** コンテンツ1個分の照合処理 */
+	abstract static class Scanner {
+		/** 一致した位置の通知先 */
+		final HitSink sink;
+
+		Scanner(HitSink sink) {
+			this.sink = sink;
+		}
+
+		/**
+		 * 解凍後データの照合
+		 * @param b データ
+		 * @param off データの開始位置
+		 * @param len データの長さ
+		 * @exception IOException 照合が中断された
+		 */
+		abstract void feed(byte[] b, int off, int len) throws IOException;
+
+		/**
+		 * コンテンツ末尾の照合
+		 * @exception IOException 照合が中断された
+		 */
+		abstract void finish() throws IOException;
+	}
+
+	/** 検索するバイト列(正規表現の場合null) */
+	private byte[] mLiteral;
+	/** KMP法の失敗関数(正規表現の場合null) */
+	private int[] mFailure;
+	/** 正規表現(リテラルの場合null) */
+	private Pattern mRegex;
+	/** 最大一致長 */
+	private int mMaxMatchLength;
+
+	/**
+	 * 検索パターン構築
+	 * @param literal 検索するバイト列
+	 * @param regex 正規表現
+	 * @param maxMatchLength 最大一致長
+	 */
+	private SearchPattern(byte[] literal, Pattern regex, int maxMatchLength) {
+		mLiteral = literal;
+		mRegex = regex;
+		mMaxMatchLength = maxMatchLength;
+		if (literal != null) {
+			mFailure = failure(literal);
+		}
+	}
+
+	/**
+	 * 指定したバイト列と一致する位置を検索するリテラルの検索パターンを生成します。
+	 * @param bytes 検索するバイト列
+	 * @return 検索パターン
+	 * @exception NullPointerException bytesがnull
+	 * @exception IllegalArgumentException bytesが空
+	 */
+	public static SearchPattern literal(byte[] bytes) {
+		assertArgNotNull(bytes, "bytes");
+		assertArg(bytes.length > 0, "Argument 'bytes' is empty");
+		return new SearchPattern(bytes.clone(), null, bytes.length);
+	}
+
+	/**
+	 * 指定したテキストを指定した文字セットでエンコードしたバイト列と一致する位置を検索するリテラルの検索パターンを生成します。
+	 * @param text 検索するテキスト
+	 * @param charset テキストの文字セット
+	 * @return 検索パターン
+	 * @exception NullPointerException textがnull
+	 * @exception NullPointerException charsetがnull
+	 * @exception IllegalArgumentException textが空
+	 */
+	public static SearchPattern literal(String text, Charset charset) {
+		assertArgNotNull(text, "text");
+		assertArgNotNull(charset, "charset");
+		assertArg(!text.isEmpty(), "Argument 'text' is empty");
+		return literal(text.getBytes(charset));
+	}
+
+	/**
+	 * 正規表現の検索パターンを生成します。
+	 * @param regex 正規表現
+	 * @param maxMatchLength 最大一致長(バイト数)
+	 * @return 検索パターン
+	 * @exception NullPointerException regexがnull
+	 * @exception java.util.regex.PatternSyntaxException regexの構文が不正
+	 * @exception IllegalArgumentException maxMatchLengthが1未満
+	 */
+	public static SearchPattern regex(String regex, int maxMatchLength) {
+		assertArgNotNull(regex, "regex");
+		return regex(Pattern.compile(regex), maxMatchLength);
+	}
+
+	/**
+	 * 正規表現の検索パターンを生成します。
+	 * @param regex コンパイル済みの正規表現
+	 * @param maxMatchLength 最大一致長(バイト数)
+	 * @return 検索パターン
+	 * @exception NullPointerException regexがnull
+	 * @exception IllegalArgumentException maxMatchLengthが1未満
+	 */
+	public static SearchPattern regex(Pattern regex, int maxMatchLength) {
+		assertArgNotNull(regex, "regex");
+		assertArg(maxMatchLength >= 1, "Argument 'maxMatchLength' is less than 1. maxMatchLength=%d", maxMatchLength);
+		return new SearchPattern(null, regex, maxMatchLength);
+	}
+
+	/**
+	 * 正規表現の検索パターンかどうかを判定します。
+	 * @return 正規表現の検索パターンの場合true
+	 */
+	public boolean isRegex() {
+		return mRegex != null;
+	}
+
+	/**
+	 * 最大一致長を取得します。
+	 * <p>リテラルの検索パターンでは検索するバイト列の長さを返します。</p>
+	 * @return 最大一致長(バイト数)
+	 */
+	public int getMaxMatchLength() {
+		return mMaxMatchLength;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return isRegex() ?
+				String.format("SearchPattern{regex=%s, maxMatchLength=%d}", mRegex.pattern(), mMaxMatchLength) :
+				String.format("SearchPattern{literal=%s}", Arrays.toString(mLiteral));
+	}
+
+	/**
+	 * コンテンツ1個分の照合処理生成
+	 * @param sink 一致した位置の通知先
+	 * @return 照合処理
+	 */
+	Scanner newScanner(HitSink sink) {
+		return isRegex() ? new RegexScanner(sink) : new LiteralScanner(sink);
+	}
+
+	/**
+	 * KMP法の失敗関数生成
+	 * @param p 検索するバイト列
+	 * @return 各位置までの接頭辞と一致する最長の真の接尾辞の長さ
+	 */
+	private static int[] failure(byte[] p) {
+		var f = new int[p.length];
+		for (int i = 1, k = 0; i < p.length; i++) {
+			while ((k > 0) && (p[i] != p[k])) {
+				k = f[k - 1];
+			}
+			if (p[i] == p[k]) {
+				k++;
+			}
+			f[i] = k;
+		}
+		return f;
+	}
+
+	/** リテラルの照合処理(KMP法) */
+	private class LiteralScanner extends Scanner {
+		/** 一致しているバイト数 */
+		private int mMatched = 0;
+		/** 照合したバイト数 */
+		private long mPosition = 0L;
+
+		LiteralScanner(HitSink sink) {
+			super(sink);
+		}
+
+		@Override
+		void feed(byte[] b, int off, int len) throws IOException {
+			var p = mLiteral;
+			var f = mFailure;
+			var k = mMatched;
+			var end = off + len;
+			for (var i = off; i < end; i++) {
+				var c = b[i];
+				while ((k > 0) && (c != p[k])) {
+					k = f[k - 1];
+				}
+				if (c == p[k]) {
+					k++;
+				}
+				if (k == p.length) {
+					sink.hit(mPosition + (i - off) + 1 - p.length, p.length);
+					k = f[k - 1];
+				}
+			}
+			mMatched = k;
+			mPosition += len;
+		}
+
+		@Override
+		void finish() {
+			// 区切りを跨ぐ一致は照合中に検出済みのため何もしない
+		}
+	}
+
+	/** 正規表現の照合処理 */
+	private class RegexScanner extends Scanner {
+		/** 照合待ちのデータ */
+		private byte[] mBuffer = new byte[0];
+		/** 照合待ちのデータの長さ */
+		private int mLength = 0;
+		/** 照合待ちのデータ先頭のコンテンツ先頭からのオフセット */
+		private long mBase = 0L;
+		/** 次に照合を開始する位置 */
+		private int mScanPos = 0;
+
+		RegexScanner(HitSink sink) {
+			super(sink);
+		}
+
+		@Override
+		void feed(byte[] b, int off, int len) throws IOException {
+			if ((mLength + len) > mBuffer.length) {
+				mBuffer = Arrays.copyOf(mBuffer, Math.max(mLength + len, mBuffer.length * 2));
+			}
+			System.arraycopy(b, off, mBuffer, mLength, len);
+			mLength += len;
+			scan(false);
+		}
+
+		@Override
+		void finish() throws IOException {
+			scan(true);
+		}
+
+		/**
+		 * 照合待ちのデータの照合
+		 * <p>後続のデータにより結果が変わり得る位置(末尾から最大一致長未満の位置)からの照合は後続のデータを待つ。</p>
+		 * @param eos コンテンツの末尾に達した場合true
+		 * @exception IOException 照合が中断された
+		 */
+		private void scan(boolean eos) throws IOException {
+			var limit = eos ? mLength : (mLength - mMaxMatchLength + 1);
+			var m = mRegex.matcher(new Latin1Sequence(mBuffer, mLength));
+			m.useTransparentBounds(true);
+			m.useAnchoringBounds(false);
+			while (mScanPos < limit) {
+				m.region(mScanPos, mLength);
+				if (!m.find() || (m.start() >= limit)) {
+					mScanPos = limit;
+					break;
+				}
+				var start = m.start();
+				var end = m.end();
+				mScanPos = Math.max(end, start + 1);
+				if (end > start) {
+					sink.hit(mBase + start, end - start);
+				}
+			}
+
+			// 照合済みのデータを破棄する
+			if (mScanPos > 0) {
+				mLength -= mScanPos;
+				System.arraycopy(mBuffer, mScanPos, mBuffer, 0, mLength);
+				mBase += mScanPos;
+				mScanPos = 0;
+			}
+		}
+	}
+
+	/** バイト列を同じ値のUnicode文字の並びと見なす文字シーケンス */
+	private static class Latin1Sequence implements CharSequence {
+		/** バイト列 */
+		private final byte[] mBytes;
+		/** 長さ */
+		private final int mLength;
+
+		Latin1Sequence(byte[] bytes, int length) {
+			mBytes = bytes;
+			mLength = length;
+		}
+
+		@Override
+		public int length() {
+			return mLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char)(mBytes[index] & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(mBytes, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+
+		@Override
+		public String toString() {
+			return new String(mBytes, 0, mLength, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
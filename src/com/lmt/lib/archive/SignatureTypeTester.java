@@ -0,0 +1,40 @@
+package com.lmt.lib.archive;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.lmt.lib.archive.impl.SzjbSignature;
+
+/**
+ * ファイル内容のシグネチャ(マジックバイト)によるアーカイブ種別判定処理の実装です。
+ *
+ * <p>当クラスは拡張子ではなくファイル先頭のシグネチャからアーカイブ種別を判定します。そのため、拡張子が誤っている・
+ * 拡張子を持たないアーカイブファイルでも正しい種別を判定できます。シグネチャから判定できない場合は
+ * {@link StandardTypeTester} と同様に拡張子で判定します。</p>
+ *
+ * <p>判定結果はパスとファイルの最終更新日時・サイズをキーにキャッシュされるため、同じファイルを繰り返し判定しても
+ * ファイルの読み込みは更新時にしか発生しません。また、RARファイルの場合はRAR4/RAR5の判定結果もキャッシュされ、
+ * アーカイブのオープン時にはその形式でのみオープンが試行されます。</p>
+ *
+ * @author J-SON3
+ */
+public class SignatureTypeTester extends StandardTypeTester {
+	/**
+	 * 指定パスの内容からアーカイブ種別を判定します。
+	 * <p>最初に指定パスがディレクトリかどうかを判定し、ディレクトリであれば {@link ArchiveType#FOLDER} を返します。
+	 * 次にファイル先頭のシグネチャを読み取り、ZIP・7-ZIP・RAR(RAR4/RAR5)のいずれかであればその種別を返します。
+	 * ファイルが存在しない・読み取れない、またはシグネチャが既知のものでない場合は
+	 * {@link StandardTypeTester#apply(Path)} による拡張子での判定結果を返します。</p>
+	 * @param path アーカイブ種別判定対象のパス
+	 * @return アーカイブ種別
+	 */
+	@Override
+	public ArchiveType apply(Path path) {
+		if (Files.isDirectory(path)) {
+			return ArchiveType.FOLDER;
+		}
+
+		var archiveType = SzjbSignature.probeType(path);
+		return archiveType.isUnknown() ? super.apply(path) : archiveType;
+	}
+}
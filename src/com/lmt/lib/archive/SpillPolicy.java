@@ -0,0 +1,93 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * サイズの大きいコンテンツを一時ファイルへ解凍する方針を表すクラスです。
+ *
+ * <p>圧縮ファイルのアーカイブは {@link Archive#openContent(ArchiveEntry)} 等でコンテンツを一旦メモリ上に解凍します。
+ * 退避方針を {@link ArchiveManager#setSpillPolicy(SpillPolicy)} で設定すると、サイズが閾値を超えるコンテンツは
+ * 作業フォルダに作成した一時ファイルへ解凍され、その一時ファイルを読み込む入力ストリームが返されます。
+ * 一時ファイルは入力ストリームまたはアーカイブのクローズ時に削除されます。閾値以下のコンテンツは従来通りメモリ上に解凍されます。</p>
+ *
+ * <p>全てのアーカイブが同時に使用する一時ファイルの合計サイズは作業容量が上限となります。
+ * 解凍すると作業容量を超えるコンテンツはオープンできません。</p>
+ *
+ * <p>{@link Archive#readAllBytes(ArchiveEntry)} 等のバイトデータを返すメソッド、およびフォルダアーカイブのように
+ * コンテンツをメモリ上に解凍しないアーカイブは退避方針の対象外です。</p>
+ *
+ * @author J-SON3
+ */
+public final class SpillPolicy {
+	/** 一時ファイルへ解凍するサイズの閾値 */
+	private long mThreshold;
+	/** 作業容量 */
+	private long mMaxScratchBytes;
+	/** 作業フォルダ */
+	private Path mDirectory;
+
+	/**
+	 * 新しい退避方針を構築します。
+	 * <p>作業フォルダはシステムの一時フォルダ(システムプロパティ "java.io.tmpdir")になります。</p>
+	 * @param threshold 一時ファイルへ解凍するサイズの閾値(バイト数)。このサイズを超えるコンテンツが対象となる。
+	 * @param maxScratchBytes 作業容量(バイト数)
+	 * @exception IllegalArgumentException thresholdが0未満
+	 * @exception IllegalArgumentException maxScratchBytesが1未満
+	 */
+	public SpillPolicy(long threshold, long maxScratchBytes) {
+		this(threshold, maxScratchBytes, Paths.get(System.getProperty("java.io.tmpdir")));
+	}
+
+	/**
+	 * 新しい退避方針を構築します。
+	 * @param threshold 一時ファイルへ解凍するサイズの閾値(バイト数)。このサイズを超えるコンテンツが対象となる。
+	 * @param maxScratchBytes 作業容量(バイト数)
+	 * @param directory 一時ファイルを作成する作業フォルダ
+	 * @exception IllegalArgumentException thresholdが0未満
+	 * @exception IllegalArgumentException maxScratchBytesが1未満
+	 * @exception NullPointerException directoryがnull
+	 */
+	public SpillPolicy(long threshold, long maxScratchBytes, Path directory) {
+		assertArg(threshold >= 0L, "Argument 'threshold' is less than 0. threshold=%d", threshold);
+		assertArg(maxScratchBytes >= 1L, "Argument 'maxScratchBytes' is less than 1. maxScratchBytes=%d",
+				maxScratchBytes);
+		assertArgNotNull(directory, "directory");
+		mThreshold = threshold;
+		mMaxScratchBytes = maxScratchBytes;
+		mDirectory = directory;
+	}
+
+	/**
+	 * 一時ファイルへ解凍するサイズの閾値を取得します。
+	 * @return 一時ファイルへ解凍するサイズの閾値(バイト数)
+	 */
+	public long getThreshold() {
+		return mThreshold;
+	}
+
+	/**
+	 * 作業容量を取得します。
+	 * @return 作業容量(バイト数)
+	 */
+	public long getMaxScratchBytes() {
+		return mMaxScratchBytes;
+	}
+
+	/**
+	 * 作業フォルダを取得します。
+	 * @return 作業フォルダ
+	 */
+	public Path getDirectory() {
+		return mDirectory;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return String.format("SpillPolicy{threshold=%d, maxScratchBytes=%d, directory=%s}", mThreshold,
+				mMaxScratchBytes, mDirectory);
+	}
+}
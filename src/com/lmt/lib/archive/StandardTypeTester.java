@@ -12,12 +12,19 @@ import java.util.function.Function;
  * @author J-SON3
  */
 public class StandardTypeTester implements Function<Path, ArchiveType> {
+	/** 分割アーカイブの最初のボリュームのボリューム番号(ドットを含む拡張子) */
+	private static final String FIRST_VOLUME_NUMBER = ".001";
+
 	/**
 	 * 指定パスの内容からアーカイブ種別を判定します。
 	 * <p>最初に指定パスがディレクトリかどうかを判定し、ディレクトリであれば {@link ArchiveType#FOLDER} を返します。
 	 * 次にパスが示すファイルの拡張子を調べ、拡張子を持たないファイルの場合は {@link ArchiveType#UNKNOWN} とします。
 	 * 拡張子が"zip"であれば {@link ArchiveType#ZIP} 、"rar"であれば {@link ArchiveType#RAR}
 	 * 、"7z"であれば {@link ArchiveType#SEVEN_ZIP} と判定します。それ以外は {@link ArchiveType#UNKNOWN} とします。</p>
+	 * <p>分割アーカイブ(マルチボリューム)の場合、最初のボリュームである"7z.001"のファイルは {@link ArchiveType#SEVEN_ZIP}
+	 * と判定します。2番目以降のボリューム("7z.002"など)は単独ではオープンできないため {@link ArchiveType#UNKNOWN} とします。
+	 * RARの分割アーカイブ("part1.rar"など)は拡張子"rar"により {@link ArchiveType#RAR} と判定されます。
+	 * いずれの場合も最初のボリュームのパスを指定してオープンしてください。</p>
 	 * <p>拡張子の英字の大小は区別しません。また、ディレクトリ以外の判定結果はファイルの存在有無の影響を受けません。</p>
 	 * @param path アーカイブ種別判定対象のパス
 	 * @return アーカイブ種別
@@ -35,7 +42,14 @@ public class StandardTypeTester implements Function<Path, ArchiveType> {
 		}
 
 		var extension = fileName.substring(dotPos);
-		if (extension.equalsIgnoreCase(".zip")) {
+		if (isVolumeNumber(extension)) {
+			// 分割アーカイブのボリューム番号の場合はその前の拡張子で判定する(オープンできるのは最初のボリュームのみ)
+			var baseName = fileName.substring(0, dotPos);
+			var baseDotPos = baseName.lastIndexOf('.');
+			var baseExtension = (baseDotPos == -1) ? "" : baseName.substring(baseDotPos);
+			var isFirst = extension.equals(FIRST_VOLUME_NUMBER);
+			return (isFirst && baseExtension.equalsIgnoreCase(".7z")) ? ArchiveType.SEVEN_ZIP : ArchiveType.UNKNOWN;
+		} else if (extension.equalsIgnoreCase(".zip")) {
 			return ArchiveType.ZIP;
 		} else if (extension.equalsIgnoreCase(".7z")) {
 			return ArchiveType.SEVEN_ZIP;
@@ -45,4 +59,13 @@ public class StandardTypeTester implements Function<Path, ArchiveType> {
 			return ArchiveType.UNKNOWN;
 		}
 	}
+
+	/**
+	 * 拡張子が分割アーカイブのボリューム番号("001"など数字のみ)かどうか
+	 * @param extension ドットを含む拡張子
+	 * @return ボリューム番号であればtrue
+	 */
+	private static boolean isVolumeNumber(String extension) {
+		return (extension.length() > 1) && extension.chars().skip(1).allMatch(c -> (c >= '0') && (c <= '9'));
+	}
 }
@@ -0,0 +1,624 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+import static com.lmt.lib.archive.ZipFormat.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * アーカイブから選択したエントリを、ZIPまたはTAR形式のストリームとして出力するクラスです。
+ *
+ * <p>当クラスはダウンロードのように、アーカイブの一部のエントリを別形式のアーカイブとして送出する用途を想定しています。
+ * コンテンツは解凍しながら出力先へ書き込み、一時ファイルやコンテンツ全体を保持するメモリを使用しません。
+ * 出力先への書き込みは解凍処理と同じスレッドで行うため、出力先の書き込みが遅い場合は解凍処理もその速度に合わせて待機します。
+ * 使用するメモリは書き込みバッファと、ZIP形式でのエントリごとのヘッダ情報(パスとサイズ等)のみです。</p>
+ *
+ * <p>出力する形式ごとの特徴は以下の通りです。</p>
+ *
+ * <ul>
+ * <li>{@link Format#ZIP} ではコンテンツをDEFLATE圧縮し、CRC32とサイズをデータの後ろのデータ記述子に記録します。
+ * そのため、コンテンツのサイズを事前に知る必要はありません。ZIP64形式には対応しないため、
+ * 出力のサイズが4GiBを超える、またはエントリ数が65535を超える場合は出力できません。</li>
+ * <li>{@link Format#TAR} ではPOSIX ustar形式で出力し、ustar形式で表せないパスはPAX拡張ヘッダで記録します。
+ * TAR形式はヘッダにサイズが必要なため、エントリ情報のサイズを使用します。</li>
+ * </ul>
+ *
+ * <p>エントリの出力順は変換元のアーカイブによって異なります。フォルダエントリを選択順に出力した後、
+ * 圧縮ファイルのコンテンツは1回の解凍処理で格納順に、それ以外のコンテンツは選択順に1件ずつ出力します。
+ * フォルダをアーカイブとして扱う場合、コンテンツはディスクから直接読み込まれ、
+ * {@link ArchiveManager#setExtractionBudget(ExtractionBudget)} による予算やコンテンツキャッシュの対象になりません。</p>
+ *
+ * <p>当クラスの設定の変更と出力を複数のスレッドから同時に行うことはできません。</p>
+ *
+ * @author J-SON3
+ */
+public class StreamRepacker {
+	/**
+	 * 出力する形式です。
+	 */
+	public enum Format {
+		/** ZIP形式(DEFLATE圧縮、データ記述子を使用) */
+		ZIP,
+		/** TAR形式(POSIX ustar、PAX拡張ヘッダを使用) */
+		TAR,
+	}
+
+	/** デフォルトのZIP形式の圧縮レベル */
+	public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+	/** 書き込みバッファのサイズ */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** 出力する形式 */
+	private Format mFormat;
+	/** ZIP形式の圧縮レベル */
+	private int mLevel = DEFAULT_LEVEL;
+
+	/**
+	 * 新しいストリーム出力オブジェクトを構築します。
+	 * <p>ZIP形式の圧縮レベルは {@link #DEFAULT_LEVEL} になります。</p>
+	 * @param format 出力する形式
+	 * @exception NullPointerException formatがnull
+	 */
+	public StreamRepacker(Format format) {
+		assertArgNotNull(format, "format");
+		mFormat = format;
+	}
+
+	/**
+	 * 出力する形式を取得します。
+	 * @return 出力する形式
+	 */
+	public Format getFormat() {
+		return mFormat;
+	}
+
+	/**
+	 * ZIP形式の圧縮レベルを設定します。
+	 * <p>0を指定するとDEFLATE形式のまま圧縮せずに格納します。TAR形式では使用しません。</p>
+	 * @param level 圧縮レベル(0～9)
+	 * @exception IllegalArgumentException levelが0未満または9超過
+	 */
+	public void setLevel(int level) {
+		assertArgValueRange(level, Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, "level");
+		mLevel = level;
+	}
+
+	/**
+	 * ZIP形式の圧縮レベルを取得します。
+	 * @return 圧縮レベル
+	 */
+	public int getLevel() {
+		return mLevel;
+	}
+
+	/**
+	 * 選択したエントリを出力ストリームへ出力します。
+	 * <p>同じパスのエントリを複数指定した場合は最初のエントリのみ出力します。フォルダエントリは親フォルダを補完せずにそのまま出力します。
+	 * 出力後に出力ストリームをフラッシュしますが、クローズはしません。出力中に変換元のアーカイブへアクセスしないでください。</p>
+	 * <p>エラーが発生した場合、出力ストリームには途中までのデータが書き込まれています。</p>
+	 * @param source 変換元のアーカイブ
+	 * @param entries 出力するエントリ一覧
+	 * @param out 出力先
+	 * @return 出力したバイト数
+	 * @exception NullPointerException sourceがnull
+	 * @exception NullPointerException entriesがnull、またはentriesにnullが含まれる
+	 * @exception NullPointerException outがnull
+	 * @exception IllegalArgumentException sourceがクローズされている
+	 * @exception IllegalArgumentException entriesにsource以外が生成したエントリが含まれる
+	 * @exception IOException ZIP形式で出力のサイズが4GiBを超える、またはエントリ数が65535を超える
+	 * @exception IOException TAR形式でコンテンツのサイズがエントリ情報のサイズと異なる
+	 * @exception IOException コンテンツの読み込み、または出力先への書き込み中にエラーが発生した
+	 */
+	public long repack(Archive source, Collection<? extends ArchiveEntry> entries, OutputStream out) throws IOException {
+		assertArgNotNull(source, "source");
+		assertArgNotNull(entries, "entries");
+		assertArgNotNull(out, "out");
+		assertArg(source.isOpen(), "Argument 'source' is closed: %s", source.getPath());
+		var selected = select(source, entries);
+		if ((mFormat == Format.ZIP) && (selected.size() > ZIP32_MAX_ENTRIES)) {
+			throw new IOException(String.format("Too many entries for ZIP: %d", selected.size()));
+		}
+
+		var sink = new Sink(out);
+		var writer = (mFormat == Format.ZIP) ? new ZipWriter(sink, mLevel) : new TarWriter(sink);
+		try {
+			// フォルダエントリを先に出力する
+			var contents = new ArrayList<ArchiveEntry>();
+			for (var entry : selected) {
+				if (entry.isContent()) {
+					contents.add(entry);
+				} else {
+					writer.directory(entry);
+				}
+			}
+
+			// 圧縮ファイルは1回の解凍処理で、それ以外は1件ずつ直接読み込んだコンテンツを出力する
+			if (!contents.isEmpty() && source.onExtractsToHeap()) {
+				source.readContents(contents, writer::open);
+			} else {
+				source.beginAccess();
+				try {
+					for (var entry : contents) {
+						try (var stream = source.onOpenContentByEntry(entry)) {
+							var entryOut = writer.open(entry);
+							stream.transferTo(entryOut);
+							entryOut.close();
+						}
+					}
+				} finally {
+					source.endAccess();
+				}
+			}
+			var unread = contents.size() - writer.getContentCount();
+			if (unread > 0) {
+				throw new IOException(String.format("Some contents were not read: %d", unread));
+			}
+
+			writer.finish();
+			sink.flush();
+		} finally {
+			writer.end();
+		}
+		return sink.getWritten();
+	}
+
+	/**
+	 * 選択したエントリを書き込み可能なチャネルへ出力します。
+	 * <p>チャネルはブロッキングモードである必要があります。出力後にチャネルはクローズしません。
+	 * その他の動作は {@link #repack(Archive, Collection, OutputStream)} と同じです。</p>
+	 * @param source 変換元のアーカイブ
+	 * @param entries 出力するエントリ一覧
+	 * @param out 出力先
+	 * @return 出力したバイト数
+	 * @exception NullPointerException sourceがnull
+	 * @exception NullPointerException entriesがnull、またはentriesにnullが含まれる
+	 * @exception NullPointerException outがnull
+	 * @exception IllegalArgumentException sourceがクローズされている
+	 * @exception IllegalArgumentException entriesにsource以外が生成したエントリが含まれる
+	 * @exception java.nio.channels.IllegalBlockingModeException outが非ブロッキングモード
+	 * @exception IOException ZIP形式で出力のサイズが4GiBを超える、またはエントリ数が65535を超える
+	 * @exception IOException TAR形式でコンテンツのサイズがエントリ情報のサイズと異なる
+	 * @exception IOException コンテンツの読み込み、または出力先への書き込み中にエラーが発生した
+	 * @see #repack(Archive, Collection, OutputStream)
+	 */
+	public long repack(Archive source, Collection<? extends ArchiveEntry> entries, WritableByteChannel out)
+			throws IOException {
+		assertArgNotNull(out, "out");
+		return repack(source, entries, Channels.newOutputStream(out));
+	}
+
+	/**
+	 * 出力するエントリ一覧の生成
+	 * @param source 変換元のアーカイブ
+	 * @param entries 出力するエントリ一覧
+	 * @return パスの重複を除いた選択順のエントリ一覧
+	 */
+	private static List<ArchiveEntry> select(Archive source, Collection<? extends ArchiveEntry> entries) {
+		var selected = new LinkedHashMap<String, ArchiveEntry>();
+		for (var entry : entries) {
+			assertArgNotNull(entry, "entries[n]");
+			assertArg(entry.owner == source, "Illegal entry owner: %s", entry.getPath());
+			selected.putIfAbsent(Manifest.pathString(entry.getPath()), entry);
+		}
+		return new ArrayList<>(selected.values());
+	}
+
+	/** 出力先(書き込みバッファ付き、出力したバイト数を数える。クローズしない) */
+	private static class Sink extends OutputStream {
+		/** 出力先 */
+		private final OutputStream mOut;
+		/** 書き込みバッファ */
+		private final byte[] mBuffer = new byte[BUFFER_SIZE];
+		/** バッファ内のデータのサイズ */
+		private int mCount = 0;
+		/** 出力したバイト数 */
+		private long mWritten = 0L;
+
+		Sink(OutputStream out) {
+			mOut = out;
+		}
+
+		long getWritten() {
+			return mWritten;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (mCount == mBuffer.length) {
+				flushBuffer();
+			}
+			mBuffer[mCount++] = (byte)b;
+			mWritten++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len >= mBuffer.length) {
+				flushBuffer();
+				mOut.write(b, off, len);
+			} else {
+				if (len > (mBuffer.length - mCount)) {
+					flushBuffer();
+				}
+				System.arraycopy(b, off, mBuffer, mCount, len);
+				mCount += len;
+			}
+			mWritten += len;
+		}
+
+		void write(ByteBuffer buf) throws IOException {
+			write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+			mOut.flush();
+		}
+
+		private void flushBuffer() throws IOException {
+			if (mCount > 0) {
+				mOut.write(mBuffer, 0, mCount);
+				mCount = 0;
+			}
+		}
+	}
+
+	/** 形式ごとの書き込み処理 */
+	private static abstract class FormatWriter {
+		/** 出力先 */
+		final Sink out;
+		/** 書き込みを完了したコンテンツの数 */
+		private int mContentCount = 0;
+
+		FormatWriter(Sink out) {
+			this.out = out;
+		}
+
+		int getContentCount() {
+			return mContentCount;
+		}
+
+		void contentDone() {
+			mContentCount++;
+		}
+
+		/**
+		 * フォルダエントリの書き込み
+		 * @param entry フォルダエントリ
+		 * @exception IOException 書き込み中にエラーが発生した
+		 */
+		abstract void directory(ArchiveEntry entry) throws IOException;
+
+		/**
+		 * コンテンツの書き込み開始
+		 * <p>返された出力ストリームをクローズするとコンテンツの書き込みが完了する。</p>
+		 * @param entry コンテンツのエントリ
+		 * @return 解凍後データの出力先
+		 * @exception IOException 書き込み中にエラーが発生した
+		 */
+		abstract OutputStream open(ArchiveEntry entry) throws IOException;
+
+		/**
+		 * 終端の書き込み
+		 * @exception IOException 書き込み中にエラーが発生した
+		 */
+		abstract void finish() throws IOException;
+
+		/**
+		 * 使用したリソースの解放
+		 */
+		void end() {
+			// Do nothing
+		}
+	}
+
+	/** ZIP形式の書き込み処理 */
+	private static class ZipWriter extends FormatWriter {
+		/** 圧縮処理(コンテンツごとにリセットして使用する) */
+		private final Deflater mDeflater;
+		/** 圧縮後のデータのバッファ */
+		private final byte[] mBuffer = new byte[BUFFER_SIZE];
+		/** CRC32 */
+		private final CRC32 mCrc = new CRC32();
+		/** 書き込んだエントリのヘッダ情報 */
+		private final List<Header> mHeaders = new ArrayList<>();
+
+		ZipWriter(Sink out, int level) {
+			super(out);
+			mDeflater = new Deflater(level, true);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		void directory(ArchiveEntry entry) throws IOException {
+			writeLocalHeader(new Header(entry));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		OutputStream open(ArchiveEntry entry) throws IOException {
+			var h = new Header(entry);
+			h.flags |= FLAG_DATA_DESCRIPTOR;
+			h.method = METHOD_DEFLATED;
+			writeLocalHeader(h);
+			mDeflater.reset();
+			mCrc.reset();
+			return new OutputStream() {
+				/** 受け取ったバイト数 */
+				private long mTotal = 0L;
+				/** 書き込みを完了したかどうか */
+				private boolean mClosed = false;
+
+				@Override
+				public void write(int b) throws IOException {
+					write(new byte[] { (byte)b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					mCrc.update(b, off, len);
+					mTotal += len;
+					mDeflater.setInput(b, off, len);
+					while (!mDeflater.needsInput()) {
+						deflate();
+					}
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (mClosed) {
+						return;
+					}
+					mClosed = true;
+					mDeflater.finish();
+					while (!mDeflater.finished()) {
+						deflate();
+					}
+					h.crc = (int)mCrc.getValue();
+					h.size = checkZip32(mTotal);
+					h.compressedSize = checkZip32(mDeflater.getBytesWritten());
+					out.write(dataDescriptor(h));
+					contentDone();
+				}
+			};
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		void finish() throws IOException {
+			var offset = checkZip32(out.getWritten());
+			for (var h : mHeaders) {
+				var buf = littleEndian(centralHeaderSize(h));
+				putCentralHeader(buf, h);
+				out.write(buf.flip());
+			}
+			var size = checkZip32(out.getWritten()) - offset;
+			out.write(ZipFormat.end(mHeaders.size(), size, offset));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		void end() {
+			mDeflater.end();
+		}
+
+		private void writeLocalHeader(Header h) throws IOException {
+			if (h.name.length > 0xffff) {
+				throw new IOException(String.format("Entry name too long: %s", new String(h.name, StandardCharsets.UTF_8)));
+			}
+			h.offset = checkZip32(out.getWritten());
+			var extra = littleEndian(TIMESTAMP_EXTRA_SIZE);
+			putTimestampExtra(extra, h.lastModified);
+			out.write(localHeader(h, extra.array()));
+			mHeaders.add(h);
+		}
+
+		private void deflate() throws IOException {
+			var n = mDeflater.deflate(mBuffer);
+			out.write(mBuffer, 0, n);
+		}
+	}
+
+	/** TAR形式の書き込み処理 */
+	private static class TarWriter extends FormatWriter {
+		/** ブロックサイズ */
+		private static final int BLOCK_SIZE = 512;
+		/** ustar形式のパスの最大バイト数 */
+		private static final int NAME_SIZE = 100;
+		/** 12桁のフィールドに8進数で表せる値の上限 */
+		private static final long OCTAL_LIMIT = 077777777777L;
+		/** PAX拡張ヘッダの名前 */
+		private static final String PAX_NAME = "././@PaxHeader";
+		/** エントリ種別：通常ファイル */
+		private static final byte TYPE_FILE = '0';
+		/** エントリ種別：フォルダ */
+		private static final byte TYPE_DIRECTORY = '5';
+		/** エントリ種別：PAX拡張ヘッダ */
+		private static final byte TYPE_PAX = 'x';
+
+		TarWriter(Sink out) {
+			super(out);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		void directory(ArchiveEntry entry) throws IOException {
+			writeHeader(entry, TYPE_DIRECTORY, 0L);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		OutputStream open(ArchiveEntry entry) throws IOException {
+			var size = entry.getSize();
+			if (size < 0L) {
+				throw new IOException(String.format("Content size is unknown: %s", entry.getPath()));
+			}
+			writeHeader(entry, TYPE_FILE, size);
+			return new OutputStream() {
+				/** 受け取ったバイト数 */
+				private long mTotal = 0L;
+				/** 書き込みを完了したかどうか */
+				private boolean mClosed = false;
+
+				@Override
+				public void write(int b) throws IOException {
+					write(new byte[] { (byte)b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					if ((mTotal + len) > size) {
+						throw new IOException(String.format("Content is larger than its entry: %s", entry.getPath()));
+					}
+					mTotal += len;
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (mClosed) {
+						return;
+					}
+					mClosed = true;
+					if (mTotal != size) {
+						throw new IOException(String.format("Content is smaller than its entry: %s", entry.getPath()));
+					}
+					pad(size);
+					contentDone();
+				}
+			};
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		void finish() throws IOException {
+			out.write(new byte[BLOCK_SIZE * 2]);
+		}
+
+		/**
+		 * ヘッダの書き込み
+		 * <p>パスがASCII文字以外を含む、または100バイトを超える場合は、PAX拡張ヘッダでパスを記録し、
+		 * ustar形式のヘッダには切り詰めたASCII文字のパスを記録する。</p>
+		 * @param entry エントリ
+		 * @param type エントリ種別
+		 * @param size データのサイズ
+		 * @exception IOException 書き込み中にエラーが発生した
+		 */
+		private void writeHeader(ArchiveEntry entry, byte type, long size) throws IOException {
+			var path = Manifest.pathString(entry.getPath());
+			var name = entry.isLocation() ? path + "/" : path;
+			var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			var mtime = Math.max(0L, Math.min(OCTAL_LIMIT, Math.floorDiv(entry.getLastModified(), 1000L)));
+			var ascii = name.chars().allMatch(c -> (c >= 0x20) && (c < 0x7f));
+			if (!ascii || (nameBytes.length > NAME_SIZE)) {
+				var pax = paxRecord("path", name);
+				out.write(header(PAX_NAME.getBytes(StandardCharsets.US_ASCII), TYPE_PAX, pax.length, mtime));
+				out.write(pax);
+				pad(pax.length);
+				var fallback = name.replaceAll("[^\\x20-\\x7e]", "_").getBytes(StandardCharsets.US_ASCII);
+				nameBytes = Arrays.copyOf(fallback, Math.min(fallback.length, NAME_SIZE));
+			}
+			out.write(header(nameBytes, type, size, mtime));
+		}
+
+		/**
+		 * ustar形式のヘッダ生成
+		 * @param name パス(100バイト以下)
+		 * @param type エントリ種別
+		 * @param size データのサイズ
+		 * @param mtime 最終更新日時(秒)
+		 * @return ヘッダ
+		 */
+		private static byte[] header(byte[] name, byte type, long size, long mtime) {
+			var h = new byte[BLOCK_SIZE];
+			System.arraycopy(name, 0, h, 0, name.length);
+			octal(h, 100, 8, (type == TYPE_DIRECTORY) ? 0755 : 0644);
+			octal(h, 108, 8, 0);
+			octal(h, 116, 8, 0);
+			if (size > OCTAL_LIMIT) {
+				// 8進数で表せないサイズはGNU tarと同じ256進数(先頭ビットを立てたビッグエンディアン)で記録する
+				for (var i = 0; i < 11; i++) {
+					h[135 - i] = (byte)(size >>> (i * 8));
+				}
+				h[124] = (byte)0x80;
+			} else {
+				octal(h, 124, 12, size);
+			}
+			octal(h, 136, 12, mtime);
+			h[156] = type;
+			System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, h, 257, 8);
+
+			// チェックサムはチェックサム欄を空白とみなした全バイトの合計
+			Arrays.fill(h, 148, 156, (byte)' ');
+			var sum = 0L;
+			for (var b : h) {
+				sum += b & 0xff;
+			}
+			octal(h, 148, 7, sum);
+			h[155] = ' ';
+			return h;
+		}
+
+		/**
+		 * 8進数のフィールドの書き込み
+		 * @param h ヘッダ
+		 * @param offset フィールドの位置
+		 * @param length フィールドの長さ(終端のNUL文字を含む)
+		 * @param value 値
+		 */
+		private static void octal(byte[] h, int offset, int length, long value) {
+			var s = Long.toOctalString(value);
+			var digits = length - 1;
+			for (var i = 0; i < digits; i++) {
+				var j = s.length() - digits + i;
+				h[offset + i] = (byte)((j < 0) ? '0' : s.charAt(j));
+			}
+			h[offset + digits] = 0;
+		}
+
+		/**
+		 * PAX拡張ヘッダのレコード生成
+		 * <p>レコードは「長さ 名前=値\n」の形式で、長さはレコード全体のバイト数(長さ自身の桁数を含む)。</p>
+		 * @param key 名前
+		 * @param value 値
+		 * @return レコード
+		 */
+		private static byte[] paxRecord(String key, String value) {
+			var body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+			var length = body.length + Integer.toString(body.length).length();
+			if (Integer.toString(length).length() > Integer.toString(body.length).length()) {
+				length++;
+			}
+			var prefix = Integer.toString(length).getBytes(StandardCharsets.US_ASCII);
+			var record = Arrays.copyOf(prefix, prefix.length + body.length);
+			System.arraycopy(body, 0, record, prefix.length, body.length);
+			return record;
+		}
+
+		/**
+		 * データの後ろのブロック境界までの埋め合わせ
+		 * @param size データのサイズ
+		 * @exception IOException 書き込み中にエラーが発生した
+		 */
+		private void pad(long size) throws IOException {
+			var remain = (int)(size % BLOCK_SIZE);
+			if (remain > 0) {
+				out.write(new byte[BLOCK_SIZE - remain]);
+			}
+		}
+	}
+}
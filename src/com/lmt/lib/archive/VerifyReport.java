@@ -0,0 +1,152 @@
+package com.lmt.lib.archive;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * アーカイブの整合性検査結果を表すクラスです。
+ *
+ * <p>当クラスは {@link Archive#verify()} または {@link ArchiveManager#verifyAll(java.util.Collection, int)}
+ * によって生成され、アーカイブ内の全てのコンテンツ(ファイル)について検査の合否を保持します。
+ * アーカイブ自体をオープンできなかった場合は、コンテンツごとの検査結果の代わりにそのエラーを保持します。</p>
+ *
+ * @author J-SON3
+ */
+public final class VerifyReport {
+	/** アーカイブのパス */
+	private Path mPath;
+	/** コンテンツごとの検査結果 */
+	private List<Result> mResults;
+	/** アーカイブのオープン・検査処理で発生したエラー */
+	private Exception mError;
+
+	/**
+	 * 1個のコンテンツの検査結果を表すクラスです。
+	 */
+	public static final class Result {
+		/** エントリのインデックス値 */
+		private int mIndex;
+		/** エントリのパス */
+		private Path mPath;
+		/** エラーの内容(合格の場合はnull) */
+		private String mError;
+
+		/**
+		 * 新しい検査結果を構築します。
+		 * <p>当コンストラクタは {@link Archive#onVerify()} を実装する継承先クラスから使用されます。</p>
+		 * @param index エントリのインデックス値
+		 * @param path エントリのパス
+		 * @param error エラーの内容。検査に合格した場合はnull。
+		 */
+		public Result(int index, Path path, String error) {
+			mIndex = index;
+			mPath = path;
+			mError = error;
+		}
+
+		/**
+		 * エントリのインデックス値を取得します。
+		 * @return エントリのインデックス値
+		 */
+		public int getIndex() {
+			return mIndex;
+		}
+
+		/**
+		 * エントリのパスを取得します。
+		 * @return エントリのパス
+		 */
+		public Path getPath() {
+			return mPath;
+		}
+
+		/**
+		 * 検査に合格したかどうかを返します。
+		 * @return 検査に合格した場合true
+		 */
+		public boolean isPassed() {
+			return mError == null;
+		}
+
+		/**
+		 * エラーの内容を取得します。
+		 * @return エラーの内容。検査に合格した場合はnull。
+		 */
+		public String getError() {
+			return mError;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("%s: %s", mPath, isPassed() ? "OK" : mError);
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param path アーカイブのパス
+	 * @param results コンテンツごとの検査結果
+	 * @param error アーカイブのオープン・検査処理で発生したエラー
+	 */
+	VerifyReport(Path path, List<Result> results, Exception error) {
+		mPath = path;
+		mResults = Collections.unmodifiableList(results);
+		mError = error;
+	}
+
+	/**
+	 * 検査したアーカイブのパスを取得します。
+	 * @return アーカイブのパス
+	 */
+	public Path getPath() {
+		return mPath;
+	}
+
+	/**
+	 * 全てのコンテンツが検査に合格したかどうかを返します。
+	 * <p>アーカイブのオープン・検査処理でエラーが発生した場合はfalseを返します。</p>
+	 * @return 全てのコンテンツが検査に合格した場合true
+	 */
+	public boolean isPassed() {
+		return (mError == null) && mResults.stream().allMatch(Result::isPassed);
+	}
+
+	/**
+	 * コンテンツごとの検査結果一覧を取得します。
+	 * <p>検査結果はエントリのインデックス値の昇順に並びます。返されるリストは変更できません。</p>
+	 * @return コンテンツごとの検査結果一覧
+	 */
+	public List<Result> getResults() {
+		return mResults;
+	}
+
+	/**
+	 * 検査に合格しなかったコンテンツの検査結果一覧を取得します。
+	 * @return 検査に合格しなかったコンテンツの検査結果一覧
+	 */
+	public List<Result> getFailures() {
+		return mResults.stream().filter(r -> !r.isPassed()).collect(Collectors.toList());
+	}
+
+	/**
+	 * アーカイブのオープン・検査処理で発生したエラーを取得します。
+	 * @return アーカイブのオープン・検査処理で発生したエラー。エラーが発生していない場合はnull。
+	 */
+	public Exception getError() {
+		return mError;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		var failures = mResults.size() - (int)mResults.stream().filter(Result::isPassed).count();
+		if (mError != null) {
+			return String.format("%s: ERROR (%s)", mPath, mError);
+		} else {
+			return String.format("%s: %d contents, %d failures", mPath, mResults.size(), failures);
+		}
+	}
+}
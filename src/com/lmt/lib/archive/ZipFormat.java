@@ -0,0 +1,239 @@
+package com.lmt.lib.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * ZIPファイルの書き込みで共通に使用する定義・処理
+ *
+ * <p>{@link ZipTranscoder}、{@link StreamRepacker} が出力するZIPファイルのヘッダ類を生成する。
+ * エントリのパスはUTF-8で記録し、最終更新日時はMS-DOS形式と拡張タイムスタンプ(ID 0x5455)で記録する。
+ * ZIP64形式には対応しない。</p>
+ *
+ * @author J-SON3
+ */
+class ZipFormat {
+	/** ローカルファイルヘッダのシグネチャ */
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	/** データ記述子のシグネチャ */
+	static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+	/** セントラルディレクトリヘッダのシグネチャ */
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	/** セントラルディレクトリ終端レコードのシグネチャ */
+	static final int END_SIGNATURE = 0x06054b50;
+	/** ローカルファイルヘッダの固定部のサイズ */
+	static final int LOCAL_HEADER_SIZE = 30;
+	/** データ記述子のサイズ */
+	static final int DATA_DESCRIPTOR_SIZE = 16;
+	/** セントラルディレクトリヘッダの固定部のサイズ */
+	static final int CENTRAL_HEADER_SIZE = 46;
+	/** セントラルディレクトリ終端レコードのサイズ */
+	static final int END_SIZE = 22;
+	/** 拡張タイムスタンプの拡張フィールドのサイズ(最終更新日時のみ) */
+	static final int TIMESTAMP_EXTRA_SIZE = 9;
+	/** 汎用フラグ：CRC32・サイズをデータ記述子に記録する */
+	static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	/** 汎用フラグ：パスがUTF-8 */
+	static final int FLAG_UTF8 = 0x0800;
+	/** 圧縮方式：無圧縮 */
+	static final int METHOD_STORED = 0;
+	/** 圧縮方式：DEFLATE */
+	static final int METHOD_DEFLATED = 8;
+	/** ZIP64形式を使用しない場合のサイズ・位置の上限(この値はZIP64形式を示すため、上限そのものは使用できない) */
+	static final long ZIP32_LIMIT = 0xffffffffL;
+	/** ZIP64形式を使用しない場合のエントリ数の上限 */
+	static final int ZIP32_MAX_ENTRIES = 0xffff;
+
+	/** 拡張タイムスタンプの拡張フィールドID */
+	private static final int TIMESTAMP_EXTRA_ID = 0x5455;
+	/** 作成したバージョン(MS-DOS, 2.0) */
+	private static final int VERSION_MADE_BY = 20;
+	/** 外部属性：フォルダ(MS-DOS) */
+	private static final int ATTRIBUTE_DIRECTORY = 0x10;
+
+	/** 1個のエントリのヘッダ情報 */
+	static class Header {
+		/** エントリ名(UTF-8) */
+		final byte[] name;
+		/** フォルダかどうか */
+		final boolean isDirectory;
+		/** 最終更新日時 */
+		final long lastModified;
+		/** 最終更新日時(MS-DOS形式) */
+		final int dosTime;
+		/** 汎用フラグ */
+		int flags = FLAG_UTF8;
+		/** 圧縮方式 */
+		int method = METHOD_STORED;
+		/** 解凍後データのCRC32 */
+		int crc = 0;
+		/** 解凍後データのサイズ */
+		long size = 0L;
+		/** 格納したデータのサイズ */
+		long compressedSize = 0L;
+		/** ローカルファイルヘッダの位置 */
+		long offset = 0L;
+
+		Header(ArchiveEntry entry) {
+			var path = Manifest.pathString(entry.getPath());
+			this.name = (entry.isLocation() ? path + "/" : path).getBytes(StandardCharsets.UTF_8);
+			this.isDirectory = entry.isLocation();
+			this.lastModified = entry.getLastModified();
+			this.dosTime = dosTime(entry.getLastModified());
+		}
+
+		int versionNeeded() {
+			return ((method == METHOD_DEFLATED) || isDirectory) ? 20 : 10;
+		}
+	}
+
+	/**
+	 * ローカルファイルヘッダ生成
+	 * @param h ヘッダ情報
+	 * @param extra 拡張フィールド
+	 * @return ローカルファイルヘッダ
+	 */
+	static ByteBuffer localHeader(Header h, byte[] extra) {
+		var buf = littleEndian(LOCAL_HEADER_SIZE + h.name.length + extra.length);
+		buf.putInt(LOCAL_HEADER_SIGNATURE);
+		buf.putShort((short)h.versionNeeded());
+		buf.putShort((short)h.flags);
+		buf.putShort((short)h.method);
+		buf.putInt(h.dosTime);
+		buf.putInt(h.crc);
+		buf.putInt((int)h.compressedSize);
+		buf.putInt((int)h.size);
+		buf.putShort((short)h.name.length);
+		buf.putShort((short)extra.length);
+		buf.put(h.name);
+		buf.put(extra);
+		return buf.flip();
+	}
+
+	/**
+	 * データ記述子生成
+	 * @param h ヘッダ情報
+	 * @return データ記述子
+	 */
+	static ByteBuffer dataDescriptor(Header h) {
+		var buf = littleEndian(DATA_DESCRIPTOR_SIZE);
+		buf.putInt(DATA_DESCRIPTOR_SIGNATURE);
+		buf.putInt(h.crc);
+		buf.putInt((int)h.compressedSize);
+		buf.putInt((int)h.size);
+		return buf.flip();
+	}
+
+	/**
+	 * セントラルディレクトリヘッダのサイズ
+	 * @param h ヘッダ情報
+	 * @return セントラルディレクトリヘッダのサイズ
+	 */
+	static int centralHeaderSize(Header h) {
+		return CENTRAL_HEADER_SIZE + h.name.length + TIMESTAMP_EXTRA_SIZE;
+	}
+
+	/**
+	 * セントラルディレクトリヘッダの書き込み
+	 * @param buf 書き込み先
+	 * @param h ヘッダ情報
+	 */
+	static void putCentralHeader(ByteBuffer buf, Header h) {
+		buf.putInt(CENTRAL_HEADER_SIGNATURE);
+		buf.putShort((short)VERSION_MADE_BY);
+		buf.putShort((short)h.versionNeeded());
+		buf.putShort((short)h.flags);
+		buf.putShort((short)h.method);
+		buf.putInt(h.dosTime);
+		buf.putInt(h.crc);
+		buf.putInt((int)h.compressedSize);
+		buf.putInt((int)h.size);
+		buf.putShort((short)h.name.length);
+		buf.putShort((short)TIMESTAMP_EXTRA_SIZE);
+		buf.putShort((short)0);
+		buf.putShort((short)0);
+		buf.putShort((short)0);
+		buf.putInt(h.isDirectory ? ATTRIBUTE_DIRECTORY : 0);
+		buf.putInt((int)h.offset);
+		buf.put(h.name);
+		putTimestampExtra(buf, h.lastModified);
+	}
+
+	/**
+	 * セントラルディレクトリ終端レコード生成
+	 * @param count エントリ数
+	 * @param size セントラルディレクトリのサイズ
+	 * @param offset セントラルディレクトリの位置
+	 * @return セントラルディレクトリ終端レコード
+	 */
+	static ByteBuffer end(int count, long size, long offset) {
+		var buf = littleEndian(END_SIZE);
+		buf.putInt(END_SIGNATURE);
+		buf.putShort((short)0);
+		buf.putShort((short)0);
+		buf.putShort((short)count);
+		buf.putShort((short)count);
+		buf.putInt((int)size);
+		buf.putInt((int)offset);
+		buf.putShort((short)0);
+		return buf.flip();
+	}
+
+	/**
+	 * 拡張タイムスタンプの拡張フィールドの書き込み
+	 * @param buf 書き込み先
+	 * @param lastModified 最終更新日時
+	 */
+	static void putTimestampExtra(ByteBuffer buf, long lastModified) {
+		var seconds = Math.floorDiv(lastModified, 1000L);
+		buf.putShort((short)TIMESTAMP_EXTRA_ID);
+		buf.putShort((short)(TIMESTAMP_EXTRA_SIZE - 4));
+		buf.put((byte)0x01);
+		buf.putInt((int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, seconds)));
+	}
+
+	/**
+	 * 最終更新日時をMS-DOS形式に変換
+	 * <p>MS-DOS形式で表せない日時は、表せる範囲の最も近い日時に丸める。</p>
+	 * @param millis 最終更新日時
+	 * @return MS-DOS形式の最終更新日時(上位16ビットが日付、下位16ビットが時刻)
+	 */
+	static int dosTime(long millis) {
+		var t = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+		if (t.getYear() < 1980) {
+			return (1 << 21) | (1 << 16);
+		} else if (t.getYear() > 2107) {
+			return 0xff9fbf7d;
+		} else {
+			return ((t.getYear() - 1980) << 25) | (t.getMonthValue() << 21) | (t.getDayOfMonth() << 16) |
+					(t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+		}
+	}
+
+	/**
+	 * ZIP64形式を使用しない場合の上限のチェック
+	 * @param value ZIPファイル内の位置またはサイズ
+	 * @return value
+	 * @exception IOException 値が上限以上
+	 */
+	static long checkZip32(long value) throws IOException {
+		if (value >= ZIP32_LIMIT) {
+			throw new IOException("ZIP file exceeds 4GiB, ZIP64 is not supported");
+		}
+		return value;
+	}
+
+	/**
+	 * リトルエンディアンのバッファ生成
+	 * @param capacity 容量
+	 * @return バッファ
+	 */
+	static ByteBuffer littleEndian(int capacity) {
+		return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
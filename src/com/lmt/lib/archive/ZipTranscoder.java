@@ -0,0 +1,539 @@
+package com.lmt.lib.archive;
+
+import static com.lmt.lib.archive.Assertion.*;
+import static com.lmt.lib.archive.ZipFormat.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * アーカイブをランダムアクセスに適したZIPファイルへ変換するクラスです。
+ *
+ * <p>RARファイルやソリッド圧縮された7-ZIPファイルでは、コンテンツを読み込むたびに解凍処理が必要になり、
+ * 格納順に関わらないアクセスでは同じブロックを繰り返し解凍することがあります。当クラスは任意のアーカイブの全てのエントリを、
+ * 圧縮しない(STORED)ZIPファイルに書き出します。変換したZIPファイルは {@link ArchiveManager#open(Path)}、
+ * {@link ArchiveType#ZIP} でオープンでき、コンテンツの読み込みはほぼファイルの読み込みのみで完了します。</p>
+ *
+ * <p>変換では以下のようにZIPファイルを構成します。</p>
+ *
+ * <ul>
+ * <li>エントリは自然順({@link Archive#getEntryInOrder(int)} を参照)に並べます。セントラルディレクトリも同じ順に並べます。</li>
+ * <li>圧縮しないコンテンツのデータの開始位置を、ファイル先頭からアライメントの倍数の位置に揃えます。
+ * 位置の調整にはローカルファイルヘッダの拡張フィールド(ID 0xD935)を使用します。</li>
+ * <li>{@link #setDeflateFilter(Predicate)} で指定したコンテンツは、最速の設定でDEFLATE圧縮します。
+ * 圧縮するコンテンツは、圧縮しないコンテンツの後ろに自然順で並べます。</li>
+ * <li>エントリのパスはUTF-8で記録し、最終更新日時はMS-DOS形式と拡張タイムスタンプ(ID 0x5455)で記録します。</li>
+ * </ul>
+ *
+ * <p>変換元のアーカイブの全てのコンテンツは1回の一括読み込み(圧縮ファイルでは1回の解凍処理)で読み込み、
+ * コンテンツ全体をメモリ上に保持することはありません。圧縮しないコンテンツはサイズから書き込み位置を事前に決め、
+ * 読み込んだ順に直接その位置へ書き込みます。圧縮するコンテンツは作業フォルダの一時ファイルに圧縮後のデータを書き出し、
+ * 全てのコンテンツを読み込んだ後にZIPファイルへ転送します。</p>
+ *
+ * <p>ZIP64形式には対応しません。ZIPファイルのサイズが4GiBを超える、またはエントリ数が65535を超える場合は変換できません。
+ * また、圧縮しないコンテンツは書き込み位置を事前に決めるため、エントリ情報のサイズが不明なコンテンツは
+ * {@link #setDeflateFilter(Predicate)} で圧縮するコンテンツに指定しなければ変換できません。</p>
+ *
+ * <p>当クラスの設定の変更と変換を複数のスレッドから同時に行うことはできません。</p>
+ *
+ * @author J-SON3
+ */
+public class ZipTranscoder {
+	/** デフォルトのアライメント(ページサイズ) */
+	public static final int DEFAULT_ALIGNMENT = 4096;
+
+	/** 書き込みバッファのサイズ */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** アライメント調整の拡張フィールドID */
+	private static final int ALIGNMENT_EXTRA_ID = 0xd935;
+	/** アライメント調整の拡張フィールドの最小サイズ */
+	private static final int ALIGNMENT_EXTRA_MIN_SIZE = 6;
+
+	/** アライメント */
+	private int mAlignment = DEFAULT_ALIGNMENT;
+	/** DEFLATE圧縮するコンテンツの判定処理 */
+	private Predicate<ArchiveEntry> mDeflateFilter = null;
+	/** 作業フォルダ */
+	private Path mScratchDirectory = null;
+
+	/** 出力するエントリ */
+	private static class Item extends ZipFormat.Header {
+		/** 変換元のエントリ */
+		final ArchiveEntry entry;
+		/** DEFLATE圧縮するかどうか */
+		final boolean deflate;
+		/** ローカルファイルヘッダの拡張フィールド */
+		byte[] localExtra;
+		/** 圧縮後のデータを書き出した一時ファイル内の範囲(位置・長さの組) */
+		List<long[]> segments;
+		/** データの書き込みが完了したかどうか */
+		volatile boolean done;
+
+		Item(ArchiveEntry entry, boolean deflate) {
+			super(entry);
+			this.entry = entry;
+			this.deflate = deflate;
+			this.method = deflate ? METHOD_DEFLATED : METHOD_STORED;
+			this.size = entry.isContent() ? entry.getSize() : 0L;
+			this.compressedSize = this.size;
+			this.done = !entry.isContent();
+		}
+
+		long dataOffset() {
+			return offset + LOCAL_HEADER_SIZE + name.length + localExtra.length;
+		}
+	}
+
+	/**
+	 * 新しいZIP変換オブジェクトを構築します。
+	 * <p>アライメントは {@link #DEFAULT_ALIGNMENT}、全てのコンテンツを圧縮しない設定になります。</p>
+	 */
+	public ZipTranscoder() {
+		// Do nothing
+	}
+
+	/**
+	 * 圧縮しないコンテンツのデータの開始位置を揃えるアライメントを設定します。
+	 * <p>1を指定するとデータの開始位置を揃えません。</p>
+	 * @param alignment アライメント(バイト数)
+	 * @exception IllegalArgumentException alignmentが1未満または65535超過
+	 */
+	public void setAlignment(int alignment) {
+		assertArgValueRange(alignment, 1, 0xffff, "alignment");
+		mAlignment = alignment;
+	}
+
+	/**
+	 * 圧縮しないコンテンツのデータの開始位置を揃えるアライメントを取得します。
+	 * @return アライメント(バイト数)
+	 */
+	public int getAlignment() {
+		return mAlignment;
+	}
+
+	/**
+	 * DEFLATE圧縮するコンテンツの判定処理を設定します。
+	 * <p>判定処理は変換元のコンテンツのエントリを受け取り、そのコンテンツを圧縮する場合にtrueを返します。
+	 * nullを指定すると全てのコンテンツを圧縮しません。</p>
+	 * @param deflateFilter DEFLATE圧縮するコンテンツの判定処理
+	 */
+	public void setDeflateFilter(Predicate<ArchiveEntry> deflateFilter) {
+		mDeflateFilter = deflateFilter;
+	}
+
+	/**
+	 * DEFLATE圧縮するコンテンツの判定処理を取得します。
+	 * @return DEFLATE圧縮するコンテンツの判定処理。全てのコンテンツを圧縮しない場合はnull。
+	 */
+	public Predicate<ArchiveEntry> getDeflateFilter() {
+		return mDeflateFilter;
+	}
+
+	/**
+	 * 圧縮後のデータを書き出す一時ファイルの作業フォルダを設定します。
+	 * <p>nullを指定すると出力先のZIPファイルと同じフォルダになります。</p>
+	 * @param scratchDirectory 作業フォルダ
+	 */
+	public void setScratchDirectory(Path scratchDirectory) {
+		mScratchDirectory = scratchDirectory;
+	}
+
+	/**
+	 * 圧縮後のデータを書き出す一時ファイルの作業フォルダを取得します。
+	 * @return 作業フォルダ。出力先のZIPファイルと同じフォルダの場合はnull。
+	 */
+	public Path getScratchDirectory() {
+		return mScratchDirectory;
+	}
+
+	/**
+	 * アーカイブの全てのエントリをZIPファイルへ変換します。
+	 * <p>出力先のファイルが既に存在する場合は上書きします。変換に失敗した場合、出力先のファイルは削除されます。
+	 * 変換中に変換元のアーカイブへアクセスしないでください。</p>
+	 * @param source 変換元のアーカイブ
+	 * @param output 出力先のZIPファイルのパス
+	 * @exception NullPointerException sourceがnull
+	 * @exception NullPointerException outputがnull
+	 * @exception IllegalArgumentException sourceがクローズされている
+	 * @exception IOException ZIPファイルのサイズが4GiBを超える、またはエントリ数が65535を超える
+	 * @exception IOException 圧縮しないコンテンツのエントリ情報のサイズが不明
+	 * @exception IOException コンテンツのサイズがエントリ情報のサイズと異なる
+	 * @exception IOException コンテンツの読み込み、またはZIPファイルの書き込み中にエラーが発生した
+	 */
+	public void transcode(Archive source, Path output) throws IOException {
+		assertArgNotNull(source, "source");
+		assertArgNotNull(output, "output");
+		assertArg(source.isOpen(), "Argument 'source' is closed: %s", source.getPath());
+
+		// 全エントリを自然順に並べ、圧縮しないエントリの位置を決める
+		var items = collectItems(source);
+		var storedEnd = 0L;
+		for (var item : items) {
+			if (!item.deflate) {
+				item.offset = storedEnd;
+				item.localExtra = localExtra(item, storedEnd);
+				storedEnd = checkZip32(item.dataOffset() + item.size);
+			}
+		}
+
+		var success = false;
+		try (var out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			var deflating = items.stream().anyMatch(i -> i.deflate && i.entry.isContent());
+			try (var scratch = deflating ? openScratch(output) : null) {
+				// 全コンテンツを1回の一括読み込みで読み込み、圧縮しないデータは決めた位置に、圧縮したデータは一時ファイルに書き込む
+				var byIndex = new HashMap<Integer, Item>();
+				var contents = new ArrayList<ArchiveEntry>();
+				for (var item : items) {
+					if (item.entry.isContent()) {
+						byIndex.put(item.entry.getIndex(), item);
+						contents.add(item.entry);
+					}
+				}
+				if (!contents.isEmpty()) {
+					var scratchEnd = new long[] { 0L };
+					source.readContents(contents, entry -> {
+						var item = byIndex.get(entry.getIndex());
+						return item.deflate ? new DeflateOutput(item, scratch, scratchEnd) : new StoredOutput(item, out);
+					});
+				}
+				var unread = items.stream().filter(i -> !i.done).count();
+				if (unread > 0) {
+					throw new IOException(String.format("Some contents were not read: %d", unread));
+				}
+
+				// 圧縮しないエントリのローカルファイルヘッダを書き込み、圧縮したエントリを後ろに並べる
+				for (var item : items) {
+					if (!item.deflate) {
+						writeFully(out, localHeader(item, item.localExtra), item.offset);
+					}
+				}
+				var position = storedEnd;
+				for (var item : items) {
+					if (item.deflate) {
+						item.offset = position;
+						item.localExtra = localExtra(item, position);
+						writeFully(out, localHeader(item, item.localExtra), position);
+						position = item.dataOffset();
+						for (var segment : item.segments) {
+							transferFully(scratch, segment[0], segment[1], out, position);
+							position += segment[1];
+						}
+						checkZip32(position);
+					}
+				}
+
+				// セントラルディレクトリを書き込む
+				writeCentralDirectory(out, items, position);
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				Files.deleteIfExists(output);
+			}
+		}
+	}
+
+	/**
+	 * 出力するエントリ一覧の生成
+	 * @param source 変換元のアーカイブ
+	 * @return 自然順に並べた出力するエントリ一覧
+	 * @exception IOException エントリの読み取り中にエラー発生、またはエントリ数が65535を超える
+	 * @exception IOException 圧縮しないコンテンツのエントリ情報のサイズが不明
+	 */
+	private List<Item> collectItems(Archive source) throws IOException {
+		source.cacheEntries();
+		var count = source.getEntryCount();
+		var entries = new ArrayList<ArchiveEntry>(count);
+		for (var i = 0; i < count; i++) {
+			entries.add(source.getEntry(i));
+		}
+		var order = NaturalOrder.sort(entries);
+		if (order.length > ZIP32_MAX_ENTRIES) {
+			throw new IOException(String.format("Too many entries for ZIP: %d", order.length));
+		}
+		var items = new ArrayList<Item>(order.length);
+		for (var index : order) {
+			var entry = entries.get(index);
+			var deflate = entry.isContent() && (mDeflateFilter != null) && mDeflateFilter.test(entry);
+			var item = new Item(entry, deflate);
+			if (item.name.length > 0xffff) {
+				throw new IOException(String.format("Entry name too long: %s", entry.getPath()));
+			}
+			if (entry.isContent() && !deflate && (entry.getSize() < 0L)) {
+				// 圧縮するコンテンツは一時ファイルへの書き出し後にサイズが決まるため、サイズが不明でも変換できる
+				throw new IOException(String.format("Content size is unknown: %s", entry.getPath()));
+			}
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * 一時ファイルのオープン
+	 * @param output 出力先のZIPファイルのパス
+	 * @return 一時ファイルのチャネル(クローズ時に削除)
+	 * @exception IOException 一時ファイルの作成に失敗した
+	 */
+	private FileChannel openScratch(Path output) throws IOException {
+		var dir = (mScratchDirectory != null) ? mScratchDirectory : output.toAbsolutePath().getParent();
+		var path = Files.createTempFile(dir, "transcode-", ".tmp");
+		return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	/**
+	 * ローカルファイルヘッダの拡張フィールド生成
+	 * <p>圧縮しない空ではないコンテンツは、データの開始位置をアライメントの倍数に揃える調整フィールドを付与する。</p>
+	 * @param item 出力するエントリ
+	 * @param offset ローカルファイルヘッダの位置
+	 * @return 拡張フィールド
+	 */
+	private byte[] localExtra(Item item, long offset) {
+		var padding = 0;
+		if (!item.deflate && (item.size > 0L) && (mAlignment > 1)) {
+			var base = offset + LOCAL_HEADER_SIZE + item.name.length + TIMESTAMP_EXTRA_SIZE + ALIGNMENT_EXTRA_MIN_SIZE;
+			padding = ALIGNMENT_EXTRA_MIN_SIZE + (int)((mAlignment - (base % mAlignment)) % mAlignment);
+		}
+		var buf = littleEndian(TIMESTAMP_EXTRA_SIZE + padding);
+		putTimestampExtra(buf, item.lastModified);
+		if (padding > 0) {
+			buf.putShort((short)ALIGNMENT_EXTRA_ID);
+			buf.putShort((short)(padding - 4));
+			buf.putShort((short)mAlignment);
+		}
+		return buf.array();
+	}
+
+	/**
+	 * セントラルディレクトリとセントラルディレクトリ終端レコードの書き込み
+	 * @param out 出力先のZIPファイル
+	 * @param items 出力するエントリ一覧
+	 * @param offset セントラルディレクトリの位置
+	 * @exception IOException ZIPファイルのサイズが4GiBを超える、または書き込み中にエラーが発生した
+	 */
+	private static void writeCentralDirectory(FileChannel out, List<Item> items, long offset) throws IOException {
+		var buf = littleEndian(BUFFER_SIZE);
+		var position = offset;
+		for (var item : items) {
+			var length = centralHeaderSize(item);
+			if (buf.remaining() < length) {
+				position += writeFully(out, buf.flip(), position);
+				buf = littleEndian(Math.max(BUFFER_SIZE, length));
+			}
+			putCentralHeader(buf, item);
+		}
+		position += writeFully(out, buf.flip(), position);
+		checkZip32(position);
+
+		writeFully(out, end(items.size(), position - offset, offset), position);
+	}
+
+	/**
+	 * 指定位置へのバッファ全体の書き込み
+	 * @param channel 書き込み先
+	 * @param buf 書き込むデータ
+	 * @param position 書き込み位置
+	 * @return 書き込んだバイト数
+	 * @exception IOException 書き込み中にエラーが発生した
+	 */
+	private static int writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		var length = buf.remaining();
+		var written = 0;
+		while (buf.hasRemaining()) {
+			written += channel.write(buf, position + written);
+		}
+		return length;
+	}
+
+	/**
+	 * 一時ファイルからZIPファイルへの転送
+	 * @param from 転送元
+	 * @param fromPosition 転送元の位置
+	 * @param count 転送するバイト数
+	 * @param to 転送先
+	 * @param toPosition 転送先の位置
+	 * @exception IOException 転送中にエラーが発生した
+	 */
+	private static void transferFully(FileChannel from, long fromPosition, long count, FileChannel to, long toPosition)
+			throws IOException {
+		to.position(toPosition);
+		var transferred = 0L;
+		while (transferred < count) {
+			var n = from.transferTo(fromPosition + transferred, count - transferred, to);
+			if (n <= 0L) {
+				throw new IOException("Failed to transfer deflated data");
+			}
+			transferred += n;
+		}
+	}
+
+	/** 圧縮しないコンテンツの出力先(事前に決めた位置へ直接書き込む) */
+	private static class StoredOutput extends OutputStream {
+		/** 出力するエントリ */
+		private final Item mItem;
+		/** 出力先のZIPファイル */
+		private final FileChannel mChannel;
+		/** 書き込みバッファ */
+		private final ByteBuffer mBuffer;
+		/** CRC32 */
+		private final CRC32 mCrc = new CRC32();
+		/** 次に書き込む位置 */
+		private long mPosition;
+		/** 受け取ったバイト数 */
+		private long mTotal = 0L;
+
+		StoredOutput(Item item, FileChannel channel) {
+			mItem = item;
+			mChannel = channel;
+			mBuffer = ByteBuffer.allocate((int)Math.min(BUFFER_SIZE, Math.max(1L, item.size)));
+			mPosition = item.dataOffset();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if ((mTotal + len) > mItem.size) {
+				throw new IOException(String.format("Content is larger than its entry: %s", mItem.entry.getPath()));
+			}
+			mCrc.update(b, off, len);
+			mTotal += len;
+			while (len > 0) {
+				var n = Math.min(len, mBuffer.remaining());
+				mBuffer.put(b, off, n);
+				off += n;
+				len -= n;
+				if (!mBuffer.hasRemaining()) {
+					flushBuffer();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (mItem.done) {
+				return;
+			}
+			flushBuffer();
+			if (mTotal != mItem.size) {
+				throw new IOException(String.format("Content is smaller than its entry: %s", mItem.entry.getPath()));
+			}
+			mItem.crc = (int)mCrc.getValue();
+			mItem.done = true;
+		}
+
+		private void flushBuffer() throws IOException {
+			mPosition += writeFully(mChannel, mBuffer.flip(), mPosition);
+			mBuffer.clear();
+		}
+	}
+
+	/** 圧縮するコンテンツの出力先(圧縮後のデータを一時ファイルへ追記する) */
+	private static class DeflateOutput extends OutputStream {
+		/** 出力するエントリ */
+		private final Item mItem;
+		/** 一時ファイル */
+		private final FileChannel mScratch;
+		/** 一時ファイルの書き込み済みサイズ(全出力先で共有) */
+		private final long[] mScratchEnd;
+		/** 圧縮処理 */
+		private final Deflater mDeflater = new Deflater(Deflater.BEST_SPEED, true);
+		/** 圧縮後のデータのバッファ */
+		private final byte[] mBuffer = new byte[BUFFER_SIZE];
+		/** CRC32 */
+		private final CRC32 mCrc = new CRC32();
+		/** バッファ内のデータのサイズ */
+		private int mCount = 0;
+		/** 受け取ったバイト数 */
+		private long mTotal = 0L;
+		/** 圧縮後のデータのサイズ */
+		private long mCompressed = 0L;
+		/** 一時ファイル内の範囲 */
+		private final List<long[]> mSegments = new ArrayList<>();
+
+		DeflateOutput(Item item, FileChannel scratch, long[] scratchEnd) {
+			mItem = item;
+			mScratch = scratch;
+			mScratchEnd = scratchEnd;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			mCrc.update(b, off, len);
+			mTotal += len;
+			mDeflater.setInput(b, off, len);
+			while (!mDeflater.needsInput()) {
+				deflate();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (mItem.done) {
+				return;
+			}
+			try {
+				mDeflater.finish();
+				while (!mDeflater.finished()) {
+					deflate();
+				}
+				flushBuffer();
+			} finally {
+				mDeflater.end();
+			}
+			mItem.crc = (int)mCrc.getValue();
+			mItem.size = checkZip32(mTotal);
+			mItem.compressedSize = checkZip32(mCompressed);
+			mItem.segments = mSegments;
+			mItem.done = true;
+		}
+
+		private void deflate() throws IOException {
+			mCount += mDeflater.deflate(mBuffer, mCount, mBuffer.length - mCount);
+			if (mCount == mBuffer.length) {
+				flushBuffer();
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			if (mCount == 0) {
+				return;
+			}
+			// 並列に読み込まれる他のコンテンツと重ならないよう、一時ファイルの範囲を確保してから書き込む
+			var position = 0L;
+			synchronized (mScratchEnd) {
+				position = mScratchEnd[0];
+				mScratchEnd[0] += mCount;
+			}
+			writeFully(mScratch, ByteBuffer.wrap(mBuffer, 0, mCount), position);
+			var last = mSegments.isEmpty() ? null : mSegments.get(mSegments.size() - 1);
+			if ((last != null) && ((last[0] + last[1]) == position)) {
+				last[1] += mCount;
+			} else {
+				mSegments.add(new long[] { position, mCount });
+			}
+			mCompressed += mCount;
+			mCount = 0;
+		}
+	}
+}
@@ -2,23 +2,33 @@ package com.lmt.lib.archive.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Spliterator;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.lmt.lib.archive.Archive;
 import com.lmt.lib.archive.ArchiveEntry;
 import com.lmt.lib.archive.ArchiveType;
 import com.lmt.lib.archive.EntryCallback;
+import com.lmt.lib.archive.VerifyReport;
 
 /**
  * 1個のフォルダをアーカイブと見なすアーカイブクラスです。
@@ -46,6 +56,78 @@ public class FolderArchive extends Archive {
 		}
 	}
 
+	/** サブフォルダ単位で分割可能なエントリのスプリッテレータ */
+	private class FolderSpliterator implements Spliterator<ArchiveEntry> {
+		/** 読み込み済みで未通知のエントリ */
+		private Deque<ArchiveEntry> mPending = new ArrayDeque<>();
+		/** 内容を未読み込みのフォルダ */
+		private Deque<Path> mFolders = new ArrayDeque<>();
+
+		FolderSpliterator(Path folder) {
+			mFolders.add(folder);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super ArchiveEntry> action) {
+			// 未通知のエントリがなくなったら次のフォルダの内容を読み込む(幅優先)
+			while (mPending.isEmpty() && !mFolders.isEmpty()) {
+				readFolder(mFolders.poll());
+			}
+			var entry = mPending.poll();
+			if (entry == null) {
+				return false;
+			}
+			action.accept(entry);
+			return true;
+		}
+
+		@Override
+		public Spliterator<ArchiveEntry> trySplit() {
+			// 未読み込みのフォルダの半分を分割する(1個のみの場合は未通知のエントリが残っている場合に限り分割する)
+			var count = mFolders.size();
+			if ((count == 0) || ((count == 1) && mPending.isEmpty())) {
+				return null;
+			}
+			var split = new FolderSpliterator(mFolders.poll());
+			for (var i = 1; i < count / 2; i++) {
+				split.mFolders.add(mFolders.poll());
+			}
+			return split;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return DISTINCT | NONNULL;
+		}
+
+		/**
+		 * フォルダの内容読み込み
+		 * <p>フォルダのハンドルを開いたままにしないよう、フォルダ内の全てのエントリを読み込んでからハンドルを閉じる。</p>
+		 * @param folder フォルダのパス
+		 * @exception UncheckedIOException フォルダの読み込み中に入力エラーが発生した
+		 */
+		private void readFolder(Path folder) {
+			try (var children = Files.newDirectoryStream(folder)) {
+				for (var child : children) {
+					var entry = createEntry(child, new AtomicInteger(-2));
+					if (entry != null) {
+						mPending.add(entry);
+						if (entry.isLocation()) {
+							mFolders.add(child);
+						}
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
 	/**
 	 * 新しいフォルダアーカイブオブジェクトを構築します。
 	 * @param path アーカイブのパス
@@ -116,6 +198,55 @@ public class FolderArchive extends Archive {
 		return readAllBytesMain(path);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected SeekableByteChannel onOpenContentChannel(ArchiveEntry entry) throws IOException {
+		return FileChannel.open(getPath().resolve(entry.getPath()), StandardOpenOption.READ);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>フォルダアーカイブでは各ファイルが独立しているため、複数のファイルを並列に読み込みます。</p>
+	 */
+	@Override
+	protected void onReadContents(List<ArchiveEntry> contents, ContentHandler handler) throws IOException {
+		try {
+			contents.parallelStream().forEach(entry -> {
+				try (var stream = Files.newInputStream(getPath().resolve(entry.getPath()))) {
+					var out = handler.open(entry);
+					stream.transferTo(out);
+					out.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>フォルダアーカイブでは各ファイルをオープンできることを検査します。ファイルの内容は読み込みません。</p>
+	 */
+	@Override
+	protected List<VerifyReport.Result> onVerify() throws IOException {
+		var results = new ArrayList<VerifyReport.Result>();
+		for (var entry : mEntryList) {
+			if (entry.isContent()) {
+				var error = (String)null;
+				try {
+					// オープンできれば読み取り可能と見なす
+					FileChannel.open(getPath().resolve(entry.getPath()), StandardOpenOption.READ).close();
+				} catch (IOException e) {
+					error = e.toString();
+				}
+				results.add(new VerifyReport.Result(entry.getIndex(), entry.getPath(), error));
+			}
+		}
+		return results;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected ArchiveEntry onGetEntryByIndex(int index) {
@@ -150,6 +281,15 @@ public class FolderArchive extends Archive {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>フォルダアーカイブではサブフォルダ単位で分割し、フォルダ内のエントリを幅優先で読み込みます。</p>
+	 */
+	@Override
+	protected Spliterator<ArchiveEntry> onEntrySpliterator() {
+		return mCached ? mEntryList.spliterator() : new FolderSpliterator(getPath());
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected int onGetEntryCount() {
@@ -1,15 +1,20 @@
 package com.lmt.lib.archive.impl;
 
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -19,11 +24,18 @@ import com.lmt.lib.archive.Archive;
 import com.lmt.lib.archive.ArchiveEntry;
 import com.lmt.lib.archive.ArchiveType;
 import com.lmt.lib.archive.EntryCallback;
+import com.lmt.lib.archive.VerifyReport;
+import com.lmt.lib.archive.jfr.ArchiveExtractEvent;
 
 import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.ExtractAskMode;
+import net.sf.sevenzipjbinding.ExtractOperationResult;
+import net.sf.sevenzipjbinding.IArchiveExtractCallback;
 import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.ISequentialOutStream;
 import net.sf.sevenzipjbinding.PropID;
-import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
 
 /**
  * 圧縮ファイルをアーカイブと見なすアーカイブクラスです。
@@ -31,8 +43,21 @@ import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
  * @author J-SON3
  */
 public abstract class SzjbArchive extends Archive {
+	/** ネイティブライブラリのハンドル1個あたりの推定メモリ使用量 */
+	private static final long NATIVE_BASE_FOOTPRINT = 256L * 1024L;
+	/** ネイティブライブラリが保持するエントリ1件あたりの推定メモリ使用量 */
+	private static final long NATIVE_ITEM_FOOTPRINT = 256L;
+
 	/** 対応アーカイブフォーマット一覧 */
 	private List<ArchiveFormat> mFormats;
+	/** アーカイブデータの入力ストリームオープン処理 */
+	private StreamOpener mOpener;
+	/** アーカイブデータの入力ストリーム */
+	private IInStream mStream = null;
+	/** アーカイブデータがファイルかどうか(ファイルの場合のみ分割アーカイブに対応する) */
+	private boolean mIsFileSource;
+	/** 分割アーカイブのボリューム一覧 */
+	private SzjbVolumeSet mVolumes = null;
 	/** アーカイブI/F */
 	private IInArchive mArchive = null;
 	/** エントリ総数 */
@@ -44,6 +69,38 @@ public abstract class SzjbArchive extends Archive {
 	/** エントリ情報が全件キャッシュされたかどうか */
 	private boolean mCached = false;
 
+	/**
+	 * ネイティブライブラリのハンドルと入力ストリームの組
+	 * <p>アーカイブがクローズされずに到達不能になった時の解放に使用するため、アーカイブオブジェクトを参照しない。</p>
+	 */
+	private static class NativeHandle implements Closeable {
+		/** アーカイブI/F */
+		private IInArchive mArchive;
+		/** アーカイブデータの入力ストリーム */
+		private IInStream mStream;
+		/** 分割アーカイブのボリューム一覧 */
+		private SzjbVolumeSet mVolumes;
+
+		NativeHandle(IInArchive archive, IInStream stream, SzjbVolumeSet volumes) {
+			mArchive = archive;
+			mStream = stream;
+			mVolumes = volumes;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (mArchive == null) {
+				return;
+			}
+			try {
+				mArchive.close();
+			} finally {
+				mArchive = null;
+				closeStreams(mStream, mVolumes);
+			}
+		}
+	}
+
 	/** ZIPファイルのアーカイブクラス */
 	public static class Zip extends SzjbArchive {
 		/**
@@ -54,17 +111,61 @@ public abstract class SzjbArchive extends Archive {
 		public Zip(Path path) throws IOException {
 			super(ArchiveType.ZIP, List.of(ArchiveFormat.ZIP), path);
 		}
+
+		/**
+		 * メモリ上のデータから新しいZIPファイルアーカイブオブジェクトを構築します。
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param data ZIPファイルのデータ
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式)
+		 */
+		public Zip(Path path, ByteBuffer data) throws IOException {
+			super(ArchiveType.ZIP, List.of(ArchiveFormat.ZIP), path, data);
+		}
+
+		/**
+		 * チャネルから新しいZIPファイルアーカイブオブジェクトを構築します。
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param channel ZIPファイルのデータを読み込むチャネル
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み込みエラー)
+		 */
+		public Zip(Path path, SeekableByteChannel channel) throws IOException {
+			super(ArchiveType.ZIP, List.of(ArchiveFormat.ZIP), path, channel);
+		}
 	}
 
 	/** RARファイルのアーカイブクラス */
 	public static class Rar extends SzjbArchive {
 		/**
 		 * 新しいRARファイルアーカイブオブジェクトを構築します。
+		 * <p>ファイル先頭のシグネチャからRAR4/RAR5のどちらの形式かを判定し、判定した形式でのみオープンを行います。
+		 * 形式を判定できなかった場合はRAR5、RAR4の順にオープンを試みます。</p>
 		 * @param path RARファイルパス
 		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み取り権限なし)
 		 */
 		public Rar(Path path) throws IOException {
-			super(ArchiveType.RAR, List.of(ArchiveFormat.RAR5, ArchiveFormat.RAR), path);
+			super(ArchiveType.RAR, SzjbSignature.rarFormats(path), path);
+		}
+
+		/**
+		 * メモリ上のデータから新しいRARファイルアーカイブオブジェクトを構築します。
+		 * <p>RAR4/RAR5の形式はデータ先頭のシグネチャから判定します。</p>
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param data RARファイルのデータ
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式)
+		 */
+		public Rar(Path path, ByteBuffer data) throws IOException {
+			super(ArchiveType.RAR, SzjbSignature.rarFormats(data), path, data);
+		}
+
+		/**
+		 * チャネルから新しいRARファイルアーカイブオブジェクトを構築します。
+		 * <p>RAR4/RAR5の形式はチャネル先頭のシグネチャから判定します。</p>
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param channel RARファイルのデータを読み込むチャネル
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み込みエラー)
+		 */
+		public Rar(Path path, SeekableByteChannel channel) throws IOException {
+			super(ArchiveType.RAR, SzjbSignature.rarFormats(channel), path, channel);
 		}
 	}
 
@@ -78,6 +179,144 @@ public abstract class SzjbArchive extends Archive {
 		public SevenZip(Path path) throws IOException {
 			super(ArchiveType.SEVEN_ZIP, List.of(ArchiveFormat.SEVEN_ZIP), path);
 		}
+
+		/**
+		 * メモリ上のデータから新しい7-ZIPファイルアーカイブオブジェクトを構築します。
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param data 7-ZIPファイルのデータ
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式)
+		 */
+		public SevenZip(Path path, ByteBuffer data) throws IOException {
+			super(ArchiveType.SEVEN_ZIP, List.of(ArchiveFormat.SEVEN_ZIP), path, data);
+		}
+
+		/**
+		 * チャネルから新しい7-ZIPファイルアーカイブオブジェクトを構築します。
+		 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+		 * @param channel 7-ZIPファイルのデータを読み込むチャネル
+		 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み込みエラー)
+		 */
+		public SevenZip(Path path, SeekableByteChannel channel) throws IOException {
+			super(ArchiveType.SEVEN_ZIP, List.of(ArchiveFormat.SEVEN_ZIP), path, channel);
+		}
+	}
+
+	/** 整合性検査(テストモードでの解凍)の結果を収集するコールバック */
+	private static class VerifyCallback implements IArchiveExtractCallback {
+		/** エントリインデックスによる検査結果(合格の場合はnull) */
+		final Map<Integer, String> results = new HashMap<>();
+		/** 検査中のエントリインデックス */
+		int current = -1;
+
+		@Override
+		public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) {
+			// テストモードでは解凍後データを保持しないため出力ストリームは不要
+			current = index;
+			return null;
+		}
+
+		@Override
+		public void prepareOperation(ExtractAskMode extractAskMode) {
+			// Do nothing
+		}
+
+		@Override
+		public void setOperationResult(ExtractOperationResult extractOperationResult) {
+			var ok = (extractOperationResult == ExtractOperationResult.OK);
+			results.put(current, ok ? null : extractOperationResult.toString());
+		}
+
+		@Override
+		public void setTotal(long total) {
+			// Do nothing
+		}
+
+		@Override
+		public void setCompleted(long complete) {
+			// Do nothing
+		}
+	}
+
+	/** 複数のコンテンツを1回の解凍処理で読み込み、ハンドラの出力ストリームへ書き込むコールバック */
+	private static class ReadCallback implements IArchiveExtractCallback {
+		/** エントリインデックスによる読み込み対象のエントリ */
+		final Map<Integer, ArchiveEntry> entries;
+		/** コンテンツの出力先を提供するハンドラ */
+		final ContentHandler handler;
+		/** 読み込み中のコンテンツの出力先(読み込み対象外の場合はnull) */
+		OutputStream current = null;
+		/** 読み込み中のエントリインデックス */
+		int currentIndex = -1;
+		/** 解凍処理で取り出したバイト数 */
+		long decoded = 0L;
+
+		ReadCallback(Map<Integer, ArchiveEntry> entries, ContentHandler handler) {
+			this.entries = entries;
+			this.handler = handler;
+		}
+
+		@Override
+		public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) throws SevenZipException {
+			var entry = entries.get(index);
+			currentIndex = index;
+			current = null;
+			if ((entry == null) || (extractAskMode != ExtractAskMode.EXTRACT)) {
+				return null;
+			}
+			try {
+				var out = handler.open(entry);
+				current = out;
+				return data -> {
+					try {
+						out.write(data);
+						decoded += data.length;
+						return data.length;
+					} catch (IOException e) {
+						throw new SevenZipException("Failed to write content", e);
+					}
+				};
+			} catch (IOException e) {
+				throw new SevenZipException("Failed to open content handler", e);
+			}
+		}
+
+		@Override
+		public void prepareOperation(ExtractAskMode extractAskMode) {
+			// Do nothing
+		}
+
+		@Override
+		public void setOperationResult(ExtractOperationResult extractOperationResult) throws SevenZipException {
+			if (current == null) {
+				return;
+			}
+			if (extractOperationResult != ExtractOperationResult.OK) {
+				var msg = String.format("Failed to extract content: index=%d, result=%s", currentIndex, extractOperationResult);
+				throw new SevenZipException(msg);
+			}
+			try {
+				current.close();
+			} catch (IOException e) {
+				throw new SevenZipException("Failed to close content handler", e);
+			}
+			current = null;
+		}
+
+		@Override
+		public void setTotal(long total) {
+			// Do nothing
+		}
+
+		@Override
+		public void setCompleted(long complete) {
+			// Do nothing
+		}
+	}
+
+	/** アーカイブデータの入力ストリームオープン処理インターフェイス */
+	@FunctionalInterface
+	private interface StreamOpener {
+		IInStream open(Path path) throws IOException;
 	}
 
 	/** エントリ情報の実装 */
@@ -98,6 +337,7 @@ public abstract class SzjbArchive extends Archive {
 			this.size = (Long)archiveFile.getProperty(index, PropID.SIZE);
 			var date = (Date)archiveFile.getProperty(index, PropID.LAST_MODIFICATION_TIME);
 			this.lastModified = (date == null) ? 0L : date.toInstant().toEpochMilli();
+			this.crc = this.isContent ? (Integer)archiveFile.getProperty(index, PropID.CRC) : null;
 		}
 
 		/**
@@ -124,39 +364,166 @@ public abstract class SzjbArchive extends Archive {
 	 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み取り権限なし)
 	 */
 	protected SzjbArchive(ArchiveType archiveType, List<ArchiveFormat> formats, Path path) throws IOException {
+		this(archiveType, formats, path, SzjbFileInStream::open, true);
+	}
+
+	/**
+	 * メモリ上のデータを読み込む圧縮ファイルアーカイブクラスの共通コンストラクタです。
+	 * <p>データの現在位置から終端までをアーカイブデータとして扱います。データはコピーせずに直接参照するため、
+	 * アーカイブのオープン中にデータの内容を変更してはなりません。</p>
+	 * @param archiveType アーカイブ種別
+	 * @param formats 対応アーカイブフォーマット一覧
+	 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+	 * @param data アーカイブデータ
+	 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式)
+	 */
+	protected SzjbArchive(ArchiveType archiveType, List<ArchiveFormat> formats, Path path, ByteBuffer data)
+			throws IOException {
+		this(archiveType, formats, path, p -> new SzjbBufferInStream(data), false);
+	}
+
+	/**
+	 * チャネルからデータを読み込む圧縮ファイルアーカイブクラスの共通コンストラクタです。
+	 * <p>チャネルの先頭から終端までをアーカイブデータとして扱います。チャネルはアーカイブのクローズ時、
+	 * またはオープンに失敗した時にクローズされます。</p>
+	 * @param archiveType アーカイブ種別
+	 * @param formats 対応アーカイブフォーマット一覧
+	 * @param path アーカイブのパス(識別用であり、ファイルの読み込みには使用しない)
+	 * @param channel アーカイブデータを読み込むチャネル
+	 * @exception IOException アーカイブのオープンエラー(例：未知のファイル形式、読み込みエラー)
+	 */
+	protected SzjbArchive(ArchiveType archiveType, List<ArchiveFormat> formats, Path path,
+			SeekableByteChannel channel) throws IOException {
+		this(archiveType, formats, path, p -> new SzjbChannelInStream(channel), false);
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param archiveType アーカイブ種別
+	 * @param formats 対応アーカイブフォーマット一覧
+	 * @param path アーカイブのパス
+	 * @param opener アーカイブデータの入力ストリームオープン処理
+	 * @param isFileSource アーカイブデータがファイルかどうか
+	 * @exception IOException アーカイブのオープンエラー
+	 */
+	private SzjbArchive(ArchiveType archiveType, List<ArchiveFormat> formats, Path path, StreamOpener opener,
+			boolean isFileSource) throws IOException {
 		super(archiveType, path);
 		mFormats = List.copyOf(formats);
+		mOpener = opener;
+		mIsFileSource = isFileSource;
 		onOpenArchive(path);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	protected void onOpenArchive(Path path) throws IOException {
-		// 指定パスのファイルをランダムアクセスファイルとして開く
-		var raFile = (RandomAccessFile)null;
+		openNative(path);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>圧縮ファイルのアーカイブは常にネイティブライブラリのハンドルを保持します。</p>
+	 */
+	@Override
+	protected boolean onHasNativeResource() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>ファイルからオープンしたアーカイブのみ、ネイティブライブラリのハンドルとファイルを閉じます。
+	 * メモリ上のデータ・チャネルからオープンしたアーカイブは再取得できないため一時解放しません。</p>
+	 */
+	@Override
+	protected boolean onSuspendArchive() throws IOException {
+		if (!mIsFileSource || (mArchive == null)) {
+			return false;
+		}
+		closeNative();
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>アーカイブファイルを開き直します。エントリ数が一時解放前と異なる場合はアーカイブファイルが変更されたと見なしエラーとします。</p>
+	 */
+	@Override
+	protected void onResumeArchive() throws IOException {
+		var numOfItem = mNumOfItem;
+		openNative(getPath());
+		if (mNumOfItem != numOfItem) {
+			closeNative();
+			mNumOfItem = numOfItem;
+			throw new IOException(String.format("%s: Archive was modified while suspended", getPath()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>圧縮ファイルのアーカイブはコンテンツをオープンする際、コンテンツ全体をメモリ上に解凍します。</p>
+	 */
+	@Override
+	protected boolean onExtractsToHeap() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>ネイティブライブラリのハンドル1個分の管理領域と、エントリ数に比例するエントリ情報の領域から概算します。</p>
+	 */
+	@Override
+	protected long onEstimateNativeFootprint() {
+		return (mArchive == null) ? 0L : (NATIVE_BASE_FOOTPRINT + NATIVE_ITEM_FOOTPRINT * mNumOfItem);
+	}
+
+	/**
+	 * ネイティブライブラリのハンドルを開く
+	 * @param path アーカイブのパス
+	 * @exception IOException アーカイブのオープンエラー
+	 */
+	private void openNative(Path path) throws IOException {
+		// ネイティブライブラリが使用可能になるまで待つ(未初期化の場合はここで初期化する)
+		SzjbNativeLoader.ensureInitialized();
+
+		// アーカイブデータの入力ストリームを開く
+		var stream = mOpener.open(path);
+		var volumes = (SzjbVolumeSet)null;
 		try {
-			raFile = new RandomAccessFile(path.toFile(), "r");
-		} catch (FileNotFoundException e) {
-			// API仕様はNoSuchFileExceptionを投げることになっているので例外を載せ替える
-			throw new NoSuchFileException(path.toString(), null, e.getMessage());
+			if (mIsFileSource) {
+				// ファイルの場合は後続ボリュームを必要に応じて開けるようにする(分割アーカイブでなければ使用されない)
+				volumes = new SzjbVolumeSet(path, stream);
+				stream = volumes.openArchiveStream();
+			}
+		} catch (IOException e) {
+			stream.close();
+			throw e;
 		}
 
 		var formatCount = mFormats.size();
-		var raStream = new RandomAccessFileInStream(raFile);
 		for (var i = 0; i < formatCount; i++) {
 			try {
 				// 対応フォーマットの優先順にオープンを試みる
 				var format = mFormats.get(i);
-				mArchive = net.sf.sevenzipjbinding.SevenZip.openInArchive(format, raStream);
+				if (volumes == null) {
+					mArchive = net.sf.sevenzipjbinding.SevenZip.openInArchive(format, stream);
+				} else {
+					mArchive = net.sf.sevenzipjbinding.SevenZip.openInArchive(format, stream, volumes);
+				}
 				mNumOfItem = mArchive.getNumberOfItems();
 				break;
 			} catch (IOException e) {
 				// 全ての対応フォーマットを試行した結果オープン失敗した場合はエラーとする
 				if ((i + 1) == formatCount) {
+					closeStreams(stream, volumes);
 					throw e;
 				}
 			}
 		}
+		mStream = stream;
+		mVolumes = volumes;
+		recordNativeHandles(1);
+		setNativeResource(new NativeHandle(mArchive, stream, volumes));
 	}
 
 	/** {@inheritDoc} */
@@ -165,8 +532,32 @@ public abstract class SzjbArchive extends Archive {
 		mEntryMap = null;
 		mEntryList = null;
 		mCached = false;
-		mArchive.close();
-		mArchive = null;
+		if (mArchive != null) {
+			closeNative();
+		}
+	}
+
+	/**
+	 * ネイティブライブラリのハンドルを閉じる
+	 * @exception IOException クローズ中にエラーが発生した
+	 */
+	private void closeNative() throws IOException {
+		setNativeResource(null);
+		try {
+			mArchive.close();
+		} finally {
+			recordNativeHandles(-1);
+			mArchive = null;
+			closeStreams(mStream, mVolumes);
+			mStream = null;
+			mVolumes = null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected SeekableByteChannel onOpenContentChannel(ArchiveEntry entry) throws IOException {
+		return new SzjbEntryChannel(this, entry.getIndex(), entry.getSize());
 	}
 
 	/** {@inheritDoc} */
@@ -205,6 +596,64 @@ public abstract class SzjbArchive extends Archive {
 		return readAllBytesMain(getContentWithAssert(path).getIndex());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>圧縮ファイルでは全てのコンテンツを1回の解凍処理で読み込みます。ソリッド圧縮されたブロックを重複して解凍することはありません。
+	 * 7-ZIP J-Bindingのアーカイブは複数スレッドからの同時アクセスに対応しないため、並列には読み込みません。</p>
+	 */
+	@Override
+	protected void onReadContents(List<ArchiveEntry> contents, ContentHandler handler) throws IOException {
+		var entries = new HashMap<Integer, ArchiveEntry>();
+		contents.forEach(e -> entries.put(e.getIndex(), e));
+		var indices = contents.stream().mapToInt(ArchiveEntry::getIndex).sorted().toArray();
+		var callback = new ReadCallback(entries, handler);
+		try {
+			mArchive.extract(indices, false, callback);
+		} finally {
+			recordDecoded(callback.decoded);
+			recordReturned(callback.decoded);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>圧縮ファイルでは全てのコンテンツをテストモードで1回の解凍処理により解凍し、CRCを検証します。
+	 * 解凍後データは保持しません。</p>
+	 */
+	@Override
+	protected List<VerifyReport.Result> onVerify() throws IOException {
+		// 検査対象のコンテンツを抽出する(エントリ情報を読み取れないエントリは不合格とする)
+		var results = new ArrayList<VerifyReport.Result>();
+		var contents = new ArrayList<ArchiveEntry>();
+		var count = onGetEntryCount();
+		for (var i = 0; i < count; i++) {
+			var entry = mCached ? mEntryList.get(i) : createEntry(i, true);
+			if (!entry.isContent() && !entry.isLocation()) {
+				results.add(new VerifyReport.Result(i, null, "Failed to read entry properties"));
+			} else if (entry.isContent()) {
+				contents.add(entry);
+			}
+		}
+
+		// 全コンテンツを1回の解凍処理で検査する
+		var callback = new VerifyCallback();
+		var abortMessage = (String)null;
+		try {
+			var indices = contents.stream().mapToInt(ArchiveEntry::getIndex).toArray();
+			mArchive.extract(indices, true, callback);
+		} catch (SevenZipException e) {
+			// 解凍処理が中断された場合、検査結果が通知されなかったコンテンツは不合格とする
+			abortMessage = e.toString();
+		}
+		for (var entry : contents) {
+			var index = entry.getIndex();
+			var error = callback.results.containsKey(index) ? callback.results.get(index) :
+					((abortMessage == null) ? "Not verified" : abortMessage);
+			results.add(new VerifyReport.Result(index, entry.getPath(), error));
+		}
+		return results;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected ArchiveEntry onGetEntryByIndex(int index) {
@@ -235,6 +684,23 @@ public abstract class SzjbArchive extends Archive {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>圧縮ファイルではインデックス値の範囲で分割します。7-ZIP J-Bindingのアーカイブは複数スレッドからの同時アクセスに対応しないため、
+	 * 並列ストリームで使用された場合、エントリ情報の読み込みは1スレッドずつ行い、それ以降の処理が並列に行われます。</p>
+	 */
+	@Override
+	protected Spliterator<ArchiveEntry> onEntrySpliterator() {
+		if (mCached) {
+			return mEntryList.spliterator();
+		}
+		return new IndexSpliterator(i -> {
+			synchronized (this) {
+				return createEntry(i, false);
+			}
+		}, 0, mNumOfItem);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected int onGetEntryCount() {
@@ -290,7 +756,9 @@ public abstract class SzjbArchive extends Archive {
 	 * @exception IOException {@link #extractFile(int)} に準ずる
 	 */
 	private InputStream openContentMain(int index) throws IOException {
-		return extractFile(index).getInputStream();
+		var stream = extractFile(index);
+		recordReturned(stream.getBytes().length);
+		return stream.getInputStream();
 	}
 
 	/**
@@ -300,7 +768,9 @@ public abstract class SzjbArchive extends Archive {
 	 * @exception IOException {@link #extractFile(int)} に準ずる
 	 */
 	private byte[] readAllBytesMain(int index) throws IOException {
-		return extractFile(index).getBytes();
+		var bytes = extractFile(index).getBytes();
+		recordReturned(bytes.length);
+		return bytes;
 	}
 
 	/**
@@ -327,8 +797,79 @@ public abstract class SzjbArchive extends Archive {
 		}
 
 		// コンテンツをメモリ上に解凍する
+		var event = new ArchiveExtractEvent();
+		event.begin();
 		var bufferInMem = new SzjbMemoryStream((int)entry.getSize());
-		mArchive.extractSlow(index, bufferInMem);
+		extractTo(index, bufferInMem);
+		commitExtractEvent(event, index, entry.getSize(), false);
 		return bufferInMem;
 	}
+
+	/**
+	 * アーカイブデータの入力ストリームとボリューム一覧をクローズする
+	 * <p>ボリューム一覧がある場合、全ボリュームのストリームはボリューム一覧によりクローズされる。
+	 * (7-ZIPの分割アーカイブを連結したストリームはクローズに対応していないため直接クローズしない)</p>
+	 * @param stream アーカイブデータの入力ストリーム
+	 * @param volumes ボリューム一覧(ファイル以外の場合はnull)
+	 * @exception IOException クローズ中にエラーが発生した
+	 */
+	private static void closeStreams(IInStream stream, SzjbVolumeSet volumes) throws IOException {
+		if (volumes == null) {
+			stream.close();
+		} else {
+			volumes.close();
+		}
+	}
+
+	/**
+	 * コンテンツ解凍のJFRイベント出力
+	 * @param event JFRイベント
+	 * @param index エントリインデックス
+	 * @param bytes 取り出したバイト数
+	 * @param cacheHit 解凍済みデータのキャッシュから読み込んだかどうか
+	 */
+	void commitExtractEvent(ArchiveExtractEvent event, int index, long bytes, boolean cacheHit) {
+		if (event.shouldCommit()) {
+			event.path = getPath().toString();
+			event.index = index;
+			event.bytes = bytes;
+			event.cacheHit = cacheHit;
+			event.commit();
+		}
+	}
+
+	/**
+	 * コンテンツを先頭から解凍し、解凍後データを指定出力ストリームへ出力する
+	 * <p>出力ストリームが例外をスローすると解凍は中断され、その例外がスローされる。</p>
+	 * @param index エントリインデックス
+	 * @param out 解凍後データの出力先
+	 * @exception IOException 入力エラー発生、または出力ストリームが例外をスローした
+	 */
+	void extractTo(int index, ISequentialOutStream out) throws IOException {
+		var decoded = new long[] { 0L };
+		try {
+			mArchive.extractSlow(index, data -> {
+				decoded[0] += data.length;
+				return out.write(data);
+			});
+		} finally {
+			recordDecoded(decoded[0]);
+		}
+	}
+
+	/**
+	 * 解凍済みブロックキャッシュの参照を統計情報に集計する(コンテンツチャネル用)
+	 * @param hit キャッシュにヒットした場合true
+	 */
+	void recordChannelCache(boolean hit) {
+		recordBlockCache(hit);
+	}
+
+	/**
+	 * 呼び出し元へ返したバイト数を統計情報に集計する(コンテンツチャネル用)
+	 * @param bytesReturned 呼び出し元へ返したバイト数
+	 */
+	void recordChannelRead(long bytesReturned) {
+		recordReturned(bytesReturned);
+	}
 }
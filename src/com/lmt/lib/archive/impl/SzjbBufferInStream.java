@@ -0,0 +1,69 @@
+package com.lmt.lib.archive.impl;
+
+import java.nio.ByteBuffer;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * メモリ上のアーカイブデータを読み込む用のストリーム
+ *
+ * <p>バイトバッファの現在位置から終端までをアーカイブデータとして扱う。バッファの内容はコピーせずに直接参照するため、
+ * ストリームの使用中にバッファの内容を変更してはならない。</p>
+ *
+ * @author J-SON3
+ */
+class SzjbBufferInStream implements IInStream {
+	/** アーカイブデータ */
+	private ByteBuffer mBuffer;
+	/** 読み込み位置 */
+	private long mPos;
+
+	/**
+	 * コンストラクタ
+	 * @param data アーカイブデータ
+	 */
+	SzjbBufferInStream(ByteBuffer data) {
+		mBuffer = data.slice();
+		mPos = 0L;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long seek(long offset, int seekOrigin) throws SevenZipException {
+		var base = 0L;
+		switch (seekOrigin) {
+		case SEEK_SET: base = 0L; break;
+		case SEEK_CUR: base = mPos; break;
+		case SEEK_END: base = mBuffer.limit(); break;
+		default: throw new SevenZipException(String.format("Unknown seek origin: %d", seekOrigin));
+		}
+
+		var newPos = base + offset;
+		if (newPos < 0L) {
+			throw new SevenZipException(String.format("Seek before beginning of data: %d", newPos));
+		}
+		mPos = newPos;
+		return mPos;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(byte[] data) throws SevenZipException {
+		var limit = mBuffer.limit();
+		if (mPos >= limit) {
+			return 0;
+		}
+		var length = (int)Math.min(data.length, limit - mPos);
+		mBuffer.position((int)mPos);
+		mBuffer.get(data, 0, length);
+		mPos += length;
+		return length;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() {
+		// Do nothing
+	}
+}
@@ -0,0 +1,85 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * シーク可能なチャネルからアーカイブデータを読み込む用のストリーム
+ *
+ * <p>チャネルの先頭から終端までをアーカイブデータとして扱う。ストリームをクローズするとチャネルもクローズされる。</p>
+ *
+ * @author J-SON3
+ */
+class SzjbChannelInStream implements IInStream {
+	/** アーカイブデータを読み込むチャネル */
+	private SeekableByteChannel mChannel;
+	/** 読み込み位置 */
+	private long mPos;
+
+	/**
+	 * コンストラクタ
+	 * @param channel アーカイブデータを読み込むチャネル
+	 */
+	SzjbChannelInStream(SeekableByteChannel channel) {
+		mChannel = channel;
+		mPos = 0L;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long seek(long offset, int seekOrigin) throws SevenZipException {
+		var base = 0L;
+		switch (seekOrigin) {
+		case SEEK_SET: base = 0L; break;
+		case SEEK_CUR: base = mPos; break;
+		case SEEK_END: base = size(); break;
+		default: throw new SevenZipException(String.format("Unknown seek origin: %d", seekOrigin));
+		}
+
+		var newPos = base + offset;
+		if (newPos < 0L) {
+			throw new SevenZipException(String.format("Seek before beginning of data: %d", newPos));
+		}
+		mPos = newPos;
+		return mPos;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(byte[] data) throws SevenZipException {
+		try {
+			mChannel.position(mPos);
+			var length = mChannel.read(ByteBuffer.wrap(data));
+			if (length <= 0) {
+				return 0;
+			}
+			mPos += length;
+			return length;
+		} catch (IOException e) {
+			throw new SevenZipException("Failed to read from channel", e);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+
+	/**
+	 * チャネルのサイズ取得
+	 * @return チャネルのサイズ
+	 * @exception SevenZipException サイズの取得に失敗した
+	 */
+	private long size() throws SevenZipException {
+		try {
+			return mChannel.size();
+		} catch (IOException e) {
+			throw new SevenZipException("Failed to get size of channel", e);
+		}
+	}
+}
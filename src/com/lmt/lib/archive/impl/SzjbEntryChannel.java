@@ -0,0 +1,239 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.lmt.lib.archive.jfr.ArchiveExtractEvent;
+
+import net.sf.sevenzipjbinding.ISequentialOutStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * 圧縮ファイル内コンテンツの解凍後データにランダムアクセスするためのチャネル
+ *
+ * <p>7-ZIP J-Bindingの解凍処理はコンテンツの先頭から順にしかデータを取り出せない。当チャネルは解凍後データを固定長のブロックに分割して
+ * LRUキャッシュし、キャッシュにないブロックが要求された場合はコンテンツの先頭から解凍をやり直して要求ブロックとそれに続く
+ * 先読み範囲のブロックを取り出し、先読み範囲の末尾に達した時点で解凍を中断する。</p>
+ *
+ * <p>コンテンツ全体をメモリ上に展開することなく入れ子アーカイブを読み込むために使用する。
+ * チャネルの使用中はオーナーのアーカイブを開いたままにしておかなければならない。</p>
+ *
+ * @author J-SON3
+ */
+class SzjbEntryChannel implements SeekableByteChannel {
+	/** ブロックサイズ */
+	static final int BLOCK_SIZE = 256 * 1024;
+	/** キャッシュするブロック数の上限 */
+	static final int CACHE_BLOCKS = 64;
+	/** キャッシュにないブロックを解凍する際に先読みするブロック数(要求ブロックを含む) */
+	static final int READ_AHEAD_BLOCKS = 16;
+
+	/** コンテンツのオーナー */
+	private SzjbArchive mOwner;
+	/** コンテンツのエントリインデックス */
+	private int mIndex;
+	/** コンテンツの解凍後サイズ */
+	private long mSize;
+	/** 読み込み位置 */
+	private long mPos = 0L;
+	/** チャネルがオープン中かどうか */
+	private boolean mOpen = true;
+	/** ブロック番号による解凍済みブロックのキャッシュ(LRU) */
+	private Map<Long, byte[]> mCache = new LinkedHashMap<>(CACHE_BLOCKS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > CACHE_BLOCKS;
+		}
+	};
+
+	/** 指定範囲のブロックを取り出し、範囲末尾に達したら解凍を中断する出力ストリーム */
+	private class BlockCollector implements ISequentialOutStream {
+		/** 取り出す範囲の先頭ブロック番号 */
+		final long firstBlock;
+		/** 取り出したブロック */
+		final byte[][] blocks;
+		/** 取り出す範囲の先頭位置 */
+		final long rangeStart;
+		/** 取り出す範囲の末尾位置 */
+		final long rangeEnd;
+		/** 解凍済みデータの位置 */
+		long offset = 0L;
+		/** 取り出しが完了したかどうか */
+		boolean done = false;
+
+		BlockCollector(long firstBlock, int blockCount) {
+			this.firstBlock = firstBlock;
+			this.blocks = new byte[blockCount][];
+			this.rangeStart = firstBlock * BLOCK_SIZE;
+			this.rangeEnd = Math.min(mSize, (firstBlock + blockCount) * BLOCK_SIZE);
+			for (var i = 0; i < blockCount; i++) {
+				var blockStart = (firstBlock + i) * BLOCK_SIZE;
+				blocks[i] = new byte[(int)Math.min(BLOCK_SIZE, mSize - blockStart)];
+			}
+		}
+
+		@Override
+		public int write(byte[] data) throws SevenZipException {
+			var chunkStart = offset;
+			var chunkEnd = offset + data.length;
+			var from = Math.max(chunkStart, rangeStart);
+			var to = Math.min(chunkEnd, rangeEnd);
+			while (from < to) {
+				var blockNo = from / BLOCK_SIZE;
+				var block = blocks[(int)(blockNo - firstBlock)];
+				var blockOffset = (int)(from - (blockNo * BLOCK_SIZE));
+				var length = (int)Math.min(to - from, block.length - blockOffset);
+				System.arraycopy(data, (int)(from - chunkStart), block, blockOffset, length);
+				from += length;
+			}
+			offset = chunkEnd;
+
+			if (offset >= rangeEnd) {
+				// 必要な範囲を取り出したらそれ以降の解凍は不要なので中断する
+				done = true;
+				throw new SevenZipException("Extraction is interrupted because requested blocks are collected");
+			}
+			return data.length;
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param owner コンテンツのオーナー
+	 * @param index コンテンツのエントリインデックス
+	 * @param size コンテンツの解凍後サイズ
+	 */
+	SzjbEntryChannel(SzjbArchive owner, int index, long size) {
+		mOwner = owner;
+		mIndex = index;
+		mSize = size;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isOpen() {
+		return mOpen;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() {
+		mOpen = false;
+		mCache.clear();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		assertOpen();
+		if (mPos >= mSize) {
+			return -1;
+		}
+
+		var total = 0;
+		while (dst.hasRemaining() && (mPos < mSize)) {
+			var blockNo = mPos / BLOCK_SIZE;
+			var block = getBlock(blockNo);
+			var blockOffset = (int)(mPos - (blockNo * BLOCK_SIZE));
+			var length = Math.min(dst.remaining(), block.length - blockOffset);
+			dst.put(block, blockOffset, length);
+			mPos += length;
+			total += length;
+		}
+		mOwner.recordChannelRead(total);
+		return total;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int write(ByteBuffer src) {
+		throw new NonWritableChannelException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long position() throws IOException {
+		assertOpen();
+		return mPos;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SeekableByteChannel position(long newPosition) throws IOException {
+		assertOpen();
+		if (newPosition < 0L) {
+			throw new IllegalArgumentException(String.format("Negative position: %d", newPosition));
+		}
+		mPos = newPosition;
+		return this;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long size() throws IOException {
+		assertOpen();
+		return mSize;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SeekableByteChannel truncate(long size) {
+		throw new NonWritableChannelException();
+	}
+
+	/**
+	 * 解凍済みブロック取得
+	 * @param blockNo ブロック番号
+	 * @return 解凍済みブロック
+	 * @exception IOException 解凍に失敗した
+	 */
+	private byte[] getBlock(long blockNo) throws IOException {
+		var event = new ArchiveExtractEvent();
+		event.begin();
+		var block = mCache.get(blockNo);
+		if (block != null) {
+			mOwner.recordChannelCache(true);
+			mOwner.commitExtractEvent(event, mIndex, block.length, true);
+			return block;
+		}
+
+		// キャッシュにないブロックは先読み範囲を含めて解凍し直す
+		mOwner.recordChannelCache(false);
+		var blockCount = (mSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		var readCount = (int)Math.min(READ_AHEAD_BLOCKS, blockCount - blockNo);
+		var collector = new BlockCollector(blockNo, readCount);
+		try {
+			mOwner.extractTo(mIndex, collector);
+		} catch (IOException e) {
+			// 必要な範囲の取り出し完了による中断は正常終了として扱う
+			if (!collector.done) {
+				throw e;
+			}
+		}
+		if (!collector.done) {
+			var msg = String.format("Content is shorter than expected: index=%d, size=%d", mIndex, mSize);
+			throw new IOException(msg);
+		}
+
+		for (var i = 0; i < readCount; i++) {
+			mCache.put(blockNo + i, collector.blocks[i]);
+		}
+		mOwner.commitExtractEvent(event, mIndex, collector.rangeEnd - collector.rangeStart, false);
+		return collector.blocks[0];
+	}
+
+	/**
+	 * チャネルがオープン中であることのアサーション
+	 * @exception ClosedChannelException チャネル、またはオーナーのアーカイブがクローズされている
+	 */
+	private void assertOpen() throws ClosedChannelException {
+		if (!mOpen || !mOwner.isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+}
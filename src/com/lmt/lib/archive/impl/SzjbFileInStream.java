@@ -0,0 +1,222 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.lmt.lib.archive.ArchiveManager;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+/**
+ * アーカイブファイルを読み込む用のストリーム
+ *
+ * <p>ネイティブのコーデックは小さな読み込み・シークを大量に発行するため、1回の読み込みごとにシステムコールを発行すると
+ * 処理効率が著しく低下する。当ストリームは先読みバッファを介してファイルを読み込み、連続した読み込みが続く間は
+ * バッファサイズを拡大することで、コーデックからの読み込み要求を少数のシステムコールに集約する。</p>
+ *
+ * <p>メモリマップの上限サイズを指定した場合は、それ以下のサイズのファイルをメモリマップし、読み込みをシステムコールなしで
+ * 処理する。メモリマップしたファイルはストリームのクローズ後もガベージコレクションされるまでマップが解除されず、
+ * OSによってはその間ファイルの削除・置き換えができない。また、マップ中にファイルが切り詰められると読み込み時に
+ * {@link InternalError} が発生する(当ストリームでは {@link SevenZipException} に変換する)が、環境によってはJVMが
+ * 異常終了する場合がある。そのため、メモリマップは既定では使用しない。</p>
+ *
+ * @author J-SON3
+ */
+class SzjbFileInStream implements IInStream {
+	/** 先読みバッファの最小サイズ */
+	static final int MIN_BUFFER_SIZE = 64 * 1024;
+	/** 先読みバッファの最大サイズ */
+	static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	/** アーカイブファイルのチャネル */
+	private FileChannel mChannel;
+	/** アーカイブファイルのサイズ */
+	private long mSize;
+	/** メモリマップしたファイルの内容(メモリマップしない場合はnull) */
+	private MappedByteBuffer mMapped;
+	/** 先読みバッファ(メモリマップする場合はnull) */
+	private ByteBuffer mBuffer;
+	/** 先読みバッファ先頭のファイル上の位置 */
+	private long mBufferStart = 0L;
+	/** 次に先読みする際のバッファサイズ */
+	private int mBufferSize = MIN_BUFFER_SIZE;
+	/** 読み込み位置 */
+	private long mPos = 0L;
+	/** チャネルからの読み込み回数 */
+	private long mChannelReads = 0L;
+
+	/**
+	 * コンストラクタ
+	 * @param channel アーカイブファイルのチャネル
+	 * @param mapLimit メモリマップするファイルサイズの上限。0の場合はメモリマップしない。
+	 * @exception IOException メモリマップに失敗した
+	 */
+	private SzjbFileInStream(FileChannel channel, long mapLimit) throws IOException {
+		mChannel = channel;
+		mSize = channel.size();
+		if ((mSize > 0L) && (mSize <= Math.min(mapLimit, Integer.MAX_VALUE))) {
+			mMapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, mSize);
+			mBuffer = null;
+		} else {
+			mMapped = null;
+			mBuffer = ByteBuffer.allocate(MIN_BUFFER_SIZE).limit(0);
+		}
+	}
+
+	/**
+	 * 指定パスのアーカイブファイルを開く
+	 * <p>{@link ArchiveManager#getMemoryMapLimit()} 以下のサイズのファイルはメモリマップする。</p>
+	 * @param path アーカイブファイルのパス
+	 * @return アーカイブファイルを読み込むストリーム
+	 * @exception NoSuchFileException 指定パスのファイルが存在しない、またはファイルではない
+	 * @exception IOException ファイルのオープンエラー
+	 */
+	static SzjbFileInStream open(Path path) throws IOException {
+		return open(path, ArchiveManager.getInstance().getMemoryMapLimit());
+	}
+
+	/**
+	 * 指定パスのアーカイブファイルを開く
+	 * @param path アーカイブファイルのパス
+	 * @param mapLimit メモリマップするファイルサイズの上限。0の場合はファイルサイズに関わらず先読みバッファを使用する。
+	 * @return アーカイブファイルを読み込むストリーム
+	 * @exception NoSuchFileException 指定パスのファイルが存在しない、またはファイルではない
+	 * @exception IOException ファイルのオープンエラー
+	 */
+	static SzjbFileInStream open(Path path, long mapLimit) throws IOException {
+		if (Files.isDirectory(path)) {
+			// ディレクトリのチャネルはオープンできてしまう場合があるため事前にエラーとする
+			throw new NoSuchFileException(path.toString(), null, "This is not a file");
+		}
+		var channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new SzjbFileInStream(channel, mapLimit);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long seek(long offset, int seekOrigin) throws SevenZipException {
+		var base = 0L;
+		switch (seekOrigin) {
+		case SEEK_SET: base = 0L; break;
+		case SEEK_CUR: base = mPos; break;
+		case SEEK_END: base = mSize; break;
+		default: throw new SevenZipException(String.format("Unknown seek origin: %d", seekOrigin));
+		}
+
+		var newPos = base + offset;
+		if (newPos < 0L) {
+			throw new SevenZipException(String.format("Seek before beginning of data: %d", newPos));
+		}
+		mPos = newPos;
+		return mPos;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(byte[] data) throws SevenZipException {
+		if ((mPos >= mSize) || (data.length == 0)) {
+			return 0;
+		}
+
+		var length = (int)Math.min(data.length, mSize - mPos);
+		if (mMapped != null) {
+			// メモリマップしたファイルからはシステムコールなしで読み込む
+			try {
+				mMapped.position((int)mPos);
+				mMapped.get(data, 0, length);
+			} catch (InternalError e) {
+				// マップ中にファイルが切り詰められた場合はメモリアクセスエラーになる
+				throw new SevenZipException("Archive file was truncated while mapped", e);
+			}
+		} else {
+			length = readBuffered(data, length);
+		}
+		mPos += length;
+		return length;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		mMapped = null;
+		mBuffer = null;
+		mChannel.close();
+	}
+
+	/**
+	 * チャネルからの読み込み回数取得
+	 * @return チャネルからの読み込み回数(ストリームをオープンしてからの累計)
+	 */
+	long getChannelReads() {
+		return mChannelReads;
+	}
+
+	/**
+	 * 先読みバッファを介した読み込み
+	 * @param data 読み込み先
+	 * @param length 読み込むバイト数
+	 * @return 読み込んだバイト数
+	 * @exception SevenZipException ファイルの読み込みエラー
+	 */
+	private int readBuffered(byte[] data, int length) throws SevenZipException {
+		var bufferEnd = mBufferStart + mBuffer.limit();
+		if ((mPos < mBufferStart) || (mPos >= bufferEnd)) {
+			if (length >= mBufferSize) {
+				// バッファより大きい読み込みはバッファを介さず直接読み込む
+				return readChannel(ByteBuffer.wrap(data, 0, length), mPos);
+			}
+
+			// 連続した読み込みが続く間はバッファサイズを拡大し、それ以外は最小サイズに戻す
+			mBufferSize = (mPos == bufferEnd) ? Math.min(mBufferSize * 2, MAX_BUFFER_SIZE) : MIN_BUFFER_SIZE;
+			if (mBuffer.capacity() < mBufferSize) {
+				mBuffer = ByteBuffer.allocate(mBufferSize);
+			}
+			mBuffer.clear().limit((int)Math.min(mBufferSize, mSize - mPos));
+			var readLength = readChannel(mBuffer, mPos);
+			mBuffer.position(0).limit(readLength);
+			mBufferStart = mPos;
+		}
+
+		var offset = (int)(mPos - mBufferStart);
+		var copyLength = Math.min(length, mBuffer.limit() - offset);
+		mBuffer.position(offset);
+		mBuffer.get(data, 0, copyLength);
+		return copyLength;
+	}
+
+	/**
+	 * チャネルからの位置指定読み込み
+	 * @param dst 読み込み先(残り容量分を読み込む)
+	 * @param position 読み込み位置
+	 * @return 読み込んだバイト数
+	 * @exception SevenZipException ファイルの読み込みエラー
+	 */
+	private int readChannel(ByteBuffer dst, long position) throws SevenZipException {
+		try {
+			var total = 0;
+			while (dst.hasRemaining()) {
+				var readLength = mChannel.read(dst, position + total);
+				mChannelReads++;
+				if (readLength <= 0) {
+					break;
+				}
+				total += readLength;
+			}
+			return total;
+		} catch (IOException e) {
+			throw new SevenZipException("Failed to read archive file", e);
+		}
+	}
+}
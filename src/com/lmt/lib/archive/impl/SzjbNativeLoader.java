@@ -0,0 +1,470 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.lmt.lib.archive.ArchiveEntry;
+import com.lmt.lib.archive.jfr.NativeInitEvent;
+
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipNativeInitializationException;
+
+/**
+ * 7-ZIP J-Bindingのネイティブライブラリ初期化を管理するクラスです。
+ *
+ * <p>7-ZIP J-Bindingは最初のアーカイブオープン時にプラットフォームJARからネイティブライブラリを展開・ロードします。
+ * 当クラスはその処理をアプリケーションが任意のタイミング(バックグラウンドスレッドを含む)で前倒しして実行する手段を提供します。</p>
+ *
+ * <p>ネイティブライブラリの展開先には毎回新しい一時フォルダではなく、ユーザーごとの固定のキャッシュフォルダを使用します。
+ * キャッシュフォルダ内に展開済みのライブラリが存在する場合、プラットフォームJARの設定ファイルに記録されたハッシュ値で
+ * ファイル内容を検証し、一致すれば再展開を行わずにそのファイルを再利用します。ライブラリは同じフォルダの一時ファイルへ展開・検証した後に
+ * アトミックなリネームで配置するため、複数のJVMが同時に展開しても読み込み途中のファイルがロードされることはありません。</p>
+ *
+ * <p>POSIXのファイルシステムでは、展開先フォルダは所有者のみがアクセスできる権限で作成します。既存のフォルダを使用する場合、
+ * フォルダの所有者が現在のユーザーであり、所有者以外が書き込めないことを確認し、満たさない場合はJVMごとの一時フォルダ
+ * (所有者のみがアクセスできる権限)に展開します。</p>
+ *
+ * @author J-SON3
+ */
+public final class SzjbNativeLoader {
+	/** プラットフォームごとのライブラリ設定ファイル名 */
+	private static final String LIB_PROPERTIES = "sevenzipjbinding-lib.properties";
+	/** 所有者のみがアクセスできるフォルダの権限 */
+	private static final String OWNER_ONLY = "rwx------";
+	/** ウォームアップでオープン・解凍を繰り返す回数(主要な処理がJITコンパイル対象となる程度の回数) */
+	private static final int WARM_UP_ITERATIONS = 200;
+	/** ウォームアップで使用するアーカイブのパス(識別用) */
+	private static final Path WARM_UP_PATH = Path.of("warm-up.zip");
+
+	/** 初期化処理のFuture(初期化未開始の場合はnull) */
+	private static CompletableFuture<Duration> sFuture = null;
+	/** 初期化に要した時間(初期化未完了の場合はnull) */
+	private static volatile Duration sInitDuration = null;
+	/** ウォームアップに要した時間(ウォームアップ未完了の場合はnull) */
+	private static volatile Duration sWarmUpDuration = null;
+
+	/** コンストラクタ */
+	private SzjbNativeLoader() {
+		// Do nothing
+	}
+
+	/**
+	 * ネイティブライブラリの既定の展開先フォルダを取得します。
+	 * <p>既定の展開先は現在のユーザーのキャッシュフォルダ配下の固定フォルダです。Windowsでは環境変数LOCALAPPDATA、
+	 * それ以外では環境変数XDG_CACHE_HOME(未設定の場合はホームフォルダの.cache)を使用します。
+	 * いずれも絶対パスとして解釈できない場合(例：ホームフォルダが不明なコンテナ環境)はシステムの一時フォルダを使用します。
+	 * JVMを再起動しても同じフォルダが使用されます。</p>
+	 * @return ネイティブライブラリの既定の展開先フォルダ
+	 */
+	public static Path getDefaultLibraryDirectory() {
+		var base = (Path)null;
+		if (System.getProperty("os.name", "").startsWith("Windows")) {
+			base = absolutePath(System.getenv("LOCALAPPDATA"));
+		} else {
+			base = absolutePath(System.getenv("XDG_CACHE_HOME"));
+		}
+		if (base == null) {
+			var home = absolutePath(System.getProperty("user.home"));
+			base = (home != null) ? home.resolve(".cache") : Path.of(System.getProperty("java.io.tmpdir"));
+		}
+		return base.resolve("archive-library").resolve("native");
+	}
+
+	/**
+	 * 絶対パスの解釈
+	 * @param path パスの文字列
+	 * @return 絶対パス。nullまたは空文字列、パスとして不正、または絶対パスでない場合はnull。
+	 */
+	private static Path absolutePath(String path) {
+		if ((path == null) || path.isEmpty()) {
+			return null;
+		}
+		try {
+			var result = Path.of(path);
+			return result.isAbsolute() ? result : null;
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * ネイティブライブラリの初期化が完了しているかどうかを返します。
+	 * @return 初期化が正常に完了していればtrue
+	 */
+	public static boolean isInitialized() {
+		return sInitDuration != null;
+	}
+
+	/**
+	 * ネイティブライブラリの初期化に要した時間を取得します。
+	 * <p>返される時間はライブラリの展開・ロードに要した時間です。ウォームアップの時間は含まれません。</p>
+	 * @return 初期化に要した時間。初期化が完了していない場合はnull。
+	 * @see #getWarmUpDuration()
+	 */
+	public static Duration getInitDuration() {
+		return sInitDuration;
+	}
+
+	/**
+	 * ウォームアップに要した時間を取得します。
+	 * <p>ウォームアップは初期化の完了後にバックグラウンドスレッドで行われます。ウォームアップを指定していない場合、
+	 * ウォームアップが完了していない場合、またはウォームアップに失敗した場合はnullを返します。</p>
+	 * @return ウォームアップに要した時間。ウォームアップが完了していない場合はnull。
+	 */
+	public static Duration getWarmUpDuration() {
+		return sWarmUpDuration;
+	}
+
+	/**
+	 * ネイティブライブラリの初期化をバックグラウンドスレッドで開始します。
+	 * <p>既に初期化が開始されている場合は新たな初期化は行わず、先に開始された初期化処理のFutureを返します。
+	 * その場合、引数の指定内容は無視されます。</p>
+	 * <p>ウォームアップを指定すると、ライブラリのロード後にメモリ上の小さなZIPファイルのオープン・解凍を繰り返し実行し、
+	 * ネイティブコードの初回実行コストとJavaのJITコンパイル対象となる処理の初回実行コストを前倒しで消化します。
+	 * ウォームアップは返されるFutureの完了後に同じバックグラウンドスレッドで行われ、アーカイブのオープンはその完了を待ちません。
+	 * ウォームアップに失敗しても初期化の結果には影響しません。</p>
+	 * @param libraryDir ネイティブライブラリの展開先フォルダ。nullの場合は既定の展開先。
+	 * @param warmUp 初期化後にウォームアップを行うかどうか
+	 * @return ライブラリのロード完了時に所要時間で完了するFuture。初期化失敗時はIOExceptionで例外的に完了する。
+	 */
+	public static synchronized CompletableFuture<Duration> initializeAsync(Path libraryDir, boolean warmUp) {
+		if (sFuture == null) {
+			var future = new CompletableFuture<Duration>();
+			var thread = new Thread(() -> runInitialize(future, libraryDir, warmUp), "archive-native-init");
+			thread.setDaemon(true);
+			sFuture = future;
+			thread.start();
+		}
+		return sFuture;
+	}
+
+	/**
+	 * ネイティブライブラリが使用可能になるまで待機します。
+	 * <p>初期化が開始されていない場合は呼び出し元スレッドで既定の展開先を使用して初期化を行います(ウォームアップなし)。
+	 * 初期化が実行中の場合はその完了を待ちます。</p>
+	 * @exception IOException ネイティブライブラリの初期化に失敗した
+	 */
+	static void ensureInitialized() throws IOException {
+		if (sInitDuration != null) {
+			return;
+		}
+
+		var future = (CompletableFuture<Duration>)null;
+		var runHere = false;
+		synchronized (SzjbNativeLoader.class) {
+			if (sFuture == null) {
+				sFuture = new CompletableFuture<>();
+				runHere = true;
+			}
+			future = sFuture;
+		}
+		if (runHere) {
+			runInitialize(future, null, false);
+		}
+
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			// 失敗した初期化は破棄し、次回の呼び出しで再度初期化を試みられるようにする
+			synchronized (SzjbNativeLoader.class) {
+				if (sFuture == future) {
+					sFuture = null;
+				}
+			}
+			var cause = e.getCause();
+			throw (cause instanceof IOException) ? (IOException)cause : new IOException(cause);
+		}
+	}
+
+	/**
+	 * 初期化処理のメイン処理
+	 * <p>ライブラリのロードが完了した時点でFutureを完了させ、その後でウォームアップを行う。</p>
+	 * @param future 初期化結果を設定するFuture
+	 * @param libraryDir ネイティブライブラリの展開先フォルダ。nullの場合は既定の展開先。
+	 * @param warmUp ウォームアップを行うかどうか
+	 */
+	private static void runInitialize(CompletableFuture<Duration> future, Path libraryDir, boolean warmUp) {
+		var startTime = System.nanoTime();
+		var event = new NativeInitEvent();
+		event.begin();
+		var dir = (libraryDir == null) ? getDefaultLibraryDirectory() : libraryDir;
+		try {
+			loadLibraries(dir);
+			var duration = Duration.ofNanos(System.nanoTime() - startTime);
+			sInitDuration = duration;
+			commitInitEvent(event, dir, warmUp, true);
+			future.complete(duration);
+		} catch (SevenZipNativeInitializationException e) {
+			commitInitEvent(event, dir, warmUp, false);
+			future.completeExceptionally(new IOException("Failed to initialize native library", e));
+		} catch (IOException e) {
+			commitInitEvent(event, dir, warmUp, false);
+			future.completeExceptionally(e);
+		} catch (RuntimeException | LinkageError e) {
+			commitInitEvent(event, dir, warmUp, false);
+			future.completeExceptionally(new IOException("Failed to initialize native library", e));
+		} catch (Error e) {
+			// 待機中のスレッドが永久に待ち続けないよう、Futureを完了させてからスローする
+			future.completeExceptionally(new IOException("Failed to initialize native library", e));
+			throw e;
+		}
+		if (warmUp && !future.isCompletedExceptionally()) {
+			runWarmUp();
+		}
+	}
+
+	/**
+	 * ウォームアップの実行
+	 * <p>ウォームアップは最適化のための処理であるため、失敗しても例外をスローしない。その場合、所要時間は記録されない。</p>
+	 */
+	private static void runWarmUp() {
+		var startTime = System.nanoTime();
+		try {
+			warmUp();
+			sWarmUpDuration = Duration.ofNanos(System.nanoTime() - startTime);
+		} catch (IOException | RuntimeException e) {
+			// Do nothing
+		}
+	}
+
+	/**
+	 * ネイティブライブラリの展開・ロード
+	 * <p>実行環境のプラットフォームのライブラリを展開先フォルダ配下のビルドごとのフォルダに展開し、ロードしてから初期化する。</p>
+	 * @param dir ネイティブライブラリの展開先フォルダ
+	 * @exception IOException 展開先フォルダが安全でない、またはライブラリの展開に失敗した
+	 * @exception SevenZipNativeInitializationException プラットフォームの判定、またはライブラリの初期化に失敗した
+	 */
+	private static void loadLibraries(Path dir) throws IOException, SevenZipNativeInitializationException {
+		var platform = SevenZip.getPlatformBestMatch();
+		var props = new Properties();
+		try (var in = SevenZip.class.getResourceAsStream("/" + platform + "/" + LIB_PROPERTIES)) {
+			if (in == null) {
+				throw new IOException(String.format("Native library properties not found: %s", platform));
+			}
+			props.load(in);
+		}
+		var buildRef = props.getProperty("build.ref", SevenZip.getSevenZipJBindingVersion());
+		var libDir = (Path)null;
+		try {
+			libDir = preparePrivateDirectory(preparePrivateDirectory(dir).resolve("SevenZipJBinding-" + buildRef));
+		} catch (IOException e) {
+			// 展開先フォルダを安全に使用できない場合は、このJVM専用の一時フォルダ(所有者のみアクセス可能)に展開する
+			var tempDir = Files.createTempDirectory("archive-native-");
+			libDir = preparePrivateDirectory(tempDir.resolve("SevenZipJBinding-" + buildRef));
+		}
+		var libs = new ArrayList<Path>();
+		for (var i = 1; props.getProperty("lib." + i + ".name") != null; i++) {
+			var name = props.getProperty("lib." + i + ".name");
+			var hash = props.getProperty("lib." + i + ".hash");
+			libs.add(installLibrary(libDir, "/" + platform + "/" + name, hash));
+		}
+		if (libs.isEmpty()) {
+			throw new IOException(String.format("No native library for platform: %s", platform));
+		}
+		for (var lib : libs) {
+			System.load(lib.toString());
+		}
+		SevenZip.initLoadedLibraries();
+	}
+
+	/**
+	 * 所有者のみが書き込めるフォルダの準備
+	 * <p>フォルダが存在しない場合は所有者のみがアクセスできる権限で作成する。POSIXのファイルシステムでは、
+	 * フォルダの所有者が現在のユーザーであること、所有者以外が書き込めないこと、シンボリックリンクでないことを確認する。
+	 * 現在のユーザーはユーザー名ではなく、フォルダ内に作成したファイルの所有者で判定する(ユーザー名を解決できない環境に対応するため)。</p>
+	 * @param dir フォルダ
+	 * @return dir
+	 * @exception IOException フォルダの作成に失敗した、またはフォルダが安全でない
+	 */
+	private static Path preparePrivateDirectory(Path dir) throws IOException {
+		var posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+		if (!posix) {
+			Files.createDirectories(dir);
+			return dir;
+		}
+		if (Files.notExists(dir, LinkOption.NOFOLLOW_LINKS)) {
+			Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY)));
+		}
+		var attrs = Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		var perms = attrs.permissions();
+		if (!attrs.isDirectory() || perms.contains(PosixFilePermission.GROUP_WRITE) ||
+				perms.contains(PosixFilePermission.OTHERS_WRITE) || !attrs.owner().equals(currentUser(dir))) {
+			throw new IOException(String.format("Native library directory is not private to the current user: %s", dir));
+		}
+		return dir;
+	}
+
+	/**
+	 * 現在のユーザーの取得
+	 * <p>指定フォルダに一時ファイルを作成し、その所有者を現在のユーザーとする。一時ファイルは直ちに削除する。</p>
+	 * @param dir フォルダ
+	 * @return 現在のユーザー
+	 * @exception IOException フォルダにファイルを作成できない
+	 */
+	private static UserPrincipal currentUser(Path dir) throws IOException {
+		var probe = Files.createTempFile(dir, ".owner-", ".tmp");
+		try {
+			return Files.getOwner(probe, LinkOption.NOFOLLOW_LINKS);
+		} finally {
+			Files.deleteIfExists(probe);
+		}
+	}
+
+	/**
+	 * ライブラリファイルの展開
+	 * <p>展開済みのファイルのハッシュ値が一致すればそのまま使用する。一致しない場合は同じフォルダの一時ファイルに展開し、
+	 * ハッシュ値を検証してからアトミックなリネームで配置する。</p>
+	 * @param libDir 展開先フォルダ
+	 * @param resource プラットフォームJAR内のライブラリのリソース名
+	 * @param hash ライブラリのハッシュ値(SHA-1)
+	 * @return 展開したライブラリファイルのパス
+	 * @exception IOException ライブラリの展開に失敗した
+	 */
+	private static Path installLibrary(Path libDir, String resource, String hash) throws IOException {
+		var target = libDir.resolve(resource.substring(resource.lastIndexOf('/') + 1));
+		if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS) && hash.equalsIgnoreCase(sha1(target))) {
+			return target;
+		}
+		var temp = Files.createTempFile(libDir, target.getFileName().toString() + "-", ".tmp");
+		try {
+			try (var in = SevenZip.class.getResourceAsStream(resource); var out = Files.newOutputStream(temp)) {
+				if (in == null) {
+					throw new IOException(String.format("Native library not found in platform JAR: %s", resource));
+				}
+				in.transferTo(out);
+			}
+			if (!hash.equalsIgnoreCase(sha1(temp))) {
+				throw new IOException(String.format("Native library hash mismatch: %s", resource));
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				// ロード中のライブラリを置き換えられない環境では、他のJVMが同じ内容を配置済みであればそれを使用する
+				if (!Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS) || !hash.equalsIgnoreCase(sha1(target))) {
+					throw e;
+				}
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return target;
+	}
+
+	/**
+	 * ファイルのSHA-1ハッシュ値算出
+	 * @param file ファイル
+	 * @return ハッシュ値(16進数の小文字)
+	 * @exception IOException ファイルの読み込みに失敗した
+	 */
+	private static String sha1(Path file) throws IOException {
+		var md = (MessageDigest)null;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		try (var in = Files.newInputStream(file)) {
+			var buffer = new byte[64 * 1024];
+			for (var n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				md.update(buffer, 0, n);
+			}
+		}
+		var hex = new StringBuilder();
+		for (var b : md.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * ネイティブライブラリ初期化のJFRイベント出力
+	 * @param event JFRイベント
+	 * @param dir ネイティブライブラリの展開先フォルダ
+	 * @param warmUp ウォームアップを行ったかどうか
+	 * @param success 初期化に成功したかどうか
+	 */
+	private static void commitInitEvent(NativeInitEvent event, Path dir, boolean warmUp, boolean success) {
+		if (event.shouldCommit()) {
+			event.libraryDirectory = dir.toString();
+			event.warmUp = warmUp;
+			event.success = success;
+			event.commit();
+		}
+	}
+
+	/**
+	 * ウォームアップ処理
+	 * <p>アプリケーションが行う処理と同じ経路(メモリ上のデータを読み込む入力ストリーム、エントリ情報の読み取り、
+	 * コンテンツの解凍)でZIPファイルのオープン・解凍を繰り返す。アーカイブマネージャには登録せず、
+	 * コンテンツのキャッシュ・予算等の設定の影響も受けない。</p>
+	 * @exception IOException ウォームアップ用データの解凍に失敗した
+	 */
+	private static void warmUp() throws IOException {
+		var zipBytes = ByteBuffer.wrap(createWarmUpZip());
+		for (var i = 0; i < WARM_UP_ITERATIONS; i++) {
+			try (var archive = new SzjbArchive.Zip(WARM_UP_PATH, zipBytes.duplicate())) {
+				var contents = new ArrayList<ArchiveEntry>();
+				archive.onEnumEntries((entry, current, count) -> contents.add(entry));
+				for (var entry : contents) {
+					archive.onReadAllBytesByEntry(entry);
+					try (var in = archive.onOpenContentByEntry(entry)) {
+						in.transferTo(OutputStream.nullOutputStream());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * ウォームアップ用のZIPファイルデータ生成
+	 * @return ZIPファイルデータ
+	 * @exception IOException データ生成失敗
+	 */
+	private static byte[] createWarmUpZip() throws IOException {
+		var data = new byte[4096];
+		for (var i = 0; i < data.length; i++) {
+			data[i] = (byte)(i % 61);
+		}
+
+		var out = new ByteArrayOutputStream();
+		try (var zip = new ZipOutputStream(out)) {
+			// 無圧縮のエントリ
+			var crc = new CRC32();
+			crc.update(data);
+			var stored = new ZipEntry("stored.bin");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(data.length);
+			stored.setCrc(crc.getValue());
+			zip.putNextEntry(stored);
+			zip.write(data);
+			zip.closeEntry();
+
+			// 圧縮されたエントリ
+			zip.putNextEntry(new ZipEntry("deflated.bin"));
+			zip.write(data);
+			zip.closeEntry();
+		}
+		return out.toByteArray();
+	}
+}
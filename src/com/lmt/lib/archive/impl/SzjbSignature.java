@@ -0,0 +1,291 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lmt.lib.archive.ArchiveType;
+
+import net.sf.sevenzipjbinding.ArchiveFormat;
+
+/**
+ * ファイル先頭のシグネチャ(マジックバイト)から圧縮ファイルの形式を判定するクラスです。
+ *
+ * <p>判定はファイル先頭の数十バイトを1回の位置指定読み込みで取得して行います。ZIPファイルの先頭にシグネチャが見つからない場合
+ * (自己解凍形式など)に限り、ファイル末尾の中央ディレクトリ終端レコードを追加で探します。</p>
+ *
+ * <p>ファイルパスによる判定結果は、パス・最終更新日時・ファイルサイズの組み合わせをキーにキャッシュされます。
+ * 同じファイルを再度判定する場合、ファイルが更新されていなければファイルを読まずにキャッシュした判定結果を返します。</p>
+ *
+ * @author J-SON3
+ */
+public final class SzjbSignature {
+	/** 判定に使用するファイル先頭のバイト数 */
+	static final int HEADER_SIZE = 32;
+	/** ZIPの中央ディレクトリ終端レコードを探すファイル末尾のバイト数 */
+	private static final int EOCD_SEARCH_SIZE = 1024;
+	/** 判定結果キャッシュの最大件数 */
+	private static final int CACHE_CAPACITY = 4096;
+
+	/** ZIPのローカルファイルヘッダのシグネチャ */
+	private static final byte[] SIG_ZIP_LOCAL = { 'P', 'K', 3, 4 };
+	/** ZIPの中央ディレクトリ終端レコードのシグネチャ(空のZIPファイルの先頭) */
+	private static final byte[] SIG_ZIP_EOCD = { 'P', 'K', 5, 6 };
+	/** ZIPの分割アーカイブマーカーのシグネチャ */
+	private static final byte[] SIG_ZIP_SPANNED = { 'P', 'K', 7, 8 };
+	/** 7-ZIPのシグネチャ */
+	private static final byte[] SIG_7Z = { '7', 'z', (byte)0xbc, (byte)0xaf, 0x27, 0x1c };
+	/** RAR1.5～RAR4のシグネチャ */
+	private static final byte[] SIG_RAR4 = { 'R', 'a', 'r', '!', 0x1a, 0x07, 0x00 };
+	/** RAR5のシグネチャ */
+	private static final byte[] SIG_RAR5 = { 'R', 'a', 'r', '!', 0x1a, 0x07, 0x01, 0x00 };
+
+	/** 判定結果キャッシュのエントリ */
+	private static class Verdict {
+		/** ファイルの最終更新日時 */
+		final long lastModified;
+		/** ファイルサイズ */
+		final long size;
+		/** 判定結果(不明な場合はnull) */
+		final ArchiveFormat format;
+
+		Verdict(long lastModified, long size, ArchiveFormat format) {
+			this.lastModified = lastModified;
+			this.size = size;
+			this.format = format;
+		}
+	}
+
+	/** パスによる判定結果キャッシュ(LRU) */
+	private static final Map<Path, Verdict> sCache = new LinkedHashMap<>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, Verdict> eldest) {
+			return size() > CACHE_CAPACITY;
+		}
+	};
+
+	/** コンストラクタ */
+	private SzjbSignature() {
+		// Do nothing
+	}
+
+	/**
+	 * 指定ファイルのアーカイブ種別をシグネチャから判定します。
+	 * @param path 判定対象ファイルのパス
+	 * @return アーカイブ種別。ファイルが読めない、またはシグネチャが既知のものでない場合は {@link ArchiveType#UNKNOWN}。
+	 */
+	public static ArchiveType probeType(Path path) {
+		return toArchiveType(probe(path));
+	}
+
+	/**
+	 * 指定データのアーカイブ種別をシグネチャから判定します。
+	 * <p>データの現在位置から判定を行います。データの位置は変化しません。</p>
+	 * @param data 判定対象データ
+	 * @return アーカイブ種別。シグネチャが既知のものでない場合は {@link ArchiveType#UNKNOWN}。
+	 */
+	public static ArchiveType probeType(ByteBuffer data) {
+		return toArchiveType(probe(data));
+	}
+
+	/**
+	 * 指定チャネルのアーカイブ種別をシグネチャから判定します。
+	 * <p>チャネルの先頭から判定を行います。チャネルの位置は判定前の位置に戻されます。</p>
+	 * @param channel 判定対象チャネル
+	 * @return アーカイブ種別。チャネルが読めない、またはシグネチャが既知のものでない場合は {@link ArchiveType#UNKNOWN}。
+	 */
+	public static ArchiveType probeType(SeekableByteChannel channel) {
+		return toArchiveType(probe(channel));
+	}
+
+	/**
+	 * 指定ファイルの圧縮形式をシグネチャから判定します。
+	 * @param path 判定対象ファイルのパス
+	 * @return 圧縮形式。ファイルが読めない、またはシグネチャが既知のものでない場合はnull。
+	 */
+	static ArchiveFormat probe(Path path) {
+		var key = path.toAbsolutePath().normalize();
+		try {
+			// ファイルが更新されていなければキャッシュした判定結果を返す
+			var attrs = Files.readAttributes(key, BasicFileAttributes.class);
+			if (!attrs.isRegularFile()) {
+				return null;
+			}
+			var lastModified = attrs.lastModifiedTime().toMillis();
+			var size = attrs.size();
+			synchronized (sCache) {
+				var verdict = sCache.get(key);
+				if ((verdict != null) && (verdict.lastModified == lastModified) && (verdict.size == size)) {
+					return verdict.format;
+				}
+			}
+
+			// ファイル先頭を1回の読み込みで取得して判定する
+			var format = (ArchiveFormat)null;
+			try (var ch = FileChannel.open(key, StandardOpenOption.READ)) {
+				var header = ByteBuffer.allocate(HEADER_SIZE);
+				ch.read(header, 0L);
+				format = probe(header.flip());
+				if ((format == null) && (size >= 22)) {
+					// 先頭にシグネチャがない場合に限り末尾の中央ディレクトリ終端レコードを探す
+					var tailSize = (int)Math.min(size, EOCD_SEARCH_SIZE);
+					var tail = ByteBuffer.allocate(tailSize);
+					ch.read(tail, size - tailSize);
+					format = hasZipEocd(tail.flip()) ? ArchiveFormat.ZIP : null;
+				}
+			}
+
+			synchronized (sCache) {
+				sCache.put(key, new Verdict(lastModified, size, format));
+			}
+			return format;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 指定データの圧縮形式をシグネチャから判定します。
+	 * @param data 判定対象データ
+	 * @return 圧縮形式。シグネチャが既知のものでない場合はnull。
+	 */
+	static ArchiveFormat probe(ByteBuffer data) {
+		if (startsWith(data, SIG_ZIP_LOCAL) || startsWith(data, SIG_ZIP_EOCD) || startsWith(data, SIG_ZIP_SPANNED)) {
+			return ArchiveFormat.ZIP;
+		} else if (startsWith(data, SIG_7Z)) {
+			return ArchiveFormat.SEVEN_ZIP;
+		} else if (startsWith(data, SIG_RAR5)) {
+			return ArchiveFormat.RAR5;
+		} else if (startsWith(data, SIG_RAR4)) {
+			return ArchiveFormat.RAR;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * 指定チャネルの圧縮形式をシグネチャから判定します。
+	 * <p>チャネルの先頭から判定を行います。チャネルの位置は判定前の位置に戻されます。</p>
+	 * @param channel 判定対象チャネル
+	 * @return 圧縮形式。チャネルが読めない、またはシグネチャが既知のものでない場合はnull。
+	 */
+	static ArchiveFormat probe(SeekableByteChannel channel) {
+		try {
+			var position = channel.position();
+			try {
+				var header = ByteBuffer.allocate(HEADER_SIZE);
+				channel.position(0L);
+				while (header.hasRemaining() && (channel.read(header) > 0)) {
+					// 判定に必要なバイト数を読み込むまで繰り返す
+				}
+				return probe(header.flip());
+			} finally {
+				channel.position(position);
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * RARファイルのオープンを試行する圧縮形式の一覧を取得します。
+	 * <p>シグネチャからRAR4/RAR5のどちらか判定できた場合はその形式のみ、判定できない場合はRAR5・RAR4の順で返します。</p>
+	 * @param path RARファイルのパス
+	 * @return オープンを試行する圧縮形式の一覧
+	 */
+	static List<ArchiveFormat> rarFormats(Path path) {
+		return rarFormats((path == null) ? null : probe(path));
+	}
+
+	/**
+	 * メモリ上のRARデータのオープンを試行する圧縮形式の一覧を取得します。
+	 * @param data RARデータ
+	 * @return オープンを試行する圧縮形式の一覧
+	 * @see #rarFormats(Path)
+	 */
+	static List<ArchiveFormat> rarFormats(ByteBuffer data) {
+		return rarFormats((data == null) ? null : probe(data));
+	}
+
+	/**
+	 * チャネルから読み込むRARデータのオープンを試行する圧縮形式の一覧を取得します。
+	 * @param channel RARデータを読み込むチャネル
+	 * @return オープンを試行する圧縮形式の一覧
+	 * @see #rarFormats(Path)
+	 */
+	static List<ArchiveFormat> rarFormats(SeekableByteChannel channel) {
+		return rarFormats((channel == null) ? null : probe(channel));
+	}
+
+	/**
+	 * 判定した圧縮形式からRARファイルのオープンを試行する圧縮形式の一覧を取得
+	 * @param format 判定した圧縮形式
+	 * @return オープンを試行する圧縮形式の一覧
+	 */
+	private static List<ArchiveFormat> rarFormats(ArchiveFormat format) {
+		if ((format == ArchiveFormat.RAR5) || (format == ArchiveFormat.RAR)) {
+			return List.of(format);
+		} else {
+			return List.of(ArchiveFormat.RAR5, ArchiveFormat.RAR);
+		}
+	}
+
+	/**
+	 * 圧縮形式をアーカイブ種別に変換
+	 * @param format 圧縮形式
+	 * @return アーカイブ種別
+	 */
+	private static ArchiveType toArchiveType(ArchiveFormat format) {
+		if (format == null) {
+			return ArchiveType.UNKNOWN;
+		}
+		switch (format) {
+		case ZIP: return ArchiveType.ZIP;
+		case SEVEN_ZIP: return ArchiveType.SEVEN_ZIP;
+		case RAR: return ArchiveType.RAR;
+		case RAR5: return ArchiveType.RAR;
+		default: return ArchiveType.UNKNOWN;
+		}
+	}
+
+	/**
+	 * データが指定シグネチャで始まるかどうか
+	 * @param data データ
+	 * @param signature シグネチャ
+	 * @return データがシグネチャで始まる場合true
+	 */
+	private static boolean startsWith(ByteBuffer data, byte[] signature) {
+		var pos = data.position();
+		if (data.remaining() < signature.length) {
+			return false;
+		}
+		for (var i = 0; i < signature.length; i++) {
+			if (data.get(pos + i) != signature[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * データ内にZIPの中央ディレクトリ終端レコードがあるかどうか
+	 * @param tail ファイル末尾のデータ
+	 * @return 中央ディレクトリ終端レコードが見つかった場合true
+	 */
+	private static boolean hasZipEocd(ByteBuffer tail) {
+		for (var i = tail.limit() - 22; i >= tail.position(); i--) {
+			if ((tail.get(i) == 'P') && (tail.get(i + 1) == 'K') && (tail.get(i + 2) == 5) && (tail.get(i + 3) == 6)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
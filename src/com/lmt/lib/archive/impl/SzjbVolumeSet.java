@@ -0,0 +1,236 @@
+package com.lmt.lib.archive.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.sevenzipjbinding.IArchiveOpenCallback;
+import net.sf.sevenzipjbinding.IArchiveOpenVolumeCallback;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.PropID;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.impl.VolumedArchiveInStream;
+
+/**
+ * 分割アーカイブ(マルチボリューム)の各ボリュームへのアクセスを管理するクラス
+ *
+ * <p>7-ZIP J-Bindingからボリュームを要求されると、そのボリュームを表すストリームを返す。ストリームは最初に読み込まれるまで
+ * ファイルを開かず、開いたファイルはハンドルキャッシュ(LRU)で管理する。キャッシュの上限を超えると最も長く使用されていない
+ * ボリュームのファイルが閉じられ、そのボリュームが再度読み込まれた時に開き直される。これにより、ボリュームの境界をまたいで
+ * 連続して解凍する場合にファイルを開き直すことなく、同時に開くファイル数も一定数以下に抑えられる。</p>
+ *
+ * <p>最初のボリュームのストリームは呼び出し元が開いたものを使用し、キャッシュの対象にはしない。
+ * ただし、当オブジェクトのクローズ時には最初のボリュームのストリームもクローズする。</p>
+ *
+ * @author J-SON3
+ */
+class SzjbVolumeSet implements IArchiveOpenVolumeCallback, IArchiveOpenCallback, Closeable {
+	/** 同時に開くボリュームファイル数の上限(最初のボリュームを除く) */
+	static final int MAX_OPEN_VOLUMES = 8;
+	/** 7-ZIPの分割アーカイブの最初のボリュームのファイル名末尾 */
+	private static final String SEVEN_ZIP_FIRST_VOLUME_SUFFIX = ".7z.001";
+
+	/** 最初のボリュームのパス */
+	private Path mFirstPath;
+	/** 最初のボリュームのストリーム */
+	private IInStream mFirstStream;
+	/** 最後に要求されたボリュームのファイル名 */
+	private String mCurrentName;
+	/** ファイル名によるボリューム一覧 */
+	private Map<String, Volume> mVolumes = new HashMap<>();
+	/** ファイルを開いているボリュームのキャッシュ(LRU) */
+	private Map<Volume, Boolean> mOpenVolumes = new LinkedHashMap<>(16, 0.75f, true);
+	/** ボリュームファイルを開いた回数 */
+	private long mOpenCount = 0L;
+
+	/** 最初のボリューム以外のボリュームを表すストリーム */
+	private class Volume implements IInStream {
+		/** ボリュームファイルのパス */
+		final Path path;
+		/** ボリュームファイルのストリーム(ファイルを開いていない場合はnull) */
+		SzjbFileInStream stream = null;
+		/** 読み込み位置 */
+		long pos = 0L;
+
+		Volume(Path path) {
+			this.path = path;
+		}
+
+		@Override
+		public long seek(long offset, int seekOrigin) throws SevenZipException {
+			// ファイルを開き直したストリームの位置は先頭に戻っているため、現在位置からの移動は保持した位置を基準に変換する
+			if (seekOrigin == IInStream.SEEK_CUR) {
+				offset += pos;
+				seekOrigin = IInStream.SEEK_SET;
+			}
+			pos = acquire(this).seek(offset, seekOrigin);
+			return pos;
+		}
+
+		@Override
+		public int read(byte[] data) throws SevenZipException {
+			var s = acquire(this);
+			s.seek(pos, IInStream.SEEK_SET);
+			var length = s.read(data);
+			pos += length;
+			return length;
+		}
+
+		@Override
+		public void close() {
+			// ファイルはボリューム一覧のクローズ時、またはキャッシュから追い出された時に閉じる
+		}
+	}
+
+	/**
+	 * コンストラクタ
+	 * @param firstPath 最初のボリュームのパス
+	 * @param firstStream 最初のボリュームのストリーム
+	 */
+	SzjbVolumeSet(Path firstPath, IInStream firstStream) {
+		mFirstPath = firstPath.toAbsolutePath();
+		mFirstStream = firstStream;
+		mCurrentName = mFirstPath.toString();
+	}
+
+	/**
+	 * 指定パスが7-ZIPの分割アーカイブの最初のボリュームかどうか
+	 * @param path パス
+	 * @return 7-ZIPの分割アーカイブの最初のボリュームであればtrue
+	 */
+	static boolean isSevenZipFirstVolume(Path path) {
+		var fileName = path.getFileName();
+		return (fileName != null) && fileName.toString().endsWith(SEVEN_ZIP_FIRST_VOLUME_SUFFIX);
+	}
+
+	/**
+	 * アーカイブのオープンに使用するストリームを取得する
+	 * <p>7-ZIPの分割アーカイブの場合は全ボリュームを連結したストリーム、それ以外は最初のボリュームのストリームを返す。
+	 * RARの分割アーカイブは最初のボリュームのストリームと当オブジェクトのコールバックにより後続ボリュームが読み込まれる。</p>
+	 * @return アーカイブのオープンに使用するストリーム
+	 * @exception SevenZipException ボリュームの読み込みエラー
+	 */
+	IInStream openArchiveStream() throws SevenZipException {
+		if (isSevenZipFirstVolume(mFirstPath)) {
+			return new VolumedArchiveInStream(mFirstPath.toString(), this);
+		} else {
+			return mFirstStream;
+		}
+	}
+
+	/**
+	 * 最初のボリュームを除くボリュームファイルを開いた回数を取得する
+	 * @return ボリュームファイルを開いた回数
+	 */
+	synchronized long getOpenCount() {
+		return mOpenCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object getProperty(PropID propID) {
+		return (propID == PropID.NAME) ? mCurrentName : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized IInStream getStream(String filename) throws SevenZipException {
+		// 相対パスで要求された場合は最初のボリュームと同じフォルダのファイルと見なす
+		var path = Path.of(filename);
+		path = path.isAbsolute() ? path : mFirstPath.resolveSibling(path);
+		var name = path.toString();
+		if (path.equals(mFirstPath)) {
+			mCurrentName = name;
+			mFirstStream.seek(0L, IInStream.SEEK_SET);
+			return mFirstStream;
+		}
+
+		var volume = mVolumes.get(name);
+		if (volume == null) {
+			// ボリュームが存在しない場合はnullを返すことで終端を通知する
+			if (!Files.isRegularFile(path)) {
+				return null;
+			}
+			volume = new Volume(path);
+			mVolumes.put(name, volume);
+		}
+		mCurrentName = name;
+		volume.pos = 0L;
+		return volume;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setTotal(Long files, Long bytes) {
+		// Do nothing
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setCompleted(Long files, Long bytes) {
+		// Do nothing
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void close() throws IOException {
+		var error = (IOException)null;
+		try {
+			mFirstStream.close();
+		} catch (IOException e) {
+			error = e;
+		}
+		for (var volume : mOpenVolumes.keySet()) {
+			try {
+				volume.stream.close();
+			} catch (IOException e) {
+				error = (error == null) ? e : error;
+			}
+			volume.stream = null;
+		}
+		mOpenVolumes.clear();
+		mVolumes.clear();
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * ボリュームファイルのストリーム取得
+	 * <p>ファイルを開いていない場合は開き、ハンドルキャッシュの上限を超えた場合は最も長く使用されていないボリュームを閉じる。</p>
+	 * @param volume ボリューム
+	 * @return ボリュームファイルのストリーム
+	 * @exception SevenZipException ボリュームファイルを開けなかった
+	 */
+	private synchronized SzjbFileInStream acquire(Volume volume) throws SevenZipException {
+		if (volume.stream != null) {
+			mOpenVolumes.get(volume);
+			return volume.stream;
+		}
+
+		try {
+			// ボリュームはキャッシュから追い出されると開き直しになるため、メモリマップではなく先読みバッファで読み込む
+			volume.stream = SzjbFileInStream.open(volume.path, 0L);
+			mOpenCount++;
+		} catch (IOException e) {
+			throw new SevenZipException(String.format("Failed to open volume: %s", volume.path), e);
+		}
+		mOpenVolumes.put(volume, Boolean.TRUE);
+
+		if (mOpenVolumes.size() > MAX_OPEN_VOLUMES) {
+			var eldest = mOpenVolumes.keySet().iterator().next();
+			mOpenVolumes.remove(eldest);
+			try {
+				eldest.stream.close();
+			} catch (IOException e) {
+				// 読み込み専用のファイルのため、クローズのエラーは無視する
+			}
+			eldest.stream = null;
+		}
+		return volume.stream;
+	}
+}
@@ -0,0 +1,28 @@
+package com.lmt.lib.archive.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * アーカイブのエントリ列挙を表すJFRイベントです。
+ *
+ * <p>イベントの期間はエントリ列挙の開始から終了までの時間で、列挙コールバックの処理時間を含みます。</p>
+ *
+ * @author J-SON3
+ */
+@Name("com.lmt.lib.archive.ArchiveEnumerate")
+@Label("Archive Enumerate")
+@Category("Archive Library")
+@Description("Enumerates entries of an archive")
+public final class ArchiveEnumerateEvent extends Event {
+	/** アーカイブのパス */
+	@Label("Path")
+	public String path;
+
+	/** 列挙終了時点のエントリ数 */
+	@Label("Entry Count")
+	public int entryCount;
+}
@@ -0,0 +1,39 @@
+package com.lmt.lib.archive.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 圧縮ファイル内コンテンツの解凍を表すJFRイベントです。
+ *
+ * <p>イベントの期間は解凍処理(ネイティブライブラリの呼び出しを含む)に要した時間です。
+ * 解凍済みデータのキャッシュから読み込んだ場合は解凍処理を行わず、キャッシュヒットとして出力されます。</p>
+ *
+ * @author J-SON3
+ */
+@Name("com.lmt.lib.archive.ArchiveExtract")
+@Label("Archive Extract")
+@Category("Archive Library")
+@Description("Extracts a content of an archive file")
+public final class ArchiveExtractEvent extends Event {
+	/** アーカイブのパス */
+	@Label("Path")
+	public String path;
+
+	/** エントリのインデックス値 */
+	@Label("Entry Index")
+	public int index;
+
+	/** 取り出したバイト数 */
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+
+	/** 解凍済みデータのキャッシュから読み込んだかどうか */
+	@Label("Cache Hit")
+	public boolean cacheHit;
+}
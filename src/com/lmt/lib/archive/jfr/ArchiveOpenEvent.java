@@ -0,0 +1,33 @@
+package com.lmt.lib.archive.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * アーカイブのオープンを表すJFRイベントです。
+ *
+ * <p>イベントの期間はアーカイブオブジェクトの生成(圧縮ファイルの場合はヘッダの解析を含む)に要した時間です。</p>
+ *
+ * @author J-SON3
+ */
+@Name("com.lmt.lib.archive.ArchiveOpen")
+@Label("Archive Open")
+@Category("Archive Library")
+@Description("Opens a folder or an archive file")
+public final class ArchiveOpenEvent extends Event {
+	/** アーカイブ種別 */
+	@Label("Archive Type")
+	public String archiveType;
+
+	/** アーカイブのパス */
+	@Label("Path")
+	public String path;
+
+	/** オープン直後のエントリ数 */
+	@Label("Entry Count")
+	@Description("Number of entries known right after opening")
+	public int entryCount;
+}
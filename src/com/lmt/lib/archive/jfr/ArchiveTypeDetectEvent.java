@@ -0,0 +1,30 @@
+package com.lmt.lib.archive.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * アーカイブ種別の判定を表すJFRイベントです。
+ *
+ * @author J-SON3
+ */
+@Name("com.lmt.lib.archive.ArchiveTypeDetect")
+@Label("Archive Type Detect")
+@Category("Archive Library")
+@Description("Detects the type of an archive")
+public final class ArchiveTypeDetectEvent extends Event {
+	/** 判定対象のパス */
+	@Label("Path")
+	public String path;
+
+	/** 判定方法(アーカイブ種別判定処理のクラス名、または "signature") */
+	@Label("Detector")
+	public String detector;
+
+	/** 判定結果のアーカイブ種別(判定できなかった場合はnull) */
+	@Label("Archive Type")
+	public String archiveType;
+}
@@ -0,0 +1,32 @@
+package com.lmt.lib.archive.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * ネイティブライブラリの初期化を表すJFRイベントです。
+ *
+ * <p>イベントの期間はネイティブライブラリの展開・ロードに要した時間です。ウォームアップはイベントの終了後に行われ、期間に含まれません。</p>
+ *
+ * @author J-SON3
+ */
+@Name("com.lmt.lib.archive.NativeInit")
+@Label("Native Library Init")
+@Category("Archive Library")
+@Description("Initializes the native decompression library")
+public final class NativeInitEvent extends Event {
+	/** ネイティブライブラリの展開先フォルダ */
+	@Label("Library Directory")
+	public String libraryDirectory;
+
+	/** 初期化後にウォームアップを行うかどうか */
+	@Label("Warm Up")
+	public boolean warmUp;
+
+	/** 初期化に成功したかどうか */
+	@Label("Success")
+	public boolean success;
+}
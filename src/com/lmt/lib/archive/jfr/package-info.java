@@ -0,0 +1,13 @@
+/**
+ * Java Flight Recorder(JFR)のイベント定義
+ *
+ * <p>このパッケージには、アーカイブライブラリがJFRへ出力するイベントが格納されます。イベントはアーカイブのオープン、
+ * エントリ列挙、コンテンツの解凍、アーカイブ種別の判定、ネイティブライブラリの初期化の各処理で出力され、
+ * 標準のJFRツール(JDK Mission Control、jfrコマンド等)でアーカイブ処理のホットスポットを確認できます。</p>
+ *
+ * <p>イベントはカテゴリ "Archive Library" に分類されます。JFRの記録が無効、またはイベントが無効に設定されている場合、
+ * イベントのフィールド設定・出力は行われず、処理コストはほぼゼロとなります。</p>
+ *
+ * <p>当パッケージのクラスはアーカイブライブラリの内部で生成されます。アプリケーション側から生成する必要はありません。</p>
+ */
+package com.lmt.lib.archive.jfr;
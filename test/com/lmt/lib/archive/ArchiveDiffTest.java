@@ -0,0 +1,119 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ArchiveDiffTest {
+	private static final Path NEW_TXT_PATH = Path.of("new.txt");
+
+	private static Path sModifiedFolder;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+
+		// テストデータを改変したフォルダを作成する
+		// ascii.txt: サイズを変えずに内容を改変、rgb.bmp: サイズを変更、readme.txt: 削除、new.txt: 追加
+		sModifiedFolder = Tests.mktmpdir(ArchiveDiffTest.class).resolve("modified");
+		for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+			var data = entry.getValue().clone();
+			if (entry.getKey().equals(TestData.CONTENT_README_TXT_PATH)) {
+				continue;
+			} else if (entry.getKey().equals(TestData.CONTENT_ASCII_TXT_PATH)) {
+				data[0] ^= 0x01;
+			} else if (entry.getKey().equals(TestData.CONTENT_RGB_BMP_PATH)) {
+				data = new byte[data.length + 1];
+			}
+			var path = sModifiedFolder.resolve(entry.getKey());
+			Files.createDirectories(path.getParent());
+			Files.write(path, data);
+		}
+		Files.write(sModifiedFolder.resolve(NEW_TXT_PATH), new byte[] { 'n', 'e', 'w' });
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ArchiveDiffTest.class);
+	}
+
+	// compare(Archive, Archive)
+	// 同じ内容の圧縮ファイル同士はCRC32で判定され、解凍後データを比較せずに差分なしとなること
+	@Test
+	public void testCompare_SameContentsByCrc() throws Exception {
+		var am = ArchiveManager.getInstance();
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE); var b = am.open(TestData.RAR5_ARCHIVE)) {
+			var diff = ArchiveDiff.compare(a, b);
+			assertTrue(diff.isEmpty());
+			assertEquals(0, diff.getContentComparedCount());
+		}
+	}
+
+	// compare(Archive, Archive)
+	// 同じ内容のフォルダと圧縮ファイルは解凍後データの比較により差分なしとなること
+	@Test
+	public void testCompare_SameContentsFolder() throws Exception {
+		var am = ArchiveManager.getInstance();
+		try (var a = am.open(TestData.FOLDER_ARCHIVE); var b = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var diff = ArchiveDiff.compare(a, b);
+			assertTrue(diff.toString(), diff.isEmpty());
+			assertTrue(diff.getContentComparedCount() <= TestData.ALL_CONTENTS.size());
+		}
+	}
+
+	// compare(Archive, Archive)
+	// 追加・削除・変更されたコンテンツが検出されること
+	@Test
+	public void testCompare_Changes() throws Exception {
+		var am = ArchiveManager.getInstance();
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE); var b = am.open(sModifiedFolder)) {
+			var diff = ArchiveDiff.compare(a, b);
+			assertEquals(List.of(NEW_TXT_PATH), paths(diff.getChanges(ArchiveDiff.Kind.ADDED)));
+			assertEquals(List.of(TestData.CONTENT_README_TXT_PATH), paths(diff.getChanges(ArchiveDiff.Kind.REMOVED)));
+			var modified = paths(diff.getChanges(ArchiveDiff.Kind.MODIFIED));
+			assertEquals(List.of(TestData.CONTENT_ASCII_TXT_PATH, TestData.CONTENT_RGB_BMP_PATH), modified);
+			assertEquals(4, diff.getChanges().size());
+			// サイズが異なるrgb.bmpは解凍後データを比較しない
+			assertEquals(TestData.ALL_CONTENTS.size() - 2, diff.getContentComparedCount());
+			var removed = diff.getChanges(ArchiveDiff.Kind.REMOVED).get(0);
+			assertNotNull(removed.getOldEntry());
+			assertNull(removed.getNewEntry());
+		}
+	}
+
+	// compare(Archive, Archive, boolean)
+	// 解凍後データを比較しない場合、エントリ情報で判定できないコンテンツは変更ありとなること
+	@Test
+	public void testCompare_WithoutContents() throws Exception {
+		var am = ArchiveManager.getInstance();
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE); var b = am.open(sModifiedFolder)) {
+			var diff = ArchiveDiff.compare(a, b, false);
+			assertEquals(0, diff.getContentComparedCount());
+			assertEquals(TestData.ALL_CONTENTS.size() - 1, diff.getChanges(ArchiveDiff.Kind.MODIFIED).size());
+		}
+	}
+
+	// compare(Archive, Archive)
+	// NullPointerException oldArchiveまたはnewArchiveがnull
+	@Test
+	public void testCompare_NullArchive() throws Exception {
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			assertThrows(NullPointerException.class, () -> ArchiveDiff.compare(null, a));
+			assertThrows(NullPointerException.class, () -> ArchiveDiff.compare(a, null));
+		}
+	}
+
+	private static List<Path> paths(List<ArchiveDiff.Change> changes) {
+		return changes.stream().map(ArchiveDiff.Change::getPath).collect(Collectors.toList());
+	}
+}
@@ -3,16 +3,37 @@ package com.lmt.lib.archive;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 
 import com.lmt.lib.archive.impl.FolderArchive;
 import com.lmt.lib.archive.impl.SzjbArchive;
+import com.lmt.lib.archive.impl.SzjbNativeLoader;
+
+import net.sf.sevenzipjbinding.SevenZip;
 
 public class ArchiveManagerTest {
 	@After
@@ -21,6 +42,10 @@ public class ArchiveManagerTest {
 		var am = ArchiveManager.getInstance();
 		Tests.setf(am, "mIsInitialized", false);
 		Tests.setf(am, "mTypeTester", null);
+		am.setMaxNativeHandles(Integer.MAX_VALUE);
+		am.setAllocationSiteCapture(false);
+		am.setLeakListener(null);
+		am.setMemoryMapLimit(0L);
 	}
 
 	// getInstance()
@@ -80,6 +105,159 @@ public class ArchiveManagerTest {
 		assertThrows(IllegalStateException.class, () -> am.initialize());
 	}
 
+	// initializeAsync(Function, Path, boolean)
+	// 呼び出し時点で初期化済みになり、ネイティブライブラリの初期化完了後に所要時間が取得できること
+	@Test
+	public void testInitializeAsync_Normal() throws Exception {
+		Function<Path, ArchiveType> judgement = p -> null;
+		var am = ArchiveManager.getInstance();
+		var future = am.initializeAsync(judgement, null, false);
+		assertTrue(am.isInitialized());
+		assertSame(judgement, Tests.getf(am, "mTypeTester"));
+		var duration = future.get();
+		assertNotNull(duration);
+		assertNotNull(am.getNativeInitDuration());
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// ウォームアップの完了を待たずにFutureが完了し、ウォームアップの所要時間が初期化の所要時間と別に記録されること
+	@Test(timeout = 60000)
+	public void testInitializeAsync_WarmUpAfterReady() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setsf(SzjbNativeLoader.class, "sFuture", null);
+		Tests.setsf(SzjbNativeLoader.class, "sInitDuration", null);
+		Tests.setsf(SzjbNativeLoader.class, "sWarmUpDuration", null);
+		var future = am.initializeAsync(new StandardTypeTester(), null, true);
+		var warmUpAtReady = future.thenApply(d -> am.getNativeWarmUpDuration());
+		assertNull(warmUpAtReady.get());
+		assertEquals(future.get(), am.getNativeInitDuration());
+		while (am.getNativeWarmUpDuration() == null) {
+			Thread.sleep(10L);
+		}
+		assertTrue(SzjbNativeLoader.isInitialized());
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// 展開済みのライブラリの内容が異なる場合、プラットフォームJARの内容で置き換えられ、展開先が所有者のみアクセス可能であること
+	@Test(timeout = 60000)
+	public void testInitializeAsync_ReinstallLibrary() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initializeAsync(new StandardTypeTester(), null, false).get();
+		var platform = SevenZip.getPlatformBestMatch();
+		var libs = new ArrayList<Path>();
+		try (var files = Files.walk(SzjbNativeLoader.getDefaultLibraryDirectory())) {
+			files.filter(f -> f.getFileName().toString().startsWith("lib7-Zip-JBinding")).forEach(libs::add);
+		}
+		assertFalse(libs.isEmpty());
+
+		// ロード中のファイルを書き換えないよう、別ファイルをリネームして置き換える
+		for (var lib : libs) {
+			var broken = Files.createTempFile(lib.getParent(), "broken", ".tmp");
+			Files.write(broken, new byte[] { 1, 2, 3 });
+			Files.move(broken, lib, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setsf(SzjbNativeLoader.class, "sFuture", null);
+		Tests.setsf(SzjbNativeLoader.class, "sInitDuration", null);
+		am.initializeAsync(new StandardTypeTester(), null, false).get();
+		for (var lib : libs) {
+			try (var in = SevenZip.class.getResourceAsStream("/" + platform + "/" + lib.getFileName())) {
+				assertArrayEquals(in.readAllBytes(), Files.readAllBytes(lib));
+			}
+			var dir = lib.getParent();
+			if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				var perms = Files.getPosixFilePermissions(dir);
+				assertFalse(perms.contains(PosixFilePermission.GROUP_WRITE));
+				assertFalse(perms.contains(PosixFilePermission.OTHERS_WRITE));
+			}
+		}
+		try (var files = Files.list(libs.get(0).getParent())) {
+			assertEquals(0L, files.filter(f -> f.getFileName().toString().endsWith(".tmp")).count());
+		}
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// 展開先フォルダに所有者以外が書き込める場合、展開先フォルダを使用せずに一時フォルダへ展開して初期化が完了すること(POSIXのみ)
+	@Test(timeout = 60000)
+	public void testInitializeAsync_UnsafeDirectory() throws Exception {
+		var dir = Tests.mktmpdir(ArchiveManagerTest.class).resolve("shared");
+		Files.createDirectories(dir);
+		Assume.assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+		var am = ArchiveManager.getInstance();
+		Tests.setsf(SzjbNativeLoader.class, "sFuture", null);
+		Tests.setsf(SzjbNativeLoader.class, "sInitDuration", null);
+		try {
+			var duration = am.initializeAsync(new StandardTypeTester(), dir, false).get();
+			assertEquals(duration, am.getNativeInitDuration());
+			try (var files = Files.list(dir)) {
+				assertEquals(0L, files.count());
+			}
+		} finally {
+			Tests.setsf(SzjbNativeLoader.class, "sFuture", null);
+			Tests.rmtmpdir(ArchiveManagerTest.class);
+		}
+	}
+
+	// SzjbNativeLoader#getDefaultLibraryDirectory()
+	// ホームフォルダが絶対パスとして解釈できない場合、システムの一時フォルダ配下の絶対パスを返すこと
+	@Test
+	public void testGetDefaultLibraryDirectory_UnknownHome() throws Exception {
+		Assume.assumeFalse(System.getProperty("os.name", "").startsWith("Windows"));
+		Assume.assumeTrue(System.getenv("XDG_CACHE_HOME") == null);
+		var home = System.getProperty("user.home");
+		try {
+			for (var unknown : List.of("?", "")) {
+				System.setProperty("user.home", unknown);
+				var dir = SzjbNativeLoader.getDefaultLibraryDirectory();
+				assertTrue(dir.isAbsolute());
+				assertTrue(dir.startsWith(Path.of(System.getProperty("java.io.tmpdir"))));
+			}
+		} finally {
+			System.setProperty("user.home", home);
+		}
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// 初期化完了前にオープンしたアーカイブが正しく使用できること
+	@Test
+	public void testInitializeAsync_OpenBeforeReady() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initializeAsync(new StandardTypeTester(), null, true);
+		try (var archive = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, readByPath(archive, TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// IllegalStateException アーカイブマネージャが初期化済み
+	@Test
+	public void testInitializeAsync_AlreadyInitialized() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize(p -> null);
+		assertThrows(IllegalStateException.class, () -> am.initializeAsync(p -> null, null, false));
+	}
+
+	// initializeAsync(Function, Path, boolean)
+	// NullPointerException typeTesterがnull
+	@Test
+	public void testInitializeAsync_NullTypeTester() throws Exception {
+		var am = ArchiveManager.getInstance();
+		assertThrows(NullPointerException.class, () -> am.initializeAsync(null, null, false));
+		assertFalse(am.isInitialized());
+	}
+
+	// initializeAsync()
+	// 標準の種別判定処理が登録され、初期化済みになること
+	@Test
+	public void testInitializeAsync2_Normal() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var future = am.initializeAsync();
+		assertTrue(am.isInitialized());
+		assertEquals(StandardTypeTester.class, Tests.getf(am, "mTypeTester").getClass());
+		assertNotNull(future.get());
+	}
+
 	// isInitialized()
 	// 初期化前に呼び出すとfalseを返すこと
 	@Test
@@ -174,7 +352,7 @@ public class ArchiveManagerTest {
 	public void testOpen_NullPath() throws Exception {
 		var am = ArchiveManager.getInstance();
 		am.initialize();
-		assertThrows(NullPointerException.class, () -> am.open(null));
+		assertThrows(NullPointerException.class, () -> am.open((Path)null));
 	}
 
 	// open(Path)
@@ -230,4 +408,473 @@ public class ArchiveManagerTest {
 		am.initialize();
 		assertThrows(IOException.class, () -> am.open(TestData.BROKEN_ARCHIVE));
 	}
+
+	// open(Path)
+	// メモリマップの上限を設定すると、圧縮ファイルがメモリマップされ、チャネルからの読み込みなしで内容を読み取れること
+	@Test
+	public void testOpen_MappedFile() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		am.setMemoryMapLimit(Files.size(TestData.SEVEN_ZIP_ARCHIVE));
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(entry.getValue(), readByPath(a, entry.getKey()));
+			}
+			Object stream = Tests.getf(a, "mStream");
+			assertNotNull(Tests.getf(stream, "mMapped"));
+			assertEquals(0L, (long)Tests.getf(stream, "mChannelReads"));
+		}
+	}
+
+	// open(Path)
+	// 既定ではメモリマップせず、圧縮ファイルが先読みバッファを介して読み込まれ、内容を読み取れること
+	@Test
+	public void testOpen_BufferedFile() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		assertEquals(0L, am.getMemoryMapLimit());
+		for (var path : new Path[] { TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE }) {
+			try (var a = am.open(path)) {
+				for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+					assertArrayEquals(entry.getValue(), readByPath(a, entry.getKey()));
+				}
+				// 小さなファイルのため、コーデックからの読み込み要求は少数のチャネル読み込みに集約される
+				Object stream = Tests.getf(a, "mStream");
+				assertNull(Tests.getf(stream, "mMapped"));
+				long channelReads = Tests.getf(stream, "mChannelReads");
+				assertTrue(channelReads > 0L);
+				assertTrue(channelReads <= (Files.size(path) / 1024L) + 8L);
+			}
+		}
+	}
+
+	// open(Path)
+	// メモリマップの上限を超えるサイズの圧縮ファイルはメモリマップされないこと
+	@Test
+	public void testOpen_MapLimitExceeded() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		am.setMemoryMapLimit(Files.size(TestData.SEVEN_ZIP_ARCHIVE) - 1L);
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, readByPath(a, TestData.CONTENT_README_TXT_PATH));
+			Object stream = Tests.getf(a, "mStream");
+			assertNull(Tests.getf(stream, "mMapped"));
+		}
+	}
+
+	// setMemoryMapLimit(long)
+	// IllegalArgumentException limitが負の値
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetMemoryMapLimit_Negative() throws Exception {
+		ArchiveManager.getInstance().setMemoryMapLimit(-1L);
+	}
+
+	// open(byte[])
+	// データ先頭のシグネチャから判定したアーカイブ種別でオープンされ、内容を読み取れること
+	@Test
+	public void testOpenBytes_Success() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize(p -> ArchiveType.UNKNOWN);
+		try (var a = am.open(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE))) {
+			assertEquals(SzjbArchive.SevenZip.class, a.getClass());
+			assertTrue(a.getPath().getFileName().toString().matches("memory-[0-9]+\\.7z"));
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, readByPath(a, TestData.CONTENT_README_TXT_PATH));
+		}
+		try (var a = am.open(Files.readAllBytes(TestData.RAR4_ARCHIVE))) {
+			assertEquals(SzjbArchive.Rar.class, a.getClass());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, readByPath(a, TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// open(byte[])
+	// IOException データがアーカイブとして認識できない
+	@Test
+	public void testOpenBytes_NotArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		assertThrows(IOException.class, () -> am.open(TestData.CONTENT_README_TXT_BYTES));
+	}
+
+	// open(byte[])
+	// NullPointerException dataがnull
+	@Test
+	public void testOpenBytes_NullData() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		assertThrows(NullPointerException.class, () -> am.open((byte[])null));
+	}
+
+	// open(ByteBuffer)
+	// バッファの現在位置から終端までがアーカイブデータとしてオープンされること
+	@Test
+	public void testOpenByteBuffer_Success() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		var bytes = Files.readAllBytes(TestData.RAR5_ARCHIVE);
+		var data = ByteBuffer.allocateDirect(bytes.length + 10);
+		data.position(10);
+		data.put(bytes).position(10);
+		try (var a = am.open(data)) {
+			assertEquals(ArchiveType.RAR, a.getArchiveType());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, readByPath(a, TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// open(ByteBuffer)
+	// IllegalStateException アーカイブマネージャが初期化されていない
+	@Test
+	public void testOpenByteBuffer_NotInitialized() throws Exception {
+		var am = ArchiveManager.getInstance();
+		assertThrows(IllegalStateException.class, () -> am.open(ByteBuffer.allocate(0)));
+	}
+
+	// open(SeekableByteChannel)
+	// チャネル先頭のシグネチャから判定したアーカイブ種別でオープンされ、クローズ時にチャネルもクローズされること
+	@Test
+	public void testOpenChannel_Success() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		var channel = FileChannel.open(TestData.SEVEN_ZIP_ARCHIVE, StandardOpenOption.READ);
+		try (var a = am.open(channel)) {
+			assertEquals(ArchiveType.SEVEN_ZIP, a.getArchiveType());
+			assertTrue(a.getPath().getFileName().toString().matches("channel-[0-9]+\\.7z"));
+			for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(entry.getValue(), readByPath(a, entry.getKey()));
+			}
+		}
+		assertFalse(channel.isOpen());
+	}
+
+	// open(SeekableByteChannel)
+	// IOException データがアーカイブとして認識できない(チャネルはクローズされること)
+	@Test
+	public void testOpenChannel_NotArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		var channel = FileChannel.open(TestData.BROKEN_ARCHIVE, StandardOpenOption.READ);
+		assertThrows(IOException.class, () -> am.open(channel));
+		assertFalse(channel.isOpen());
+	}
+
+	// open(SeekableByteChannel)
+	// NullPointerException channelがnull
+	@Test
+	public void testOpenChannel_NullChannel() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		assertThrows(NullPointerException.class, () -> am.open((SeekableByteChannel)null));
+	}
+
+	// verifyAll(Collection, int)
+	// 全てのアーカイブが検査され、パス一覧と同じ順番で検査結果が返ること
+	@Test
+	public void testVerifyAll_Normal() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try {
+			var corrupted = createCorruptedZip(Tests.mktmpdir(ArchiveManagerTest.class).resolve("corrupted.zip"));
+			var paths = List.of(TestData.SEVEN_ZIP_ARCHIVE, corrupted, TestData.BROKEN_ARCHIVE, TestData.RAR5_ARCHIVE);
+			var reports = am.verifyAll(paths, 2);
+			assertEquals(4, reports.size());
+			// 正常なアーカイブ
+			assertEquals(TestData.SEVEN_ZIP_ARCHIVE.toAbsolutePath(), reports.get(0).getPath());
+			assertTrue(reports.get(0).isPassed());
+			assertEquals(TestData.ALL_CONTENTS.size(), reports.get(0).getResults().size());
+			// CRCが一致しないコンテンツを含むアーカイブ
+			var failures = reports.get(1).getFailures();
+			assertFalse(reports.get(1).isPassed());
+			assertNull(reports.get(1).getError());
+			assertEquals(1, failures.size());
+			assertEquals(Path.of("bad.txt"), failures.get(0).getPath());
+			assertEquals(2, reports.get(1).getResults().size());
+			// オープンできないアーカイブ
+			assertFalse(reports.get(2).isPassed());
+			assertNotNull(reports.get(2).getError());
+			assertTrue(reports.get(2).getResults().isEmpty());
+			// 正常なアーカイブ
+			assertTrue(reports.get(3).isPassed());
+		} finally {
+			Tests.rmtmpdir(ArchiveManagerTest.class);
+		}
+	}
+
+	// verifyAll(Collection, int)
+	// IllegalArgumentException maxConcurrencyが1未満
+	@Test
+	public void testVerifyAll_BadConcurrency() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		assertThrows(IllegalArgumentException.class, () -> am.verifyAll(List.of(TestData.SEVEN_ZIP_ARCHIVE), 0));
+	}
+
+	// verifyAll(Collection, int)
+	// IllegalStateException アーカイブマネージャが初期化されていない
+	@Test
+	public void testVerifyAll_NotInitialized() throws Exception {
+		var am = ArchiveManager.getInstance();
+		assertThrows(IllegalStateException.class, () -> am.verifyAll(List.of(TestData.SEVEN_ZIP_ARCHIVE), 1));
+	}
+
+	// initialize(Function)
+	// 複数のスレッドから同時に呼び出された場合、初期化に成功するのは1つのスレッドのみであること
+	@Test
+	public void testInitialize_Concurrent() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var threads = new ArrayList<Thread>();
+		var succeeded = new AtomicInteger(0);
+		var failed = new AtomicInteger(0);
+		var start = new CountDownLatch(1);
+		for (var i = 0; i < 8; i++) {
+			var thread = new Thread(() -> {
+				try {
+					start.await();
+					am.initialize(p -> null);
+					succeeded.incrementAndGet();
+				} catch (IllegalStateException e) {
+					failed.incrementAndGet();
+				} catch (InterruptedException e) {
+					// Do nothing
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (var thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, succeeded.get());
+		assertEquals(7, failed.get());
+	}
+
+	// getOpenArchives()
+	// オープンしたアーカイブが登録され、クローズすると登録解除されること
+	@Test
+	public void testGetOpenArchives() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		var a1 = am.open(TestData.SEVEN_ZIP_ARCHIVE);
+		var a2 = am.open(TestData.FOLDER_ARCHIVE);
+		var handles = am.getNativeHandleCount();
+		assertTrue(am.getOpenArchives().contains(a1));
+		assertTrue(am.getOpenArchives().contains(a2));
+		a1.close();
+		assertFalse(am.getOpenArchives().contains(a1));
+		assertEquals(handles - 1, am.getNativeHandleCount());
+		a2.close();
+		assertFalse(am.getOpenArchives().contains(a2));
+		assertEquals(handles - 1, am.getNativeHandleCount());
+	}
+
+	// setMaxNativeHandles(int)
+	// 上限を超えると最も長くアクセスされていないアーカイブが一時解放され、次回のアクセスで透過的に再取得されること
+	@Test
+	public void testSetMaxNativeHandles_Normal() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		var base = am.getNativeHandleCount();
+		am.setMaxNativeHandles(base + 2);
+		assertEquals(base + 2, am.getMaxNativeHandles());
+		try (var a1 = am.open(TestData.SEVEN_ZIP_ARCHIVE);
+				var a2 = am.open(TestData.RAR5_ARCHIVE);
+				var a3 = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a1.cacheEntries();
+			a2.cacheEntries();
+			a3.cacheEntries();
+			assertEquals(base + 2, am.getNativeHandleCount());
+			assertTrue(a1.isSuspended());
+			assertTrue(a1.isOpen());
+			assertTrue(a1.isCached());
+
+			// 一時解放したアーカイブにアクセスすると再取得され、代わりに最も長くアクセスされていないアーカイブが一時解放される
+			var before = a1.getStatistics().snapshot().getLiveNativeHandles();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a1.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertFalse(a1.isSuspended());
+			assertTrue(a2.isSuspended());
+			assertFalse(a3.isSuspended());
+			assertEquals(base + 2, am.getNativeHandleCount());
+			assertEquals(before + 1, a1.getStatistics().snapshot().getLiveNativeHandles());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a2.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertTrue(a3.isSuspended());
+		}
+		assertEquals(base, am.getNativeHandleCount());
+	}
+
+	// setMaxNativeHandles(int)
+	// メモリ上のデータからオープンしたアーカイブは一時解放されないこと
+	@Test
+	public void testSetMaxNativeHandles_MemoryArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try (var a1 = am.open(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE));
+				var a2 = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			am.setMaxNativeHandles(1);
+			assertFalse(a1.isSuspended());
+			assertTrue(a2.isSuspended());
+			a1.cacheEntries();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a1.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// setMaxNativeHandles(int)
+	// IllegalArgumentException maxNativeHandlesが1未満
+	@Test
+	public void testSetMaxNativeHandles_BadArg() throws Exception {
+		var am = ArchiveManager.getInstance();
+		assertThrows(IllegalArgumentException.class, () -> am.setMaxNativeHandles(0));
+	}
+
+	// getOpenArchiveInfo()
+	// オープン中のアーカイブごとに経過時間、推定ネイティブメモリ使用量が取得できること
+	@Test
+	public void testGetOpenArchiveInfo() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try (var a1 = am.open(TestData.SEVEN_ZIP_ARCHIVE); var a2 = am.open(TestData.FOLDER_ARCHIVE)) {
+			var infos = am.getOpenArchiveInfo();
+			var i1 = infos.stream().filter(i -> i.getPath().equals(a1.getPath())).findFirst().get();
+			var i2 = infos.stream().filter(i -> i.getPath().equals(a2.getPath())).findFirst().get();
+			assertEquals(a1.getArchiveType(), i1.getArchiveType());
+			assertTrue(i1.getEstimatedNativeBytes() > 0L);
+			assertFalse(i1.getAge().isNegative());
+			assertFalse(i1.isSuspended());
+			assertEquals(0, i1.getAllocationSite().length);
+			assertEquals(0L, i2.getEstimatedNativeBytes());
+		}
+	}
+
+	// setAllocationSiteCapture(boolean)
+	// 有効にした後にオープンしたアーカイブの生成箇所が記録されること
+	@Test
+	public void testSetAllocationSiteCapture() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		am.setAllocationSiteCapture(true);
+		assertTrue(am.isAllocationSiteCapture());
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var info = am.getOpenArchiveInfo().stream().filter(i -> i.getPath().equals(a.getPath())).findFirst().get();
+			var site = info.getAllocationSite();
+			assertTrue(site.length > 0);
+			assertTrue(List.of(site).stream().anyMatch(e -> e.getMethodName().equals("testSetAllocationSiteCapture")));
+		}
+	}
+
+	// setLeakListener(Consumer<OpenArchiveInfo>)
+	// クローズせずに手放したアーカイブが回収されると、ネイティブリソースが解放されリークとして通知されること
+	@Test
+	public void testSetLeakListener_Leak() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try {
+			var path = Tests.mktmpdir(ArchiveManagerTest.class).resolve("leak.7z").toAbsolutePath();
+			Files.copy(TestData.SEVEN_ZIP_ARCHIVE, path, StandardCopyOption.REPLACE_EXISTING);
+			var leaks = new ConcurrentLinkedQueue<OpenArchiveInfo>();
+			am.setLeakListener(leaks::add);
+			am.setAllocationSiteCapture(true);
+			var handles = am.getNativeHandleCount();
+			var count = am.getLeakCount();
+			openWithoutClose(am, path);
+			assertEquals(handles + 1, am.getNativeHandleCount());
+
+			var leak = awaitLeak(leaks, path);
+			assertNotNull(leak);
+			assertEquals(-1L, leak.getEstimatedNativeBytes());
+			assertTrue(leak.getAllocationSite().length > 0);
+			assertTrue(am.getLeakCount() > count);
+			assertEquals(handles, am.getNativeHandleCount());
+			assertTrue(am.getOpenArchiveInfo().stream().noneMatch(i -> i.getPath().equals(path)));
+		} finally {
+			Tests.rmtmpdir(ArchiveManagerTest.class);
+		}
+	}
+
+	// setLeakListener(Consumer<OpenArchiveInfo>)
+	// クローズしたアーカイブが回収されてもリークとして通知されないこと
+	@Test
+	public void testSetLeakListener_Closed() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try {
+			var path = Tests.mktmpdir(ArchiveManagerTest.class).resolve("closed.7z").toAbsolutePath();
+			Files.copy(TestData.SEVEN_ZIP_ARCHIVE, path, StandardCopyOption.REPLACE_EXISTING);
+			var leaks = new ConcurrentLinkedQueue<OpenArchiveInfo>();
+			am.setLeakListener(leaks::add);
+			am.open(path).close();
+			for (var i = 0; i < 5; i++) {
+				System.gc();
+				Thread.sleep(20L);
+			}
+			assertTrue(leaks.stream().noneMatch(i -> i.getPath().equals(path)));
+		} finally {
+			Tests.rmtmpdir(ArchiveManagerTest.class);
+		}
+	}
+
+	// setLeakListener(Consumer<OpenArchiveInfo>)
+	// オープンに失敗したアーカイブが回収されてもリークとして通知されないこと
+	@Test
+	public void testSetLeakListener_OpenFailed() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.initialize();
+		try {
+			var path = Tests.mktmpdir(ArchiveManagerTest.class).resolve("broken.7z").toAbsolutePath();
+			Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			var leaks = new ConcurrentLinkedQueue<OpenArchiveInfo>();
+			am.setLeakListener(leaks::add);
+			assertThrows(IOException.class, () -> ArchiveType.SEVEN_ZIP.open(path));
+			for (var i = 0; i < 5; i++) {
+				System.gc();
+				Thread.sleep(20L);
+			}
+			assertTrue(leaks.stream().noneMatch(i -> i.getPath().equals(path)));
+		} finally {
+			Tests.rmtmpdir(ArchiveManagerTest.class);
+		}
+	}
+
+	private static void openWithoutClose(ArchiveManager am, Path path) throws Exception {
+		var a = am.open(path);
+		a.cacheEntries();
+	}
+
+	private static OpenArchiveInfo awaitLeak(Collection<OpenArchiveInfo> leaks, Path path) throws Exception {
+		for (var i = 0; i < 200; i++) {
+			System.gc();
+			var leak = leaks.stream().filter(l -> l.getPath().equals(path)).findFirst();
+			if (leak.isPresent()) {
+				return leak.get();
+			}
+			Thread.sleep(20L);
+		}
+		return null;
+	}
+
+	private static Path createCorruptedZip(Path dest) throws Exception {
+		// 無圧縮で格納したコンテンツのデータを1バイト改変し、CRCが一致しない状態にする
+		var good = "good content".getBytes();
+		var bad = "bad content".getBytes();
+		try (var out = new ZipOutputStream(Files.newOutputStream(dest))) {
+			for (var data : new byte[][] { good, bad }) {
+				var crc = new CRC32();
+				crc.update(data);
+				var entry = new ZipEntry((data == good) ? "good.txt" : "bad.txt");
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(data.length);
+				entry.setCrc(crc.getValue());
+				out.putNextEntry(entry);
+				out.write(data);
+				out.closeEntry();
+			}
+		}
+		var bytes = Files.readAllBytes(dest);
+		var text = new String(bytes, "ISO-8859-1");
+		bytes[text.indexOf("bad content")] ^= 0x01;
+		Files.write(dest, bytes);
+		return dest;
+	}
+
+	private static byte[] readByPath(Archive archive, Path path) throws Exception {
+		archive.cacheEntries();
+		return archive.readAllBytes(path);
+	}
 }
@@ -0,0 +1,155 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ArchiveStatisticsTest {
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ArchiveStatisticsTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setNestedInMemoryLimit(ArchiveManager.DEFAULT_NESTED_IN_MEMORY_LIMIT);
+	}
+
+	// Archive#getStatistics()
+	// コンテンツを全て読み込むと、解凍したバイト数・返したバイト数・解凍回数・レイテンシが集計されること
+	@Test
+	public void testGetStatistics_ReadAll() throws Exception {
+		var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE);
+		a.cacheEntries();
+		var totalSize = 0L;
+		for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+			totalSize += a.readAllBytes(entry.getKey()).length;
+		}
+		var s = a.getStatistics().snapshot();
+		assertEquals(1L, s.getOpenCount());
+		assertEquals(0L, s.getCloseCount());
+		assertEquals(1L, s.getLiveNativeHandles());
+		assertEquals(TestData.ALL_CONTENTS.size(), s.getExtractCalls());
+		assertEquals(totalSize, s.getBytesDecoded());
+		assertEquals(totalSize, s.getBytesReturned());
+		assertEquals(1.0, s.getAmplification(), 0.0);
+		assertEquals(1L, s.getOpenLatency().getCount());
+		assertEquals(1L, s.getEnumerateLatency().getCount());
+		assertEquals(TestData.ALL_CONTENTS.size(), s.getReadLatency().getCount());
+
+		a.close();
+		s = a.getStatistics().snapshot();
+		assertEquals(1L, s.getCloseCount());
+		assertEquals(0L, s.getLiveNativeHandles());
+	}
+
+	// ArchiveStatistics#getGlobal()
+	// 全アーカイブ共通の統計情報に各アーカイブの統計情報が集計されること
+	@Test
+	public void testGetGlobal_Aggregated() throws Exception {
+		var global = ArchiveStatistics.getGlobal();
+		var before = global.snapshot();
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE);
+				var b = ArchiveManager.getInstance().open(TestData.RAR5_ARCHIVE)) {
+			a.readAllBytes(indexOfReadme(a));
+			b.readAllBytes(indexOfReadme(b));
+			assertEquals(before.getLiveNativeHandles() + 2L, global.snapshot().getLiveNativeHandles());
+		}
+		var after = global.snapshot();
+		assertEquals(before.getOpenCount() + 2L, after.getOpenCount());
+		assertEquals(before.getCloseCount() + 2L, after.getCloseCount());
+		assertEquals(before.getLiveNativeHandles(), after.getLiveNativeHandles());
+		assertEquals(before.getExtractCalls() + 2L, after.getExtractCalls());
+	}
+
+	// Archive#getStatistics()
+	// 入れ子アーカイブをチャネル経由で読み込むと、ブロックキャッシュのヒット・ミスと解凍のやり直しが集計されること
+	@Test
+	public void testGetStatistics_BlockCache() throws Exception {
+		var outerZip = Tests.mktmpdir(ArchiveStatisticsTest.class).resolve("outer.zip");
+		try (var out = new ZipOutputStream(Files.newOutputStream(outerZip))) {
+			out.putNextEntry(new ZipEntry("test.7z"));
+			out.write(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE));
+			out.closeEntry();
+		}
+		ArchiveManager.getInstance().setNestedInMemoryLimit(0L);
+		try (var outer = ArchiveManager.getInstance().open(outerZip)) {
+			outer.cacheEntries();
+			try (var inner = outer.openNested(outer.getEntry(Path.of("test.7z")))) {
+				inner.cacheEntries();
+				inner.readAllBytes(TestData.CONTENT_README_TXT_PATH);
+			}
+			var s = outer.getStatistics().snapshot();
+			assertTrue(s.getCacheMisses() >= 1L);
+			assertTrue(s.getCacheHits() >= 1L);
+			assertEquals(s.getCacheMisses(), s.getBlockRestarts());
+			assertEquals(s.getCacheMisses(), s.getExtractCalls());
+			assertTrue(s.getBytesReturned() > 0L);
+		}
+	}
+
+	// reset()
+	// 統計情報がリセットされ、ネイティブライブラリのアーカイブハンドル数は維持されること
+	@Test
+	public void testReset() throws Exception {
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.readAllBytes(indexOfReadme(a));
+			a.getStatistics().reset();
+			var s = a.getStatistics().snapshot();
+			assertEquals(0L, s.getOpenCount());
+			assertEquals(0L, s.getExtractCalls());
+			assertEquals(0L, s.getBytesDecoded());
+			assertEquals(0L, s.getReadLatency().getCount());
+			assertEquals(1L, s.getLiveNativeHandles());
+		}
+	}
+
+	// Histogram
+	// レイテンシが2のべき乗ごとの階級に集計され、パーセンタイルが階級の上限値となること
+	@Test
+	public void testHistogram() throws Exception {
+		var stats = ArchiveStatistics.create();
+		stats.recordRead(0L);
+		stats.recordRead(1L);
+		stats.recordRead(1000L);
+		stats.recordRead(1023L);
+		stats.recordRead(1024L);
+		var h = stats.snapshot().getReadLatency();
+		assertEquals(5L, h.getCount());
+		assertEquals(3048L, h.getTotalNanos());
+		assertEquals(2L, h.getBucket(0));
+		assertEquals(2L, h.getBucket(9));
+		assertEquals(1L, h.getBucket(10));
+		assertEquals(1L, h.getPercentileNanos(40.0));
+		assertEquals(1023L, h.getPercentileNanos(80.0));
+		assertEquals(2047L, h.getPercentileNanos(100.0));
+		assertThrows(IllegalArgumentException.class, () -> h.getPercentileNanos(100.1));
+		assertThrows(IndexOutOfBoundsException.class, () -> h.getBucket(ArchiveStatistics.Histogram.BUCKET_COUNT));
+	}
+
+	private static int indexOfReadme(Archive archive) throws Exception {
+		for (var i = 0; i < archive.getEntryCount(); i++) {
+			if (archive.getEntry(i).getPath().equals(TestData.CONTENT_README_TXT_PATH)) {
+				return i;
+			}
+		}
+		throw new AssertionError("readme.txt is not found");
+	}
+}
@@ -4,11 +4,17 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -779,6 +785,182 @@ public abstract class ArchiveTest {
 		assertThrows(IllegalStateException.class, () -> mArchive.canUsePath());
 	}
 
+	// entries()
+	// 全てのコンテンツを含むエントリが取り出せ、エントリ情報がキャッシュされないこと
+	@Test
+	public void testEntries_Normal() throws Exception {
+		var cached = mArchive.isCached();
+		try (var stream = mArchive.entries()) {
+			var paths = stream.filter(ArchiveEntry::isContent).map(ArchiveEntry::getPath).collect(Collectors.toSet());
+			assertTrue(paths.containsAll(TestData.ALL_CONTENTS.keySet()));
+		}
+		assertEquals(cached, mArchive.isCached());
+	}
+
+	// entries()
+	// 並列ストリームでも逐次ストリームと同じエントリが重複なく取り出せること
+	@Test
+	public void testEntries_Parallel() throws Exception {
+		var sequential = mArchive.entries().map(ArchiveEntry::getPath).collect(Collectors.toList());
+		var parallel = mArchive.entries().parallel().map(ArchiveEntry::getPath).collect(Collectors.toList());
+		assertEquals(sequential.size(), parallel.size());
+		assertEquals(new HashSet<>(sequential), new HashSet<>(parallel));
+		assertEquals(sequential.size(), new HashSet<>(parallel).size());
+	}
+
+	// entries()
+	// エントリ情報のキャッシュ後はキャッシュされたエントリが取り出せること
+	@Test
+	public void testEntries_Cached() throws Exception {
+		mArchive.cacheEntries();
+		var entries = mArchive.entries().collect(Collectors.toList());
+		assertEquals(mArchive.getEntryCount(), entries.size());
+		for (var entry : entries) {
+			assertSame(entry, mArchive.getEntry(entry.getIndex()));
+		}
+	}
+
+	// entries()
+	// IllegalStateException ストリーム生成後にアーカイブがクローズされた
+	@Test
+	public void testEntries_ClosedAfterCreate() throws Exception {
+		var stream = mArchive.entries();
+		mArchive.close();
+		assertThrows(IllegalStateException.class, () -> stream.count());
+	}
+
+	// entries()
+	// IllegalStateException アーカイブがオープンされていない
+	@Test
+	public void testEntries_NotOpen() throws Exception {
+		mArchive.close();
+		assertThrows(IllegalStateException.class, () -> mArchive.entries());
+	}
+
+	// getEntryInOrder(int)
+	// 全てのエントリが自然順で取得でき、コンテンツのみの自然順がパス順と一致すること
+	@Test
+	public void testGetEntryInOrder_Normal() throws Exception {
+		assertNotNull(mArchive.getEntryInOrder(0));
+		assertTrue(mArchive.isCached());
+		var indices = new HashSet<Integer>();
+		for (var i = 0; i < mArchive.getEntryCount(); i++) {
+			indices.add(mArchive.getEntryInOrder(i).getIndex());
+		}
+		assertEquals(mArchive.getEntryCount(), indices.size());
+
+		var expected = new ArrayList<>(TestData.ALL_CONTENTS.keySet());
+		expected.sort(Comparator.comparing(Manifest::pathString));
+		var actual = new ArrayList<Path>();
+		for (var i = 0; i < mArchive.getContentCount(); i++) {
+			actual.add(mArchive.getContentInOrder(i).getPath());
+		}
+		assertEquals(expected, actual);
+	}
+
+	// getEntryInOrder(int)
+	// 自然順の並びは1回だけ生成され、エントリ情報の再キャッシュで生成し直されること
+	@Test
+	public void testGetEntryInOrder_Cached() throws Exception {
+		mArchive.getEntryInOrder(0);
+		int[] order = Tests.getf(mArchive, "mNaturalOrder");
+		mArchive.getContentInOrder(0);
+		mArchive.getContentCount();
+		assertSame(order, Tests.getf(mArchive, "mNaturalOrder"));
+		mArchive.cacheEntries();
+		assertNull(Tests.getf(mArchive, "mNaturalOrder"));
+		assertEquals(mArchive.getEntryInOrder(0).getPath(), mArchive.getEntry(order[0]).getPath());
+	}
+
+	// getEntryInOrder(int)
+	// IndexOutOfBoundsException 位置が0未満または getEntryCount() 以上
+	// getContentInOrder(int)
+	// IndexOutOfBoundsException 位置が0未満または getContentCount() 以上
+	@Test
+	public void testGetEntryInOrder_IndexOutOfRange() throws Exception {
+		mArchive.cacheEntries();
+		assertThrows(IndexOutOfBoundsException.class, () -> mArchive.getEntryInOrder(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> mArchive.getEntryInOrder(mArchive.getEntryCount()));
+		assertThrows(IndexOutOfBoundsException.class, () -> mArchive.getContentInOrder(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> mArchive.getContentInOrder(mArchive.getContentCount()));
+	}
+
+	// getEntryInOrder(int)
+	// IllegalStateException アーカイブがオープンされていない
+	@Test
+	public void testGetEntryInOrder_NotOpen() throws Exception {
+		mArchive.close();
+		assertThrows(IllegalStateException.class, () -> mArchive.getEntryInOrder(0));
+		assertThrows(IllegalStateException.class, () -> mArchive.getContentInOrder(0));
+		assertThrows(IllegalStateException.class, () -> mArchive.getContentCount());
+	}
+
+	// verify()
+	// 全てのコンテンツが検査され、全て合格すること
+	@Test
+	public void testVerify_Normal() throws Exception {
+		var report = mArchive.verify();
+		assertTrue(report.isPassed());
+		assertNull(report.getError());
+		assertEquals(mArchive.getPath(), report.getPath());
+		assertTrue(report.getFailures().isEmpty());
+		var paths = new HashSet<Path>();
+		var prevIndex = -1;
+		for (var result : report.getResults()) {
+			assertTrue(result.isPassed());
+			assertTrue(result.getIndex() > prevIndex);
+			prevIndex = result.getIndex();
+			paths.add(result.getPath());
+		}
+		assertTrue(paths.containsAll(TestData.ALL_CONTENTS.keySet()));
+	}
+
+	// verify()
+	// IllegalStateException アーカイブがオープンされていない
+	@Test
+	public void testVerify_NotOpen() throws Exception {
+		mArchive.close();
+		assertThrows(IllegalStateException.class, () -> mArchive.verify());
+	}
+
+	// createManifest(String...)
+	// 全てのコンテンツのダイジェスト値が解凍後データから算出した値と一致すること
+	@Test
+	public void testCreateManifest_Normal() throws Exception {
+		var manifest = mArchive.createManifest("SHA-256", "CRC32");
+		assertEquals(List.of("SHA-256", "CRC32"), manifest.getAlgorithms());
+		var found = new HashSet<Path>();
+		for (var entry : manifest.getEntries()) {
+			var expected = TestData.ALL_CONTENTS.get(entry.getPath());
+			if (expected == null) {
+				continue;
+			}
+			var crc = new CRC32();
+			crc.update(expected);
+			assertEquals(expected.length, entry.getSize());
+			assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(expected), entry.getDigest(0));
+			assertEquals(crc.getValue(), ByteBuffer.wrap(entry.getDigest(1)).getInt() & 0xffffffffL);
+			found.add(entry.getPath());
+		}
+		assertEquals(TestData.ALL_CONTENTS.keySet(), found);
+	}
+
+	// createManifest(String...)
+	// IllegalArgumentException サポートされないアルゴリズムを指定した
+	@Test
+	public void testCreateManifest_UnsupportedAlgorithm() throws Exception {
+		assertThrows(IllegalArgumentException.class, () -> mArchive.createManifest("NO-SUCH-DIGEST"));
+		assertThrows(IllegalArgumentException.class, () -> mArchive.createManifest());
+	}
+
+	// createManifest(String...)
+	// IllegalStateException アーカイブがオープンされていない
+	@Test
+	public void testCreateManifest_NotOpen() throws Exception {
+		mArchive.close();
+		assertThrows(IllegalStateException.class, () -> mArchive.createManifest("SHA-256"));
+	}
+
 	private int getIndexByPath(Path path) throws Exception {
 		// エントリをキャッシュして全機能を使用できるようにする
 		// インデックス値を使用する場合、全ての機能を使用可能にしないと一律正しいインデックス値を返せない。
@@ -2,8 +2,14 @@ package com.lmt.lib.archive;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.Test;
 
+import com.lmt.lib.archive.impl.SzjbArchive;
+
 public class ArchiveTypeTest {
 	// isFolderArchive()
 	// アーカイブ種別ごとに期待する値が返ること
@@ -44,4 +50,24 @@ public class ArchiveTypeTest {
 	public void testOpen() {
 		// TODO
 	}
+
+	// open(Path, ByteBuffer)
+	// ファイルアーカイブの種別ではメモリ上のデータから期待するクラスのアーカイブオブジェクトが構築されること
+	@Test
+	public void testOpenByteBuffer() throws Exception {
+		var path = Path.of("virtual.zip");
+		try (var a = ArchiveType.SEVEN_ZIP.open(path, ByteBuffer.wrap(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE)))) {
+			assertEquals(SzjbArchive.SevenZip.class, a.getClass());
+			assertEquals(path.toAbsolutePath(), a.getPath());
+		}
+	}
+
+	// open(Path, ByteBuffer)
+	// UnsupportedOperationException ファイルアーカイブ以外の種別に対して当メソッドを呼び出した
+	@Test
+	public void testOpenByteBuffer_NotFileArchive() {
+		var data = ByteBuffer.allocate(0);
+		assertThrows(UnsupportedOperationException.class, () -> ArchiveType.FOLDER.open(Path.of("a"), data));
+		assertThrows(UnsupportedOperationException.class, () -> ArchiveType.UNKNOWN.open(Path.of("a"), data));
+	}
 }
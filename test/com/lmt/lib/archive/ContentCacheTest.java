@@ -0,0 +1,281 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ContentCacheTest {
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ContentCacheTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setContentCache(null);
+	}
+
+	// ContentCache(long)
+	// 正常：指定した値が取得でき、初期状態の重複排除率が1.0であること
+	@Test
+	public void testContentCache_Normal() {
+		var c = new ContentCache(1024L);
+		assertEquals(1024L, c.getCapacity());
+		assertEquals(0L, c.getStoredBytes());
+		assertEquals(1.0, c.getDedupRatio(), 0.0);
+	}
+
+	// ContentCache(long)
+	// IllegalArgumentException capacityが1未満
+	@Test
+	public void testContentCache_BadCapacity() {
+		assertThrows(IllegalArgumentException.class, () -> new ContentCache(0L));
+	}
+
+	// setContentCache(ContentCache)
+	// 正常：設定したキャッシュが取得できること
+	@Test
+	public void testSetContentCache() {
+		var am = ArchiveManager.getInstance();
+		var c = new ContentCache(1024L);
+		am.setContentCache(c);
+		assertSame(c, am.getContentCache());
+		am.setContentCache(null);
+		assertNull(am.getContentCache());
+	}
+
+	// readAllBytes(ArchiveEntry)
+	// 異なるアーカイブの同じコンテンツが初回のみ解凍され、SHA-256が一致した1個のデータを共有し、重複排除率が算出されること
+	@Test
+	public void testRead_SharedAcrossArchives() throws Exception {
+		var c = new ContentCache(1024L * 1024L);
+		ArchiveManager.getInstance().setContentCache(c);
+		var count = TestData.ALL_CONTENTS.size();
+		var total = 0L;
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			for (var entry : contents(a)) {
+				assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), a.readAllBytes(entry));
+				total += entry.getSize();
+			}
+		}
+		assertEquals(count, c.getMissCount());
+		assertEquals(total, c.getStoredBytes());
+
+		try (var b = ArchiveManager.getInstance().open(TestData.RAR5_ARCHIVE)) {
+			for (var entry : contents(b)) {
+				assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), b.readAllBytes(entry.getPath()));
+			}
+			assertEquals(count * 2, c.getMissCount());
+			assertEquals(0L, c.getHitCount());
+			assertEquals(total, c.getStoredBytes());
+
+			// 2回目以降は解凍せずに共有先のデータを返す
+			var before = b.getStatistics().snapshot().getExtractCalls();
+			for (var entry : contents(b)) {
+				assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), b.openContent(entry).readAllBytes());
+			}
+			assertEquals(before, b.getStatistics().snapshot().getExtractCalls());
+		}
+		assertEquals(count, c.getHitCount());
+		assertEquals(count * 2, c.getMissCount());
+		assertEquals(0L, c.getCollisionCount());
+		assertEquals(total, c.getStoredBytes());
+		assertEquals(total * 2L, c.getReferencedBytes());
+		assertEquals(2.0, c.getDedupRatio(), 0.0);
+	}
+
+	// readAllBytes(ArchiveEntry)
+	// CRC32・サイズが一致し内容が異なるコンテンツが、同じデータとして共有されないこと
+	@Test
+	public void testRead_CrcCollision() throws Exception {
+		var random = new Random(42L);
+		var data1 = new byte[256];
+		random.nextBytes(data1);
+		var prefix = new byte[data1.length - 4];
+		random.nextBytes(prefix);
+		var data2 = forceCrc(prefix, crc(data1));
+		assertEquals(crc(data1), crc(data2));
+		assertFalse(Arrays.equals(data1, data2));
+
+		var zip = Tests.mktmpdir(ContentCacheTest.class).resolve("collision.zip");
+		try (var out = new ZipOutputStream(Files.newOutputStream(zip))) {
+			for (var i = 0; i < 2; i++) {
+				out.putNextEntry(new ZipEntry((i == 0) ? "data1.bin" : "data2.bin"));
+				out.write((i == 0) ? data1 : data2);
+				out.closeEntry();
+			}
+		}
+
+		var c = new ContentCache(1024L * 1024L);
+		ArchiveManager.getInstance().setContentCache(c);
+		try (var a = ArchiveManager.getInstance().open(zip)) {
+			a.cacheEntries();
+			assertEquals(a.getEntry(Path.of("data1.bin")).getCrc(), a.getEntry(Path.of("data2.bin")).getCrc());
+			for (var n = 0; n < 2; n++) {
+				assertArrayEquals(data1, a.readAllBytes(Path.of("data1.bin")));
+				assertArrayEquals(data2, a.readAllBytes(Path.of("data2.bin")));
+			}
+		}
+		assertEquals(1L, c.getCollisionCount());
+		assertEquals(2L, c.getMissCount());
+		assertEquals(2L, c.getHitCount());
+		assertEquals(data1.length * 2L, c.getStoredBytes());
+		assertEquals(1.0, c.getDedupRatio(), 0.0);
+	}
+
+	// readAllBytes(ArchiveEntry)
+	// 同じパスのアーカイブファイルが置き換えられた場合、置き換え前の共有先のデータが返されないこと
+	@Test
+	public void testRead_ReplacedArchive() throws Exception {
+		var random = new Random(43L);
+		var data1 = new byte[256];
+		random.nextBytes(data1);
+		var prefix = new byte[data1.length - 4];
+		random.nextBytes(prefix);
+		var data2 = forceCrc(prefix, crc(data1));
+
+		var zip = Tests.mktmpdir(ContentCacheTest.class).resolve("replaced.zip");
+		var c = new ContentCache(1024L * 1024L);
+		ArchiveManager.getInstance().setContentCache(c);
+		for (var data : List.of(data1, data2)) {
+			try (var out = new ZipOutputStream(Files.newOutputStream(zip))) {
+				out.putNextEntry(new ZipEntry("data.bin"));
+				out.write(data);
+				out.closeEntry();
+			}
+			Files.setLastModifiedTime(zip, FileTime.fromMillis((data == data1) ? 1000000000000L : 1000000010000L));
+			try (var a = ArchiveManager.getInstance().open(zip)) {
+				a.cacheEntries();
+				assertArrayEquals(data, a.readAllBytes(Path.of("data.bin")));
+				assertArrayEquals(data, a.readAllBytes(Path.of("data.bin")));
+			}
+		}
+		assertEquals(2L, c.getMissCount());
+		assertEquals(2L, c.getHitCount());
+		assertEquals(1L, c.getCollisionCount());
+	}
+
+	// readAllBytes(ArchiveEntry)
+	// 返されたデータを変更してもキャッシュのデータが変更されないこと
+	@Test
+	public void testRead_ReturnsCopy() throws Exception {
+		ArchiveManager.getInstance().setContentCache(new ContentCache(1024L * 1024L));
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var entry = contents(a).get(0);
+			var data = a.readAllBytes(entry);
+			data[0] ^= 0xff;
+			assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), a.readAllBytes(entry));
+		}
+	}
+
+	// readAllBytes(ArchiveEntry)
+	// 保持データの合計サイズが容量を超えないこと
+	@Test
+	public void testRead_Capacity() throws Exception {
+		var capacity = TestData.CONTENT_RGB_BMP_BYTES.length + 1L;
+		var c = new ContentCache(capacity);
+		ArchiveManager.getInstance().setContentCache(c);
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			for (var entry : contents(a)) {
+				assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), a.readAllBytes(entry));
+				assertTrue(c.getStoredBytes() <= capacity);
+			}
+			c.clear();
+			assertEquals(0L, c.getStoredBytes());
+			assertEquals(0L, c.getReferencedBytes());
+		}
+	}
+
+	// readAllBytes(Path)
+	// CRC32が記録されていないフォルダアーカイブのコンテンツはキャッシュされないこと
+	@Test
+	public void testRead_NoCrc() throws Exception {
+		var c = new ContentCache(1024L * 1024L);
+		ArchiveManager.getInstance().setContentCache(c);
+		try (var a = ArchiveManager.getInstance().open(TestData.FOLDER_ARCHIVE)) {
+			for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(entry.getValue(), a.readAllBytes(entry.getKey()));
+			}
+		}
+		assertEquals(0L, c.getMissCount());
+		assertEquals(0L, c.getStoredBytes());
+	}
+
+	private static List<ArchiveEntry> contents(Archive a) throws Exception {
+		a.cacheEntries();
+		var list = new ArrayList<ArchiveEntry>();
+		for (var i = 0; i < a.getContentCount(); i++) {
+			list.add(a.getContentInOrder(i));
+		}
+		assertEquals(TestData.ALL_CONTENTS.size(), list.size());
+		list.forEach(e -> assertNotNull(e.getCrc()));
+		return list;
+	}
+
+	private static int crc(byte[] data) {
+		var crc = new CRC32();
+		crc.update(data);
+		return (int)crc.getValue();
+	}
+
+	// 末尾に4バイトを付与し、CRC32が指定値になるデータを生成する(CRC32は入力ビットに対してアフィンであることを利用する)
+	private static byte[] forceCrc(byte[] prefix, int targetCrc) {
+		var data = Arrays.copyOf(prefix, prefix.length + 4);
+		var base = crc(data);
+		var basis = new int[32];
+		var masks = new int[32];
+		for (var bit = 0; bit < 32; bit++) {
+			var d = data.clone();
+			d[prefix.length + (bit / 8)] ^= (byte)(1 << (bit % 8));
+			var v = crc(d) ^ base;
+			var m = 1 << bit;
+			for (var p = 31; (p >= 0) && (v != 0); p--) {
+				if (((v >>> p) & 1) == 0) {
+					continue;
+				} else if (basis[p] == 0) {
+					basis[p] = v;
+					masks[p] = m;
+					break;
+				}
+				v ^= basis[p];
+				m ^= masks[p];
+			}
+		}
+		var v = targetCrc ^ base;
+		var x = 0;
+		for (var p = 31; p >= 0; p--) {
+			if (((v >>> p) & 1) != 0) {
+				v ^= basis[p];
+				x ^= masks[p];
+			}
+		}
+		for (var bit = 0; bit < 32; bit++) {
+			if (((x >>> bit) & 1) != 0) {
+				data[prefix.length + (bit / 8)] ^= (byte)(1 << (bit % 8));
+			}
+		}
+		return data;
+	}
+}
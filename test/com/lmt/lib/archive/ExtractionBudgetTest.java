@@ -0,0 +1,352 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ExtractionBudgetTest {
+	private static final Path LARGE_PATH = Path.of("large.bin");
+	private static final int LARGE_SIZE = 4 * 1024 * 1024;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ExtractionBudgetTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setExtractionBudget(null);
+	}
+
+	// ExtractionBudget(long, Mode)
+	// 正常：指定した値が取得でき、集計値が初期状態であること
+	@Test
+	public void testExtractionBudget_Normal() {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.BLOCK);
+		assertEquals(100L, b.getCapacity());
+		assertEquals(ExtractionBudget.Mode.BLOCK, b.getMode());
+		assertEquals(0L, b.getInFlightBytes());
+		assertEquals(0, b.getQueueLength());
+		assertEquals(0L, b.getWaitCount());
+		assertTrue(b.getTotalWaitTime().isZero());
+	}
+
+	// ExtractionBudget(long, Mode)
+	// IllegalArgumentException capacityが1未満
+	// NullPointerException modeがnull
+	@Test
+	public void testExtractionBudget_BadArgs() {
+		assertThrows(IllegalArgumentException.class, () -> new ExtractionBudget(0L, ExtractionBudget.Mode.BLOCK));
+		assertThrows(NullPointerException.class, () -> new ExtractionBudget(1L, null));
+	}
+
+	// acquire(long, boolean)
+	// 予算の残りに収まる予約は直ちに確定し、解放で予約中の合計サイズが戻ること
+	@Test
+	public void testAcquire_Normal() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.BLOCK);
+		assertEquals(60L, b.acquire(60L, false));
+		assertEquals(40L, b.acquire(40L, false));
+		assertEquals(100L, b.getInFlightBytes());
+		b.release(60L);
+		b.release(40L);
+		assertEquals(0L, b.getInFlightBytes());
+		assertEquals(100L, b.getPeakInFlightBytes());
+		assertEquals(2L, b.getAdmittedCount());
+		assertEquals(0L, b.getWaitCount());
+	}
+
+	// acquire(long, boolean)
+	// 予算の容量を超えるサイズは、他に予約がない時に容量全体を予約すること
+	@Test
+	public void testAcquire_Oversized() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.FAIL_FAST);
+		assertEquals(100L, b.acquire(500L, false));
+		assertThrows(IOException.class, () -> b.acquire(1L, false));
+		b.release(100L);
+	}
+
+	// acquire(long, boolean)
+	// FAIL_FAST：予算の残りが不足するとIOExceptionをスローし、拒否した回数が集計されること
+	@Test
+	public void testAcquire_FailFast() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.FAIL_FAST);
+		b.acquire(80L, false);
+		assertThrows(IOException.class, () -> b.acquire(30L, true));
+		assertEquals(1L, b.getRejectedCount());
+		assertEquals(80L, b.getInFlightBytes());
+	}
+
+	// acquire(long, boolean)
+	// STREAM：ストリーミング可能な場合はストリーミングへの切り替えを返すこと
+	@Test
+	public void testAcquire_Stream() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.STREAM);
+		b.acquire(80L, false);
+		assertEquals(ExtractionBudget.STREAM, b.acquire(30L, true));
+		assertEquals(80L, b.getInFlightBytes());
+		assertEquals(0, b.getQueueLength());
+	}
+
+	// acquire(long, boolean)
+	// STREAM：予算の容量を超えるサイズは予算の残りに関わらずストリーミングへの切り替えを返すこと
+	@Test
+	public void testAcquire_StreamOverCapacity() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.STREAM);
+		assertEquals(ExtractionBudget.STREAM, b.acquire(101L, true));
+		assertEquals(0L, b.getInFlightBytes());
+		assertEquals(100L, b.acquire(101L, false));
+	}
+
+	// acquire(long, boolean)
+	// BLOCK：待機した予約は要求順に確定し、後から要求した小さい予約が先に確定しないこと
+	@Test(timeout = 10000)
+	public void testAcquire_BlockFairness() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.BLOCK);
+		var order = new CopyOnWriteArrayList<String>();
+		b.acquire(80L, false);
+		var t1 = startAcquire(b, 50L, "large", order);
+		awaitQueueLength(b, 1);
+		var t2 = startAcquire(b, 10L, "small", order);
+		awaitQueueLength(b, 2);
+		assertTrue(order.isEmpty());
+
+		// 先頭の予約だけが確定する分を解放し、後の小さい予約が追い越さないことを確認する
+		b.release(30L);
+		t1.join();
+		awaitQueueLength(b, 1);
+		assertEquals(List.of("large"), order);
+		b.release(50L);
+		t2.join();
+		assertEquals(List.of("large", "small"), order);
+		assertEquals(2L, b.getWaitCount());
+		assertTrue(b.getTotalWaitTime().toNanos() > 0L);
+		assertTrue(b.getMaxWaitTime().compareTo(b.getTotalWaitTime()) <= 0);
+		assertEquals(60L, b.getInFlightBytes());
+	}
+
+	// acquire(long, boolean)
+	// InterruptedIOException 待機中に割り込みが発生した
+	@Test(timeout = 10000)
+	public void testAcquire_Interrupted() throws Exception {
+		var b = new ExtractionBudget(100L, ExtractionBudget.Mode.BLOCK);
+		b.acquire(100L, false);
+		var error = new AtomicReference<Throwable>();
+		var t = new Thread(() -> {
+			try {
+				b.acquire(10L, false);
+			} catch (Throwable e) {
+				error.set(e);
+			}
+		});
+		t.start();
+		awaitQueueLength(b, 1);
+		t.interrupt();
+		t.join();
+		assertTrue(error.get() instanceof InterruptedIOException);
+		assertEquals(0, b.getQueueLength());
+		assertEquals(100L, b.getInFlightBytes());
+	}
+
+	// readAllBytes(Path)
+	// 解凍の前後で予算が予約・解放され、予算の残りが不足するとFAIL_FASTでIOExceptionとなること
+	@Test
+	public void testReadAllBytes_FailFast() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var size = TestData.CONTENT_README_TXT_BYTES.length;
+		var b = new ExtractionBudget(size, ExtractionBudget.Mode.FAIL_FAST);
+		am.setExtractionBudget(b);
+		assertSame(b, am.getExtractionBudget());
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertEquals(1L, b.getAdmittedCount());
+			assertEquals(0L, b.getInFlightBytes());
+
+			var reserved = b.acquire(1L, false);
+			assertThrows(IOException.class, () -> a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertEquals(1L, b.getRejectedCount());
+			b.release(reserved);
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// openContent(Path)
+	// STREAM：予算の残りが不足すると、パイプの容量だけを予約し、1回の解凍で先頭から正しく読み込めること
+	@Test
+	public void testOpenContent_Stream() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.STREAM);
+		am.setExtractionBudget(b);
+		try (var a = am.open(largeArchive())) {
+			a.cacheEntries();
+			var before = a.getStatistics().snapshot();
+			try (var stream = a.openContent(LARGE_PATH)) {
+				assertFalse(stream instanceof ByteArrayInputStream);
+				assertEquals(Archive.FORWARD_PIPE_SIZE, b.getInFlightBytes());
+				assertArrayEquals(largeBytes(), stream.readAllBytes());
+			}
+			var after = a.getStatistics().snapshot();
+			assertEquals(1L, b.getStreamedCount());
+			assertEquals(0L, b.getInFlightBytes());
+			assertEquals(before.getExtractCalls() + 1L, after.getExtractCalls());
+			assertEquals(before.getBlockRestarts(), after.getBlockRestarts());
+			assertEquals(LARGE_SIZE, after.getBytesDecoded() - before.getBytesDecoded());
+		}
+	}
+
+	// openContent(Path)
+	// STREAM：読み込みの途中で他のコンテンツを読み込むと、解凍を中断した後に先頭からやり直して続きを正しく読み込めること
+	@Test(timeout = 30000)
+	public void testOpenContent_StreamInterleaved() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.STREAM);
+		am.setExtractionBudget(b);
+		try (var a = am.open(largeArchive())) {
+			a.cacheEntries();
+			var before = a.getStatistics().snapshot();
+			try (var stream = a.openContent(LARGE_PATH)) {
+				var head = stream.readNBytes(LARGE_SIZE / 2);
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+				var tail = stream.readAllBytes();
+				var data = Arrays.copyOf(head, head.length + tail.length);
+				System.arraycopy(tail, 0, data, head.length, tail.length);
+				assertArrayEquals(largeBytes(), data);
+			}
+			assertEquals(before.getBlockRestarts() + 1L, a.getStatistics().snapshot().getBlockRestarts());
+			assertEquals(0L, b.getInFlightBytes());
+		}
+	}
+
+	// openContent(Path)
+	// STREAM：読み込みの途中でアーカイブをクローズすると解凍が中止され、予約したパイプの容量が解放されること
+	@Test(timeout = 30000)
+	public void testOpenContent_StreamArchiveClosed() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.STREAM);
+		am.setExtractionBudget(b);
+		var a = am.open(largeArchive());
+		a.cacheEntries();
+		var stream = a.openContent(LARGE_PATH);
+		assertNotEquals(-1, stream.read());
+		a.close();
+		assertEquals(0L, b.getInFlightBytes());
+		assertThrows(IOException.class, () -> stream.read());
+		stream.close();
+	}
+
+	// openContent(Path)
+	// 予約した予算が入力ストリームのクローズまで解放されないこと
+	@Test
+	public void testOpenContent_ReleaseOnClose() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.BLOCK);
+		am.setExtractionBudget(b);
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			var stream = a.openContent(TestData.CONTENT_README_TXT_PATH);
+			assertEquals(TestData.CONTENT_README_TXT_BYTES.length, b.getInFlightBytes());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+			assertEquals(TestData.CONTENT_README_TXT_BYTES.length, b.getInFlightBytes());
+			stream.close();
+			assertEquals(0L, b.getInFlightBytes());
+			stream.close();
+			assertEquals(0L, b.getInFlightBytes());
+		}
+	}
+
+	// openContent(Path)
+	// クローズされずに到達不能になった入力ストリームの予算がガベージコレクションの後に解放されること
+	@Test(timeout = 10000)
+	public void testOpenContent_ReleaseUnreachable() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.BLOCK);
+		am.setExtractionBudget(b);
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			assertNotEquals(-1, a.openContent(TestData.CONTENT_README_TXT_PATH).read());
+			while (b.getInFlightBytes() != 0L) {
+				System.gc();
+				Thread.sleep(20L);
+			}
+		}
+	}
+
+	// readAllBytes(Path)
+	// フォルダアーカイブは予算の対象外であること
+	@Test
+	public void testReadAllBytes_FolderArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1L, ExtractionBudget.Mode.FAIL_FAST);
+		am.setExtractionBudget(b);
+		b.acquire(1L, false);
+		try (var a = am.open(TestData.FOLDER_ARCHIVE)) {
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertEquals(0L, b.getRejectedCount());
+		}
+	}
+
+	private static Path largeArchive() throws Exception {
+		var path = Tests.mktmpdir(ExtractionBudgetTest.class).resolve("large.zip");
+		if (!Files.exists(path)) {
+			try (var out = new ZipOutputStream(Files.newOutputStream(path))) {
+				out.putNextEntry(new ZipEntry(LARGE_PATH.toString()));
+				out.write(largeBytes());
+				out.closeEntry();
+				out.putNextEntry(new ZipEntry(TestData.CONTENT_README_TXT_PATH.toString()));
+				out.write(TestData.CONTENT_README_TXT_BYTES);
+				out.closeEntry();
+			}
+		}
+		return path;
+	}
+
+	private static byte[] largeBytes() {
+		var data = new byte[LARGE_SIZE];
+		new Random(LARGE_SIZE).nextBytes(data);
+		return data;
+	}
+
+	private static Thread startAcquire(ExtractionBudget b, long size, String name, List<String> order) {
+		var t = new Thread(() -> {
+			try {
+				b.acquire(size, false);
+				order.add(name);
+			} catch (IOException e) {
+				order.add(e.toString());
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	private static void awaitQueueLength(ExtractionBudget b, int length) throws Exception {
+		while (b.getQueueLength() < length) {
+			Thread.sleep(5L);
+		}
+	}
+}
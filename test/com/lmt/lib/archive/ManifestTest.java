@@ -0,0 +1,84 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ManifestTest {
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+	}
+
+	// write(Writer) / read(Reader)
+	// 出力したマニフェストを読み込むと同じ内容になること
+	@Test
+	public void testWriteRead_RoundTrip() throws Exception {
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var manifest = a.createManifest("SHA-256", "CRC32C");
+			var writer = new StringWriter();
+			manifest.write(writer);
+			var text = writer.toString();
+			assertTrue(text.startsWith("#manifest\tSHA-256\tCRC32C\n"));
+
+			var read = Manifest.read(new StringReader(text));
+			assertEquals(manifest.getAlgorithms(), read.getAlgorithms());
+			assertEquals(manifest.getEntries().size(), read.getEntries().size());
+			for (var i = 0; i < manifest.getEntries().size(); i++) {
+				var expected = manifest.getEntries().get(i);
+				var actual = read.getEntries().get(i);
+				assertEquals(expected.getPath(), actual.getPath());
+				assertEquals(expected.getSize(), actual.getSize());
+				assertEquals(expected.getLastModified(), actual.getLastModified());
+				assertArrayEquals(expected.getDigest(0), actual.getDigest(0));
+				assertArrayEquals(expected.getDigest(1), actual.getDigest(1));
+			}
+		}
+	}
+
+	// getEntries()
+	// エントリがパスの昇順に並ぶこと
+	@Test
+	public void testGetEntries_Sorted() throws Exception {
+		try (var a = ArchiveManager.getInstance().open(TestData.ARCHIVE_LOCATION)) {
+			var entries = a.createManifest("CRC32").getEntries();
+			for (var i = 1; i < entries.size(); i++) {
+				var prev = entries.get(i - 1).toString().split("\t")[0];
+				var cur = entries.get(i).toString().split("\t")[0];
+				assertTrue(prev.compareTo(cur) < 0);
+			}
+		}
+	}
+
+	// read(Reader)
+	// パスに含まれるタブ・改行がエスケープされ、読み込み時に復元されること
+	@Test
+	public void testRead_EscapedPath() throws Exception {
+		var text = "#manifest\tCRC32\na\\tb\\nc\\\\d\t3\t0\t00000000\n";
+		var manifest = Manifest.read(new StringReader(text));
+		assertEquals(Path.of("a\tb\nc\\d"), manifest.getEntries().get(0).getPath());
+	}
+
+	// read(Reader)
+	// IOException マニフェストの形式が不正
+	@Test
+	public void testRead_Malformed() throws Exception {
+		assertThrows(IOException.class, () -> Manifest.read(new StringReader("")));
+		assertThrows(IOException.class, () -> Manifest.read(new StringReader("#manifest\tCRC32\nreadme.txt\t3\t0\n")));
+		assertThrows(IOException.class, () -> Manifest.read(new StringReader("#manifest\tCRC32\nreadme.txt\tx\t0\t00\n")));
+	}
+}
@@ -0,0 +1,90 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NaturalOrderTest {
+	private static class EntryImpl extends ArchiveEntry {
+		EntryImpl(Path path) {
+			this.index = 0;
+			this.path = path;
+			this.isContent = true;
+		}
+	}
+
+	// sort(List)
+	// 数字の並びが数値として比較されること
+	@Test
+	public void testSort_Number() {
+		assertOrder("page1.png", "page2.png", "page10.png", "page100.png");
+		assertOrder("a", "a1", "a1b", "a2", "ab");
+		assertOrder("v1.2", "v1.10", "v2.1");
+	}
+
+	// sort(List)
+	// 全角数字・全角英字が半角と同様に扱われ、英字の大小が区別されないこと
+	@Test
+	public void testSort_FullWidth() {
+		assertOrder("第１話.txt", "第2話.txt", "第１０話.txt");
+		assertOrder("Ａ2.png", "a10.png", "B1.png");
+		assertOrder("ページ９", "ページ10", "ページ１１");
+	}
+
+	// sort(List)
+	// 先頭の0の有無は数値として等しく、パス文字列の順で並ぶこと
+	@Test
+	public void testSort_LeadingZero() {
+		assertOrder("001.jpg", "01.jpg", "1.jpg", "002.jpg", "10.jpg");
+		assertOrder("0.jpg", "00a.jpg", "1.jpg");
+	}
+
+	// sort(List)
+	// フォルダ単位で比較され、フォルダ内のエントリが同名を前方に含むエントリより前になること
+	@Test
+	public void testSort_Folder() {
+		assertOrder("vol2", "vol2/p1.png", "vol2/p10.png", "vol2 extra", "vol10", "vol10/p1.png");
+		assertOrder("あ/2.png", "あ/10.png", "い/1.png", "漢字/1.png");
+	}
+
+	// sort(List)
+	// nullのエントリは並び順に含まれないこと
+	@Test
+	public void testSort_NullEntry() {
+		var entries = new ArrayList<ArchiveEntry>();
+		entries.add(new EntryImpl(Path.of("b10")));
+		entries.add(null);
+		entries.add(new EntryImpl(Path.of("b9")));
+		assertArrayEquals(new int[] { 2, 0 }, NaturalOrder.sort(entries));
+	}
+
+	// sort(List)
+	// 10万エントリのソートが現実的な時間で完了すること
+	@Test
+	public void testSort_Large() {
+		var entries = new ArrayList<ArchiveEntry>();
+		for (var i = 100000; i > 0; i--) {
+			entries.add(new EntryImpl(Path.of("dir" + (i % 100), "page" + i + ".png")));
+		}
+		var order = NaturalOrder.sort(entries);
+		assertEquals(100000, order.length);
+		assertEquals(Path.of("dir0", "page100.png"), entries.get(order[0]).getPath());
+		assertEquals(Path.of("dir99", "page99999.png"), entries.get(order[order.length - 1]).getPath());
+	}
+
+	private static void assertOrder(String...expected) {
+		var entries = new ArrayList<ArchiveEntry>();
+		for (var i = expected.length - 1; i >= 0; i--) {
+			entries.add(new EntryImpl(Path.of(expected[i])));
+		}
+		var actual = new ArrayList<String>();
+		for (var index : NaturalOrder.sort(entries)) {
+			actual.add(Manifest.pathString(entries.get(index).getPath()));
+		}
+		assertEquals(List.of(expected), actual);
+	}
+}
@@ -0,0 +1,280 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lmt.lib.archive.impl.SzjbArchive;
+
+public class NestedArchiveTest {
+	private static final Path LARGE_BIN_PATH = Path.of("large.bin");
+
+	private static Path sOuterZip;
+	private static byte[] sLargeBytes;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+
+		// ブロックキャッシュの先読み範囲を超えるサイズのコンテンツを持つZIPを作成する
+		var tmpDir = Tests.mktmpdir(NestedArchiveTest.class);
+		sLargeBytes = new byte[5 * 1024 * 1024 + 123];
+		new Random(28L).nextBytes(sLargeBytes);
+		var largeZip = zip(tmpDir.resolve("large.zip"), Map.of(LARGE_BIN_PATH.toString(), sLargeBytes));
+		var deepZip = zip(tmpDir.resolve("deep.zip"), Map.of("test.7z", Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE)));
+
+		var contents = new LinkedHashMap<String, byte[]>();
+		contents.put("inner/", new byte[0]);
+		contents.put("inner/test.7z", Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE));
+		contents.put("test.5.rar", Files.readAllBytes(TestData.RAR5_ARCHIVE));
+		contents.put("test.4.rar", Files.readAllBytes(TestData.RAR4_ARCHIVE));
+		contents.put("deep.zip", Files.readAllBytes(deepZip));
+		contents.put("large.zip", Files.readAllBytes(largeZip));
+		contents.put("readme.txt", TestData.CONTENT_README_TXT_BYTES);
+		sOuterZip = zip(tmpDir.resolve("outer.zip"), contents);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(NestedArchiveTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setNestedInMemoryLimit(ArchiveManager.DEFAULT_NESTED_IN_MEMORY_LIMIT);
+		am.setSpillPolicy(null);
+		am.setExtractionBudget(null);
+	}
+
+	// setNestedInMemoryLimit(long)
+	// 設定した上限を取得できること、既定値が32MiBであること
+	@Test
+	public void testSetNestedInMemoryLimit_Normal() throws Exception {
+		var am = ArchiveManager.getInstance();
+		assertEquals(32L * 1024L * 1024L, am.getNestedInMemoryLimit());
+		am.setNestedInMemoryLimit(0L);
+		assertEquals(0L, am.getNestedInMemoryLimit());
+		am.setNestedInMemoryLimit(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, am.getNestedInMemoryLimit());
+	}
+
+	// setNestedInMemoryLimit(long)
+	// IllegalArgumentException limitが負の値
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetNestedInMemoryLimit_Negative() throws Exception {
+		ArchiveManager.getInstance().setNestedInMemoryLimit(-1L);
+	}
+
+	// openNested(ArchiveEntry)
+	// メモリ上に展開した入れ子アーカイブがシグネチャから判定した種別でオープンされ、内容を読み取れること
+	@Test
+	public void testOpenNested_InMemory() throws Exception {
+		try (var outer = ArchiveManager.getInstance().open(sOuterZip)) {
+			outer.cacheEntries();
+			try (var inner = outer.openNested(outer.getEntry(Path.of("inner", "test.7z")))) {
+				assertEquals(ArchiveType.SEVEN_ZIP, inner.getArchiveType());
+				assertEquals(Path.of(sOuterZip.toAbsolutePath() + "!", "inner", "test.7z"), inner.getPath());
+				inner.cacheEntries();
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			}
+			try (var inner = outer.openNested(outer.getEntry(Path.of("test.4.rar")))) {
+				assertEquals(SzjbArchive.Rar.class, inner.getClass());
+				inner.cacheEntries();
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			}
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// 上限サイズを超える入れ子アーカイブがチャネル経由でオープンされ、内容を読み取れること
+	@Test
+	public void testOpenNested_Channel() throws Exception {
+		ArchiveManager.getInstance().setNestedInMemoryLimit(0L);
+		try (var outer = ArchiveManager.getInstance().open(sOuterZip)) {
+			outer.cacheEntries();
+			try (var inner = outer.openNested(outer.getEntry(Path.of("test.5.rar")))) {
+				assertEquals(ArchiveType.RAR, inner.getArchiveType());
+				inner.cacheEntries();
+				for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+					assertArrayEquals(entry.getValue(), inner.readAllBytes(entry.getKey()));
+				}
+			}
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// チャネル経由の場合、ブロックキャッシュの先読み範囲を超えるコンテンツを正しく読み取れること
+	@Test
+	public void testOpenNested_ChannelLargeContent() throws Exception {
+		ArchiveManager.getInstance().setNestedInMemoryLimit(0L);
+		try (var outer = ArchiveManager.getInstance().open(sOuterZip)) {
+			outer.cacheEntries();
+			try (var inner = outer.openNested(outer.getEntry(Path.of("large.zip")))) {
+				inner.cacheEntries();
+				assertArrayEquals(sLargeBytes, inner.readAllBytes(LARGE_BIN_PATH));
+			}
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// フォルダアーカイブ内のアーカイブファイルを入れ子アーカイブとしてオープンできること
+	@Test
+	public void testOpenNested_FromFolder() throws Exception {
+		try (var folder = ArchiveManager.getInstance().open(TestData.ARCHIVE_LOCATION)) {
+			try (var inner = folder.openNested(folder.getEntry(Path.of("test.7z")))) {
+				inner.cacheEntries();
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			}
+			ArchiveManager.getInstance().setNestedInMemoryLimit(0L);
+			try (var inner = folder.openNested(folder.getEntry(Path.of("test.7z")))) {
+				inner.cacheEntries();
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			}
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// IOException アーカイブとして認識できないコンテンツを指定した
+	@Test(expected = IOException.class)
+	public void testOpenNested_NotArchive() throws Exception {
+		try (var outer = ArchiveManager.getInstance().open(sOuterZip)) {
+			outer.cacheEntries();
+			outer.openNested(outer.getEntry(Path.of("readme.txt")));
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// NoSuchFileException 指定したエントリがコンテンツではない
+	@Test(expected = NoSuchFileException.class)
+	public void testOpenNested_NotContent() throws Exception {
+		try (var outer = ArchiveManager.getInstance().open(sOuterZip)) {
+			outer.cacheEntries();
+			outer.openNested(outer.getEntry(Path.of("inner")));
+		}
+	}
+
+	// close()
+	// 外側のアーカイブをクローズすると入れ子アーカイブもクローズされること
+	@Test
+	public void testClose_ClosesNested() throws Exception {
+		var outer = ArchiveManager.getInstance().open(sOuterZip);
+		outer.cacheEntries();
+		var inner1 = outer.openNested(outer.getEntry(Path.of("deep.zip")));
+		var inner2 = outer.openNested(outer.getEntry(Path.of("test.5.rar")));
+		inner1.close();
+		assertTrue(outer.isOpen());
+		outer.close();
+		assertFalse(inner1.isOpen());
+		assertFalse(inner2.isOpen());
+	}
+
+	// ArchiveManager#open(Path)
+	// 複合パスを指定すると入れ子アーカイブがオープンされること
+	@Test
+	public void testManagerOpen_CompositePath() throws Exception {
+		var path = Path.of(sOuterZip + "!", "deep.zip!", "test.7z");
+		try (var inner = ArchiveManager.getInstance().open(path)) {
+			assertEquals(ArchiveType.SEVEN_ZIP, inner.getArchiveType());
+			assertEquals(path.toAbsolutePath(), inner.getPath());
+			inner.cacheEntries();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	// ArchiveManager#open(Path)
+	// NoSuchFileException 複合パス内のエントリが見つからない
+	@Test(expected = NoSuchFileException.class)
+	public void testManagerOpen_CompositePathNotFound() throws Exception {
+		ArchiveManager.getInstance().open(Path.of(sOuterZip + "!", "not_found.zip"));
+	}
+
+	// ArchiveManager#openContent(Path)
+	// 複合パスで指定した入れ子アーカイブ内のコンテンツを読み取れること
+	@Test
+	public void testManagerOpenContent_CompositePath() throws Exception {
+		var path = Path.of(sOuterZip + "!", "test.5.rar!").resolve(TestData.CONTENT_README_TXT_PATH);
+		try (var stream = ArchiveManager.getInstance().openContent(path)) {
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+		}
+		try (var stream = ArchiveManager.getInstance().openContent(Path.of(sOuterZip + "!", "readme.txt"))) {
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+		}
+	}
+
+	// ArchiveManager#openContent(Path)
+	// 一時ファイルへ解凍したコンテンツを読み取れ、入力ストリームのクローズで一時ファイルが削除されること
+	@Test
+	public void testManagerOpenContent_CompositePathSpill() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var scratchDir = Files.createDirectories(Tests.mktmpdir(NestedArchiveTest.class).resolve("scratch"));
+		am.setSpillPolicy(new SpillPolicy(0L, 1024L * 1024L, scratchDir));
+		var path = Path.of(sOuterZip + "!", "test.5.rar!").resolve(TestData.CONTENT_README_TXT_PATH);
+		try (var stream = am.openContent(path)) {
+			assertEquals(TestData.CONTENT_README_TXT_BYTES.length, am.getScratchBytes());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+		}
+		assertEquals(0L, am.getScratchBytes());
+		try (var files = Files.list(scratchDir)) {
+			assertEquals(0L, files.count());
+		}
+	}
+
+	// ArchiveManager#openContent(Path)
+	// 必要な部分だけを解凍するストリームで、入力ストリームのクローズまでコンテンツを読み取れること
+	@Test
+	public void testManagerOpenContent_CompositePathStream() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var b = new ExtractionBudget(1024L * 1024L, ExtractionBudget.Mode.STREAM);
+		am.setExtractionBudget(b);
+		var reserved = b.acquire(b.getCapacity(), false);
+		var path = Path.of(sOuterZip + "!", "test.5.rar!").resolve(TestData.CONTENT_README_TXT_PATH);
+		try (var stream = am.openContent(path)) {
+			assertEquals(1L, b.getStreamedCount());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+		} finally {
+			b.release(reserved);
+		}
+	}
+
+	// ArchiveManager#openContent(Path)
+	// NoSuchFileException 複合パスではない
+	@Test(expected = NoSuchFileException.class)
+	public void testManagerOpenContent_NotCompositePath() throws Exception {
+		ArchiveManager.getInstance().openContent(sOuterZip);
+	}
+
+	// ArchiveManager#openContent(Path)
+	// NoSuchFileException 複合パスが示すコンテンツが見つからない
+	@Test(expected = NoSuchFileException.class)
+	public void testManagerOpenContent_ContentNotFound() throws Exception {
+		ArchiveManager.getInstance().openContent(Path.of(sOuterZip + "!", "test.5.rar!", "not_found.txt"));
+	}
+
+	private static Path zip(Path dest, Map<String, byte[]> contents) throws Exception {
+		try (var out = new ZipOutputStream(Files.newOutputStream(dest))) {
+			for (var entry : contents.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+		return dest;
+	}
+}
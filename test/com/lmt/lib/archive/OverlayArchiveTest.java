@@ -0,0 +1,228 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OverlayArchiveTest {
+	private static final byte[] PATCHED_README = "patched readme".getBytes();
+	private static final byte[] PATCH_ONLY = "patch only".getBytes();
+	private static final Path PATCH_ONLY_PATH = TestData.LOCATION_EN_PATH.resolve("patch.txt");
+
+	private static final Path NESTED_PATH = Path.of("nested.7z");
+
+	private static Path sPatchFolder;
+	private static Path sNestedZip;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+		sPatchFolder = Tests.mktmpdir(OverlayArchiveTest.class).resolve("patch");
+		Files.createDirectories(sPatchFolder.resolve(TestData.LOCATION_EN_PATH));
+		Files.write(sPatchFolder.resolve(TestData.CONTENT_README_TXT_PATH), PATCHED_README);
+		Files.write(sPatchFolder.resolve(PATCH_ONLY_PATH), PATCH_ONLY);
+		sNestedZip = sPatchFolder.resolveSibling("nested.zip");
+		try (var out = new ZipOutputStream(Files.newOutputStream(sNestedZip))) {
+			out.putNextEntry(new ZipEntry(NESTED_PATH.toString()));
+			out.write(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE));
+			out.closeEntry();
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(OverlayArchiveTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setNestedInMemoryLimit(ArchiveManager.DEFAULT_NESTED_IN_MEMORY_LIMIT);
+	}
+
+	// openOverlay(List<Archive>)
+	// 優先順位の高いレイヤーのコンテンツが読み込まれ、それ以外は下位のレイヤーから読み込まれること
+	@Test
+	public void testOpenOverlay_Normal() throws Exception {
+		try (var a = openOverlay()) {
+			assertTrue(a.isOpen());
+			assertTrue(a.canUseIndex());
+			assertTrue(a.canUsePath());
+			assertEquals(2, a.getLayerCount());
+			assertEquals(ArchiveType.FOLDER, a.getArchiveType());
+			assertArrayEquals(PATCHED_README, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertArrayEquals(PATCH_ONLY, a.readAllBytes(PATCH_ONLY_PATH));
+			assertArrayEquals(TestData.CONTENT_RGB_BMP_BYTES, a.readAllBytes(TestData.CONTENT_RGB_BMP_PATH));
+			try (var stream = a.openContent(TestData.CONTENT_RGB_BMP_PATH)) {
+				assertArrayEquals(TestData.CONTENT_RGB_BMP_BYTES, stream.readAllBytes());
+			}
+			assertTrue(ArchiveManager.getInstance().getOpenArchives().contains(a));
+		}
+	}
+
+	// enumEntries(EntryCallback)
+	// 全レイヤーのエントリが重複なく列挙され、同じパスのエントリは優先順位の高いレイヤーのものであること
+	@Test
+	public void testEnumEntries() throws Exception {
+		try (var a = openOverlay()) {
+			var paths = new HashSet<Path>();
+			var contents = new HashMap<Path, byte[]>();
+			a.enumEntries((e, cur, cnt) -> {
+				assertTrue(paths.add(e.getPath()));
+				assertEquals(a.getEntryCount(), cnt);
+				return true;
+			});
+			for (var i = 0; i < a.getEntryCount(); i++) {
+				var entry = a.getEntry(i);
+				assertEquals(i, entry.getIndex());
+				if (entry.isContent()) {
+					contents.put(entry.getPath(), a.readAllBytes(i));
+				}
+			}
+			var expected = new HashMap<>(TestData.ALL_CONTENTS);
+			expected.put(TestData.CONTENT_README_TXT_PATH, PATCHED_README);
+			expected.put(PATCH_ONLY_PATH, PATCH_ONLY);
+			assertEquals(expected.keySet(), contents.keySet());
+			for (var e : expected.entrySet()) {
+				assertArrayEquals(e.getValue(), contents.get(e.getKey()));
+			}
+			assertEquals(a.getEntryCount(), paths.size());
+		}
+	}
+
+	// getOwningLayer(Path)
+	// エントリを提供しているレイヤーが返り、存在しないパスでは-1が返ること
+	@Test
+	public void testGetOwningLayer() throws Exception {
+		try (var a = openOverlay()) {
+			assertEquals(0, a.getOwningLayer(TestData.CONTENT_README_TXT_PATH));
+			assertEquals(0, a.getOwningLayer(PATCH_ONLY_PATH));
+			assertEquals(0, a.getOwningLayer(TestData.LOCATION_EN_PATH));
+			assertEquals(1, a.getOwningLayer(TestData.CONTENT_RGB_BMP_PATH));
+			assertEquals(-1, a.getOwningLayer(Path.of("not_found.txt")));
+			assertNull(a.getEntry(Path.of("not_found.txt")));
+		}
+	}
+
+	// layerContains(int, Path)
+	// 上位のレイヤーに隠されたエントリも判定されること
+	@Test
+	public void testLayerContains() throws Exception {
+		try (var a = openOverlay()) {
+			assertTrue(a.layerContains(0, TestData.CONTENT_README_TXT_PATH));
+			assertTrue(a.layerContains(1, TestData.CONTENT_README_TXT_PATH));
+			assertFalse(a.layerContains(1, PATCH_ONLY_PATH));
+			assertFalse(a.layerContains(0, TestData.CONTENT_RGB_BMP_PATH));
+			assertThrows(IndexOutOfBoundsException.class, () -> a.layerContains(2, PATCH_ONLY_PATH));
+		}
+	}
+
+	// createManifest(String...)
+	// レイヤーごとにまとめて読み込んだコンテンツが統合後のエントリで通知されること
+	@Test
+	public void testCreateManifest() throws Exception {
+		try (var a = openOverlay()) {
+			var m = a.createManifest("SHA-256");
+			var sha = MessageDigest.getInstance("SHA-256");
+			var count = 0;
+			for (var e : m.getEntries()) {
+				var expected = a.readAllBytes(e.getPath());
+				assertEquals(expected.length, e.getSize());
+				assertArrayEquals(sha.digest(expected), e.getDigest(0));
+				count++;
+			}
+			assertEquals(TestData.ALL_CONTENTS.size() + 1, count);
+			var readme = m.getEntries().stream().filter(e -> e.getPath().equals(TestData.CONTENT_README_TXT_PATH)).findFirst();
+			assertArrayEquals(sha.digest(PATCHED_README), readme.get().getDigest(0));
+		}
+	}
+
+	// close()
+	// オーバーレイアーカイブをクローズすると全てのレイヤーがクローズされること
+	@Test
+	public void testClose() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var patch = am.open(sPatchFolder);
+		var base = am.open(TestData.SEVEN_ZIP_ARCHIVE);
+		var a = am.openOverlay(List.of(patch, base));
+		a.close();
+		assertFalse(a.isOpen());
+		assertFalse(patch.isOpen());
+		assertFalse(base.isOpen());
+		assertFalse(am.getOpenArchives().contains(a));
+	}
+
+	// openOverlay(List<Archive>)
+	// NullPointerException layersがnull、またはlayersにnullが含まれる
+	// IllegalArgumentException layersが空、または同じアーカイブが複数含まれる
+	// IllegalArgumentException layersにクローズされたアーカイブが含まれる
+	@Test
+	public void testOpenOverlay_BadArgs() throws Exception {
+		var am = ArchiveManager.getInstance();
+		try (var base = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var closed = am.open(TestData.FOLDER_ARCHIVE);
+			closed.close();
+			var withNull = new ArrayList<Archive>();
+			withNull.add(base);
+			withNull.add(null);
+			assertThrows(NullPointerException.class, () -> am.openOverlay(null));
+			assertThrows(NullPointerException.class, () -> am.openOverlay(withNull));
+			assertThrows(IllegalArgumentException.class, () -> am.openOverlay(List.of()));
+			assertThrows(IllegalArgumentException.class, () -> am.openOverlay(List.of(base, base)));
+			assertThrows(IllegalArgumentException.class, () -> am.openOverlay(List.of(base, closed)));
+			assertTrue(base.isOpen());
+		}
+	}
+
+	// readAllBytes(Path)
+	// NoSuchFileException 指定したパスのエントリがコンテンツではない
+	@Test
+	public void testReadAllBytes_Location() throws Exception {
+		try (var a = openOverlay()) {
+			assertThrows(NoSuchFileException.class, () -> a.readAllBytes(TestData.LOCATION_EN_PATH));
+			assertThrows(NoSuchFileException.class, () -> a.readAllBytes(Path.of("not_found.txt")));
+		}
+	}
+
+	// openNested(ArchiveEntry)
+	// チャネル経由の入れ子アーカイブをオープン中はレイヤーが一時解放されず、クローズ後は一時解放できること
+	@Test
+	public void testOpenNested_ChannelPinsLayer() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setNestedInMemoryLimit(0L);
+		var layer = am.open(sNestedZip);
+		try (var a = am.openOverlay(List.of(am.open(sPatchFolder), layer))) {
+			try (var inner = a.openNested(a.getEntry(NESTED_PATH))) {
+				assertFalse(layer.trySuspend());
+				inner.cacheEntries();
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, inner.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+				assertFalse(layer.trySuspend());
+			}
+			assertEquals(0, (int)Tests.getf(layer, "mAccessCount"));
+			assertTrue(layer.trySuspend());
+			assertArrayEquals(Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE), a.readAllBytes(NESTED_PATH));
+		}
+	}
+
+	private static OverlayArchive openOverlay() throws Exception {
+		var am = ArchiveManager.getInstance();
+		return am.openOverlay(List.of(am.open(sPatchFolder), am.open(TestData.SEVEN_ZIP_ARCHIVE)));
+	}
+
+}
@@ -0,0 +1,239 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PrefetchTest {
+	// 先読みタスクを溜めておき、テストから任意のタイミングで実行するエグゼキュータ
+	private static class QueueExecutor implements Executor {
+		List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		void runAll() {
+			var list = new ArrayList<>(tasks);
+			tasks.clear();
+			list.forEach(Runnable::run);
+		}
+	}
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+	}
+
+	// PrefetchPolicy(int, long, Executor)
+	// 正常：指定した値が取得できること
+	@Test
+	public void testPrefetchPolicy_Normal() {
+		var executor = new QueueExecutor();
+		var p = new PrefetchPolicy(3, 1024L, executor);
+		assertEquals(3, p.getDepth());
+		assertEquals(1024L, p.getByteBudget());
+		assertSame(executor, p.getExecutor());
+		assertNull(new PrefetchPolicy(1, 1L).getExecutor());
+	}
+
+	// PrefetchPolicy(int, long, Executor)
+	// IllegalArgumentException depthが1未満
+	// IllegalArgumentException byteBudgetが1未満
+	@Test
+	public void testPrefetchPolicy_BadArgs() {
+		assertThrows(IllegalArgumentException.class, () -> new PrefetchPolicy(0, 1024L));
+		assertThrows(IllegalArgumentException.class, () -> new PrefetchPolicy(1, 0L));
+	}
+
+	// setPrefetchPolicy(PrefetchPolicy)
+	// 正常：エントリ情報がキャッシュされ、設定した先読み方針が取得できること。nullで先読みが解除されること
+	@Test
+	public void testSetPrefetchPolicy_Normal() throws Exception {
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			assertNull(a.getPrefetchPolicy());
+			var p = new PrefetchPolicy(2, 1024L * 1024L);
+			a.setPrefetchPolicy(p);
+			assertSame(p, a.getPrefetchPolicy());
+			assertTrue(a.isCached());
+			a.setPrefetchPolicy(null);
+			assertNull(a.getPrefetchPolicy());
+			assertNull(a.getPrefetcher());
+		}
+	}
+
+	// setPrefetchPolicy(PrefetchPolicy)
+	// IllegalStateException アーカイブがオープンされていない
+	@Test
+	public void testSetPrefetchPolicy_NotOpen() throws Exception {
+		var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE);
+		a.close();
+		assertThrows(IllegalStateException.class, () -> a.setPrefetchPolicy(new PrefetchPolicy(1, 1L)));
+	}
+
+	// readAllBytes(Path)
+	// パスの昇順に連続で読み込むと次のコンテンツが先読みされ、先読みしたデータが返されること
+	@Test
+	public void testRead_SequentialByPath() throws Exception {
+		var executor = new QueueExecutor();
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.setPrefetchPolicy(new PrefetchPolicy(2, 1024L * 1024L, executor));
+			var paths = sortedContentPaths(a);
+			var prefetcher = a.getPrefetcher();
+
+			assertArrayEquals(TestData.ALL_CONTENTS.get(paths.get(0)), a.readAllBytes(paths.get(0)));
+			assertTrue(executor.tasks.isEmpty());
+			assertArrayEquals(TestData.ALL_CONTENTS.get(paths.get(1)), a.readAllBytes(paths.get(1)));
+			assertEquals(Set.of(2, 3), slots(prefetcher));
+			executor.runAll();
+
+			for (var i = 2; i < paths.size(); i++) {
+				assertArrayEquals(TestData.ALL_CONTENTS.get(paths.get(i)), a.readAllBytes(paths.get(i)));
+				executor.runAll();
+			}
+			assertEquals(paths.size() - 2, prefetcher.getHitCount());
+			assertEquals(2L, prefetcher.getMissCount());
+			assertEquals(0L, prefetcher.getReservedBytes());
+		}
+	}
+
+	// openContent(int)
+	// インデックス値の降順に一定間隔で読み込むと、同じ間隔が2回続いた時点で先読みされること
+	@Test
+	public void testRead_StridedByIndex() throws Exception {
+		var executor = new QueueExecutor();
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.setPrefetchPolicy(new PrefetchPolicy(1, 1024L * 1024L, executor));
+			var indices = contentIndices(a);
+			var prefetcher = a.getPrefetcher();
+
+			a.openContent(indices.get(5)).readAllBytes();
+			a.openContent(indices.get(4)).readAllBytes();
+			assertTrue(slots(prefetcher).isEmpty());
+			a.openContent(indices.get(3)).readAllBytes();
+			assertEquals(Set.of(2), slots(prefetcher));
+			executor.runAll();
+			var entry = a.getEntry(indices.get(2));
+			assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), a.readAllBytes(entry));
+			assertEquals(1L, prefetcher.getHitCount());
+		}
+	}
+
+	// readAllBytes(Path)
+	// 先読みで確保するバイト数が先読み容量を超えないこと
+	@Test
+	public void testRead_ByteBudget() throws Exception {
+		var executor = new QueueExecutor();
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			var paths = sortedContentPaths(a);
+			var budget = a.getEntry(paths.get(2)).getSize();
+			a.setPrefetchPolicy(new PrefetchPolicy(3, budget, executor));
+			var prefetcher = a.getPrefetcher();
+
+			a.readAllBytes(paths.get(0));
+			a.readAllBytes(paths.get(1));
+			assertEquals(Set.of(2), slots(prefetcher));
+			assertTrue(prefetcher.getReservedBytes() <= budget);
+			executor.runAll();
+			assertTrue(prefetcher.getReservedBytes() <= budget);
+			assertArrayEquals(TestData.ALL_CONTENTS.get(paths.get(2)), a.readAllBytes(paths.get(2)));
+			assertTrue(prefetcher.getReservedBytes() <= budget);
+		}
+	}
+
+	// readAllBytes(Path)
+	// 読み込み順が一定間隔でなくなると、実行待ちの先読みが取り消されること
+	@Test
+	public void testRead_PatternBreak() throws Exception {
+		var executor = new QueueExecutor();
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.setPrefetchPolicy(new PrefetchPolicy(2, 1024L * 1024L, executor));
+			var paths = sortedContentPaths(a);
+			var prefetcher = a.getPrefetcher();
+
+			a.readAllBytes(paths.get(0));
+			a.readAllBytes(paths.get(1));
+			assertEquals(2, executor.tasks.size());
+			var tasks = new ArrayList<>(executor.tasks);
+			assertArrayEquals(TestData.ALL_CONTENTS.get(paths.get(0)), a.readAllBytes(paths.get(0)));
+			assertTrue(slots(prefetcher).isEmpty());
+			assertEquals(0L, prefetcher.getReservedBytes());
+			for (var task : tasks) {
+				assertTrue(((FutureTask<?>)task).isCancelled());
+			}
+		}
+	}
+
+	// close()
+	// 先読み中にクローズしても、クローズ後に先読みが実行されないこと
+	@Test
+	public void testRead_Close() throws Exception {
+		var executor = new QueueExecutor();
+		var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE);
+		a.setPrefetchPolicy(new PrefetchPolicy(2, 1024L * 1024L, executor));
+		var paths = sortedContentPaths(a);
+		a.readAllBytes(paths.get(0));
+		a.readAllBytes(paths.get(1));
+		var before = a.getStatistics().snapshot().getExtractCalls();
+		a.close();
+		executor.runAll();
+		assertEquals(before, a.getStatistics().snapshot().getExtractCalls());
+	}
+
+	// readAllBytes(Path)
+	// ライブラリ共通のスレッドで先読みしても、全てのコンテンツが正しく読み込めること
+	@Test
+	public void testRead_DefaultExecutor() throws Exception {
+		for (var path : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			try (var a = ArchiveManager.getInstance().open(path)) {
+				a.setPrefetchPolicy(new PrefetchPolicy(3, 1024L * 1024L));
+				for (var p : sortedContentPaths(a)) {
+					assertArrayEquals(TestData.ALL_CONTENTS.get(p), a.readAllBytes(p));
+				}
+				assertTrue(a.getPrefetcher().getHitCount() > 0L);
+			}
+		}
+	}
+
+	private static List<Path> sortedContentPaths(Archive a) throws Exception {
+		var paths = new ArrayList<Path>();
+		a.entries().filter(ArchiveEntry::isContent).forEach(e -> paths.add(e.getPath()));
+		paths.sort(Comparator.comparing(Manifest::pathString));
+		return paths;
+	}
+
+	private static List<Integer> contentIndices(Archive a) throws Exception {
+		var indices = new ArrayList<Integer>();
+		a.entries().filter(ArchiveEntry::isContent).forEach(e -> indices.add(e.getIndex()));
+		indices.sort(Comparator.naturalOrder());
+		return indices;
+	}
+
+	private static Set<Integer> slots(Prefetcher prefetcher) throws Exception {
+		Map<Integer, ?> slots = Tests.getf(prefetcher, "mSlots");
+		synchronized (prefetcher) {
+			return new HashSet<>(slots.keySet());
+		}
+	}
+}
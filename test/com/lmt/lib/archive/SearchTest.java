@@ -0,0 +1,225 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SearchTest {
+	private static final byte[] CRLF = { 0x0d, 0x0a };
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+	}
+
+	// literal(byte[])
+	// 正常：重なり合う一致箇所も全て検出し、データの区切りを跨ぐ一致箇所も検出すること
+	@Test
+	public void testLiteral_Chunked() throws Exception {
+		var data = "aaaxaaaa".getBytes(StandardCharsets.US_ASCII);
+		var pattern = SearchPattern.literal("aa", StandardCharsets.US_ASCII);
+		assertFalse(pattern.isRegex());
+		assertEquals(2, pattern.getMaxMatchLength());
+		for (var chunk = 1; chunk <= data.length; chunk++) {
+			assertEquals(List.of(0L, 1L, 4L, 5L, 6L), scan(pattern, data, chunk));
+		}
+	}
+
+	// regex(String, int)
+	// 正常：データの区切りを跨ぐ一致箇所を分割の仕方に関わらず同じ位置で検出すること
+	@Test
+	public void testRegex_Chunked() throws Exception {
+		var data = "id=123; id=4; id=56789; id=".getBytes(StandardCharsets.US_ASCII);
+		var pattern = SearchPattern.regex("id=[0-9]+", 16);
+		assertTrue(pattern.isRegex());
+		assertEquals(16, pattern.getMaxMatchLength());
+		for (var chunk = 1; chunk <= data.length; chunk++) {
+			assertEquals(List.of(0L, 8L, 14L), scan(pattern, data, chunk));
+		}
+	}
+
+	// literal(byte[])
+	// NullPointerException bytesがnull
+	// IllegalArgumentException bytesが空
+	@Test
+	public void testLiteral_BadArgs() {
+		assertThrows(NullPointerException.class, () -> SearchPattern.literal(null));
+		assertThrows(IllegalArgumentException.class, () -> SearchPattern.literal(new byte[0]));
+		assertThrows(NullPointerException.class, () -> SearchPattern.literal(null, StandardCharsets.UTF_8));
+		assertThrows(NullPointerException.class, () -> SearchPattern.literal("a", null));
+		assertThrows(IllegalArgumentException.class, () -> SearchPattern.literal("", StandardCharsets.UTF_8));
+	}
+
+	// regex(Pattern, int)
+	// NullPointerException regexがnull
+	// IllegalArgumentException maxMatchLengthが1未満
+	@Test
+	public void testRegex_BadArgs() {
+		assertThrows(NullPointerException.class, () -> SearchPattern.regex((String)null, 1));
+		assertThrows(NullPointerException.class, () -> SearchPattern.regex((Pattern)null, 1));
+		assertThrows(IllegalArgumentException.class, () -> SearchPattern.regex("a", 0));
+	}
+
+	// search(SearchPattern)
+	// 全ての種類のアーカイブで、全コンテンツの一致箇所がインデックス値・オフセットの昇順で返されること
+	@Test
+	public void testSearch_Literal() throws Exception {
+		var pattern = SearchPattern.literal(CRLF);
+		for (var path : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			try (var a = ArchiveManager.getInstance().open(path)) {
+				var hits = a.search(pattern);
+				assertEquals(expectedHits(a, pattern), describe(hits));
+				for (var hit : hits) {
+					assertEquals(a.getPath(), hit.getArchivePath());
+					assertEquals(CRLF.length, hit.getLength());
+				}
+			}
+		}
+	}
+
+	// search(SearchPattern, int)
+	// 正規表現の一致箇所が返されること
+	@Test
+	public void testSearch_Regex() throws Exception {
+		var pattern = SearchPattern.regex("[A-Za-z]+\\.", 64);
+		try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var hits = a.search(pattern, 100);
+			assertFalse(hits.isEmpty());
+			assertEquals(expectedHits(a, pattern), describe(hits));
+		}
+	}
+
+	// search(SearchPattern, int)
+	// 一致箇所の数が上限に達した時点で検索を終了し、上限を超える一致箇所が返されないこと
+	@Test
+	public void testSearch_Limit() throws Exception {
+		var pattern = SearchPattern.literal(new byte[] { 0x00 });
+		for (var path : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			try (var a = ArchiveManager.getInstance().open(path)) {
+				assertEquals(3, a.search(pattern, 3).size());
+				var hits = a.search(pattern, 1);
+				assertEquals(1, hits.size());
+				var entry = hits.get(0).getEntry();
+				assertArrayEquals(TestData.ALL_CONTENTS.get(entry.getPath()), a.readAllBytes(entry));
+			}
+		}
+	}
+
+	// search(SearchPattern, int)
+	// IllegalStateException アーカイブがオープンされていない
+	// NullPointerException patternがnull
+	// IllegalArgumentException limitが1未満
+	@Test
+	public void testSearch_BadArgs() throws Exception {
+		var a = ArchiveManager.getInstance().open(TestData.FOLDER_ARCHIVE);
+		var pattern = SearchPattern.literal(CRLF);
+		assertThrows(NullPointerException.class, () -> a.search(null));
+		assertThrows(IllegalArgumentException.class, () -> a.search(pattern, 0));
+		a.close();
+		assertThrows(IllegalStateException.class, () -> a.search(pattern));
+	}
+
+	// searchAll(Collection<Path>, SearchPattern, int, int)
+	// 全アーカイブの一致箇所がパス一覧の順番で返されること
+	@Test
+	public void testSearchAll_Normal() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var pattern = SearchPattern.literal(CRLF);
+		var paths = List.of(TestData.FOLDER_ARCHIVE, TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE);
+		var expected = new ArrayList<String>();
+		for (var path : paths) {
+			try (var a = am.open(path)) {
+				expectedHits(a, pattern).forEach(h -> expected.add(a.getPath() + ":" + h));
+			}
+		}
+		var hits = am.searchAll(paths, pattern, Integer.MAX_VALUE, 2);
+		var actual = new ArrayList<String>();
+		hits.forEach(h -> actual.add(h.getArchivePath() + ":" + h.getEntry().getPath() + "@" + h.getOffset()));
+		assertEquals(expected, actual);
+		assertTrue(am.getOpenArchives().isEmpty());
+	}
+
+	// searchAll(Collection<Path>, SearchPattern, int)
+	// 全アーカイブの一致箇所の合計が上限に達した時点で検索を終了すること
+	@Test
+	public void testSearchAll_Limit() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var paths = List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE, TestData.FOLDER_ARCHIVE);
+		var hits = am.searchAll(paths, SearchPattern.literal(new byte[] { 0x00 }), 5);
+		assertEquals(5, hits.size());
+		assertTrue(am.searchAll(List.of(), SearchPattern.literal(CRLF), 1).isEmpty());
+	}
+
+	// searchAll(Collection<Path>, SearchPattern, int, int)
+	// IOException オープンできないアーカイブが含まれる
+	@Test
+	public void testSearchAll_Error() {
+		var am = ArchiveManager.getInstance();
+		var paths = List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.ARCHIVE_LOCATION.resolve("not_found.7z"));
+		assertThrows(IOException.class, () -> am.searchAll(paths, SearchPattern.literal(CRLF), Integer.MAX_VALUE, 2));
+	}
+
+	// searchAll(Collection<Path>, SearchPattern, int, int)
+	// NullPointerException pathsがnull、またはpathsにnullが含まれる
+	// NullPointerException patternがnull
+	// IllegalArgumentException limitが1未満
+	// IllegalArgumentException maxConcurrencyが1未満
+	@Test
+	public void testSearchAll_BadArgs() {
+		var am = ArchiveManager.getInstance();
+		var pattern = SearchPattern.literal(CRLF);
+		var paths = List.of(TestData.SEVEN_ZIP_ARCHIVE);
+		assertThrows(NullPointerException.class, () -> am.searchAll(null, pattern, 1, 1));
+		assertThrows(NullPointerException.class, () -> am.searchAll(Arrays.asList((Path)null), pattern, 1, 1));
+		assertThrows(NullPointerException.class, () -> am.searchAll(paths, null, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> am.searchAll(paths, pattern, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> am.searchAll(paths, pattern, 1, 0));
+	}
+
+	private static List<Long> scan(SearchPattern pattern, byte[] data, int chunk) throws Exception {
+		var offsets = new ArrayList<Long>();
+		var scanner = pattern.newScanner((offset, length) -> offsets.add(offset));
+		for (var pos = 0; pos < data.length; pos += chunk) {
+			scanner.feed(data, pos, Math.min(chunk, data.length - pos));
+		}
+		scanner.finish();
+		return offsets;
+	}
+
+	private static List<String> expectedHits(Archive a, SearchPattern pattern) throws Exception {
+		var expected = new ArrayList<String>();
+		a.cacheEntries();
+		for (var i = 0; i < a.getEntryCount(); i++) {
+			var entry = a.getEntry(i);
+			if (entry.isContent()) {
+				for (var offset : scan(pattern, TestData.ALL_CONTENTS.get(entry.getPath()), 1 << 20)) {
+					expected.add(entry.getPath() + "@" + offset);
+				}
+			}
+		}
+		return expected;
+	}
+
+	private static List<String> describe(List<SearchHit> hits) {
+		var result = new ArrayList<String>();
+		hits.forEach(h -> result.add(h.getEntry().getPath() + "@" + h.getOffset()));
+		return result;
+	}
+}
@@ -0,0 +1,63 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.sf.sevenzipjbinding.IArchiveOpenVolumeCallback;
+import net.sf.sevenzipjbinding.IInStream;
+
+public class SevenZipVolumeArchiveTest extends ArchiveTest {
+	@Override
+	protected ArchiveType expectedArchiveType() {
+		return ArchiveType.SEVEN_ZIP;
+	}
+
+	@Override
+	protected Path expectedPath() {
+		return TestData.SEVEN_ZIP_VOLUME_ARCHIVE;
+	}
+
+	// readAllBytes(Path)
+	// 全ボリュームを読み込んでも同時に開くボリュームファイル数がハンドルキャッシュの上限以下に抑えられること
+	@Test
+	public void testReadAllBytes_BoundedVolumeHandles() throws Exception {
+		try (var archive = ArchiveManager.getInstance().open(expectedPath())) {
+			archive.cacheEntries();
+			for (var entry : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(entry.getValue(), archive.readAllBytes(entry.getKey()));
+			}
+			Object volumes = Tests.getf(archive, "mVolumes");
+			Map<?, ?> openVolumes = Tests.getf(volumes, "mOpenVolumes");
+			int maxOpenVolumes = Tests.getsf(volumes.getClass(), "MAX_OPEN_VOLUMES");
+			long openCount = Tests.getf(volumes, "mOpenCount");
+			assertTrue(openVolumes.size() <= maxOpenVolumes);
+			assertTrue(openCount >= 11L);
+		}
+	}
+
+	// SzjbVolumeSet.Volume#seek(long, int)
+	// ハンドルキャッシュから追い出されて開き直したボリュームでも、現在位置からの移動が保持した位置を基準に行われること
+	@Test
+	public void testVolumeSeek_CurrentAfterEviction() throws Exception {
+		try (var archive = ArchiveManager.getInstance().open(expectedPath())) {
+			IArchiveOpenVolumeCallback volumes = Tests.getf(archive, "mVolumes");
+			int maxOpenVolumes = Tests.getsf(volumes.getClass(), "MAX_OPEN_VOLUMES");
+			var second = expectedPath().resolveSibling("test.7z.002");
+			var stream = volumes.getStream(second.toAbsolutePath().toString());
+			assertEquals(20L, stream.seek(20L, IInStream.SEEK_SET));
+			for (var i = 0; i < maxOpenVolumes; i++) {
+				var other = volumes.getStream(String.format("test.7z.%03d", i + 3));
+				other.read(new byte[1]);
+			}
+			assertEquals(30L, stream.seek(10L, IInStream.SEEK_CUR));
+			var data = new byte[1];
+			assertEquals(1, stream.read(data));
+			assertEquals(Files.readAllBytes(second)[30], data[0]);
+		}
+	}
+}
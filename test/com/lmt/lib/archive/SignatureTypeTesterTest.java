@@ -0,0 +1,101 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lmt.lib.archive.impl.SzjbArchive;
+
+public class SignatureTypeTesterTest {
+	private static Path sTmpDir;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		sTmpDir = Tests.mktmpdir(SignatureTypeTesterTest.class);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		Tests.rmtmpdir(SignatureTypeTesterTest.class);
+	}
+
+	// apply(Path)
+	// 実在するフォルダを指定するとフォルダアーカイブと判定されること
+	@Test
+	public void testApply_ExistFolder() {
+		var tester = new SignatureTypeTester();
+		assertEquals(ArchiveType.FOLDER, tester.apply(TestData.LOCATION));
+		assertEquals(ArchiveType.FOLDER, tester.apply(TestData.ZIP_NAME_FOLDER));
+	}
+
+	// apply(Path)
+	// 拡張子が正しいアーカイブファイルはシグネチャから同じ種別と判定されること
+	@Test
+	public void testApply_CorrectExtension() {
+		var tester = new SignatureTypeTester();
+		assertEquals(ArchiveType.ZIP, tester.apply(TestData.ZIP_ARCHIVE));
+		assertEquals(ArchiveType.RAR, tester.apply(TestData.RAR4_ARCHIVE));
+		assertEquals(ArchiveType.RAR, tester.apply(TestData.RAR5_ARCHIVE));
+		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(TestData.SEVEN_ZIP_ARCHIVE));
+	}
+
+	// apply(Path)
+	// 拡張子が誤っている・拡張子がないアーカイブファイルがシグネチャから正しい種別と判定されること
+	@Test
+	public void testApply_WrongExtension() throws Exception {
+		var tester = new SignatureTypeTester();
+		assertEquals(ArchiveType.ZIP, tester.apply(copy(TestData.ZIP_ARCHIVE, "zip.rar")));
+		assertEquals(ArchiveType.RAR, tester.apply(copy(TestData.RAR4_ARCHIVE, "rar4.7z")));
+		assertEquals(ArchiveType.RAR, tester.apply(copy(TestData.RAR5_ARCHIVE, "rar5")));
+		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(copy(TestData.SEVEN_ZIP_ARCHIVE, "7z.zip")));
+	}
+
+	// apply(Path)
+	// シグネチャで判定できない場合は拡張子で判定されること
+	@Test
+	public void testApply_FallbackToExtension() {
+		var tester = new SignatureTypeTester();
+		assertEquals(ArchiveType.ZIP, tester.apply(TestData.BROKEN_ARCHIVE));
+		assertEquals(ArchiveType.ZIP, tester.apply(TestData.STANDARD_TYPE_TESTER_LOCATION.resolve("file.zip")));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(TestData.NON_EXTENSION_FILE));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(TestData.STANDARD_TYPE_TESTER_LOCATION.resolve("not_found")));
+	}
+
+	// apply(Path)
+	// ファイルが更新されると判定結果のキャッシュが破棄され、再判定されること
+	@Test
+	public void testApply_CacheInvalidation() throws Exception {
+		var tester = new SignatureTypeTester();
+		var path = copy(TestData.ZIP_ARCHIVE, "changing");
+		assertEquals(ArchiveType.ZIP, tester.apply(path));
+		Files.copy(TestData.SEVEN_ZIP_ARCHIVE, path, StandardCopyOption.REPLACE_EXISTING);
+		Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 2000L));
+		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(path));
+	}
+
+	// apply(Path)
+	// 拡張子が誤っているアーカイブファイルがオープンでき、内容を読み取れること
+	@Test
+	public void testApply_OpenMisnamedArchive() throws Exception {
+		var tester = new SignatureTypeTester();
+		var path = copy(TestData.RAR4_ARCHIVE, "misnamed.zip");
+		try (var archive = tester.apply(path).open(path)) {
+			assertEquals(SzjbArchive.Rar.class, archive.getClass());
+			archive.cacheEntries();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, archive.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+		}
+	}
+
+	private static Path copy(Path src, String name) throws Exception {
+		var dest = sTmpDir.resolve(name);
+		Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+		return dest;
+	}
+}
@@ -0,0 +1,171 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SpillTest {
+	private static Path sScratchDir;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+		sScratchDir = Tests.mktmpdir(SpillTest.class);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(SpillTest.class);
+	}
+
+	@Before
+	public void setup() throws Exception {
+		ArchiveManager.getInstance().setSpillPolicy(null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setSpillPolicy(null);
+	}
+
+	// SpillPolicy(long, long, Path)
+	// 正常：指定した値が取得できること
+	@Test
+	public void testSpillPolicy_Normal() {
+		var p = new SpillPolicy(100L, 1000L, sScratchDir);
+		assertEquals(100L, p.getThreshold());
+		assertEquals(1000L, p.getMaxScratchBytes());
+		assertEquals(sScratchDir, p.getDirectory());
+		assertEquals(Paths.get(System.getProperty("java.io.tmpdir")), new SpillPolicy(0L, 1L).getDirectory());
+	}
+
+	// SpillPolicy(long, long, Path)
+	// IllegalArgumentException thresholdが0未満
+	// IllegalArgumentException maxScratchBytesが1未満
+	// NullPointerException directoryがnull
+	@Test
+	public void testSpillPolicy_BadArgs() {
+		assertThrows(IllegalArgumentException.class, () -> new SpillPolicy(-1L, 1L, sScratchDir));
+		assertThrows(IllegalArgumentException.class, () -> new SpillPolicy(0L, 0L, sScratchDir));
+		assertThrows(NullPointerException.class, () -> new SpillPolicy(0L, 1L, null));
+	}
+
+	// openContent(Path)
+	// 閾値を超えるコンテンツが一時ファイルへ解凍され、ストリームのクローズで一時ファイルが削除されること
+	@Test
+	public void testOpenContent_Spilled() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setSpillPolicy(new SpillPolicy(0L, 1024L * 1024L, sScratchDir));
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			var stream = a.openContent(TestData.CONTENT_README_TXT_PATH);
+			assertFalse(stream instanceof ByteArrayInputStream);
+			assertEquals(1L, countScratchFiles());
+			assertEquals(TestData.CONTENT_README_TXT_BYTES.length, am.getScratchBytes());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+			stream.close();
+			assertEquals(0L, countScratchFiles());
+			assertEquals(0L, am.getScratchBytes());
+		}
+	}
+
+	// openContent(int)
+	// 閾値以下のコンテンツはメモリ上に解凍されること
+	@Test
+	public void testOpenContent_BelowThreshold() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setSpillPolicy(new SpillPolicy(Long.MAX_VALUE, 1024L * 1024L, sScratchDir));
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			var entry = a.getEntry(TestData.CONTENT_README_TXT_PATH);
+			try (var stream = a.openContent(entry.getIndex())) {
+				assertTrue(stream instanceof ByteArrayInputStream);
+				assertEquals(0L, countScratchFiles());
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+			}
+		}
+	}
+
+	// openContent(ArchiveEntry)
+	// フォルダアーカイブのコンテンツは一時ファイルへ解凍されないこと
+	@Test
+	public void testOpenContent_FolderArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setSpillPolicy(new SpillPolicy(0L, 1024L * 1024L, sScratchDir));
+		try (var a = am.open(TestData.FOLDER_ARCHIVE)) {
+			try (var stream = a.openContent(a.getEntry(TestData.CONTENT_README_TXT_PATH))) {
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+				assertEquals(0L, countScratchFiles());
+				assertEquals(0L, am.getScratchBytes());
+			}
+		}
+	}
+
+	// openContent(Path)
+	// アーカイブのクローズで、クローズされていないストリームの一時ファイルが削除されること
+	@Test
+	public void testOpenContent_CloseArchive() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setSpillPolicy(new SpillPolicy(0L, 1024L * 1024L, sScratchDir));
+		var a = am.open(TestData.RAR5_ARCHIVE);
+		a.cacheEntries();
+		for (var path : TestData.ALL_CONTENTS.keySet()) {
+			a.openContent(path);
+		}
+		assertEquals(TestData.ALL_CONTENTS.size(), countScratchFiles());
+		a.close();
+		assertEquals(0L, countScratchFiles());
+		assertEquals(0L, am.getScratchBytes());
+	}
+
+	// openContent(Path)
+	// IOException 一時ファイルの合計サイズが作業容量を超える
+	@Test
+	public void testOpenContent_ScratchExhausted() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var size = TestData.CONTENT_README_TXT_BYTES.length;
+		am.setSpillPolicy(new SpillPolicy(0L, size + 1L, sScratchDir));
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			try (var stream = a.openContent(TestData.CONTENT_README_TXT_PATH)) {
+				assertThrows(IOException.class, () -> a.openContent(TestData.CONTENT_README_TXT_PATH));
+				assertEquals(1L, countScratchFiles());
+				assertEquals(size, am.getScratchBytes());
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, stream.readAllBytes());
+			}
+			assertEquals(0L, am.getScratchBytes());
+		}
+	}
+
+	// readAllBytes(Path)
+	// バイトデータを返すメソッドでは一時ファイルへ解凍されないこと
+	@Test
+	public void testReadAllBytes_NotSpilled() throws Exception {
+		var am = ArchiveManager.getInstance();
+		am.setSpillPolicy(new SpillPolicy(0L, 1024L * 1024L, sScratchDir));
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			a.cacheEntries();
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(TestData.CONTENT_README_TXT_PATH));
+			assertEquals(0L, countScratchFiles());
+		}
+	}
+
+	private static long countScratchFiles() throws Exception {
+		try (var files = Files.list(sScratchDir)) {
+			return files.count();
+		}
+	}
+}
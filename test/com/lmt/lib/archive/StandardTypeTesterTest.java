@@ -76,4 +76,19 @@ public class StandardTypeTesterTest {
 		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(TestData.STANDARD_TYPE_TESTER_LOCATION.resolve("file.7z")));
 		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(TestData.STANDARD_TYPE_TESTER_LOCATION.resolve("file.7Z")));
 	}
+
+	// apply(Path)
+	// 7-ZIPの分割アーカイブの最初のボリュームは7-ZIPと判定され、2番目以降のボリュームとそれ以外の数字のみの拡張子は不明と判定されること
+	@Test
+	public void testApply_VolumeName() {
+		var tester = new StandardTypeTester();
+		var location = TestData.STANDARD_TYPE_TESTER_LOCATION;
+		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(location.resolve("file.7z.001")));
+		assertEquals(ArchiveType.SEVEN_ZIP, tester.apply(location.resolve("file.7Z.001")));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(location.resolve("file.7z.002")));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(location.resolve("file.7z.010")));
+		assertEquals(ArchiveType.RAR, tester.apply(location.resolve("file.part1.rar")));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(location.resolve("file.zip.001")));
+		assertEquals(ArchiveType.UNKNOWN, tester.apply(location.resolve("file.001")));
+	}
 }
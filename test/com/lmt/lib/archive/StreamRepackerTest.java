@@ -0,0 +1,344 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StreamRepackerTest {
+	private static Path sOutDir;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+		sOutDir = Tests.mktmpdir(StreamRepackerTest.class);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(StreamRepackerTest.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ArchiveManager.getInstance().setExtractionBudget(null);
+	}
+
+	// StreamRepacker(Format)
+	// 正常：指定した形式とデフォルトの圧縮レベルが取得できること
+	@Test
+	public void testStreamRepacker() {
+		var r = new StreamRepacker(StreamRepacker.Format.TAR);
+		assertEquals(StreamRepacker.Format.TAR, r.getFormat());
+		assertEquals(StreamRepacker.DEFAULT_LEVEL, r.getLevel());
+		assertThrows(NullPointerException.class, () -> new StreamRepacker(null));
+	}
+
+	// setLevel(int)
+	// IllegalArgumentException levelが0未満または9超過
+	@Test
+	public void testSetLevel() {
+		var r = new StreamRepacker(StreamRepacker.Format.ZIP);
+		r.setLevel(9);
+		assertEquals(9, r.getLevel());
+		assertThrows(IllegalArgumentException.class, () -> r.setLevel(-1));
+		assertThrows(IllegalArgumentException.class, () -> r.setLevel(10));
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// ZIP形式：全てのエントリがストリームとして読み込めるZIPに出力され、ファイルとしてもアーカイブとしてオープンできること
+	@Test
+	public void testRepack_Zip() throws Exception {
+		var am = ArchiveManager.getInstance();
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			var bytes = new ByteArrayOutputStream();
+			try (var a = am.open(src)) {
+				var written = new StreamRepacker(StreamRepacker.Format.ZIP).repack(a, allEntries(a), bytes);
+				assertEquals(bytes.size(), written);
+			}
+
+			// データ記述子を使用したZIPをストリームとして読み込めること
+			var streamed = new HashMap<String, byte[]>();
+			try (var zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8)) {
+				for (var e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+					streamed.put(e.getName(), zip.readAllBytes());
+				}
+			}
+			assertEquals(expectedNames(), streamed.keySet());
+			for (var e : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(e.getValue(), streamed.get(Manifest.pathString(e.getKey())));
+			}
+
+			// セントラルディレクトリから読み込めること
+			var output = sOutDir.resolve("repack.zip");
+			Files.write(output, bytes.toByteArray());
+			try (var zip = new ZipFile(output.toFile())) {
+				assertEquals(TestData.ALL_ENTRY_PATHS.size(), zip.size());
+			}
+			try (var a = am.open(output)) {
+				a.cacheEntries();
+				assertEquals(TestData.ALL_ENTRY_PATHS.size(), a.getEntryCount());
+				for (var e : TestData.ALL_CONTENTS.entrySet()) {
+					assertArrayEquals(e.getValue(), a.readAllBytes(e.getKey()));
+				}
+			}
+			Files.delete(output);
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// TAR形式：全てのエントリがTARに出力され、フォルダエントリがフォルダとして記録されること
+	@Test
+	public void testRepack_Tar() throws Exception {
+		var am = ArchiveManager.getInstance();
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			var bytes = new ByteArrayOutputStream();
+			try (var a = am.open(src)) {
+				var written = new StreamRepacker(StreamRepacker.Format.TAR).repack(a, allEntries(a), bytes);
+				assertEquals(bytes.size(), written);
+			}
+			assertEquals(0, bytes.size() % 512);
+			var entries = readTar(bytes.toByteArray());
+			assertEquals(expectedNames(), entries.keySet());
+			for (var e : TestData.ALL_CONTENTS.entrySet()) {
+				assertArrayEquals(e.getValue(), entries.get(Manifest.pathString(e.getKey())));
+			}
+			assertEquals(0, entries.get(Manifest.pathString(TestData.LOCATION_EN_PATH) + "/").length);
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// 選択したエントリのみ出力され、同じパスのエントリは1個のみ出力されること。フォルダエントリが先頭に出力されること
+	@Test
+	public void testRepack_Selection() throws Exception {
+		var am = ArchiveManager.getInstance();
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			var bytes = new ByteArrayOutputStream();
+			try (var a = am.open(src)) {
+				a.cacheEntries();
+				var greeting = a.getEntry(TestData.CONTENT_GREETING_TXT_PATH);
+				var selection = List.of(greeting, a.getEntry(TestData.CONTENT_README_TXT_PATH),
+						a.getEntry(TestData.LOCATION_EN_PATH), greeting);
+				new StreamRepacker(StreamRepacker.Format.ZIP).repack(a, selection, bytes);
+			}
+			var names = new ArrayList<String>();
+			try (var zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8)) {
+				for (var e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+					names.add(e.getName());
+					if (!e.isDirectory()) {
+						assertArrayEquals(TestData.ALL_CONTENTS.get(Path.of(e.getName())), zip.readAllBytes());
+					}
+				}
+			}
+			assertEquals(3, names.size());
+			assertEquals("english/", names.get(0));
+			assertTrue(names.contains("日本語/挨拶.txt"));
+			assertTrue(names.contains("readme.txt"));
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// 長いパス、ASCII文字以外のパスがTARのPAX拡張ヘッダ、ZIPのUTF-8で記録されること
+	@Test
+	public void testRepack_LongName() throws Exception {
+		var dir = sOutDir.resolve("long");
+		var name = "長い名前_" + "a".repeat(120) + ".txt";
+		var data = "long name".getBytes(StandardCharsets.US_ASCII);
+		Files.createDirectories(dir.resolve("日本語"));
+		Files.write(dir.resolve("日本語").resolve(name), data);
+		var tar = new ByteArrayOutputStream();
+		var zip = new ByteArrayOutputStream();
+		try (var a = ArchiveManager.getInstance().open(dir)) {
+			var entries = allEntries(a);
+			new StreamRepacker(StreamRepacker.Format.TAR).repack(a, entries, tar);
+			new StreamRepacker(StreamRepacker.Format.ZIP).repack(a, entries, zip);
+		}
+		var tarEntries = readTar(tar.toByteArray());
+		assertArrayEquals(data, tarEntries.get("日本語/" + name));
+		try (var in = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()), StandardCharsets.UTF_8)) {
+			var found = false;
+			for (var e = in.getNextEntry(); e != null; e = in.getNextEntry()) {
+				if (e.getName().equals("日本語/" + name)) {
+					assertArrayEquals(data, in.readAllBytes());
+					found = true;
+				}
+			}
+			assertTrue(found);
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, WritableByteChannel)
+	// 出力ストリームへの出力と同じデータがチャネルへ出力され、チャネルがクローズされないこと
+	@Test
+	public void testRepack_Channel() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var r = new StreamRepacker(StreamRepacker.Format.TAR);
+		var expected = new ByteArrayOutputStream();
+		var actual = new ByteArrayOutputStream();
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var entries = allEntries(a);
+			r.repack(a, entries, expected);
+			var channel = Channels.newChannel(actual);
+			assertEquals(expected.size(), r.repack(a, entries, channel));
+			assertTrue(channel.isOpen());
+		}
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// コンテンツ全体をメモリ上に展開せず、展開メモリの予算が残っていなくても出力できること
+	@Test
+	public void testRepack_NoHeapExtraction() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var budget = new ExtractionBudget(1L, ExtractionBudget.Mode.FAIL_FAST);
+		am.setExtractionBudget(budget);
+		budget.acquire(1L, false);
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var entries = allEntries(a);
+			assertThrows(IOException.class, () -> a.readAllBytes(TestData.CONTENT_RGB_BMP_PATH));
+			var bytes = new ByteArrayOutputStream();
+			new StreamRepacker(StreamRepacker.Format.ZIP).repack(a, entries, bytes);
+			try (var zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8)) {
+				var count = 0;
+				for (var e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+					count++;
+				}
+				assertEquals(TestData.ALL_ENTRY_PATHS.size(), count);
+			}
+		} finally {
+			budget.release(1L);
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// IOException 出力先への書き込み中にエラーが発生した
+	@Test
+	public void testRepack_WriteError() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Disconnected");
+			}
+		};
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			try (var a = am.open(src)) {
+				var r = new StreamRepacker(StreamRepacker.Format.ZIP);
+				assertThrows(IOException.class, () -> r.repack(a, allEntries(a), failing));
+				assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, a.readAllBytes(a.getEntry(TestData.CONTENT_README_TXT_PATH)));
+			}
+		}
+	}
+
+	// repack(Archive, Collection<? extends ArchiveEntry>, OutputStream)
+	// NullPointerException sourceがnull
+	// NullPointerException entriesがnull、またはentriesにnullが含まれる
+	// NullPointerException outがnull
+	// IllegalArgumentException sourceがクローズされている
+	// IllegalArgumentException entriesにsource以外が生成したエントリが含まれる
+	@Test
+	public void testRepack_BadArgs() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var r = new StreamRepacker(StreamRepacker.Format.ZIP);
+		var out = new ByteArrayOutputStream();
+		try (var other = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			var a = am.open(TestData.FOLDER_ARCHIVE);
+			var entries = allEntries(a);
+			var foreign = allEntries(other);
+			assertThrows(NullPointerException.class, () -> r.repack(null, entries, out));
+			assertThrows(NullPointerException.class, () -> r.repack(a, null, out));
+			assertThrows(NullPointerException.class, () -> r.repack(a, Arrays.asList((ArchiveEntry)null), out));
+			assertThrows(NullPointerException.class, () -> r.repack(a, entries, (OutputStream)null));
+			assertThrows(IllegalArgumentException.class, () -> r.repack(a, foreign, out));
+			a.close();
+			assertThrows(IllegalArgumentException.class, () -> r.repack(a, entries, out));
+			assertEquals(0, out.size());
+		}
+	}
+
+	private static List<ArchiveEntry> allEntries(Archive a) throws Exception {
+		a.cacheEntries();
+		var entries = new ArrayList<ArchiveEntry>();
+		for (var i = 0; i < a.getEntryCount(); i++) {
+			entries.add(a.getEntry(i));
+		}
+		return entries;
+	}
+
+	private static Set<String> expectedNames() {
+		var names = new HashSet<String>();
+		for (var path : TestData.ALL_ENTRY_PATHS) {
+			var name = Manifest.pathString(path);
+			names.add(TestData.ALL_CONTENTS.containsKey(path) ? name : name + "/");
+		}
+		return names;
+	}
+
+	// パスごとのデータ(PAX拡張ヘッダのパスを反映する)
+	private static Map<String, byte[]> readTar(byte[] tar) {
+		var entries = new LinkedHashMap<String, byte[]>();
+		var buf = ByteBuffer.wrap(tar);
+		var paxPath = (String)null;
+		for (var pos = 0; pos < tar.length; ) {
+			var header = Arrays.copyOfRange(tar, pos, pos + 512);
+			if (Arrays.equals(header, new byte[512])) {
+				break;
+			}
+			assertEquals("ustar\u000000", new String(header, 257, 8, StandardCharsets.US_ASCII));
+			var sum = 0L;
+			for (var i = 0; i < 512; i++) {
+				sum += ((i >= 148) && (i < 156)) ? ' ' : (header[i] & 0xff);
+			}
+			assertEquals(sum, Long.parseLong(new String(header, 148, 6, StandardCharsets.US_ASCII), 8));
+			var name = cstring(header, 0, 100);
+			var size = Long.parseLong(cstring(header, 124, 12), 8);
+			var type = header[156];
+			var data = new byte[(int)size];
+			buf.position(pos + 512).get(data);
+			pos += 512 + (int)((size + 511) / 512 * 512);
+			if (type == 'x') {
+				var record = new String(data, StandardCharsets.UTF_8);
+				assertEquals(data.length, Integer.parseInt(record.substring(0, record.indexOf(' '))));
+				paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+			} else {
+				entries.put((paxPath != null) ? paxPath : name, data);
+				assertEquals(name.endsWith("/") ? '5' : '0', type);
+				paxPath = null;
+			}
+		}
+		return entries;
+	}
+
+	private static String cstring(byte[] b, int offset, int length) {
+		var end = offset;
+		while ((end < (offset + length)) && (b[end] != 0)) {
+			end++;
+		}
+		return new String(b, offset, end - offset, StandardCharsets.US_ASCII);
+	}
+}
@@ -20,6 +20,7 @@ public interface TestData {
 	public static final Path RAR5_ARCHIVE = ARCHIVE_LOCATION.resolve("test.5.rar");
 	public static final Path SEVEN_ZIP_ARCHIVE = ARCHIVE_LOCATION.resolve("test.7z");
 	public static final Path BROKEN_ARCHIVE = ARCHIVE_LOCATION.resolve("broken.zip");
+	public static final Path SEVEN_ZIP_VOLUME_ARCHIVE = ARCHIVE_LOCATION.resolve("volumes").resolve("test.7z.001");
 
 	// StandardTypeTester用
 	public static final Path ZIP_NAME_FOLDER = STANDARD_TYPE_TESTER_LOCATION.resolve("test.zip");
@@ -0,0 +1,253 @@
+package com.lmt.lib.archive;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ZipTranscoderTest {
+	private static Path sOutDir;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+		sOutDir = Tests.mktmpdir(ZipTranscoderTest.class);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ZipTranscoderTest.class);
+	}
+
+	// ZipTranscoder()
+	// 正常：デフォルトの設定が取得できること
+	@Test
+	public void testZipTranscoder() {
+		var t = new ZipTranscoder();
+		assertEquals(ZipTranscoder.DEFAULT_ALIGNMENT, t.getAlignment());
+		assertNull(t.getDeflateFilter());
+		assertNull(t.getScratchDirectory());
+	}
+
+	// transcode(Archive, Path)
+	// 全てのエントリが自然順に無圧縮で格納され、変換したZIPファイルをアーカイブとしてオープンできること
+	@Test
+	public void testTranscode_Stored() throws Exception {
+		var am = ArchiveManager.getInstance();
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.RAR5_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			var output = sOutDir.resolve("stored.zip");
+			var expectedNames = new ArrayList<String>();
+			try (var a = am.open(src)) {
+				new ZipTranscoder().transcode(a, output);
+				a.cacheEntries();
+				for (var i = 0; i < a.getEntryCount(); i++) {
+					var entry = a.getEntryInOrder(i);
+					var name = Manifest.pathString(entry.getPath());
+					expectedNames.add(entry.isLocation() ? name + "/" : name);
+				}
+			}
+
+			// 標準ライブラリのZIP読み込み処理で内容を検証する
+			try (var zip = new ZipFile(output.toFile())) {
+				var names = new ArrayList<String>();
+				for (var e : Collections.list(zip.entries())) {
+					names.add(e.getName());
+					assertEquals(ZipEntry.STORED, e.getMethod());
+					if (!e.isDirectory()) {
+						var expected = TestData.ALL_CONTENTS.get(Path.of(e.getName()));
+						assertArrayEquals(expected, zip.getInputStream(e).readAllBytes());
+						assertEquals(crc(expected), e.getCrc());
+					}
+				}
+				assertEquals(expectedNames, names);
+			}
+
+			// 無圧縮のデータの開始位置がアライメントの倍数であること
+			for (var header : readHeaders(output).values()) {
+				if ((header[1] == 0) && (header[3] > 0)) {
+					assertEquals(0L, header[2] % ZipTranscoder.DEFAULT_ALIGNMENT);
+				}
+			}
+
+			try (var a = am.open(output)) {
+				assertEquals(ArchiveType.ZIP, a.getArchiveType());
+				a.cacheEntries();
+				assertEquals(TestData.ALL_ENTRY_PATHS.size(), a.getEntryCount());
+				for (var e : TestData.ALL_CONTENTS.entrySet()) {
+					assertArrayEquals(e.getValue(), a.readAllBytes(e.getKey()));
+				}
+			}
+		}
+	}
+
+	// transcode(Archive, Path)
+	// 判定処理で指定したコンテンツがDEFLATE圧縮され、無圧縮のコンテンツの後ろに格納されること
+	@Test
+	public void testTranscode_Deflate() throws Exception {
+		var am = ArchiveManager.getInstance();
+		for (var src : List.of(TestData.SEVEN_ZIP_ARCHIVE, TestData.FOLDER_ARCHIVE)) {
+			var output = sOutDir.resolve("deflate.zip");
+			var t = new ZipTranscoder();
+			t.setDeflateFilter(e -> e.getPath().toString().endsWith(".txt"));
+			t.setScratchDirectory(sOutDir);
+			try (var a = am.open(src)) {
+				t.transcode(a, output);
+			}
+			try (var zip = new ZipFile(output.toFile())) {
+				for (var e : Collections.list(zip.entries())) {
+					if (!e.isDirectory()) {
+						var deflated = e.getName().endsWith(".txt");
+						assertEquals(deflated ? ZipEntry.DEFLATED : ZipEntry.STORED, e.getMethod());
+						var expected = TestData.ALL_CONTENTS.get(Path.of(e.getName()));
+						assertArrayEquals(expected, zip.getInputStream(e).readAllBytes());
+					}
+				}
+			}
+			var headers = readHeaders(output);
+			var maxStored = headers.values().stream().filter(h -> h[1] == 0).mapToLong(h -> h[0]).max().getAsLong();
+			var minDeflated = headers.values().stream().filter(h -> h[1] == 8).mapToLong(h -> h[0]).min().getAsLong();
+			assertTrue(maxStored < minDeflated);
+			try (var a = am.open(output)) {
+				a.cacheEntries();
+				for (var e : TestData.ALL_CONTENTS.entrySet()) {
+					assertArrayEquals(e.getValue(), a.readAllBytes(e.getKey()));
+				}
+			}
+			try (var files = Files.list(sOutDir)) {
+				assertEquals(0L, files.filter(f -> f.getFileName().toString().startsWith("transcode-")).count());
+			}
+		}
+	}
+
+	// transcode(Archive, Path)
+	// IOException 圧縮しないコンテンツのエントリ情報のサイズが不明
+	// IOException ZIPファイルのサイズが4GiBを超える
+	// サイズが不明でも圧縮するコンテンツは変換できること
+	@Test
+	public void testTranscode_UnsupportedSize() throws Exception {
+		// オーバーレイアーカイブはオープン時のエントリ情報を保持し続けるため、エントリ情報のサイズを書き換えて使用する
+		var am = ArchiveManager.getInstance();
+		var output = sOutDir.resolve("size.zip");
+		try (var a = am.openOverlay(List.of(am.open(TestData.SEVEN_ZIP_ARCHIVE)))) {
+			var entry = a.getEntry(TestData.CONTENT_README_TXT_PATH);
+			Tests.setf(entry, "size", -1L);
+			var e = assertThrows(IOException.class, () -> new ZipTranscoder().transcode(a, output));
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Content size is unknown"));
+			assertFalse(Files.exists(output));
+
+			Tests.setf(entry, "size", ZipFormat.ZIP32_LIMIT);
+			e = assertThrows(IOException.class, () -> new ZipTranscoder().transcode(a, output));
+			assertTrue(e.getMessage(), e.getMessage().contains("ZIP64 is not supported"));
+			assertFalse(Files.exists(output));
+
+			Tests.setf(entry, "size", -1L);
+			var t = new ZipTranscoder();
+			t.setDeflateFilter(x -> x.getPath().equals(TestData.CONTENT_README_TXT_PATH));
+			t.setScratchDirectory(sOutDir);
+			t.transcode(a, output);
+		}
+		try (var zip = new ZipFile(output.toFile())) {
+			var e = zip.getEntry(TestData.CONTENT_README_TXT_PATH.toString());
+			assertEquals(TestData.CONTENT_README_TXT_BYTES.length, e.getSize());
+			assertArrayEquals(TestData.CONTENT_README_TXT_BYTES, zip.getInputStream(e).readAllBytes());
+		}
+		assertThrows(IOException.class, () -> ZipFormat.checkZip32(ZipFormat.ZIP32_LIMIT));
+		assertEquals(ZipFormat.ZIP32_LIMIT - 1L, ZipFormat.checkZip32(ZipFormat.ZIP32_LIMIT - 1L));
+	}
+
+	// setAlignment(int)
+	// アライメントに1を指定すると、データの開始位置を揃えずに格納されること
+	@Test
+	public void testSetAlignment() throws Exception {
+		var am = ArchiveManager.getInstance();
+		var aligned = sOutDir.resolve("aligned.zip");
+		var packed = sOutDir.resolve("packed.zip");
+		var t = new ZipTranscoder();
+		try (var a = am.open(TestData.SEVEN_ZIP_ARCHIVE)) {
+			t.transcode(a, aligned);
+			t.setAlignment(1);
+			assertEquals(1, t.getAlignment());
+			t.transcode(a, packed);
+		}
+		assertTrue(Files.size(packed) < Files.size(aligned));
+		try (var zip = new ZipFile(packed.toFile())) {
+			assertEquals(TestData.ALL_ENTRY_PATHS.size(), zip.size());
+		}
+		Files.delete(aligned);
+		Files.delete(packed);
+	}
+
+	// setAlignment(int)
+	// IllegalArgumentException alignmentが1未満または65535超過
+	@Test
+	public void testSetAlignment_BadArgs() {
+		var t = new ZipTranscoder();
+		assertThrows(IllegalArgumentException.class, () -> t.setAlignment(0));
+		assertThrows(IllegalArgumentException.class, () -> t.setAlignment(65536));
+	}
+
+	// transcode(Archive, Path)
+	// NullPointerException sourceがnull
+	// NullPointerException outputがnull
+	// IllegalArgumentException sourceがクローズされている
+	@Test
+	public void testTranscode_BadArgs() throws Exception {
+		var t = new ZipTranscoder();
+		var output = sOutDir.resolve("bad.zip");
+		var a = ArchiveManager.getInstance().open(TestData.FOLDER_ARCHIVE);
+		assertThrows(NullPointerException.class, () -> t.transcode(null, output));
+		assertThrows(NullPointerException.class, () -> t.transcode(a, null));
+		a.close();
+		assertThrows(IllegalArgumentException.class, () -> t.transcode(a, output));
+		assertFalse(Files.exists(output));
+	}
+
+	private static long crc(byte[] data) {
+		var crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	// エントリ名ごとの {ローカルファイルヘッダの位置, 圧縮方式, データの位置, サイズ}
+	private static Map<String, long[]> readHeaders(Path zip) throws Exception {
+		var buf = ByteBuffer.wrap(Files.readAllBytes(zip)).order(ByteOrder.LITTLE_ENDIAN);
+		var end = buf.limit() - 22;
+		assertEquals(0x06054b50, buf.getInt(end));
+		var count = buf.getShort(end + 10) & 0xffff;
+		var pos = buf.getInt(end + 16);
+		var headers = new HashMap<String, long[]>();
+		for (var i = 0; i < count; i++) {
+			assertEquals(0x02014b50, buf.getInt(pos));
+			var method = buf.getShort(pos + 10);
+			var size = buf.getInt(pos + 24) & 0xffffffffL;
+			var nameLength = buf.getShort(pos + 28) & 0xffff;
+			var extraLength = buf.getShort(pos + 30) & 0xffff;
+			var commentLength = buf.getShort(pos + 32) & 0xffff;
+			var local = buf.getInt(pos + 42) & 0xffffffffL;
+			var name = new String(buf.array(), pos + 46, nameLength, "UTF-8");
+			assertEquals(0x04034b50, buf.getInt((int)local));
+			var data = local + 30 + (buf.getShort((int)local + 26) & 0xffff) + (buf.getShort((int)local + 28) & 0xffff);
+			headers.put(name, new long[] { local, method, data, size });
+			pos += 46 + nameLength + extraLength + commentLength;
+		}
+		return headers;
+	}
+}
@@ -0,0 +1,98 @@
+package com.lmt.lib.archive.jfr;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.lmt.lib.archive.ArchiveManager;
+import com.lmt.lib.archive.TestData;
+import com.lmt.lib.archive.Tests;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ArchiveEventsTest {
+	@BeforeClass
+	public static void setupClass() throws Exception {
+		ArchiveManager.getInstance().initialize();
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws Exception {
+		var am = ArchiveManager.getInstance();
+		Tests.setf(am, "mIsInitialized", false);
+		Tests.setf(am, "mTypeTester", null);
+		Tests.rmtmpdir(ArchiveEventsTest.class);
+	}
+
+	// ArchiveOpenEvent / ArchiveTypeDetectEvent / ArchiveEnumerateEvent / ArchiveExtractEvent
+	// アーカイブのオープン・種別判定・エントリ列挙・解凍でイベントが出力されること
+	@Test
+	public void testEvents_OpenEnumerateExtract() throws Exception {
+		var events = record(() -> {
+			try (var a = ArchiveManager.getInstance().open(TestData.SEVEN_ZIP_ARCHIVE)) {
+				a.cacheEntries();
+				a.readAllBytes(TestData.CONTENT_README_TXT_PATH);
+			}
+		});
+
+		var open = only(events, "com.lmt.lib.archive.ArchiveOpen");
+		assertEquals("SEVEN_ZIP", open.getString("archiveType"));
+		assertTrue(open.getString("path").endsWith("test.7z"));
+		assertTrue(open.getInt("entryCount") > 0);
+
+		var detect = only(events, "com.lmt.lib.archive.ArchiveTypeDetect");
+		assertEquals("SEVEN_ZIP", detect.getString("archiveType"));
+
+		var enumerate = only(events, "com.lmt.lib.archive.ArchiveEnumerate");
+		assertEquals(open.getInt("entryCount"), enumerate.getInt("entryCount"));
+
+		var extract = only(events, "com.lmt.lib.archive.ArchiveExtract");
+		assertTrue(extract.getLong("bytes") > 0L);
+		assertFalse(extract.getBoolean("cacheHit"));
+	}
+
+	// ArchiveTypeDetectEvent
+	// シグネチャによる種別判定でイベントが出力されること
+	@Test
+	public void testEvents_SignatureDetect() throws Exception {
+		var data = Files.readAllBytes(TestData.SEVEN_ZIP_ARCHIVE);
+		var events = record(() -> ArchiveManager.getInstance().open(data).close());
+		var detect = only(events, "com.lmt.lib.archive.ArchiveTypeDetect");
+		assertEquals("signature", detect.getString("detector"));
+		assertEquals("memory", detect.getString("path"));
+		assertEquals("SEVEN_ZIP", detect.getString("archiveType"));
+	}
+
+	@FunctionalInterface
+	private interface Action {
+		void run() throws Exception;
+	}
+
+	private static List<RecordedEvent> record(Action action) throws Exception {
+		var file = Tests.mktmpdir(ArchiveEventsTest.class).resolve("recording.jfr");
+		try (var recording = new Recording()) {
+			for (var name : List.of("ArchiveOpen", "ArchiveTypeDetect", "ArchiveEnumerate", "ArchiveExtract")) {
+				recording.enable("com.lmt.lib.archive." + name).withoutThreshold();
+			}
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(file);
+		}
+		return RecordingFile.readAllEvents(file);
+	}
+
+	private static RecordedEvent only(List<RecordedEvent> events, String name) {
+		var found = events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+		assertEquals(name, 1, found.size());
+		return found.get(0);
+	}
+}